@@ -0,0 +1,105 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The distribution of a non negative value (e.g. a latency or a size).
+ * <p>
+ * Values are counted in power of two buckets, so updates are lock free and take constant space,
+ * at the cost of percentiles being approximated by the upper bound of the bucket they fall in
+ * (i.e. off by less than a factor of two).
+ *
+ * @see Metrics#histogram(String)
+ * @since 2.0
+ */
+public class Histogram {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Bucket {@code i} counts the values whose highest one bit is {@code i - 1}, bucket {@code 0}
+     * counts zeroes
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+
+    Histogram() {
+    }
+
+    public void update(long value) {
+        if (Metrics.isEnabled()) {
+            record(Math.max(0, value));
+        }
+    }
+
+    void record(long value) {
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(value));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long c = getCount();
+        return c == 0 ? 0 : (double) getSum() / c;
+    }
+
+    /**
+     * @param quantile a value between {@code 0} and {@code 1}
+     * @return an upper bound of the given quantile, no more than twice the actual value
+     */
+    public long getPercentile(double quantile) {
+        Preconditions.checkArgument(quantile >= 0 && quantile <= 1, "quantile must be in [0, 1]");
+        final long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                long upperBound = i == 0 ? 0 : (i == Long.SIZE ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    void reset() {
+        count.reset();
+        sum.reset();
+        max.reset();
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+    }
+}
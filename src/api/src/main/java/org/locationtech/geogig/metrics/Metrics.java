@@ -0,0 +1,177 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.google.common.base.Preconditions;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * JVM wide registry of lightweight metrics for the hot paths of GeoGig (storage access, caches,
+ * commands, and diffs), meant to tell where the time of a slow request goes.
+ * <p>
+ * Metrics are identified by dot separated names, where the prefix tells the subsystem:
+ * <ul>
+ * <li>{@code storage.<backend>.*}: object store latencies and bytes read and written
+ * <li>{@code cache.<id>.*}: shared cache hits and misses per cache identifier
+ * <li>{@code command.<class name>}: command execution times
+ * <li>{@code diff.*}: nodes, buckets, and trees visited by tree diffs
+ * </ul>
+ * Metrics can be pulled through {@link #snapshot()}, or through JMX as the
+ * {@code org.geogig:type=metrics} {@link MetricsBean MXBean}.
+ * <p>
+ * Recording can be disabled at startup with the {@code geogig.metrics.enabled=false} System
+ * property, or at runtime through {@link #setEnabled(boolean)}, in which case updates are no-ops.
+ *
+ * @since 2.0
+ */
+public @Slf4j final class Metrics {
+
+    private static volatile boolean enabled = Boolean
+            .parseBoolean(System.getProperty("geogig.metrics.enabled", "true"));
+
+    private static final ConcurrentMap<String, Object> METRICS = new ConcurrentHashMap<>();
+
+    static {
+        registerMBean();
+    }
+
+    private Metrics() {
+        // utility class
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    public static Counter counter(@NonNull String name) {
+        return get(name, Counter.class, n -> new Counter());
+    }
+
+    public static Histogram histogram(@NonNull String name) {
+        return get(name, Histogram.class, n -> new Histogram());
+    }
+
+    public static Timer timer(@NonNull String name) {
+        return get(name, Timer.class, n -> new Timer());
+    }
+
+    private static <T> T get(String name, Class<T> type, Function<String, T> factory) {
+        Object metric = METRICS.computeIfAbsent(name, factory);
+        Preconditions.checkArgument(type.equals(metric.getClass()),
+                "Metric %s is a %s, not a %s", name, metric.getClass().getSimpleName(),
+                type.getSimpleName());
+        return type.cast(metric);
+    }
+
+    /**
+     * Returns the current value of all the metrics, sorted by name. Counters are reported by their
+     * name, histograms and timers as several entries for their count, sum, mean, max, and
+     * percentiles, where timer values are expressed in milliseconds:
+     *
+     * <pre>
+     * <code>
+     * storage.rocksdb.bytesRead = 1048576
+     * storage.rocksdb.get.count = 250
+     * storage.rocksdb.get.total_ms = 31.2
+     * storage.rocksdb.get.mean_ms = 0.12
+     * storage.rocksdb.get.max_ms = 2.1
+     * storage.rocksdb.get.p50_ms = 0.13
+     * ...
+     * </code>
+     * </pre>
+     */
+    public static SortedMap<String, Double> snapshot() {
+        SortedMap<String, Double> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Object> e : METRICS.entrySet()) {
+            final String name = e.getKey();
+            final Object metric = e.getValue();
+            if (metric instanceof Counter) {
+                snapshot.put(name, (double) ((Counter) metric).getCount());
+            } else if (metric instanceof Timer) {
+                addHistogram(snapshot, name, (Timer) metric, "_ms", 1e-6);
+            } else {
+                addHistogram(snapshot, name, (Histogram) metric, "", 1);
+            }
+        }
+        return snapshot;
+    }
+
+    private static void addHistogram(Map<String, Double> target, String name, Histogram h,
+            String unit, double scale) {
+        target.put(name + ".count", (double) h.getCount());
+        target.put(name + ".total" + unit, h.getSum() * scale);
+        target.put(name + ".mean" + unit, h.getMean() * scale);
+        target.put(name + ".max" + unit, h.getMax() * scale);
+        target.put(name + ".p50" + unit, h.getPercentile(0.5) * scale);
+        target.put(name + ".p95" + unit, h.getPercentile(0.95) * scale);
+        target.put(name + ".p99" + unit, h.getPercentile(0.99) * scale);
+    }
+
+    /**
+     * Resets all the metrics to zero
+     */
+    public static void reset() {
+        for (Object metric : METRICS.values()) {
+            if (metric instanceof Counter) {
+                ((Counter) metric).reset();
+            } else {
+                ((Histogram) metric).reset();
+            }
+        }
+    }
+
+    private static void registerMBean() {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName beanName = new ObjectName("org.geogig:type=metrics");
+            if (!mbeanServer.isRegistered(beanName)) {
+                mbeanServer.registerMBean(new MetricsBeanImpl(), beanName);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to register metrics MBean", e);
+        }
+    }
+
+    private static class MetricsBeanImpl implements MetricsBean {
+
+        public @Override boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        public @Override void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        public @Override Map<String, Double> getMetrics() {
+            return Metrics.snapshot();
+        }
+
+        public @Override void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import java.util.Map;
+
+import javax.management.MXBean;
+
+/**
+ * JMX view of the {@link Metrics} registry, registered as {@code org.geogig:type=metrics} so it
+ * can be watched through a MBeans client such as JConsole.
+ *
+ * @see Metrics
+ * @since 2.0
+ */
+@MXBean
+public interface MetricsBean {
+
+    /**
+     * @return whether metrics are being recorded
+     */
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the current value of all the metrics, as returned by {@link Metrics#snapshot()}
+     */
+    Map<String, Double> getMetrics();
+
+    /**
+     * Resets all the metrics to zero
+     */
+    void reset();
+}
@@ -0,0 +1,57 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Histogram} of durations in nanoseconds.
+ * <p>
+ * Meant to be used without allocating on hot paths:
+ *
+ * <pre>
+ * <code>
+ * long start = timer.start();
+ * try {
+ *     ...
+ * } finally {
+ *     timer.stop(start);
+ * }
+ * </code>
+ * </pre>
+ *
+ * @see Metrics#timer(String)
+ * @since 2.0
+ */
+public final class Timer extends Histogram {
+
+    Timer() {
+    }
+
+    /**
+     * @return the start time to give to {@link #stop(long)}, or {@code 0} if metrics are disabled
+     */
+    public long start() {
+        return Metrics.isEnabled() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the time elapsed since {@code start}, as returned by {@link #start()}
+     */
+    public void stop(long start) {
+        if (start != 0L && Metrics.isEnabled()) {
+            super.record(Math.max(0, System.nanoTime() - start));
+        }
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        update(unit.toNanos(duration));
+    }
+}
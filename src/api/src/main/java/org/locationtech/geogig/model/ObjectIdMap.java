@@ -0,0 +1,170 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import lombok.NonNull;
+
+/**
+ * A memory efficient map of {@link ObjectId} keys to arbitrary values.
+ * <p>
+ * Like {@link ObjectIdSet}, the keys are stored inline in an open addressing hash table of
+ * primitive arrays instead of as {@code ObjectId} instances and hash table entries, and the values
+ * in a parallel array.
+ * <p>
+ * This class is not thread safe. Mappings can't be removed, but the map can be
+ * {@link #clear() cleared}. {@code null} values are not allowed.
+ *
+ * @since 2.0
+ */
+public final class ObjectIdMap<V> {
+
+    private ObjectIdTable table;
+
+    private Object[] values;
+
+    private int size;
+
+    private V nullKeyValue;
+
+    public ObjectIdMap() {
+        this(ObjectIdTable.MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of mappings the map is expected to hold, to avoid growing the
+     *        table more than needed
+     */
+    public ObjectIdMap(int expectedSize) {
+        checkArgument(expectedSize >= 0, "expectedSize must be >= 0: %s", expectedSize);
+        int capacity = ObjectIdTable.capacityFor(expectedSize);
+        this.table = ObjectIdTable.heap(capacity);
+        this.values = new Object[capacity];
+    }
+
+    public int size() {
+        return size + (nullKeyValue == null ? 0 : 1);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(@NonNull ObjectId key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(@NonNull ObjectId key) {
+        if (key.isNull()) {
+            return nullKeyValue;
+        }
+        int slot = table.find(key, ObjectIdTable.hash(key));
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    public V getOrDefault(@NonNull ObjectId key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return the previous value associated with {@code key}, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable V put(@NonNull ObjectId key, @NonNull V value) {
+        if (key.isNull()) {
+            V prev = nullKeyValue;
+            nullKeyValue = value;
+            return prev;
+        }
+        final long hash = ObjectIdTable.hash(key);
+        int slot = table.find(key, hash);
+        if (slot >= 0) {
+            V prev = (V) values[slot];
+            values[slot] = value;
+            return prev;
+        }
+        if (size >= table.threshold()) {
+            grow();
+            slot = table.find(key, hash);
+        }
+        slot = -(slot + 1);
+        table.set(slot, key);
+        values[slot] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * @return the current (existing or computed) value associated with {@code key}
+     */
+    public V computeIfAbsent(@NonNull ObjectId key, @NonNull Function<ObjectId, V> mappingFunction) {
+        V value = get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            checkArgument(value != null, "mapping function returned null");
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Calls {@code consumer} for each mapping, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@NonNull BiConsumer<ObjectId, V> consumer) {
+        if (nullKeyValue != null) {
+            consumer.accept(ObjectId.NULL, nullKeyValue);
+        }
+        final ObjectIdTable table = this.table;
+        for (int slot = 0; slot < table.capacity; slot++) {
+            if (!table.isEmpty(slot)) {
+                consumer.accept(table.get(slot), (V) values[slot]);
+            }
+        }
+    }
+
+    public void clear() {
+        table.clear();
+        Arrays.fill(values, null);
+        nullKeyValue = null;
+        size = 0;
+    }
+
+    public @Override String toString() {
+        return String.format("%s[size: %,d]", getClass().getSimpleName(), size());
+    }
+
+    private void grow() {
+        checkState(table.capacity < ObjectIdTable.MAX_CAPACITY, "ObjectIdMap is full");
+        final int newCapacity = table.capacity << 1;
+        ObjectIdTable newTable = ObjectIdTable.heap(newCapacity);
+        Object[] newValues = new Object[newCapacity];
+        int[] slotMapping = new int[table.capacity];
+        table.copyTo(newTable, slotMapping);
+        for (int slot = 0; slot < table.capacity; slot++) {
+            if (values[slot] != null) {
+                newValues[slotMapping[slot]] = values[slot];
+            }
+        }
+        table.dispose();
+        table = newTable;
+        values = newValues;
+    }
+}
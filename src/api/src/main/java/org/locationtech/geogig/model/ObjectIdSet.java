@@ -0,0 +1,309 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import lombok.NonNull;
+
+/**
+ * A memory efficient, add-only, set of {@link ObjectId}s.
+ * <p>
+ * Instead of holding {@code ObjectId} instances (and the hash table entry objects a
+ * {@link java.util.HashSet} creates for each element), the ids are stored inline in an open
+ * addressing hash table of primitive arrays, taking 20 bytes per slot. This makes it suitable to
+ * keep track of visited objects when traversing large graphs, like when computing the objects to
+ * transfer to or from a remote.
+ * <p>
+ * Sets are created through a {@link #builder() builder}, and can optionally be made thread safe,
+ * in which case the table is split in segments that are locked independently, and made to spill to
+ * memory mapped temporary files once the number of elements exceeds a given threshold, so that
+ * very large sets don't take up heap space. Since spilling may create temporary files, sets should
+ * be {@link #close() closed} when no longer needed.
+ * <p>
+ * Elements can't be removed, but the set can be {@link #clear() cleared}.
+ *
+ * @since 2.0
+ */
+public final class ObjectIdSet implements AutoCloseable {
+
+    private static final int CONCURRENT_SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    private final int segmentShift;
+
+    private final boolean concurrent;
+
+    private final @Nullable Path spillDirectory;
+
+    private final long maxHeapEntriesPerSegment;
+
+    private volatile boolean containsNull;
+
+    private volatile boolean closed;
+
+    private ObjectIdSet(Builder builder) {
+        this.concurrent = builder.concurrent;
+        final int numSegments = concurrent ? CONCURRENT_SEGMENTS : 1;
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(numSegments);
+        this.spillDirectory = builder.spillDirectory;
+        this.maxHeapEntriesPerSegment = spillDirectory == null ? Long.MAX_VALUE
+                : Math.max(1, builder.maxHeapEntries / numSegments);
+        this.segments = new Segment[numSegments];
+        final int initialCapacity = ObjectIdTable
+                .capacityFor(Math.max(1, builder.expectedSize / numSegments));
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(initialCapacity);
+        }
+    }
+
+    /**
+     * @return a new, non thread safe, heap only set
+     */
+    public static ObjectIdSet create() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+
+        private long expectedSize = ObjectIdTable.MIN_CAPACITY;
+
+        private boolean concurrent;
+
+        private Path spillDirectory;
+
+        private long maxHeapEntries;
+
+        private Builder() {
+        }
+
+        /**
+         * @param expectedSize the number of elements the set is expected to hold, to avoid growing
+         *        the table more than needed
+         */
+        public Builder expectedSize(long expectedSize) {
+            checkArgument(expectedSize >= 0, "expectedSize must be >= 0: %s", expectedSize);
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        /**
+         * Makes the set safe to use by multiple threads concurrently
+         */
+        public Builder concurrent() {
+            this.concurrent = true;
+            return this;
+        }
+
+        /**
+         * Makes the set store its elements in memory mapped temporary files in {@code directory}
+         * once it holds more than {@code maxHeapEntries}
+         */
+        public Builder spillToDisk(@NonNull Path directory, long maxHeapEntries) {
+            checkArgument(maxHeapEntries >= 0, "maxHeapEntries must be >= 0: %s", maxHeapEntries);
+            this.spillDirectory = directory;
+            this.maxHeapEntries = maxHeapEntries;
+            return this;
+        }
+
+        public ObjectIdSet build() {
+            return new ObjectIdSet(this);
+        }
+    }
+
+    /**
+     * Adds {@code id} to the set
+     *
+     * @return {@code true} if the set did not already contain {@code id}
+     */
+    public boolean add(@NonNull ObjectId id) {
+        checkOpen();
+        if (id.isNull()) {
+            boolean added = !containsNull;
+            containsNull = true;
+            return added;
+        }
+        final long hash = ObjectIdTable.hash(id);
+        final Segment segment = segment(hash);
+        if (concurrent) {
+            synchronized (segment) {
+                return segment.add(id, hash);
+            }
+        }
+        return segment.add(id, hash);
+    }
+
+    public boolean contains(@NonNull ObjectId id) {
+        checkOpen();
+        if (id.isNull()) {
+            return containsNull;
+        }
+        final long hash = ObjectIdTable.hash(id);
+        final Segment segment = segment(hash);
+        if (concurrent) {
+            synchronized (segment) {
+                return segment.contains(id, hash);
+            }
+        }
+        return segment.contains(id, hash);
+    }
+
+    public long size() {
+        long size = containsNull ? 1 : 0;
+        for (Segment s : segments) {
+            size += s.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Calls {@code consumer} for each element in the set, in no particular order.
+     * <p>
+     * If the set is {@link Builder#concurrent() concurrent}, elements added during the traversal
+     * may or may not be reported.
+     */
+    public void forEach(@NonNull Consumer<ObjectId> consumer) {
+        checkOpen();
+        if (containsNull) {
+            consumer.accept(ObjectId.NULL);
+        }
+        for (Segment segment : segments) {
+            if (concurrent) {
+                synchronized (segment) {
+                    segment.forEach(consumer);
+                }
+            } else {
+                segment.forEach(consumer);
+            }
+        }
+    }
+
+    /**
+     * Removes all elements, releasing any temporary file
+     */
+    public void clear() {
+        checkOpen();
+        containsNull = false;
+        for (Segment segment : segments) {
+            if (concurrent) {
+                synchronized (segment) {
+                    segment.reset();
+                }
+            } else {
+                segment.reset();
+            }
+        }
+    }
+
+    /**
+     * Releases the resources held by this set, which can no longer be used
+     */
+    public @Override void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.table.dispose();
+            }
+        }
+    }
+
+    public @Override String toString() {
+        return String.format("%s[size: %,d]", getClass().getSimpleName(), size());
+    }
+
+    private void checkOpen() {
+        checkState(!closed, "ObjectIdSet is closed");
+    }
+
+    private Segment segment(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    private final class Segment {
+
+        private final int initialCapacity;
+
+        ObjectIdTable table;
+
+        int size;
+
+        Segment(int initialCapacity) {
+            this.initialCapacity = initialCapacity;
+            this.table = newTable(initialCapacity);
+        }
+
+        boolean contains(ObjectId id, long hash) {
+            return table.find(id, hash) >= 0;
+        }
+
+        boolean add(ObjectId id, long hash) {
+            int slot = table.find(id, hash);
+            if (slot >= 0) {
+                return false;
+            }
+            if (size >= table.threshold()) {
+                grow();
+                slot = table.find(id, hash);
+            }
+            table.set(-(slot + 1), id);
+            size++;
+            return true;
+        }
+
+        void forEach(Consumer<ObjectId> consumer) {
+            final ObjectIdTable table = this.table;
+            for (int slot = 0; slot < table.capacity; slot++) {
+                if (!table.isEmpty(slot)) {
+                    consumer.accept(table.get(slot));
+                }
+            }
+        }
+
+        void reset() {
+            table.dispose();
+            table = newTable(initialCapacity);
+            size = 0;
+        }
+
+        private void grow() {
+            checkState(table.capacity < ObjectIdTable.MAX_CAPACITY, "ObjectIdSet is full");
+            ObjectIdTable newTable = newTable(table.capacity << 1);
+            table.copyTo(newTable, null);
+            table.dispose();
+            table = newTable;
+        }
+
+        private ObjectIdTable newTable(int capacity) {
+            long maxEntries = (long) (capacity * (double) ObjectIdTable.LOAD_FACTOR);
+            if (maxEntries > maxHeapEntriesPerSegment) {
+                return ObjectIdTable.mapped(capacity, spillDirectory);
+            }
+            return ObjectIdTable.heap(capacity);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Open addressing, linear probing hash table of {@link ObjectId}s stored inline as their
+ * {@code int} and two {@code long} components, backing {@link ObjectIdSet} and {@link ObjectIdMap}.
+ * <p>
+ * An all-zeroes slot denotes an empty slot, hence {@link ObjectId#NULL} can't be stored and is
+ * handled by the callers. The table has a fixed power of two capacity, callers are responsible of
+ * creating a larger table and {@link #copyTo copying} the entries when the load factor is reached.
+ * <p>
+ * The slots are either kept in heap arrays or in memory mapped temporary files, the later
+ * allowing to hold very large sets with no impact on the JVM heap.
+ */
+abstract class ObjectIdTable {
+
+    static final float LOAD_FACTOR = 0.7f;
+
+    static final int MIN_CAPACITY = 16;
+
+    static final int MAX_CAPACITY = 1 << 30;
+
+    final int capacity;
+
+    final int mask;
+
+    ObjectIdTable(int capacity) {
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    static ObjectIdTable heap(int capacity) {
+        return new HeapTable(capacity);
+    }
+
+    static ObjectIdTable mapped(int capacity, Path directory) {
+        return new MappedTable(capacity, directory);
+    }
+
+    /**
+     * @return the smallest power of two capacity that can hold {@code expectedSize} entries
+     *         without exceeding the load factor
+     */
+    static int capacityFor(long expectedSize) {
+        long required = (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1;
+        if (required >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    /**
+     * @return the maximum number of entries this table can hold before needing to grow
+     */
+    int threshold() {
+        return capacity == MAX_CAPACITY ? MAX_CAPACITY - 1 : (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads the id bits so that the lower bits can be used as slot index and the higher ones for
+     * segment selection even for ids that are not SHA-1 hashes
+     */
+    static long hash(ObjectId id) {
+        long h = id.h2 ^ id.h3 ^ ((long) id.h1 << 32);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return the slot index where {@code id} is stored, or {@code -(insertion index + 1)} if it's
+     *         not present
+     */
+    final int find(final ObjectId id, final long hash) {
+        final int h1 = id.h1;
+        final long h2 = id.h2, h3 = id.h3;
+        int slot = (int) hash & mask;
+        while (true) {
+            final int s1 = h1(slot);
+            final long s2 = h2(slot), s3 = h3(slot);
+            if (s1 == 0 && s2 == 0L && s3 == 0L) {
+                return -(slot + 1);
+            }
+            if (s1 == h1 && s2 == h2 && s3 == h3) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    final boolean isEmpty(int slot) {
+        return h1(slot) == 0 && h2(slot) == 0L && h3(slot) == 0L;
+    }
+
+    final ObjectId get(int slot) {
+        return ObjectId.create(h1(slot), h2(slot), h3(slot));
+    }
+
+    final void set(int slot, ObjectId id) {
+        set(slot, id.h1, id.h2, id.h3);
+    }
+
+    /**
+     * Adds all entries to {@code target}
+     *
+     * @param slotMapping receives the old slot to new slot index correspondence, or {@code null}
+     */
+    final void copyTo(ObjectIdTable target, int[] slotMapping) {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (isEmpty(slot)) {
+                continue;
+            }
+            ObjectId id = get(slot);
+            int newSlot = -(target.find(id, hash(id)) + 1);
+            target.set(newSlot, id);
+            if (slotMapping != null) {
+                slotMapping[slot] = newSlot;
+            }
+        }
+    }
+
+    abstract int h1(int slot);
+
+    abstract long h2(int slot);
+
+    abstract long h3(int slot);
+
+    abstract void set(int slot, int h1, long h2, long h3);
+
+    /**
+     * Sets all slots empty
+     */
+    abstract void clear();
+
+    /**
+     * Releases any resource held by this table
+     */
+    abstract void dispose();
+
+    private static class HeapTable extends ObjectIdTable {
+
+        private final int[] h1s;
+
+        /**
+         * {@code h2} and {@code h3} of each slot, interleaved for locality
+         */
+        private final long[] h23s;
+
+        HeapTable(int capacity) {
+            super(capacity);
+            this.h1s = new int[capacity];
+            this.h23s = new long[2 * capacity];
+        }
+
+        @Override int h1(int slot) {
+            return h1s[slot];
+        }
+
+        @Override long h2(int slot) {
+            return h23s[2 * slot];
+        }
+
+        @Override long h3(int slot) {
+            return h23s[2 * slot + 1];
+        }
+
+        @Override void set(int slot, int h1, long h2, long h3) {
+            h1s[slot] = h1;
+            h23s[2 * slot] = h2;
+            h23s[2 * slot + 1] = h3;
+        }
+
+        @Override void clear() {
+            Arrays.fill(h1s, 0);
+            Arrays.fill(h23s, 0L);
+        }
+
+        @Override void dispose() {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Table stored in a sparse temporary file, mapped in regions of up to {@code 2^25} slots since
+     * a single mapping can't exceed 2GB
+     */
+    private static class MappedTable extends ObjectIdTable {
+
+        private static final int SLOT_SIZE = ObjectId.NUM_BYTES;
+
+        private static final int REGION_SHIFT = 25;
+
+        private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+
+        private final Path file;
+
+        private final ByteBuffer[] regions;
+
+        MappedTable(int capacity, Path directory) {
+            super(capacity);
+            final long size = (long) capacity * SLOT_SIZE;
+            final int slotsPerRegion = Math.min(capacity, 1 << REGION_SHIFT);
+            final int numRegions = Math.max(1, capacity >>> REGION_SHIFT);
+            try {
+                this.file = Files.createTempFile(directory, "geogig-objectids-", ".tmp");
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    // extends the file as a sparse file, so unused slots take no disk space
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+                    this.regions = new ByteBuffer[numRegions];
+                    for (int i = 0; i < numRegions; i++) {
+                        long position = (long) i * slotsPerRegion * SLOT_SIZE;
+                        MappedByteBuffer region = channel.map(MapMode.READ_WRITE, position,
+                                (long) slotsPerRegion * SLOT_SIZE);
+                        regions[i] = region;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ByteBuffer region(int slot) {
+            return regions[slot >>> REGION_SHIFT];
+        }
+
+        private int offset(int slot) {
+            return (slot & REGION_MASK) * SLOT_SIZE;
+        }
+
+        @Override int h1(int slot) {
+            return region(slot).getInt(offset(slot));
+        }
+
+        @Override long h2(int slot) {
+            return region(slot).getLong(offset(slot) + Integer.BYTES);
+        }
+
+        @Override long h3(int slot) {
+            return region(slot).getLong(offset(slot) + Integer.BYTES + Long.BYTES);
+        }
+
+        @Override void set(int slot, int h1, long h2, long h3) {
+            ByteBuffer region = region(slot);
+            int offset = offset(slot);
+            region.putInt(offset, h1);
+            region.putLong(offset + Integer.BYTES, h2);
+            region.putLong(offset + Integer.BYTES + Long.BYTES, h3);
+        }
+
+        @Override void clear() {
+            for (int slot = 0; slot < capacity; slot++) {
+                set(slot, 0, 0L, 0L);
+            }
+        }
+
+        /**
+         * Deletes the backing file, mapped regions can't be explicitly unmapped but the OS
+         * reclaims the disk space once they're garbage collected
+         */
+        @Override void dispose() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.util.SortedSet;
 import java.util.function.BooleanSupplier;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.impl.AttributeTreeBuilder;
 import org.locationtech.geogig.model.impl.CanonicalTreeBuilder;
 import org.locationtech.geogig.model.impl.QuadTreeBuilder;
 import org.locationtech.geogig.storage.ObjectStore;
@@ -125,4 +126,15 @@ public interface RevTreeBuilder {
         return QuadTreeBuilder.create(source, target, original, maxBounds);
     }
 
+    /**
+     * @return a builder for a tree whose feature nodes are clustered by the value of the
+     *         {@code attributeName} attribute, as materialized in their extra data
+     * @since 2.0
+     */
+    public static RevTreeBuilder attributeBuilder(@NonNull ObjectStore source,
+            @NonNull ObjectStore target, @NonNull RevTree original,
+            @NonNull String attributeName) {
+        return AttributeTreeBuilder.create(source, target, original, attributeName);
+    }
+
 }
\ No newline at end of file
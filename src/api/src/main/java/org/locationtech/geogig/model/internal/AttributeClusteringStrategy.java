@@ -0,0 +1,121 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model.internal;
+
+import java.util.Comparator;
+
+import org.locationtech.geogig.model.CanonicalNodeNameOrder;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.repository.IndexInfo;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Ordering;
+
+import lombok.NonNull;
+
+/**
+ * Clusters feature nodes by the value of an attribute, as materialized in their
+ * {@link IndexInfo#FEATURE_ATTRIBUTES_EXTRA_DATA extra data}.
+ * <p>
+ * The resulting tree is a radix tree over the nodes' {@link AttributeIndexKeys attribute keys}:
+ * at each depth, a node falls into the bucket given by the corresponding digit of its key, so the
+ * buckets of a tree are sorted by attribute value and a value range maps to a contiguous set of
+ * buckets. Nodes whose key is exhausted at a given depth (i.e. too many features with the same
+ * value) are moved to an extra bucket that's subdivided in canonical order. Leaf trees hold their
+ * nodes sorted by attribute value, then by canonical order.
+ * <p>
+ * Like the quad-tree, a bucket is only split when it overflows, so the tree depth follows the
+ * distribution of the values.
+ */
+final class AttributeClusteringStrategy extends ClusteringStrategy {
+
+    private static final long serialVersionUID = 1L;
+
+    static final Ordering<NodeId> VALUE_ORDER = new Ordering<NodeId>() {
+        public @Override int compare(NodeId left, NodeId right) {
+            String k1 = left.value();
+            String k2 = right.value();
+            int c = k1.compareTo(k2);
+            if (c == 0) {
+                c = CanonicalNodeNameOrder.INSTANCE.compare(left.name(), right.name());
+            }
+            return c;
+        }
+    };
+
+    private final String attributeName;
+
+    AttributeClusteringStrategy(RevTree original, DAGStorageProvider storageProvider,
+            @NonNull String attributeName) {
+        super(original, storageProvider);
+        this.attributeName = attributeName;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    /**
+     * @return {@code 256}
+     */
+    public @Override int normalizedSizeLimit(final int depthIndex) {
+        return 256;
+    }
+
+    protected @Override Comparator<NodeId> getNodeOrdering() {
+        return VALUE_ORDER;
+    }
+
+    /**
+     * @return a {@link NodeId} whose {@link NodeId#value() value} is the
+     *         {@link AttributeIndexKeys#encode key} of the node's indexed attribute value
+     */
+    public @Override NodeId computeId(final Node node) {
+        Object value = IndexInfo.getMaterializedAttribute(attributeName, node);
+        return new NodeId(node.getName(), AttributeIndexKeys.encode(value));
+    }
+
+    /**
+     * @return the digit of the node's key at {@code depthIndex}, or {@code -1} if the key has no
+     *         more digits
+     */
+    public @Override int bucket(final NodeId nodeId, final int depthIndex) {
+        String key = nodeId.value();
+        return AttributeIndexKeys.digit(key, depthIndex);
+    }
+
+    protected @Override int unpromotableBucketIndex(final int depthIndex) {
+        return AttributeIndexKeys.RADIX;
+    }
+
+    public @Override int put(final Node node) {
+        Preconditions.checkArgument(TYPE.FEATURE == node.getType(),
+                "Can't add non feature nodes to an attribute index: %s", node);
+        return super.put(node);
+    }
+
+    /**
+     * Overrides to only call {@link #put(Node) put(newNode)} if the indexed value didn't change,
+     * since both nodes are then guaranteed to fall on the same bucket at any depth.
+     */
+    public @Override int update(Node oldNode, Node newNode) {
+        Preconditions.checkArgument(oldNode.getName().equals(newNode.getName()));
+        if (computeId(oldNode).equals(computeId(newNode))) {
+            int delta = put(newNode);
+            if (delta == 0 && !oldNode.equals(newNode)) {
+                delta = 1;
+            }
+            return delta;
+        }
+        return super.update(oldNode, newNode);
+    }
+}
@@ -0,0 +1,146 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.google.common.io.BaseEncoding;
+
+import lombok.NonNull;
+
+/**
+ * Encodes attribute values as the keys an attribute index {@link ClusteringStrategy} sorts and
+ * clusters feature nodes by.
+ * <p>
+ * A key is the lower case hexadecimal representation of an order preserving binary encoding of
+ * the value, so that comparing two keys as strings gives the same result than comparing the values
+ * they were created from. Each hex digit of the key determines the bucket a node falls into at the
+ * corresponding depth of the index tree, hence the tree is a radix tree where all the nodes under
+ * a bucket share the same key prefix, and the buckets of a tree are sorted by key.
+ * <p>
+ * Values of different types are grouped by type, {@code null} sorting first. Numbers are compared
+ * as {@code double}s, dates by their timestamp, and strings by their UTF-16 code units, like
+ * {@link String#compareTo}. Keys are truncated to {@link #MAX_KEY_BYTES} bytes, which keeps the
+ * order between keys but makes long values that share a prefix have the same key.
+ *
+ * @since 2.0
+ */
+public final class AttributeIndexKeys {
+
+    /**
+     * Number of buckets per tree depth, one per hex digit. The bucket index right after the last
+     * digit holds the nodes whose whole key is the path to the bucket
+     */
+    public static final int RADIX = 16;
+
+    /**
+     * Maximum number of bytes of the encoded values
+     */
+    public static final int MAX_KEY_BYTES = 32;
+
+    private static final byte NULL = 0, BOOLEAN = 1, NUMBER = 2, DATE = 3, STRING = 4, OTHER = 5;
+
+    private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+    private AttributeIndexKeys() {
+        // static utility
+    }
+
+    /**
+     * @return the index key for {@code value}
+     */
+    public static String encode(@Nullable Object value) {
+        ByteBuffer buff;
+        if (value == null) {
+            buff = ByteBuffer.allocate(1).put(NULL);
+        } else if (value instanceof Boolean) {
+            buff = ByteBuffer.allocate(2).put(BOOLEAN).put((byte) (((Boolean) value) ? 1 : 0));
+        } else if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            // -0.0 and 0.0 compare as equal
+            long bits = Double.doubleToLongBits(d == 0d ? 0d : d);
+            bits ^= bits < 0 ? -1L : Long.MIN_VALUE;
+            buff = ByteBuffer.allocate(9).put(NUMBER).putLong(bits);
+        } else if (value instanceof Date) {
+            long time = ((Date) value).getTime();
+            buff = ByteBuffer.allocate(9).put(DATE).putLong(time ^ Long.MIN_VALUE);
+        } else if (value instanceof String) {
+            byte[] chars = ((String) value).getBytes(StandardCharsets.UTF_16BE);
+            buff = ByteBuffer.allocate(1 + chars.length).put(STRING).put(chars);
+        } else {
+            byte[] chars = value.toString().getBytes(StandardCharsets.UTF_16BE);
+            buff = ByteBuffer.allocate(1 + chars.length).put(OTHER).put(chars);
+        }
+        int length = Math.min(MAX_KEY_BYTES, buff.position());
+        return HEX.encode(buff.array(), 0, length);
+    }
+
+    /**
+     * @return whether the order of the keys of values of the type of {@code value} matches the
+     *         natural order of the values, and hence index keys can be used to evaluate range
+     *         queries. Otherwise they can only be used for equality.
+     */
+    public static boolean isOrderPreserving(@Nullable Object value) {
+        return value instanceof Number || value instanceof Date || value instanceof String
+                || value instanceof Boolean;
+    }
+
+    /**
+     * @return the bucket index ({@code 0} to {@code RADIX - 1}) of {@code key} at depth
+     *         {@code depthIndex}, or {@code -1} if the key is shorter than that
+     */
+    public static int digit(@NonNull String key, int depthIndex) {
+        return depthIndex < key.length() ? Character.digit(key.charAt(depthIndex), RADIX) : -1;
+    }
+
+    /**
+     * Determines whether a bucket of an attribute index tree may contain nodes whose key is
+     * between {@code min} and {@code max}, both inclusive.
+     *
+     * @param bucketPath the bucket indexes from the root of the index tree to the bucket
+     * @param min the lower bound key, or {@code null} if unbounded
+     * @param max the upper bound key, or {@code null} if unbounded
+     * @return {@code false} if the bucket can't contain a key in the range, {@code true} otherwise
+     */
+    public static boolean intersects(@NonNull int[] bucketPath, @Nullable String min,
+            @Nullable String max) {
+        final StringBuilder prefix = new StringBuilder(bucketPath.length);
+        boolean exact = false;
+        for (int bucket : bucketPath) {
+            if (bucket >= RADIX) {
+                // the following buckets are canonical, all the nodes have the prefix as key
+                exact = true;
+                break;
+            }
+            prefix.append(Character.forDigit(bucket, RADIX));
+        }
+        final String key = prefix.toString();
+        if (exact) {
+            return (min == null || min.compareTo(key) <= 0)
+                    && (max == null || max.compareTo(key) >= 0);
+        }
+        final int length = key.length();
+        if (min != null && truncate(min, length).compareTo(key) > 0) {
+            return false;
+        }
+        if (max != null && truncate(max, length).compareTo(key) < 0) {
+            return false;
+        }
+        return true;
+    }
+
+    private static String truncate(String key, int length) {
+        return key.length() > length ? key.substring(0, length) : key;
+    }
+}
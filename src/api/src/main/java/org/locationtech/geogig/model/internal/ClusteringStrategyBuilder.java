@@ -85,6 +85,20 @@ public abstract class ClusteringStrategyBuilder {
         return QuadTreeClusteringStrategyBuilder.buildNodeOrdering(maxBounds);
     }
 
+    /**
+     * @since 2.0
+     */
+    public static AttributeClusteringStrategyBuilder attribute(ObjectStore treeStore) {
+        return new AttributeClusteringStrategyBuilder(treeStore);
+    }
+
+    /**
+     * @since 2.0
+     */
+    public static NodeOrdering attributeOrdering(String attributeName) {
+        return AttributeClusteringStrategyBuilder.buildNodeOrdering(attributeName);
+    }
+
     public static class CanonicalClusteringStrategyBuilder extends ClusteringStrategyBuilder {
 
         CanonicalClusteringStrategyBuilder(ObjectStore treeStore) {
@@ -174,4 +188,36 @@ public abstract class ClusteringStrategyBuilder {
             return this;
         }
     }
+
+    /**
+     * @since 2.0
+     */
+    public static class AttributeClusteringStrategyBuilder extends ClusteringStrategyBuilder {
+
+        private String attributeName;
+
+        AttributeClusteringStrategyBuilder(ObjectStore treeStore) {
+            super(treeStore);
+        }
+
+        public @Override AttributeClusteringStrategyBuilder original(RevTree original) {
+            super.original(original);
+            return this;
+        }
+
+        public AttributeClusteringStrategyBuilder attributeName(@NonNull String attributeName) {
+            this.attributeName = attributeName;
+            return this;
+        }
+
+        public static NodeOrdering buildNodeOrdering(@NonNull String attributeName) {
+            return new AttributeClusteringStrategy(RevTree.EMPTY, new HeapDAGStorageProvider(null),
+                    attributeName);
+        }
+
+        protected @Override ClusteringStrategy buildInternal(DAGStorageProvider dagStoreProvider) {
+            checkState(attributeName != null, "Indexed attribute name was not set");
+            return new AttributeClusteringStrategy(original, dagStoreProvider, attributeName);
+        }
+    }
 }
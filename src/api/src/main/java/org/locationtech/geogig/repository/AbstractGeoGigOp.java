@@ -16,6 +16,8 @@ import java.util.Map;
 import java.util.Optional;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.Metrics;
+import org.locationtech.geogig.metrics.Timer;
 import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ConflictsDatabase;
 import org.locationtech.geogig.storage.GraphDatabase;
@@ -35,6 +37,16 @@ public abstract class AbstractGeoGigOp<T> {
 
     private static final ProgressListener NULL_PROGRESS_LISTENER = new DefaultProgressListener();
 
+    /**
+     * Execution time of {@link #call()} per command class, reported as
+     * {@code command.<class name>}
+     */
+    private static final ClassValue<Timer> TIMERS = new ClassValue<Timer>() {
+        protected @Override Timer computeValue(Class<?> type) {
+            return Metrics.timer("command." + type.getName());
+        }
+    };
+
     private ProgressListener progressListener = NULL_PROGRESS_LISTENER;
 
     private List<CommandListener> listeners;
@@ -158,6 +170,8 @@ public abstract class AbstractGeoGigOp<T> {
      * @see java.util.concurrent.Callable#call()
      */
     public T call() {
+        final Timer timer = TIMERS.get(getClass());
+        final long start = timer.start();
         try {
             notifyPre();
             T cmdResult = _call();
@@ -166,6 +180,8 @@ public abstract class AbstractGeoGigOp<T> {
         } catch (RuntimeException e) {
             notifyPost(null, e);
             throw e;
+        } finally {
+            timer.stop(start);
         }
     }
 
@@ -31,7 +31,14 @@ import lombok.ToString;
 
 public @ToString final class IndexInfo {
     public static enum IndexType {
-        QUADTREE
+        QUADTREE,
+        /**
+         * Sorted index on a non spatial attribute, which is always materialized in the index
+         * nodes' extra data. Supports equality and range queries on the attribute.
+         * 
+         * @since 2.0
+         */
+        ATTRIBUTE
     }
 
     /**
@@ -46,6 +53,20 @@ public @ToString final class IndexInfo {
      */
     public static final String FEATURE_ATTRIBUTES_EXTRA_DATA = "@attributes";
 
+    /**
+     * Key by which the distance tolerances the indexed geometry attribute is materialized
+     * simplified with are stored in the index {@link #getMetadata() metadata}, as a
+     * {@code double[]} in ascending order.
+     * <p>
+     * For each tolerance, the index nodes' {@link #FEATURE_ATTRIBUTES_EXTRA_DATA materialized
+     * attributes} hold the simplified geometry under the name given by
+     * {@link #getSimplifiedAttributeName}, regardless of whether the full geometry is materialized
+     * too.
+     * 
+     * @since 2.0
+     */
+    public static final String MD_SIMPLIFICATION_TOLERANCES = "SIMPLIFICATION_TOLERANCES";
+
     private final ObjectId indexId;
 
     private final String treeName;
@@ -137,6 +158,10 @@ public @ToString final class IndexInfo {
         return ObjectId.create(hasher.hash().asBytes());
     }
 
+    /**
+     * @return the names of the attributes materialized in the index nodes' extra data, which for
+     *         an {@link IndexType#ATTRIBUTE attribute index} always include the indexed attribute
+     */
     public static Set<String> getMaterializedAttributeNames(IndexInfo info) {
         Set<String> availableAttNames = ImmutableSet.of();
 
@@ -145,6 +170,11 @@ public @ToString final class IndexInfo {
         if (attNames != null) {
             availableAttNames = Sets.newHashSet(attNames);
         }
+        if (IndexType.ATTRIBUTE.equals(info.getIndexType())
+                && !availableAttNames.contains(info.getAttributeName())) {
+            availableAttNames = Sets.newHashSet(availableAttNames);
+            availableAttNames.add(info.getAttributeName());
+        }
         return availableAttNames;
     }
 
@@ -161,6 +191,28 @@ public @ToString final class IndexInfo {
         return o;
     }
 
+    /**
+     * @return the distance tolerances the indexed geometry is materialized simplified with, in
+     *         ascending order, possibly empty
+     * @see #MD_SIMPLIFICATION_TOLERANCES
+     * @since 2.0
+     */
+    public static double[] getSimplificationTolerances(IndexInfo info) {
+        double[] tolerances = (double[]) info.getMetadata()
+                .get(IndexInfo.MD_SIMPLIFICATION_TOLERANCES);
+        return tolerances == null ? new double[0] : tolerances.clone();
+    }
+
+    /**
+     * @return the name the value of {@code attributeName} simplified with the given distance
+     *         tolerance is materialized under
+     * @see #MD_SIMPLIFICATION_TOLERANCES
+     * @since 2.0
+     */
+    public static String getSimplifiedAttributeName(String attributeName, double tolerance) {
+        return attributeName + "@" + tolerance;
+    }
+
     public static @Nullable Envelope getMaxBounds(IndexInfo info) {
         Envelope maxBounds = (Envelope) info.getMetadata().get(IndexInfo.MD_QUAD_MAX_BOUNDS);
         return maxBounds;
@@ -0,0 +1,96 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+
+    public @Before void before() {
+        Metrics.setEnabled(true);
+        Metrics.reset();
+    }
+
+    public @After void after() {
+        Metrics.setEnabled(true);
+    }
+
+    public @Test void testCounter() {
+        Counter counter = Metrics.counter("test.counter");
+        assertSame(counter, Metrics.counter("test.counter"));
+        counter.inc();
+        counter.add(10);
+        assertEquals(11, counter.getCount());
+        assertEquals(11d, Metrics.snapshot().get("test.counter"), 0d);
+
+        Metrics.reset();
+        assertEquals(0, counter.getCount());
+    }
+
+    public @Test void testHistogram() {
+        Histogram histogram = Metrics.histogram("test.histogram");
+        for (int i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0d);
+        // percentiles are bucket upper bounds
+        long p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 50 && p50 < 100);
+        assertEquals(100, histogram.getPercentile(0.99));
+        assertEquals(100, histogram.getPercentile(1));
+
+        Map<String, Double> snapshot = Metrics.snapshot();
+        assertEquals(100d, snapshot.get("test.histogram.count"), 0d);
+        assertEquals(5050d, snapshot.get("test.histogram.total"), 0d);
+        assertEquals(100d, snapshot.get("test.histogram.max"), 0d);
+    }
+
+    public @Test void testTimer() {
+        Timer timer = Metrics.timer("test.timer");
+        timer.record(2, TimeUnit.MILLISECONDS);
+        timer.stop(timer.start());
+        assertEquals(2, timer.getCount());
+        assertTrue(timer.getMax() >= TimeUnit.MILLISECONDS.toNanos(2));
+
+        Map<String, Double> snapshot = Metrics.snapshot();
+        assertEquals(2d, snapshot.get("test.timer.count"), 0d);
+        assertTrue(snapshot.get("test.timer.max_ms") >= 2d);
+    }
+
+    public @Test void testDisabled() {
+        Counter counter = Metrics.counter("test.disabled.counter");
+        Timer timer = Metrics.timer("test.disabled.timer");
+        Metrics.setEnabled(false);
+        counter.inc();
+        long start = timer.start();
+        Metrics.setEnabled(true);
+        timer.stop(start);
+        assertEquals(0, counter.getCount());
+        assertEquals(0, timer.getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        Metrics.counter("test.mismatch");
+        Metrics.timer("test.mismatch");
+    }
+}
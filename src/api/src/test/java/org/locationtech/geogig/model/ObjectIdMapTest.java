@@ -0,0 +1,82 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ObjectIdMapTest {
+
+    private static Map<ObjectId, Integer> expected(int count) {
+        Random random = new Random(1);
+        Map<ObjectId, Integer> expected = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            byte[] raw = new byte[ObjectId.NUM_BYTES];
+            random.nextBytes(raw);
+            expected.put(ObjectId.create(raw), Integer.valueOf(i));
+        }
+        expected.put(ObjectId.NULL, Integer.valueOf(-1));
+        return expected;
+    }
+
+    @Test
+    public void testPutGet() {
+        Map<ObjectId, Integer> expected = expected(10_000);
+        ObjectIdMap<Integer> map = new ObjectIdMap<>();
+        assertTrue(map.isEmpty());
+        expected.forEach((k, v) -> assertNull(map.put(k, v)));
+        assertEquals(expected.size(), map.size());
+        expected.forEach((k, v) -> {
+            assertTrue(map.containsKey(k));
+            assertEquals(v, map.get(k));
+        });
+
+        Map<ObjectId, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testReplace() {
+        ObjectIdMap<String> map = new ObjectIdMap<>(1);
+        ObjectId id = ObjectId.valueOf("abc123000000000000001234567890abcdef0000");
+        assertNull(map.put(id, "a"));
+        assertEquals("a", map.put(id, "b"));
+        assertEquals("b", map.get(id));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        ObjectIdMap<String> map = new ObjectIdMap<>();
+        ObjectId id = ObjectId.valueOf("abc123000000000000001234567890abcdef0000");
+        assertEquals(id.toString(), map.computeIfAbsent(id, ObjectId::toString));
+        assertEquals(id.toString(), map.computeIfAbsent(id, k -> "other"));
+        assertEquals("default", map.getOrDefault(ObjectId.NULL, "default"));
+    }
+
+    @Test
+    public void testClear() {
+        Map<ObjectId, Integer> expected = expected(100);
+        ObjectIdMap<Integer> map = new ObjectIdMap<>();
+        expected.forEach(map::put);
+        map.clear();
+        assertTrue(map.isEmpty());
+        expected.keySet().forEach(k -> assertFalse(map.containsKey(k)));
+    }
+}
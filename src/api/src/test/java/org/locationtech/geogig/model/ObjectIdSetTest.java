@@ -0,0 +1,136 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ObjectIdSetTest {
+
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
+    private ObjectIdSet set;
+
+    @After
+    public void after() {
+        if (set != null) {
+            set.close();
+        }
+    }
+
+    private static List<ObjectId> ids(int count) {
+        Random random = new Random(1);
+        List<ObjectId> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] raw = new byte[ObjectId.NUM_BYTES];
+            random.nextBytes(raw);
+            ids.add(ObjectId.create(raw));
+        }
+        return ids;
+    }
+
+    private void testAddContains(List<ObjectId> ids) {
+        for (ObjectId id : ids) {
+            assertFalse(set.contains(id));
+            assertTrue(set.add(id));
+            assertTrue(set.contains(id));
+            assertFalse(set.add(id));
+        }
+        assertEquals(ids.size(), set.size());
+        for (ObjectId id : ids) {
+            assertTrue(set.contains(id));
+        }
+        Set<ObjectId> all = new HashSet<>();
+        set.forEach(all::add);
+        assertEquals(new HashSet<>(ids), all);
+    }
+
+    @Test
+    public void testAddContains() {
+        set = ObjectIdSet.create();
+        assertTrue(set.isEmpty());
+        testAddContains(ids(10_000));
+    }
+
+    @Test
+    public void testNullId() {
+        set = ObjectIdSet.create();
+        assertFalse(set.contains(ObjectId.NULL));
+        assertTrue(set.add(ObjectId.NULL));
+        assertFalse(set.add(ObjectId.NULL));
+        assertTrue(set.contains(ObjectId.NULL));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void testNonUniformIds() {
+        set = ObjectIdSet.create();
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            ids.add(ObjectId.create(0, 0, i));
+            ids.add(ObjectId.create(i, 0, 0));
+        }
+        testAddContains(ids);
+    }
+
+    @Test
+    public void testClear() {
+        set = ObjectIdSet.create();
+        List<ObjectId> ids = ids(100);
+        ids.forEach(set::add);
+        set.clear();
+        assertTrue(set.isEmpty());
+        ids.forEach(id -> assertFalse(set.contains(id)));
+        testAddContains(ids);
+    }
+
+    @Test
+    public void testConcurrent() {
+        set = ObjectIdSet.builder().concurrent().build();
+        List<ObjectId> ids = ids(10_000);
+        long added = IntStream.range(0, 4).parallel()
+                .mapToLong(i -> ids.stream().filter(set::add).count()).sum();
+        assertEquals(ids.size(), added);
+        assertEquals(ids.size(), set.size());
+        ids.forEach(id -> assertTrue(set.contains(id)));
+    }
+
+    @Test
+    public void testSpillToDisk() throws IOException {
+        File dir = tmp.newFolder();
+        set = ObjectIdSet.builder().concurrent().spillToDisk(dir.toPath(), 1000).build();
+        testAddContains(ids(10_000));
+        assertTrue(dir.list().length > 0);
+        set.close();
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() {
+        set = ObjectIdSet.create();
+        set.close();
+        set.add(ObjectId.NULL);
+    }
+}
@@ -0,0 +1,71 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+import org.locationtech.geogig.rocksdb.RocksdbObjectStore;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+/**
+ * The {@link ObjectStore} implementations benchmarks that read or write objects run against,
+ * meant to be used as a JMH {@code @Param} so the same benchmark reports results for each store.
+ * Stores are {@link ObjectStore#close() closed} by the benchmark's tear down method.
+ */
+enum BenchmarkStore {
+    /**
+     * In memory {@link HeapObjectStore}
+     */
+    heap {
+        public @Override ObjectStore create() {
+            HeapObjectStore store = new HeapObjectStore();
+            store.open();
+            return store;
+        }
+    },
+    /**
+     * {@link RocksdbObjectStore} on a temporary directory that's deleted when the store is closed
+     */
+    rocksdb {
+        public @Override ObjectStore create() {
+            File dir;
+            try {
+                dir = Files.createTempDirectory("geogig-benchmark-rocksdb").toFile();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            RocksdbObjectStore store = new RocksdbObjectStore(dir, false) {
+                public @Override synchronized void close() {
+                    super.close();
+                    try {
+                        MoreFiles.deleteRecursively(dbDirectory.toPath(),
+                                RecursiveDeleteOption.ALLOW_INSECURE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            };
+            store.open();
+            return store;
+        }
+    };
+
+    /**
+     * @return a new, open, empty store
+     */
+    public abstract ObjectStore create();
+}
@@ -0,0 +1,106 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.internal.ClusteringStrategy;
+import org.locationtech.geogig.model.internal.ClusteringStrategyBuilder;
+import org.locationtech.geogig.model.internal.DAGTreeBuilder;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to cluster a set of feature nodes and build the resulting {@link RevTree}
+ * through {@link DAGTreeBuilder}, for both the canonical and quadtree {@link ClusteringStrategy}.
+ * <p>
+ * A new store is used for each iteration so that all the trees are actually written instead of
+ * being found already present in the store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DAGTreeBuilderBenchmark {
+
+    public static enum Strategy {
+        canonical {
+            public @Override ClusteringStrategy create(ObjectStore store) {
+                return ClusteringStrategyBuilder.canonical(store).build();
+            }
+        },
+        quadtree {
+            public @Override ClusteringStrategy create(ObjectStore store) {
+                return ClusteringStrategyBuilder.quadTree(store)
+                        .maxBounds(SyntheticData.WGS84_BOUNDS).build();
+            }
+        };
+
+        public abstract ClusteringStrategy create(ObjectStore store);
+    }
+
+    @Param
+    public Strategy strategy;
+
+    @Param
+    public BenchmarkStore store;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int size;
+
+    private List<Node> nodes;
+
+    private ObjectStore objectStore;
+
+    @Setup(Level.Trial)
+    public void createNodes() {
+        nodes = new SyntheticData().featureNodes(size);
+    }
+
+    @Setup(Level.Iteration)
+    public void createStore() {
+        objectStore = store.create();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeStore() {
+        objectStore.close();
+    }
+
+    @Benchmark
+    public RevTree build() {
+        ClusteringStrategy clusteringStrategy = strategy.create(objectStore);
+        try {
+            for (Node node : nodes) {
+                clusteringStrategy.put(node);
+            }
+            return DAGTreeBuilder.build(clusteringStrategy, objectStore);
+        } finally {
+            clusteringStrategy.dispose();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.geogig.model.HashObjectFunnels;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures the {@link ObjectId} operations on the hot paths of most commands: computing object
+ * hashes, comparing, hashing and testing ids for equality, and parsing/formatting them.
+ * <p>
+ * Each benchmark operates over the same {@value #COUNT} ids or objects, and results are reported
+ * per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectIdBenchmark {
+
+    static final int COUNT = 10_000;
+
+    private List<ObjectId> ids;
+
+    /**
+     * Copies of {@link #ids} so that equals doesn't short-circuit on identity
+     */
+    private List<ObjectId> copies;
+
+    private List<String> strings;
+
+    private List<List<Object>> featureValues;
+
+    private List<Node> treeNodes;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        ids = data.objectIds(COUNT);
+        copies = new ArrayList<>(COUNT);
+        strings = new ArrayList<>(COUNT);
+        for (ObjectId id : ids) {
+            copies.add(ObjectId.create(id.getRawValue()));
+            strings.add(id.toString());
+        }
+        featureValues = new ArrayList<>(COUNT);
+        for (RevFeature f : data.features(COUNT)) {
+            featureValues.add(Lists.newArrayList(f));
+        }
+        treeNodes = data.featureNodes(512);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void hashFeature(Blackhole bh) {
+        for (List<Object> values : featureValues) {
+            bh.consume(HashObjectFunnels.hashFeature(values));
+        }
+    }
+
+    /**
+     * Hashes a leaf tree of the maximum size of a canonical tree leaf
+     */
+    @Benchmark
+    public ObjectId hashLeafTree() {
+        return HashObjectFunnels.hashTree(Collections.emptyList(), treeNodes, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void compare(Blackhole bh) {
+        ObjectId prev = ids.get(COUNT - 1);
+        for (ObjectId id : ids) {
+            bh.consume(id.compareTo(prev));
+            prev = id;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void equality(Blackhole bh) {
+        for (int i = 0; i < COUNT; i++) {
+            bh.consume(ids.get(i).equals(copies.get(i)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void hashCodes(Blackhole bh) {
+        for (ObjectId id : ids) {
+            bh.consume(id.hashCode());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public Set<ObjectId> hashSetAdd() {
+        return new HashSet<>(ids);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public List<ObjectId> sort() {
+        List<ObjectId> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void parse(Blackhole bh) {
+        for (String s : strings) {
+            bh.consume(ObjectId.valueOf(s));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void format(Blackhole bh) {
+        for (ObjectId id : ids) {
+            bh.consume(id.toString());
+        }
+    }
+}
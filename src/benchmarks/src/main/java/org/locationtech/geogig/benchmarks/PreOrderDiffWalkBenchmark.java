@@ -0,0 +1,111 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full {@link PreOrderDiffWalk} between two synthetic canonical trees of {@code size}
+ * features, where the right tree has a percentage of the left tree's features changed, and the
+ * same number of features removed and added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreOrderDiffWalkBenchmark {
+
+    @Param
+    public BenchmarkStore store;
+
+    @Param({ "100000", "1000000" })
+    public int size;
+
+    /**
+     * Percentage of features changed, removed, and added each
+     */
+    @Param({ "1", "10", "50" })
+    public int changedPercent;
+
+    @Param({ "false", "true" })
+    public boolean preserveIterationOrder;
+
+    private ObjectStore objectStore;
+
+    private RevTree left;
+
+    private RevTree right;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        objectStore = store.create();
+        SyntheticData data = new SyntheticData();
+        List<Node> nodes = data.featureNodes(size);
+        left = SyntheticData.canonicalTree(objectStore, nodes);
+
+        final int changeCount = (int) (size * (changedPercent / 100d) / 3);
+        List<Node> changes = new ArrayList<>(nodes);
+        for (int i = 0; i < changeCount; i++) {
+            // changed
+            changes.set(i, data.changeObjectId(nodes.get(i)));
+        }
+        // removed
+        changes.subList(changeCount, 2 * changeCount).clear();
+        for (int i = 0; i < changeCount; i++) {
+            // added
+            changes.add(data.featureNode(size + i));
+        }
+        right = SyntheticData.canonicalTree(objectStore, changes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        objectStore.close();
+    }
+
+    @Benchmark
+    public long walk() {
+        final AtomicLong count = new AtomicLong();
+        PreOrderDiffWalk walk = new PreOrderDiffWalk(left, right, objectStore, objectStore,
+                preserveIterationOrder);
+        walk.walk(new PreOrderDiffWalk.AbstractConsumer() {
+            public @Override boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+                count.incrementAndGet();
+                return true;
+            }
+        });
+        return count.get();
+    }
+}
@@ -0,0 +1,166 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.locationtech.geogig.flatbuffers.FlatBuffersRevObjectSerializer;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.storage.RevObjectSerializer;
+import org.locationtech.geogig.storage.datastream.DataStreamRevObjectSerializerV2_2;
+import org.locationtech.geogig.storage.format.lz4.RevObjectSerializerLZ4;
+import org.locationtech.geogig.storage.format.lzf.RevObjectSerializerLZF;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures encoding and decoding throughput of the {@link RevObjectSerializer} implementations
+ * for the kinds of objects that dominate a repository's size: features, leaf trees and bucket
+ * trees, and commits.
+ * <p>
+ * Since some serializers (e.g. {@link FlatBuffersRevObjectSerializer}) decode lazily, the
+ * {@link #readFully} benchmark also traverses the decoded object contents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevObjectSerializerBenchmark {
+
+    public static enum Format {
+        datastream {
+            public @Override RevObjectSerializer create() {
+                return DataStreamRevObjectSerializerV2_2.INSTANCE;
+            }
+        },
+        flatbuffers {
+            public @Override RevObjectSerializer create() {
+                return new FlatBuffersRevObjectSerializer();
+            }
+        },
+        lz4 {
+            public @Override RevObjectSerializer create() {
+                return new RevObjectSerializerLZ4(DataStreamRevObjectSerializerV2_2.INSTANCE);
+            }
+        },
+        lzf {
+            public @Override RevObjectSerializer create() {
+                return new RevObjectSerializerLZF(DataStreamRevObjectSerializerV2_2.INSTANCE);
+            }
+        };
+
+        public abstract RevObjectSerializer create();
+    }
+
+    public static enum ObjectKind {
+        feature, leaftree, buckettree, commit
+    }
+
+    @Param
+    public Format format;
+
+    @Param
+    public ObjectKind kind;
+
+    private RevObjectSerializer serializer;
+
+    private RevObject object;
+
+    private byte[] encoded;
+
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setup() throws IOException {
+        serializer = format.create();
+        SyntheticData data = new SyntheticData();
+        switch (kind) {
+        case feature:
+            object = data.feature(0);
+            break;
+        case leaftree:
+            object = SyntheticData.canonicalTree(new HeapObjectStore(), data.featureNodes(500));
+            break;
+        case buckettree:
+            object = SyntheticData.canonicalTree(new HeapObjectStore(),
+                    data.featureNodes(100_000));
+            break;
+        case commit:
+            object = data.commit(data.objectId(), 2);
+            break;
+        default:
+            throw new IllegalStateException();
+        }
+        out = new ByteArrayOutputStream(64 * 1024);
+        serializer.write(object, out);
+        encoded = out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        out.reset();
+        serializer.write(object, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public RevObject read() throws IOException {
+        return serializer.read(object.getId(), encoded, 0, encoded.length);
+    }
+
+    @Benchmark
+    public void readFully(Blackhole bh) throws IOException {
+        RevObject o = serializer.read(object.getId(), encoded, 0, encoded.length);
+        switch (o.getType()) {
+        case FEATURE:
+            ((RevFeature) o).forEach(bh::consume);
+            break;
+        case TREE:
+            RevTree t = (RevTree) o;
+            consume(t.features(), bh);
+            consume(t.trees(), bh);
+            for (Bucket b : t.getBuckets()) {
+                bh.consume(b.getObjectId());
+                bh.consume(b.bounds());
+            }
+            break;
+        default:
+            bh.consume(o);
+        }
+    }
+
+    private void consume(List<Node> nodes, Blackhole bh) {
+        for (Node n : nodes) {
+            bh.consume(n.getName());
+            bh.consume(n.getObjectId());
+            bh.consume(n.bounds());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevObjectFactory;
+import org.locationtech.geogig.model.RevPerson;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.RevTreeBuilder;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+
+/**
+ * Generates the synthetic objects the benchmarks operate on.
+ * <p>
+ * All the generated data derives from a fixed random seed, so that every run of a benchmark works
+ * over exactly the same objects and the results are comparable across runs and builds.
+ */
+final class SyntheticData {
+
+    static final long SEED = 0x6E0619L;
+
+    /**
+     * Bounds for the quadtree benchmarks, all generated nodes fall inside them
+     */
+    static final Envelope WGS84_BOUNDS = new Envelope(-180, 180, -90, 90);
+
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    private final Random random;
+
+    SyntheticData() {
+        this(SEED);
+    }
+
+    SyntheticData(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public ObjectId objectId() {
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        random.nextBytes(raw);
+        return ObjectId.create(raw);
+    }
+
+    public List<ObjectId> objectIds(int count) {
+        List<ObjectId> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(objectId());
+        }
+        return ids;
+    }
+
+    /**
+     * @return a feature with a point geometry and a few attributes of the most common types
+     */
+    public RevFeature feature(int index) {
+        double x = WGS84_BOUNDS.getMinX() + random.nextDouble() * WGS84_BOUNDS.getWidth();
+        double y = WGS84_BOUNDS.getMinY() + random.nextDouble() * WGS84_BOUNDS.getHeight();
+        return RevFeature.builder()//
+                .addValue(GEOMETRY_FACTORY.createPoint(new Coordinate(x, y)))//
+                .addValue(Integer.valueOf(index))//
+                .addValue(Long.valueOf(random.nextLong()))//
+                .addValue(Double.valueOf(random.nextDouble()))//
+                .addValue("feature number " + index)//
+                .addValue(Boolean.valueOf(index % 2 == 0))//
+                .build();
+    }
+
+    public List<RevFeature> features(int count) {
+        List<RevFeature> features = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            features.add(feature(i));
+        }
+        return features;
+    }
+
+    /**
+     * @return a feature node with a random object id and a point bounds inside
+     *         {@link #WGS84_BOUNDS}
+     */
+    public Node featureNode(int index) {
+        double x = WGS84_BOUNDS.getMinX() + random.nextDouble() * WGS84_BOUNDS.getWidth();
+        double y = WGS84_BOUNDS.getMinY() + random.nextDouble() * WGS84_BOUNDS.getHeight();
+        return RevObjectFactory.defaultInstance().createNode("f" + index, objectId(),
+                ObjectId.NULL, TYPE.FEATURE, new Envelope(x, x, y, y), null);
+    }
+
+    public List<Node> featureNodes(int count) {
+        List<Node> nodes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            nodes.add(featureNode(i));
+        }
+        return nodes;
+    }
+
+    /**
+     * @return a copy of {@code node} pointing to a different object id
+     */
+    public Node changeObjectId(Node node) {
+        return node.update(objectId());
+    }
+
+    public RevCommit commit(ObjectId treeId, int numParents) {
+        List<ObjectId> parents = numParents == 0 ? Collections.emptyList()
+                : objectIds(numParents);
+        RevPerson person = RevPerson.builder().build("John Doe", "jd@example.com",
+                1_500_000_000_000L, 0);
+        return RevCommit.builder().build(treeId, parents, person, person,
+                "Synthetic commit with a not so short commit message");
+    }
+
+    /**
+     * Builds a canonical tree out of {@code nodes} and saves it to {@code store}
+     */
+    public static RevTree canonicalTree(ObjectStore store, List<Node> nodes) {
+        return canonicalTree(store, RevTree.EMPTY, nodes);
+    }
+
+    public static RevTree canonicalTree(ObjectStore store, RevTree original, List<Node> nodes) {
+        RevTreeBuilder builder = RevTreeBuilder.builder(store, original);
+        try {
+            nodes.forEach(builder::put);
+            RevTree tree = builder.build();
+            store.put(tree);
+            return tree;
+        } finally {
+            builder.dispose();
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.locationtech.geogig.cli.plumbing.RevParse;
 import org.locationtech.geogig.cli.plumbing.ShowRef;
 import org.locationtech.geogig.cli.plumbing.VerifyPatch;
 import org.locationtech.geogig.cli.plumbing.WalkGraph;
+import org.locationtech.geogig.cli.plumbing.WarmUpCache;
 import org.locationtech.geogig.cli.porcelain.Add;
 import org.locationtech.geogig.cli.porcelain.Apply;
 import org.locationtech.geogig.cli.porcelain.Blame;
@@ -82,6 +83,7 @@ import com.google.inject.AbstractModule;
  * @see Fetch
  * @see Version
  * @see RebuildGraph
+ * @see WarmUpCache
  */
 public class BuiltinCommandsModule extends AbstractModule implements CLIModule {
 
@@ -124,6 +126,7 @@ public class BuiltinCommandsModule extends AbstractModule implements CLIModule {
         bind(WalkGraph.class);
         bind(Version.class);
         bind(RebuildGraph.class);
+        bind(WarmUpCache.class);
         bind(IndexCommandProxy.class);
     }
 
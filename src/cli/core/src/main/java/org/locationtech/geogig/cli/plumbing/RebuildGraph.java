@@ -33,9 +33,12 @@ public class RebuildGraph extends AbstractCommand implements CLICommand {
     @Parameter(names = "--quiet", description = "Print only a summary of the fixed entries.")
     private boolean quiet = false;
 
+    @Parameter(names = "--changed-paths", description = "Also compute the changed paths of each commit, to speed up path limited log and blame.")
+    private boolean changedPaths = false;
+
     public @Override void runInternal(GeogigCLI cli) throws IOException {
         ImmutableList<ObjectId> updatedObjects = cli.getGeogig().command(RebuildGraphOp.class)
-                .call();
+                .setComputeChangedPaths(changedPaths).call();
 
         final Console console = cli.getConsole();
         if (updatedObjects.size() > 0) {
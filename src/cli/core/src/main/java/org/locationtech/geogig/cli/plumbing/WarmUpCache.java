@@ -0,0 +1,64 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cli.plumbing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.locationtech.geogig.cli.AbstractCommand;
+import org.locationtech.geogig.cli.CLICommand;
+import org.locationtech.geogig.cli.GeogigCLI;
+import org.locationtech.geogig.cli.annotation.ReadOnly;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp.Result;
+import org.locationtech.geogig.storage.cache.CachingObjectStore;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/**
+ * Preloads the trees of the given refs into the shared cache.
+ * <p>
+ * Only repositories whose object database keeps its objects in the shared cache (e.g. PostgreSQL
+ * repositories) are warmed up, for any other one nothing is loaded.
+ * 
+ * @see WarmUpCacheOp
+ */
+@ReadOnly
+@Parameters(commandNames = "warm-up-cache", commandDescription = "Preloads the trees of the given refs into the shared cache. Does nothing unless the repository's object database uses the shared cache (e.g. PostgreSQL repositories).")
+public class WarmUpCache extends AbstractCommand implements CLICommand {
+
+    @Parameter(description = "[<ref>...]")
+    private List<String> refs = new ArrayList<>();
+
+    @Parameter(names = "--path", description = "Only load the tree at the given path (e.g. a layer) of each ref. May be given more than once.")
+    private List<String> paths = new ArrayList<>();
+
+    @Parameter(names = "--no-feature-types", description = "Do not load the feature types of the loaded trees.")
+    private boolean noFeatureTypes = false;
+
+    @Parameter(names = "--threads", description = "Maximum number of bulk queries to run at the same time.")
+    private int threads = 2;
+
+    public @Override void runInternal(GeogigCLI cli) throws IOException {
+        if (!(cli.getGeogig().getRepository().objectDatabase() instanceof CachingObjectStore)) {
+            cli.getConsole().println("The repository's object database does not use the shared"
+                    + " cache, nothing to warm up.");
+            return;
+        }
+        Result result = cli.getGeogig().command(WarmUpCacheOp.class).setRefs(refs)
+                .setPaths(paths).setFeatureTypes(!noFeatureTypes).setParallelism(threads)
+                .setProgressListener(cli.getProgressListener()).call();
+
+        cli.getConsole().println(String.format("Loaded %,d trees and %,d feature types.",
+                result.getTrees(), result.getFeatureTypes()));
+    }
+}
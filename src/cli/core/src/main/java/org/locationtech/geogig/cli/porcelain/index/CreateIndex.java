@@ -49,12 +49,25 @@ public class CreateIndex extends AbstractCommand implements CLICommand {
     @Parameter(names = "--bounds", description = "If specified, the max bounds of the spatial index will be set to this parameter. <minx,miny,maxx,maxy>")
     private String bbox;
 
+    @Parameter(names = "--simplify", description = "Comma separated list of distance tolerances, in the units of the layer's CRS, to hold the indexed geometry simplified with inside the index")
+    private List<String> simplificationTolerances;
+
     protected @Override void runInternal(GeogigCLI cli)
             throws InvalidParameterException, CommandFailedException, IOException {
 
         Repository repo = cli.getGeogig().getRepository();
 
         Envelope envelope = SpatialOps.parseNonReferencedBBOX(bbox);
+        double[] tolerances = null;
+        if (simplificationTolerances != null) {
+            try {
+                tolerances = simplificationTolerances.stream().mapToDouble(Double::parseDouble)
+                        .toArray();
+            } catch (NumberFormatException e) {
+                throw new InvalidParameterException(
+                        "Invalid simplification tolerance: " + e.getMessage(), e);
+            }
+        }
 
         Index index;
         try {
@@ -64,6 +77,7 @@ public class CreateIndex extends AbstractCommand implements CLICommand {
                     .setExtraAttributes(extraAttributes)//
                     .setIndexHistory(indexHistory)//
                     .setBounds(envelope)//
+                    .setSimplificationTolerances(tolerances)//
                     .setProgressListener(cli.getProgressListener())//
                     .call();
         } catch (IllegalStateException e) {
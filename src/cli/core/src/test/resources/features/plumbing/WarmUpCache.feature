@@ -0,0 +1,10 @@
+Feature: "warm-up-cache" command
+    In order to speed up access to a geogig repository
+    As a Geogig User
+    I want to preload its trees into the cache
+
+  Scenario: I try to warm up the cache of a repository that does not use the shared cache
+    Given I have a repository
+      And I have several commits
+     When I run the command "warm-up-cache master"
+     Then the response should contain "nothing to warm up"
@@ -0,0 +1,83 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.locationtech.geogig.model.DiffEntry;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.impl.ChangedPathsFilter;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+
+import com.google.common.base.Preconditions;
+
+import lombok.NonNull;
+
+/**
+ * Computes the {@link ChangedPathsFilter changed paths filter} of a commit to be stored in the
+ * {@link CommitGraph}, out of the trees that changed between the commit and each of its parents.
+ * <p>
+ * Returns {@link Optional#empty() empty} if the commit changed too many trees or any of its
+ * parents is not present in the repository (e.g. the bottom of a shallow clone), meaning the
+ * filter is unknown.
+ *
+ * @since 2.0
+ */
+public class ComputeChangedPathsFilter extends AbstractGeoGigOp<Optional<byte[]>> {
+
+    private RevCommit commit;
+
+    public ComputeChangedPathsFilter setCommit(@NonNull RevCommit commit) {
+        this.commit = commit;
+        return this;
+    }
+
+    protected @Override Optional<byte[]> _call() {
+        Preconditions.checkState(commit != null, "commit not provided");
+        final ObjectDatabase db = objectDatabase();
+        final RevTree tree = db.getTree(commit.getTreeId());
+        final Set<String> changedPaths = new HashSet<>();
+        if (commit.getParentIds().isEmpty()) {
+            addChangedPaths(RevTree.EMPTY, tree, changedPaths);
+        }
+        for (ObjectId parentId : commit.getParentIds()) {
+            RevCommit parent = db.getIfPresent(parentId, RevCommit.class);
+            if (parent == null) {
+                return Optional.empty();
+            }
+            addChangedPaths(db.getTree(parent.getTreeId()), tree, changedPaths);
+            if (changedPaths.size() > ChangedPathsFilter.MAX_PATHS) {
+                return Optional.empty();
+            }
+        }
+        return Optional.ofNullable(ChangedPathsFilter.create(changedPaths));
+    }
+
+    private void addChangedPaths(RevTree left, RevTree right, Set<String> target) {
+        if (left.getId().equals(right.getId())) {
+            return;
+        }
+        // features directly under the root tree are hard to tell apart in bucket trees
+        if (left.bucketsSize() > 0 || right.bucketsSize() > 0
+                || !left.features().equals(right.features())) {
+            target.add(ChangedPathsFilter.ROOT_FEATURES);
+        }
+        for (DiffEntry e : command(FindChangedTrees.class).setOldTreeIsh(left)
+                .setNewTreeIsh(right).call()) {
+            target.add(e.path());
+        }
+    }
+}
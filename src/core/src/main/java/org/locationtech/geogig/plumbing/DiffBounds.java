@@ -22,10 +22,12 @@ import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.diff.BoundsFilteringDiffConsumer;
 import org.locationtech.geogig.plumbing.diff.DiffSummary;
 import org.locationtech.geogig.plumbing.diff.PathFilteringDiffConsumer;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.plumbing.diff.SpatialIndexDiffConsumer;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.locationtech.jts.geom.Envelope;
@@ -51,6 +53,8 @@ public class DiffBounds extends AbstractGeoGigOp<DiffSummary<Envelope, Envelope>
 
     private boolean compareStaged;
 
+    private Envelope boundsFilter;
+
     public DiffBounds setLeftSource(ObjectStore leftSource) {
         this.leftSource = leftSource;
         return this;
@@ -90,6 +94,19 @@ public class DiffBounds extends AbstractGeoGigOp<DiffSummary<Envelope, Envelope>
         return this;
     }
 
+    /**
+     * Only accounts for the differences whose bounds intersect {@code bounds}, clipping the
+     * resulting bounds to it. If comparing trees from the repository's object database, the
+     * spatial index trees of the feature type trees that have one at both sides are compared
+     * instead of the canonical ones.
+     *
+     * @since 2.0
+     */
+    public DiffBounds setBoundsFilter(@Nullable Envelope bounds) {
+        this.boundsFilter = bounds;
+        return this;
+    }
+
     protected @Override DiffSummary<Envelope, Envelope> _call() {
         checkArgument(compareStaged && oldVersion == null && oldTree == null || !compareStaged,
                 String.format(
@@ -111,14 +128,31 @@ public class DiffBounds extends AbstractGeoGigOp<DiffSummary<Envelope, Envelope>
         PreOrderDiffWalk visitor = new PreOrderDiffWalk(left, right, leftSource, rightSource);
         BoundsWalk walk = new BoundsWalk(leftSource, rightSource);
         PreOrderDiffWalk.Consumer consumer = walk;
+        if (boundsFilter != null) {
+            consumer = new BoundsFilteringDiffConsumer(boundsFilter, consumer);
+        }
         if (!pathFilters.isEmpty()) {
-            consumer = new PathFilteringDiffConsumer(pathFilters, walk);
+            consumer = new PathFilteringDiffConsumer(pathFilters, consumer);
+        }
+        if (boundsFilter != null && this.leftSource == null && this.rightSource == null) {
+            consumer = new SpatialIndexDiffConsumer(leftSource, rightSource, indexDatabase(),
+                    indexDatabase(), false, consumer);
         }
         visitor.walk(consumer);
         DiffSummary<Envelope, Envelope> diffBounds = walk.getResult();
+        if (boundsFilter != null) {
+            diffBounds = clip(diffBounds, boundsFilter);
+        }
         return diffBounds;
     }
 
+    private DiffSummary<Envelope, Envelope> clip(DiffSummary<Envelope, Envelope> bounds,
+            Envelope clip) {
+        return new DiffSummary<Envelope, Envelope>(bounds.getLeft().intersection(clip),
+                bounds.getRight().intersection(clip),
+                bounds.getMergedResult().orElseGet(Envelope::new).intersection(clip));
+    }
+
     private RevTree resolveTree(@Nullable RevTree tree, @Nullable String refSpec,
             ObjectStore source) {
         if (tree == null) {
@@ -20,9 +20,11 @@ import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.diff.DiffCountConsumer;
 import org.locationtech.geogig.plumbing.diff.PathFilteringDiffConsumer;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
+import org.locationtech.geogig.plumbing.diff.SpatialIndexDiffConsumer;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.DiffObjectCount;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.jts.geom.Envelope;
 
 import com.google.common.collect.Lists;
 
@@ -43,6 +45,8 @@ public class DiffCount extends AbstractGeoGigOp<DiffObjectCount> {
 
     private RevTree oldTree, newTree;
 
+    private Envelope boundsFilter;
+
     public DiffCount setOldVersion(String refSpec) {
         this.oldRefSpec = refSpec;
         this.oldTreeId = null;
@@ -110,6 +114,18 @@ public class DiffCount extends AbstractGeoGigOp<DiffObjectCount> {
         return this;
     }
 
+    /**
+     * Only counts the features whose bounds intersect {@code bounds}, comparing the spatial index
+     * trees of the feature type trees that have one at both sides if comparing trees from the
+     * repository's object database
+     *
+     * @since 2.0
+     */
+    public DiffCount setBoundsFilter(@Nullable Envelope bounds) {
+        this.boundsFilter = bounds;
+        return this;
+    }
+
     protected @Override DiffObjectCount _call() {
         checkState(oldRefSpec != null || oldTreeId != null || oldTree != null,
                 "old ref spec not provided");
@@ -126,11 +142,16 @@ public class DiffCount extends AbstractGeoGigOp<DiffObjectCount> {
         DiffObjectCount diffCount;
         PreOrderDiffWalk visitor = new PreOrderDiffWalk(oldTree, newTree, leftSource, rightSource);
 
-        DiffCountConsumer counter = new DiffCountConsumer(leftSource, rightSource);
+        DiffCountConsumer counter = new DiffCountConsumer(leftSource, rightSource)
+                .setBoundsFilter(boundsFilter);
         PreOrderDiffWalk.Consumer filter = counter;
         if (!pathFilters.isEmpty()) {
             filter = new PathFilteringDiffConsumer(pathFilters, counter);
         }
+        if (boundsFilter != null && this.leftSource == null && this.rightSource == null) {
+            filter = new SpatialIndexDiffConsumer(leftSource, rightSource, indexDatabase(),
+                    indexDatabase(), false, filter);
+        }
         visitor.walk(filter);
         diffCount = counter.get();
 
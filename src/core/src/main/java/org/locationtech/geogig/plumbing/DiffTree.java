@@ -38,6 +38,7 @@ import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.Consumer;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.ForwardingConsumer;
+import org.locationtech.geogig.plumbing.diff.SpatialIndexDiffConsumer;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
 import org.locationtech.geogig.storage.ObjectDatabase;
@@ -80,6 +81,8 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
 
     private Predicate<Bounded> customFilter;
 
+    private Predicate<BucketIndex> bucketFilter;
+
     private Long limit;
 
     private ObjectId metadataId;
@@ -178,7 +181,9 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
     }
 
     /**
-     * Note: Preserving the iteration order will disable parallel processing of the diff.
+     * Note: the diff is still computed in parallel when preserving the iteration order, but the
+     * differences are reported in order as they're available, so it may take longer until
+     * differences from bigger trees show up.
      * 
      * @param preserveIterationOorder whether or not to preserve the iteration order
      * @return {@code this}
@@ -210,6 +215,14 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
         return this;
     }
 
+    /**
+     * Sets a bounding box filter for the features to report.
+     * <p>
+     * When comparing trees from the repository's object database, the changed feature type trees
+     * that have a spatial index at both sides are compared through their index trees, skipping the
+     * quadrants that don't intersect {@code bounds}. The features of such trees are reported in
+     * the index order rather than the canonical one.
+     */
     public DiffTree setBoundsFilter(@Nullable Envelope bounds) {
         this.boundsFilter = bounds;
         return this;
@@ -220,6 +233,19 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
         return this;
     }
 
+    /**
+     * Sets a filter for the buckets to traverse, evaluated on their {@link BucketIndex}, which
+     * tells where a bucket is in the tree by its {@link BucketIndex#getIndexPath() index path}.
+     * Useful to prune the traversal of trees whose bucket structure carries meaning, like index
+     * trees.
+     * 
+     * @since 2.0
+     */
+    public DiffTree setBucketFilter(@Nullable Predicate<BucketIndex> bucketFilter) {
+        this.bucketFilter = bucketFilter;
+        return this;
+    }
+
     public DiffTree setChangeTypeFilter(@Nullable ChangeType changeType) {
         this.changeTypeFilter = changeType;
         return this;
@@ -290,6 +316,11 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
             visitor.nodeOrder(nodeOrdering);
         }
 
+        // the index trees are only known to match the repository's own object database
+        final boolean useSpatialIndexes = boundsFilter != null && reportFeatures
+                && this.leftSource == null && this.rightSource == null
+                && this.nodeOrdering == null;
+
         final BlockingQueue<DiffEntry> queue = new ArrayBlockingQueue<>(1000_000);
         final DiffEntryProducer diffProducer = new DiffEntryProducer(queue);
         diffProducer.setReportTrees(this.reportTrees);
@@ -311,6 +342,9 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
                 if (customFilter != null) {
                     consumer = new PreOrderDiffWalk.FilteringConsumer(consumer, customFilter);
                 }
+                if (bucketFilter != null) {
+                    consumer = new BucketIndexFilteringDiffConsumer(bucketFilter, consumer);
+                }
                 if (changeTypeFilter != null) {
                     consumer = new ChangeTypeFilteringDiffConsumer(changeTypeFilter, consumer);
                 }
@@ -327,6 +361,10 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
                     wrapper.setDelegate(consumer);
                     consumer = wrapper;
                 }
+                if (useSpatialIndexes) {
+                    consumer = new SpatialIndexDiffConsumer(leftSource, rightSource,
+                            indexDatabase(), indexDatabase(), preserveIterationOrder, consumer);
+                }
                 try {
                     LOGGER.trace("walking diff {} / {}", oldRefSpec, newRefSpec);
                     visitor.walk(consumer);
@@ -427,6 +465,29 @@ public class DiffTree extends AbstractGeoGigOp<AutoCloseableIterator<DiffEntry>>
         return tree;
     }
 
+    private static class BucketIndexFilteringDiffConsumer extends ForwardingConsumer {
+
+        private final Predicate<BucketIndex> filter;
+
+        public BucketIndexFilteringDiffConsumer(Predicate<BucketIndex> filter, Consumer consumer) {
+            super(consumer);
+            this.filter = filter;
+        }
+
+        public @Override boolean bucket(NodeRef lparent, NodeRef rparent,
+                final BucketIndex bucketIndex, final Bucket left, final Bucket right) {
+            return filter.apply(bucketIndex)
+                    && super.bucket(lparent, rparent, bucketIndex, left, right);
+        }
+
+        public @Override void endBucket(NodeRef lparent, NodeRef rparent, BucketIndex bucketIndex,
+                Bucket left, Bucket right) {
+            if (filter.apply(bucketIndex)) {
+                super.endBucket(lparent, rparent, bucketIndex, left, right);
+            }
+        }
+    }
+
     private static class ChangeTypeFilteringDiffConsumer extends ForwardingConsumer {
 
         private final ChangeType changeTypeFilter;
@@ -9,22 +9,23 @@
  */
 package org.locationtech.geogig.plumbing;
 
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.Set;
 import java.util.function.Supplier;
 
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdSet;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.storage.GraphDatabase;
 import org.locationtech.geogig.storage.GraphDatabase.Direction;
 import org.locationtech.geogig.storage.GraphDatabase.GraphEdge;
 import org.locationtech.geogig.storage.GraphDatabase.GraphNode;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+import org.locationtech.geogig.storage.impl.CommitGraphStore;
 
 import com.google.common.base.Preconditions;
 
@@ -41,6 +42,8 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
 
     private Supplier<GraphDatabase> rightSource = () -> graphDatabase();
 
+    private boolean customSources;
+
     /**
      * @param left the left {@link ObjectId}
      */
@@ -51,11 +54,13 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
 
     public FindCommonAncestor setLeftSource(GraphDatabase leftGraph) {
         this.leftSource = leftGraph == null ? () -> graphDatabase() : () -> leftGraph;
+        this.customSources |= leftGraph != null;
         return this;
     }
 
     public FindCommonAncestor setRightSource(GraphDatabase rightGraph) {
         this.rightSource = rightGraph == null ? () -> graphDatabase() : () -> rightGraph;
+        this.customSources |= rightGraph != null;
         return this;
     }
 
@@ -116,8 +121,16 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      *         {@link Optional#empty()} if a common ancestor could not be found.
      */
     public Optional<ObjectId> findLowestCommonAncestor(ObjectId leftId, ObjectId rightId) {
-        Set<GraphNode> leftSet = new HashSet<GraphNode>();
-        Set<GraphNode> rightSet = new HashSet<GraphNode>();
+        if (!customSources && repository() != null) {
+            // use the commit graph if both commits are indexed, it can answer without walking the
+            // whole history down to the common ancestor
+            CommitGraph commitGraph = CommitGraphStore.get(repository()).get();
+            if (commitGraph.contains(leftId) && commitGraph.contains(rightId)) {
+                return commitGraph.findLowestCommonAncestor(leftId, rightId);
+            }
+        }
+        ObjectIdSet leftSet = ObjectIdSet.create();
+        ObjectIdSet rightSet = ObjectIdSet.create();
 
         Queue<GraphNode> leftQueue = new LinkedList<GraphNode>();
         Queue<GraphNode> rightQueue = new LinkedList<GraphNode>();
@@ -164,10 +177,11 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      * @param theirSet other traversal's visited nodes
      * @return
      */
-    private boolean processCommit(GraphNode commit, Queue<GraphNode> myQueue, Set<GraphNode> mySet,
-            Queue<GraphNode> theirQueue, Set<GraphNode> theirSet) {
-        if (mySet.add(commit)) {
-            if (theirSet.contains(commit)) {
+    private boolean processCommit(GraphNode commit, Queue<GraphNode> myQueue, ObjectIdSet mySet,
+            Queue<GraphNode> theirQueue, ObjectIdSet theirSet) {
+        final ObjectId commitId = commit.getIdentifier();
+        if (mySet.add(commitId)) {
+            if (theirSet.contains(commitId)) {
                 stopAncestryPath(commit, theirQueue, theirSet);
                 return true;
             }
@@ -193,20 +207,19 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      * @param theirSet the opposite visited nodes
      */
     private void stopAncestryPath(GraphNode commit, Queue<GraphNode> theirQueue,
-            Set<GraphNode> theirSet) {
+            ObjectIdSet theirSet) {
         Queue<GraphNode> ancestorQueue = new LinkedList<GraphNode>();
         ancestorQueue.add(commit);
-        Set<GraphNode> processed = new HashSet<GraphNode>();
+        ObjectIdSet processed = ObjectIdSet.create();
         while (!ancestorQueue.isEmpty()) {
             GraphNode ancestor = ancestorQueue.poll();
             Iterator<GraphEdge> edges = ancestor.getEdges(Direction.OUT);
             while (edges.hasNext()) {
                 GraphEdge relationship = edges.next();
                 GraphNode parentNode = relationship.getToNode();
-                if (theirSet.contains(parentNode)) {
-                    if (!processed.contains(parentNode)) {
+                if (theirSet.contains(parentNode.getIdentifier())) {
+                    if (processed.add(parentNode.getIdentifier())) {
                         ancestorQueue.add(parentNode);
-                        processed.add(parentNode);
                     }
                 } else {
                     theirQueue.remove(parentNode);
@@ -223,8 +236,8 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
      * @param leftSet the visited nodes of the left traversal
      * @param rightSet the visited nodes of the right traversal
      */
-    private void verifyAncestors(List<GraphNode> potentialCommonAncestors, Set<GraphNode> leftSet,
-            Set<GraphNode> rightSet) {
+    private void verifyAncestors(List<GraphNode> potentialCommonAncestors, ObjectIdSet leftSet,
+            ObjectIdSet rightSet) {
         Queue<GraphNode> ancestorQueue = new LinkedList<GraphNode>();
         List<GraphNode> falseAncestors = new LinkedList<GraphNode>();
         List<GraphNode> processed = new LinkedList<GraphNode>();
@@ -241,7 +254,8 @@ public class FindCommonAncestor extends AbstractGeoGigOp<Optional<ObjectId>> {
                     GraphEdge parent = edges.next();
                     GraphNode parentNode = parent.getToNode();
                     if (parentNode.getIdentifier() != ancestor.getIdentifier()) {
-                        if (leftSet.contains(parentNode) || rightSet.contains(parentNode)) {
+                        final ObjectId parentId = parentNode.getIdentifier();
+                        if (leftSet.contains(parentId) || rightSet.contains(parentId)) {
                             if (!processed.contains(parentNode)) {
                                 ancestorQueue.add(parentNode);
                                 processed.add(parentNode);
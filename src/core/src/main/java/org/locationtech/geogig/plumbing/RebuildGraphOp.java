@@ -9,11 +9,13 @@
  */
 package org.locationtech.geogig.plumbing;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdSet;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.porcelain.BranchListOp;
@@ -21,16 +23,36 @@ import org.locationtech.geogig.porcelain.LogOp;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+import org.locationtech.geogig.storage.impl.CommitGraphStore;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
 /**
- * Rebuilds the {@link GraphDatabase} and returns a list of {@link ObjectId}s that were found to be
- * missing or incomplete.
+ * Rebuilds the {@link GraphDatabase} and the {@link CommitGraph}, and returns a list of
+ * {@link ObjectId}s that were found to be missing or incomplete.
+ * <p>
+ * The commit graph is otherwise kept up to date by {@link UpdateRef} as branches move, so a
+ * rebuild is only needed to index existing histories, histories too large to be indexed
+ * incrementally, or to compute the changed paths filters of all the commits.
  */
 public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
 
+    private boolean computeChangedPaths;
+
+    /**
+     * @param computeChangedPaths whether to compute the {@link ComputeChangedPathsFilter changed
+     *        paths filter} of every commit in the {@link CommitGraph}, which speeds up path
+     *        limited history queries at the cost of a tree diff per commit. Defaults to
+     *        {@code false}.
+     * @return {@code this}
+     */
+    public RebuildGraphOp setComputeChangedPaths(boolean computeChangedPaths) {
+        this.computeChangedPaths = computeChangedPaths;
+        return this;
+    }
+
     /**
      * Executes the {@code RebuildGraphOp} operation.
      * 
@@ -46,6 +68,8 @@ public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
                 .call();
 
         GraphDatabase graphDb = repository.graphDatabase();
+        ObjectIdSet visited = ObjectIdSet.create();
+        List<RevCommit> allCommits = new ArrayList<>();
 
         for (Ref ref : branches) {
             Iterator<RevCommit> commits = command(LogOp.class).setUntil(ref.getObjectId()).call();
@@ -54,9 +78,20 @@ public class RebuildGraphOp extends AbstractGeoGigOp<ImmutableList<ObjectId>> {
                 if (graphDb.put(next.getId(), next.getParentIds())) {
                     updated.add(next.getId());
                 }
+                if (visited.add(next.getId())) {
+                    allCommits.add(next);
+                }
             }
         }
 
+        if (computeChangedPaths) {
+            CommitGraphStore.get(repository).rebuild(allCommits,
+                    c -> command(ComputeChangedPathsFilter.class).setCommit(c).call()
+                            .orElse(null));
+        } else {
+            CommitGraphStore.get(repository).rebuild(allCommits);
+        }
+
         return ImmutableList.copyOf(updated);
     }
 }
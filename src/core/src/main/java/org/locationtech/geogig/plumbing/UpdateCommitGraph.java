@@ -0,0 +1,97 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdSet;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+import org.locationtech.geogig.storage.impl.CommitGraphStore;
+
+import com.google.common.base.Preconditions;
+
+import lombok.NonNull;
+
+/**
+ * Adds a commit and all its ancestors that are not yet in the {@link CommitGraph} to it, so that
+ * commits created or fetched by any operation (e.g. merge, rebase, fetch) get indexed as soon as a
+ * branch points to them, without waiting for a {@link RebuildGraphOp rebuild}.
+ * <p>
+ * This runs on every branch update, so it's kept cheap: if the graph was never built, only a root
+ * commit (i.e. the first commit of a new repository) is added, and indexing an existing history
+ * is left to {@link RebuildGraphOp}. Otherwise the history is walked from the commit down to the
+ * commits already in the graph, up to {@link #MAX_COMMITS} commits; if there are more, the commit
+ * is {@link CommitGraphStore#markBehind marked} so that updates to its descendants give up as
+ * soon as they reach it instead of walking the same history again. The
+ * {@link ComputeChangedPathsFilter changed paths filters} of the new commits are not computed,
+ * since each one costs a tree diff, they're computed by {@link RebuildGraphOp}.
+ *
+ * @since 2.0
+ */
+public class UpdateCommitGraph extends AbstractGeoGigOp<CommitGraph> {
+
+    static final int MAX_COMMITS = 10_000;
+
+    private ObjectId commitId;
+
+    public UpdateCommitGraph setCommit(@NonNull ObjectId commitId) {
+        this.commitId = commitId;
+        return this;
+    }
+
+    protected @Override CommitGraph _call() {
+        Preconditions.checkState(commitId != null, "commit not provided");
+        final CommitGraphStore store = CommitGraphStore.get(repository());
+        final CommitGraph graph = store.get();
+        if (commitId.isNull() || graph.contains(commitId) || store.isBehind(commitId)) {
+            return graph;
+        }
+        final ObjectDatabase db = objectDatabase();
+        if (graph.size() == 0) {
+            RevCommit commit = db.getIfPresent(commitId, RevCommit.class);
+            if (commit == null || !commit.getParentIds().isEmpty()) {
+                return graph;
+            }
+            return store.add(Collections.singletonList(commit));
+        }
+        final ObjectIdSet visited = ObjectIdSet.create();
+        final Deque<ObjectId> queue = new ArrayDeque<>();
+        final List<RevCommit> commits = new ArrayList<>();
+        queue.add(commitId);
+        visited.add(commitId);
+        while (!queue.isEmpty()) {
+            final ObjectId id = queue.poll();
+            if (commits.size() == MAX_COMMITS || store.isBehind(id)) {
+                store.markBehind(commitId);
+                return graph;
+            }
+            RevCommit commit = db.getIfPresent(id, RevCommit.class);
+            if (commit == null) {
+                // not a commit, or the bottom of a shallow clone
+                continue;
+            }
+            commits.add(commit);
+            for (ObjectId parentId : commit.getParentIds()) {
+                if (!graph.contains(parentId) && visited.add(parentId)) {
+                    queue.add(parentId);
+                }
+            }
+        }
+        return store.add(commits);
+    }
+}
@@ -24,12 +24,14 @@ import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.storage.RefDatabase;
 
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Update the object name stored in a {@link Ref} safely.
  * <p>
  * 
  */
+@Slf4j
 @Hookable(name = "update-ref")
 public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
 
@@ -162,6 +164,22 @@ public class UpdateRef extends AbstractGeoGigOp<Optional<Ref>> {
         Optional<Ref> newRef = command(RefParse.class).setName(name).call();
         checkState(newRef.isPresent());
 
+        if (name.startsWith(Ref.HEADS_PREFIX) || name.startsWith(Ref.REMOTES_PREFIX)) {
+            updateCommitGraph(newValue);
+        }
         return newRef;
     }
+
+    /**
+     * Indexes the new commits of a branch in the commit graph, whatever operation created or
+     * fetched them. Failing to do so doesn't fail the update since the commit graph is just an
+     * acceleration structure.
+     */
+    private void updateCommitGraph(ObjectId commitId) {
+        try {
+            command(UpdateCommitGraph.class).setCommit(commitId).call();
+        } catch (RuntimeException e) {
+            log.warn("Error adding commit {} to the commit graph", commitId, e);
+        }
+    }
 }
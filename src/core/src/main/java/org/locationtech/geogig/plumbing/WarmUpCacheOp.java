@@ -0,0 +1,290 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.porcelain.BranchListOp;
+import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.cache.CacheManager;
+import org.locationtech.geogig.storage.cache.CachingObjectStore;
+import org.locationtech.geogig.storage.cache.ObjectCache;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Preloads the {@link RevTree trees} reachable from the root trees of a set of refs, and optionally
+ * the {@link RevFeatureType feature types} they refer to, so that object stores backed by the
+ * {@link CacheManager shared cache} have them cached before they're needed.
+ * <p>
+ * Trees are loaded level by level through {@link ObjectDatabase#getAll bulk queries} of at most
+ * {@link #setBatchSize batchSize} ids, running at most {@link #setParallelism parallelism} queries
+ * at a time so that the warm up doesn't compete with the repository's regular workload. Loading
+ * stops, even halfway through a level, once the shared cache or the repository's share of it is
+ * full, since going further would only evict what was already loaded.
+ * <p>
+ * Only object databases that are {@link CachingObjectStore caching object stores} (e.g. PostgreSQL
+ * repositories) keep the objects they return in the shared cache. For any other one there's nothing
+ * to warm up, and an empty result is returned right away.
+ * <p>
+ * Features are never loaded.
+ *
+ * @since 2.0
+ */
+public class WarmUpCacheOp extends AbstractGeoGigOp<WarmUpCacheOp.Result> {
+
+    public static @Value class Result {
+        /**
+         * Number of trees loaded
+         */
+        private long trees;
+
+        /**
+         * Number of feature types loaded
+         */
+        private long featureTypes;
+    }
+
+    private List<String> refs = new ArrayList<>();
+
+    private List<String> paths = new ArrayList<>();
+
+    private boolean featureTypes = true;
+
+    private int parallelism = 2;
+
+    private int batchSize = 1_000;
+
+    /**
+     * @param refs the refs whose root trees to load, defaults to all the local branches
+     */
+    public WarmUpCacheOp setRefs(@NonNull Collection<String> refs) {
+        this.refs = new ArrayList<>(refs);
+        return this;
+    }
+
+    /**
+     * @param paths the paths of the trees (e.g. layers) to load from the root tree of each ref,
+     *        defaults to the whole root trees
+     */
+    public WarmUpCacheOp setPaths(@NonNull Collection<String> paths) {
+        this.paths = new ArrayList<>(paths);
+        return this;
+    }
+
+    /**
+     * @param featureTypes whether to also load the feature types of the loaded trees, defaults to
+     *        {@code true}
+     */
+    public WarmUpCacheOp setFeatureTypes(boolean featureTypes) {
+        this.featureTypes = featureTypes;
+        return this;
+    }
+
+    /**
+     * @param parallelism maximum number of bulk queries to run at the same time, defaults to
+     *        {@code 2}
+     */
+    public WarmUpCacheOp setParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism must be > 0");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @param batchSize maximum number of objects requested by each bulk query, defaults to
+     *        {@code 1000}
+     */
+    public WarmUpCacheOp setBatchSize(int batchSize) {
+        checkArgument(batchSize > 0, "batchSize must be > 0");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    protected @Override Result _call() {
+        final ObjectDatabase db = objectDatabase();
+        if (!(db instanceof CachingObjectStore)) {
+            return new Result(0, 0);
+        }
+        final ObjectCache cache = ((CachingObjectStore) db).getCache();
+        final ProgressListener progress = getProgressListener();
+        progress.started();
+
+        final Set<ObjectId> visited = new HashSet<>();
+        final Set<ObjectId> featureTypeIds = ConcurrentHashMap.newKeySet();
+        final AtomicLong treeCount = new AtomicLong();
+        List<ObjectId> level = new ArrayList<>(resolveTrees(db, featureTypeIds));
+        visited.addAll(level);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("geogig-cache-warmup-%d").build());
+        try {
+            boolean full = false;
+            while (!level.isEmpty() && !full && !progress.isCanceled()) {
+                final Deque<Future<List<ObjectId>>> pending = new ArrayDeque<>();
+                final List<ObjectId> next = new ArrayList<>();
+                for (List<ObjectId> batch : Lists.partition(level, batchSize)) {
+                    // wait for a query to finish before checking the cache, so the check accounts
+                    // for all the trees loaded so far
+                    if (pending.size() == parallelism) {
+                        addUnvisited(get(pending.poll()), visited, next);
+                    }
+                    full = isCacheFull(cache);
+                    if (full || progress.isCanceled()) {
+                        break;
+                    }
+                    pending.add(executor.submit(() -> load(db, batch, treeCount, featureTypeIds)));
+                }
+                while (!pending.isEmpty()) {
+                    addUnvisited(get(pending.poll()), visited, next);
+                }
+                progress.setProgress(treeCount.get());
+                level = next;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long featureTypeCount = 0;
+        if (featureTypes && !featureTypeIds.isEmpty() && !progress.isCanceled()) {
+            Iterator<RevFeatureType> types = db.getAll(featureTypeIds,
+                    BulkOpListener.NOOP_LISTENER, RevFeatureType.class);
+            for (; types.hasNext(); types.next()) {
+                featureTypeCount++;
+            }
+        }
+        progress.complete();
+        return new Result(treeCount.get(), featureTypeCount);
+    }
+
+    /**
+     * @return the ids of the trees to start loading from, adding the metadata ids of the trees
+     *         given by {@link #paths} to {@code featureTypeIds}
+     */
+    private Set<ObjectId> resolveTrees(ObjectDatabase db, Set<ObjectId> featureTypeIds) {
+        List<String> refs = this.refs;
+        if (refs.isEmpty()) {
+            refs = new ArrayList<>();
+            for (Ref branch : command(BranchListOp.class).setLocal(true).call()) {
+                refs.add(branch.getName());
+            }
+        }
+        Set<ObjectId> rootTrees = new LinkedHashSet<>();
+        for (String ref : refs) {
+            Optional<ObjectId> treeId = command(ResolveTreeish.class).setTreeish(ref).call();
+            checkArgument(treeId.isPresent(), "%s does not resolve to a tree", ref);
+            rootTrees.add(treeId.get());
+        }
+        if (paths.isEmpty()) {
+            return rootTrees;
+        }
+        Set<ObjectId> trees = new HashSet<>();
+        for (ObjectId rootId : rootTrees) {
+            RevTree root = db.getTree(rootId);
+            for (String path : paths) {
+                Optional<NodeRef> child = command(FindTreeChild.class).setSource(db)
+                        .setParent(root).setChildPath(path).call();
+                if (child.isPresent() && TYPE.TREE.equals(child.get().getType())) {
+                    NodeRef ref = child.get();
+                    trees.add(ref.getObjectId());
+                    if (!ref.getMetadataId().isNull()) {
+                        featureTypeIds.add(ref.getMetadataId());
+                    }
+                }
+            }
+        }
+        return trees;
+    }
+
+    /**
+     * Loads the given trees into the cache, adding the metadata ids of their tree nodes to
+     * {@code featureTypeIds}
+     *
+     * @return the ids of the subtrees and buckets of the loaded trees
+     */
+    private List<ObjectId> load(ObjectDatabase db, List<ObjectId> treeIds, AtomicLong treeCount,
+            Set<ObjectId> featureTypeIds) {
+        List<ObjectId> children = new ArrayList<>();
+        Iterator<RevTree> trees = db.getAll(treeIds, BulkOpListener.NOOP_LISTENER, RevTree.class);
+        while (trees.hasNext()) {
+            RevTree tree = trees.next();
+            treeCount.incrementAndGet();
+            tree.forEachTree(node -> {
+                children.add(node.getObjectId());
+                node.getMetadataId().filter(id -> !id.isNull()).ifPresent(featureTypeIds::add);
+            });
+            tree.forEachBucket(bucket -> children.add(bucket.getObjectId()));
+        }
+        return children;
+    }
+
+    private void addUnvisited(List<ObjectId> ids, Set<ObjectId> visited, List<ObjectId> target) {
+        for (ObjectId id : ids) {
+            if (visited.add(id)) {
+                target.add(id);
+            }
+        }
+    }
+
+    /**
+     * @return whether the shared cache is full, or the share of it of the object database's cache
+     */
+    private boolean isCacheFull(ObjectCache cache) {
+        CacheManager cacheManager = CacheManager.INSTANCE;
+        if (cacheManager.getSizeBytes() >= cacheManager.getMaximumSize()) {
+            return true;
+        }
+        return cache.isFull();
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -10,6 +10,7 @@
 package org.locationtech.geogig.plumbing.diff;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bounded;
 import org.locationtech.geogig.model.Bucket;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.RevTree;
@@ -17,6 +18,7 @@ import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.Consumer;
 import org.locationtech.geogig.repository.DiffObjectCount;
 import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.jts.geom.Envelope;
 
 /**
  * A {@link Consumer} for diffs that computes the number for tree and feature changes between the
@@ -34,6 +36,8 @@ public class DiffCountConsumer extends PreOrderDiffWalk.AbstractConsumer {
 
     private ObjectStore rightSource;
 
+    private @Nullable Envelope boundsFilter;
+
     public DiffCountConsumer(ObjectStore db) {
         this(db, db);
     }
@@ -43,11 +47,26 @@ public class DiffCountConsumer extends PreOrderDiffWalk.AbstractConsumer {
         this.rightSource = rightSource;
     }
 
+    /**
+     * Only counts the features whose bounds intersect {@code bounds}. Added and removed trees are
+     * then only counted as a whole if they're fully contained in {@code bounds}, and buckets are
+     * always traversed, hence this consumer can be used with the walks of spatial index trees.
+     *
+     * @since 2.0
+     */
+    public DiffCountConsumer setBoundsFilter(@Nullable Envelope bounds) {
+        this.boundsFilter = bounds;
+        return this;
+    }
+
     public DiffObjectCount get() {
         return count;
     }
 
     public @Override boolean feature(NodeRef left, NodeRef right) {
+        if (!intersects(left, right)) {
+            return true;
+        }
         if (left == null) {
             count.addedFeatures(1L);
         } else if (right == null) {
@@ -64,6 +83,18 @@ public class DiffCountConsumer extends PreOrderDiffWalk.AbstractConsumer {
             // ignore the call on the root tree and follow the traversal
             return true;
         }
+        if (!intersects(left, right)) {
+            return false;
+        }
+        if ((left == null || right == null) && !contained(node)) {
+            // count the features in the filter bounds one by one
+            if (left == null) {
+                count.addedTrees(1);
+            } else {
+                count.removedTrees(1);
+            }
+            return true;
+        }
         if (left == null || right == null) {
             RevTree tree = (left == null ? rightSource : leftSource).getTree(node.getObjectId());
             addTreeFeatures(tree, left != null, right != null);
@@ -82,6 +113,9 @@ public class DiffCountConsumer extends PreOrderDiffWalk.AbstractConsumer {
     public @Override boolean bucket(NodeRef leftParent, NodeRef rightParent,
             BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
 
+        if (boundsFilter != null) {
+            return intersects(left, right);
+        }
         if (bucketIndex.left().isEmpty() || bucketIndex.right().isEmpty()) {
             Bucket bucket = left == null ? right : left;
             RevTree tree = (left == null ? rightSource : leftSource).getTree(bucket.getObjectId());
@@ -91,6 +125,16 @@ public class DiffCountConsumer extends PreOrderDiffWalk.AbstractConsumer {
         return true;
     }
 
+    private boolean intersects(@Nullable Bounded left, @Nullable Bounded right) {
+        return boundsFilter == null || (left != null && left.intersects(boundsFilter))
+                || (right != null && right.intersects(boundsFilter));
+    }
+
+    private boolean contained(Bounded node) {
+        return boundsFilter == null
+                || node.bounds().map(b -> boundsFilter.contains(b)).orElse(false);
+    }
+
     private boolean addTreeFeatures(RevTree tree, boolean leftPresent, boolean rightPresent) {
         long size = tree.size();
         if (leftPresent && rightPresent) {
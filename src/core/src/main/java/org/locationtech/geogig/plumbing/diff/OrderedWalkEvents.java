@@ -0,0 +1,508 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.Consumer;
+
+import com.google.common.base.Throwables;
+
+import lombok.NonNull;
+
+/**
+ * Runs the tasks of a {@link PreOrderDiffWalk} concurrently and hands their events over to the
+ * walk's consumer in the same order a single threaded walk would.
+ * <p>
+ * Each task records its events in its own {@link Segment}, where the tasks it would fork are left
+ * as placeholder segments at the position their events belong, instead of being joined. The thread
+ * that called {@link #walk} replays the segments depth first, waiting for each one to be filled by
+ * its task as needed.
+ * <p>
+ * Workers don't know what the consumer would return for {@link Consumer#tree} and
+ * {@link Consumer#bucket}, so they walk every pair of trees and buckets, and the replaying thread
+ * skips the events of those the consumer declines, cancelling their pending tasks. To bound the
+ * amount of such speculative work and of events held in memory, at most
+ * {@link #maxPendingSegments} segments are scheduled ahead of the one being replayed. Tasks are
+ * scheduled in replay order, forked by their parent task while under that limit, or else by the
+ * replaying thread as it reaches them, together with their following siblings.
+ * <p>
+ * The replaying thread waits through {@link ForkJoinPool#managedBlock}, so if it is itself a
+ * fork/join worker, its pool may run a spare thread meanwhile instead of losing one to the walk.
+ *
+ * @since 2.0
+ */
+final class OrderedWalkEvents {
+
+    /**
+     * Segment the tasks running in each worker thread record their events to
+     */
+    private static final ThreadLocal<Segment> CURRENT = new ThreadLocal<>();
+
+    private final ForkJoinPool pool;
+
+    private final int maxPendingSegments;
+
+    /**
+     * Segments scheduled and not yet replayed or skipped
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Tasks scheduled and not yet finished
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+
+    private final Consumer recorder = new Recorder();
+
+    OrderedWalkEvents(@NonNull ForkJoinPool pool, int maxPendingSegments) {
+        this.pool = pool;
+        this.maxPendingSegments = maxPendingSegments;
+    }
+
+    /**
+     * @return the consumer the walk tasks shall notify, which records the events to the segment of
+     *         the task running on the calling thread
+     */
+    Consumer recorder() {
+        return recorder;
+    }
+
+    /**
+     * @return whether the segment the calling thread is recording to won't be replayed
+     */
+    boolean isCurrentSkipped() {
+        Segment current = CURRENT.get();
+        return current != null && current.isSkipped();
+    }
+
+    /**
+     * Creates the segment for a task forked by the task running on the calling thread, which shall
+     * be {@link #add added} once assigned to the task
+     */
+    Segment newChild(ForkJoinTask<?> task) {
+        Segment current = CURRENT.get();
+        if (current == null) {
+            throw new IllegalStateException("Not running an ordered walk task");
+        }
+        return new Segment(current, task);
+    }
+
+    /**
+     * Adds the child segment to the segment of the task running on the calling thread, and
+     * schedules its task if not too far ahead of the replaying thread
+     */
+    void add(Segment child) {
+        child.parent.add(child);
+        if (!child.isSkipped() && pending.get() < maxPendingSegments) {
+            submit(child);
+        }
+    }
+
+    /**
+     * Runs the body of a segment's task, recording its events to the segment
+     */
+    void run(Segment segment, Runnable task) {
+        final Segment previous = CURRENT.get();
+        CURRENT.set(segment);
+        try {
+            if (!segment.isSkipped()) {
+                task.run();
+            }
+        } catch (RuntimeException | Error e) {
+            error.compareAndSet(null,
+                    e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e));
+            throw e;
+        } finally {
+            segment.close();
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+            synchronized (running) {
+                if (running.decrementAndGet() == 0) {
+                    running.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the root task of the walk and replays all the events in order to {@code consumer},
+     * returning once done and all scheduled tasks finished
+     *
+     * @param rootTask the root task of the walk, whose segment is {@code root}
+     * @param cancelled tells whether the walk was aborted
+     * @param cancel aborts the walk when {@code consumer} returns {@code false} for a feature
+     */
+    void walk(Segment root, Consumer consumer, BooleanSupplier cancelled, Runnable cancel) {
+        final Deque<Event> open = new ArrayDeque<>();
+        submit(root);
+        try {
+            if (!replay(root, consumer, open, cancelled)) {
+                cancel.run();
+                // notify the end of the trees and buckets being walked, like a single threaded
+                // walk would when unwinding
+                while (!open.isEmpty()) {
+                    open.pop().end(consumer);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel.run();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            cancel.run();
+            throw e;
+        } finally {
+            awaitTasks();
+        }
+        RuntimeException failure = error.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Creates the root segment, for the task started by {@link #walk}
+     */
+    Segment newRoot(ForkJoinTask<?> task) {
+        return new Segment(null, task);
+    }
+
+    /**
+     * @return {@code false} if the walk was cancelled
+     */
+    private boolean replay(Segment segment, Consumer consumer, Deque<Event> open,
+            BooleanSupplier cancelled) throws InterruptedException {
+        // > 0 while skipping the contents of a tree or bucket the consumer declined
+        int skipDepth = 0;
+        Object entry;
+        for (int i = 0; (entry = segment.take(i, this)) != null; i++) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            checkError();
+            if (entry instanceof Segment) {
+                Segment child = (Segment) entry;
+                if (skipDepth > 0) {
+                    skip(child);
+                    continue;
+                }
+                submitFrom(segment, child, i + 1);
+                if (!replay(child, consumer, open, cancelled)) {
+                    return false;
+                }
+                continue;
+            }
+            final Event event = (Event) entry;
+            switch (event.type) {
+            case FEATURE:
+                if (skipDepth == 0 && !consumer.feature(event.left, event.right)) {
+                    return false;
+                }
+                break;
+            case TREE:
+            case BUCKET:
+                if (skipDepth > 0) {
+                    skipDepth++;
+                } else if (event.start(consumer)) {
+                    open.push(event);
+                } else {
+                    skipDepth = 1;
+                }
+                break;
+            case END_TREE:
+            case END_BUCKET:
+                if (skipDepth > 1) {
+                    skipDepth--;
+                } else {
+                    if (skipDepth == 1) {
+                        skipDepth = 0;
+                    } else {
+                        open.pop();
+                    }
+                    event.end(consumer);
+                }
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+        checkError();
+        release(segment);
+        return !cancelled.getAsBoolean();
+    }
+
+    private void checkError() {
+        RuntimeException failure = error.get();
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure);
+        }
+    }
+
+    /**
+     * Schedules the task of {@code child}, which the replaying thread needs next, and as many of
+     * its following siblings, from {@code index} on, as allowed
+     */
+    private void submitFrom(Segment parent, Segment child, int index) {
+        submit(child);
+        List<Segment> siblings = parent.childrenFrom(index);
+        for (int i = 0; i < siblings.size() && pending.get() < maxPendingSegments; i++) {
+            if (!siblings.get(i).isSkipped()) {
+                submit(siblings.get(i));
+            }
+        }
+    }
+
+    private void submit(Segment segment) {
+        if (segment.submitted.compareAndSet(false, true)) {
+            pending.incrementAndGet();
+            running.incrementAndGet();
+            pool.execute(segment.task);
+        }
+    }
+
+    private void release(Segment segment) {
+        if (segment.released.compareAndSet(false, true)) {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Marks the segment as skipped so its task, if running, stops early, and releases it and all
+     * its scheduled descendants, preventing the ones not yet scheduled from being so
+     */
+    private void skip(Segment segment) {
+        segment.skipped = true;
+        if (!segment.submitted.compareAndSet(false, true)) {
+            release(segment);
+            for (Segment child : segment.childrenFrom(0)) {
+                skip(child);
+            }
+        }
+    }
+
+    private void awaitTasks() {
+        synchronized (running) {
+            try {
+                await(running, () -> running.get() == 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits on {@code monitor}, whose lock the calling thread holds, until {@code done} holds,
+     * letting the pool of the calling thread compensate for it if it's a fork/join worker
+     */
+    private static void await(Object monitor, BooleanSupplier done) throws InterruptedException {
+        if (done.getAsBoolean()) {
+            return;
+        }
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            public @Override boolean isReleasable() {
+                return done.getAsBoolean();
+            }
+
+            public @Override boolean block() throws InterruptedException {
+                monitor.wait(100);
+                return done.getAsBoolean();
+            }
+        });
+    }
+
+    /**
+     * The events recorded by a walk task, and the segments of the tasks it forked, in order
+     */
+    static final class Segment {
+
+        private final @Nullable Segment parent;
+
+        private final ForkJoinTask<?> task;
+
+        private final AtomicBoolean submitted = new AtomicBoolean();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private volatile boolean skipped;
+
+        // guarded by this
+        private final List<Object> entries = new ArrayList<>();
+
+        // guarded by this
+        private boolean closed;
+
+        // guarded by this
+        private boolean waiting;
+
+        Segment(@Nullable Segment parent, ForkJoinTask<?> task) {
+            this.parent = parent;
+            this.task = task;
+        }
+
+        boolean isSkipped() {
+            return skipped || (parent != null && parent.isSkipped());
+        }
+
+        synchronized void add(Object entry) {
+            entries.add(entry);
+            if (waiting) {
+                notifyAll();
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            if (waiting) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Waits for the entry at {@code index} and releases the segment's reference to it
+         *
+         * @return the entry, or {@code null} if the segment was closed with no more entries
+         */
+        synchronized @Nullable Object take(int index, OrderedWalkEvents walk)
+                throws InterruptedException {
+            if (index >= entries.size() && !closed) {
+                waiting = true;
+                try {
+                    await(this,
+                            () -> index < entries.size() || closed || walk.error.get() != null);
+                } finally {
+                    waiting = false;
+                }
+            }
+            if (index >= entries.size()) {
+                return null;
+            }
+            return entries.set(index, null);
+        }
+
+        /**
+         * @return the child segments from {@code index} on
+         */
+        synchronized List<Segment> childrenFrom(int index) {
+            List<Segment> children = new ArrayList<>();
+            for (int i = index; i < entries.size(); i++) {
+                Object e = entries.get(i);
+                if (e instanceof Segment) {
+                    children.add((Segment) e);
+                }
+            }
+            return children;
+        }
+    }
+
+    private static enum EventType {
+        FEATURE, TREE, END_TREE, BUCKET, END_BUCKET
+    }
+
+    private static final class Event {
+
+        final EventType type;
+
+        final @Nullable NodeRef left, right;
+
+        final @Nullable BucketIndex bucketIndex;
+
+        final @Nullable Bucket leftBucket, rightBucket;
+
+        Event(EventType type, @Nullable NodeRef left, @Nullable NodeRef right,
+                @Nullable BucketIndex bucketIndex, @Nullable Bucket leftBucket,
+                @Nullable Bucket rightBucket) {
+            this.type = type;
+            this.left = left;
+            this.right = right;
+            this.bucketIndex = bucketIndex;
+            this.leftBucket = leftBucket;
+            this.rightBucket = rightBucket;
+        }
+
+        boolean start(Consumer consumer) {
+            if (type == EventType.TREE) {
+                return consumer.tree(left, right);
+            }
+            return consumer.bucket(left, right, bucketIndex, leftBucket, rightBucket);
+        }
+
+        /**
+         * Notifies the end of the tree or bucket, whether this is the start or end event
+         */
+        void end(Consumer consumer) {
+            if (type == EventType.TREE || type == EventType.END_TREE) {
+                consumer.endTree(left, right);
+            } else {
+                consumer.endBucket(left, right, bucketIndex, leftBucket, rightBucket);
+            }
+        }
+    }
+
+    /**
+     * Records the events to the current thread's segment, and tells the walk to go on with every
+     * pair of trees and buckets
+     */
+    private static final class Recorder implements Consumer {
+
+        private void record(Event event) {
+            Segment current = CURRENT.get();
+            if (current == null) {
+                throw new IllegalStateException("Not running an ordered walk task");
+            }
+            current.add(event);
+        }
+
+        public @Override boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+            record(new Event(EventType.FEATURE, left, right, null, null, null));
+            return true;
+        }
+
+        public @Override boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            record(new Event(EventType.TREE, left, right, null, null, null));
+            return true;
+        }
+
+        public @Override void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            record(new Event(EventType.END_TREE, left, right, null, null, null));
+        }
+
+        public @Override boolean bucket(NodeRef leftParent, NodeRef rightParent,
+                BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+            record(new Event(EventType.BUCKET, leftParent, rightParent, bucketIndex, left,
+                    right));
+            return true;
+        }
+
+        public @Override void endBucket(NodeRef leftParent, NodeRef rightParent,
+                BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+            record(new Event(EventType.END_BUCKET, leftParent, rightParent, bucketIndex, left,
+                    right));
+        }
+    }
+}
@@ -40,6 +40,8 @@ import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.Counter;
+import org.locationtech.geogig.metrics.Metrics;
 import org.locationtech.geogig.model.Bounded;
 import org.locationtech.geogig.model.Bucket;
 import org.locationtech.geogig.model.CanonicalNodeOrder;
@@ -57,6 +59,7 @@ import org.locationtech.jts.geom.Envelope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -112,6 +115,25 @@ public class PreOrderDiffWalk {
         SHARED_FORK_JOIN_POOL = new ForkJoinPool(parallelism, threadFactoryShared, null, asyncMode);
     }
 
+    /**
+     * Single threaded pool {@link #sequential() sequential} walks run on
+     */
+    private static final ForkJoinPool SEQUENTIAL_FORK_JOIN_POOL = new ForkJoinPool(1,
+            threadFactoryPrivate, null, false);
+
+    /**
+     * How many tasks of an order preserving walk may be scheduled ahead of the one whose events are
+     * being notified, per thread in the pool
+     */
+    static final int MAX_PENDING_SEGMENTS_PER_THREAD = 16;
+
+    /**
+     * @return the pool walks run on unless {@link #sequential() sequential}
+     */
+    static ForkJoinPool sharedPool() {
+        return SHARED_FORK_JOIN_POOL;
+    }
+
     public NodeOrdering ORDER = CanonicalNodeOrder.INSTANCE;
 
     /**
@@ -247,6 +269,8 @@ public class PreOrderDiffWalk {
 
     private ForkJoinPool forkJoinPool;
 
+    private boolean preserveIterationOrder;
+
     private CancellableConsumer walkConsumer = null;
 
     private AtomicBoolean finished = new AtomicBoolean(false);
@@ -258,6 +282,15 @@ public class PreOrderDiffWalk {
         this(left, right, leftSource, rightSource, false);
     }
 
+    /**
+     * @param preserveIterationOrder whether to notify the consumer of the differences in the order
+     *        of a depth first traversal of the trees; the walk still runs in parallel, but the
+     *        consumer is only called from the thread calling {@link #walk}, which replays the
+     *        events of the walk tasks in order. If that thread is a fork/join worker, as when
+     *        walking from a task running on the common pool, it blocks while waiting for the walk
+     *        tasks, letting its pool compensate with a spare thread as per
+     *        {@link ForkJoinPool#managedBlock}
+     */
     public PreOrderDiffWalk(RevTree left, RevTree right, ObjectStore leftSource,
             ObjectStore rightSource, boolean preserveIterationOrder) {
 
@@ -270,11 +303,19 @@ public class PreOrderDiffWalk {
         this.right = right;
         this.leftSource = leftSource;
         this.rightSource = rightSource;
-        if (preserveIterationOrder) {
-            forkJoinPool = new ForkJoinPool(1, threadFactoryPrivate, null, false);
-        } else {
-            forkJoinPool = SHARED_FORK_JOIN_POOL;
-        }
+        this.preserveIterationOrder = preserveIterationOrder;
+        this.forkJoinPool = SHARED_FORK_JOIN_POOL;
+    }
+
+    /**
+     * Makes the walk run in a single thread, which notifies the consumer in the same order as when
+     * preserving the iteration order, serving as reference for it
+     */
+    @VisibleForTesting
+    PreOrderDiffWalk sequential() {
+        this.preserveIterationOrder = false;
+        this.forkJoinPool = SEQUENTIAL_FORK_JOIN_POOL;
+        return this;
     }
 
     public void setDefaultMetadataId(ObjectId metadataId) {
@@ -306,19 +347,27 @@ public class PreOrderDiffWalk {
 
         final boolean reportFeatures;
 
+        /**
+         * Non null if the walk preserves the iteration order
+         */
+        final @Nullable OrderedWalkEvents ordered;
+
         WalkInfo(CancellableConsumer consumer, SideInfo left, SideInfo right,
-                NodeOrdering nodeOrder, boolean reportFeatures) {
+                NodeOrdering nodeOrder, boolean reportFeatures,
+                @Nullable OrderedWalkEvents ordered) {
             this.consumer = consumer;
             this.left = left;
             this.right = right;
             this.nodeOrder = nodeOrder;
             this.reportFeatures = reportFeatures;
+            this.ordered = ordered;
         }
 
         public WalkInfo child(NodeRef leftChild, NodeRef rightChild) {
             SideInfo leftInfo = new SideInfo(left.source, leftChild);
             SideInfo rightInfo = new SideInfo(right.source, rightChild);
-            return new WalkInfo(consumer, leftInfo, rightInfo, nodeOrder, reportFeatures);
+            return new WalkInfo(consumer, leftInfo, rightInfo, nodeOrder, reportFeatures,
+                    ordered);
         }
     }
 
@@ -374,12 +423,21 @@ public class PreOrderDiffWalk {
         SideInfo leftInfo = new SideInfo(leftSource, leftRef);
         SideInfo rightInfo = new SideInfo(rightSource, rightRef);
 
-        WalkInfo walkInfo = new WalkInfo(walkConsumer, leftInfo, rightInfo, ORDER, reportFeatures);
-
-        TraverseTree task = new TraverseTree(walkInfo);
-
         try {
-            forkJoinPool.invoke(task);
+            if (preserveIterationOrder) {
+                OrderedWalkEvents ordered = new OrderedWalkEvents(forkJoinPool,
+                        MAX_PENDING_SEGMENTS_PER_THREAD * forkJoinPool.getParallelism());
+                WalkInfo walkInfo = new WalkInfo(walkConsumer.recording(ordered), leftInfo,
+                        rightInfo, ORDER, reportFeatures, ordered);
+                WalkAction task = new TraverseTree(walkInfo);
+                task.segment = ordered.newRoot(task);
+                ordered.walk(task.segment, walkConsumer, walkConsumer::isCancelled,
+                        walkConsumer::abortTraversal);
+            } else {
+                WalkInfo walkInfo = new WalkInfo(walkConsumer, leftInfo, rightInfo, ORDER,
+                        reportFeatures, null);
+                forkJoinPool.invoke(new TraverseTree(walkInfo));
+            }
         } catch (Exception e) {
             if (!(leftSource.isOpen() && rightSource.isOpen())) {
                 // someone closed the repo, we're ok.
@@ -390,7 +448,6 @@ public class PreOrderDiffWalk {
             }
         } finally {
             finished.set(true);
-            cleanupForkJoinPool();
         }
     }
 
@@ -399,13 +456,6 @@ public class PreOrderDiffWalk {
         return this;
     }
 
-    private void cleanupForkJoinPool() {
-        if (forkJoinPool == SHARED_FORK_JOIN_POOL)
-            return; // no need to clean up
-        else
-            forkJoinPool.shutdown(); // private pool needs cleaning
-    }
-
     public void nodeOrder(@NonNull NodeOrdering nodeOrder) {
         this.ORDER = nodeOrder;
     }
@@ -432,6 +482,12 @@ public class PreOrderDiffWalk {
 
         protected final BucketIndex bucketIndex;
 
+        /**
+         * Where the task records its events if the walk preserves the iteration order and the task
+         * was forked rather than computed by its parent
+         */
+        private @Nullable OrderedWalkEvents.Segment segment;
+
         WalkAction(WalkInfo walkInfo) {
             this(walkInfo, BucketIndex.EMPTY);
         }
@@ -443,6 +499,33 @@ public class PreOrderDiffWalk {
             this.bucketIndex = bucketIndex;
         }
 
+        protected final @Override void compute() {
+            if (segment == null) {
+                traverse();
+            } else {
+                info.ordered.run(segment, this::traverse);
+            }
+        }
+
+        protected abstract void traverse();
+
+        /**
+         * Runs the tasks in parallel, waiting for them to finish, or if the walk preserves the
+         * iteration order, schedules them for their events to be replayed after the ones the
+         * calling task has notified so far, without waiting
+         */
+        void invokeChildren(List<WalkAction> tasks) {
+            final OrderedWalkEvents ordered = info.ordered;
+            if (ordered == null) {
+                invokeAll(tasks);
+                return;
+            }
+            for (WalkAction task : tasks) {
+                task.segment = ordered.newChild(task);
+                ordered.add(task.segment);
+            }
+        }
+
         TraverseTree traverseTree(@Nullable NodeRef left, @Nullable NodeRef right) {
             checkArgument(left != null || right != null);
             WalkInfo treeInfo = info.child(left, right);
@@ -749,7 +832,7 @@ public class PreOrderDiffWalk {
             super(walkInfo);
         }
 
-        protected @Override void compute() {
+        protected @Override void traverse() {
             final @Nullable NodeRef leftNode = info.left.parentRef;
             final @Nullable NodeRef rightNode = info.right.parentRef;
             if (Objects.equal(leftNode, rightNode)) {
@@ -791,7 +874,7 @@ public class PreOrderDiffWalk {
             this.right = right;
         }
 
-        protected @Override void compute() {
+        protected @Override void traverse() {
             if (Objects.equal(left, right)) {
                 return;
             }
@@ -827,7 +910,7 @@ public class PreOrderDiffWalk {
             }
 
             if (!info.consumer.isCancelled()) {
-                invokeAll(tasks);
+                invokeChildren(tasks);
             }
         }
 
@@ -850,7 +933,7 @@ public class PreOrderDiffWalk {
          * Traverse and compare the {@link RevObjects#children() children} nodes of two leaf trees,
          * calling {@link #node(Consumer, Node, Node)} for each diff.
          */
-        protected @Override void compute() {
+        protected @Override void traverse() {
             if (info.consumer.isCancelled()) {
                 return;
             }
@@ -911,7 +994,7 @@ public class PreOrderDiffWalk {
             }
 
             if (!info.consumer.isCancelled()) {
-                invokeAll(tasks);
+                invokeChildren(tasks);
             }
         }
 
@@ -965,7 +1048,7 @@ public class PreOrderDiffWalk {
          * @precondition {@code left.isEmpty() || left.buckets().isPresent()}
          * @precondition {@code right.isEmpty() || right.buckets().isPresent()}
          */
-        protected @Override void compute() {
+        protected @Override void traverse() {
             if (info.consumer.isCancelled()) {
                 return;
             }
@@ -977,7 +1060,7 @@ public class PreOrderDiffWalk {
             final BucketIndex index = super.bucketIndex;
 
             if (info.consumer.bucket(leftParent, rightParent, index, leftBucket, rightBucket)) {
-                super.compute();
+                super.traverse();
             }
             info.consumer.endBucket(leftParent, rightParent, index, leftBucket, rightBucket);
         }
@@ -1015,7 +1098,7 @@ public class PreOrderDiffWalk {
          * 
          * @precondition {@code left.buckets().isPresent()}
          */
-        protected @Override void compute() {
+        protected @Override void traverse() {
             final CancellableConsumer consumer = info.consumer;
             if (consumer.isCancelled()) {
                 return;
@@ -1033,7 +1116,7 @@ public class PreOrderDiffWalk {
                         task.compute();
                     } else {
                         List<WalkAction> tasks = bucketLeaf(leftTree, rightLeafTree, rightNodes);
-                        invokeAll(tasks);
+                        invokeChildren(tasks);
                     }
                 } else {
                     TraverseTreeContents task = traverseTreeContents(leftTree, RevTree.EMPTY);
@@ -1076,7 +1159,7 @@ public class PreOrderDiffWalk {
          * 
          * @precondition {@code right.buckets().isPresent()}
          */
-        protected @Override void compute() {
+        protected @Override void traverse() {
             final CancellableConsumer consumer = info.consumer;
             if (consumer.isCancelled()) {
                 return;
@@ -1094,7 +1177,7 @@ public class PreOrderDiffWalk {
                         task.compute();
                     } else {
                         List<WalkAction> tasks = leafBucket(leftNodes, leftTree, rightTree);
-                        invokeAll(tasks);
+                        invokeChildren(tasks);
                     }
                 } else {
                     TraverseTreeContents task = traverseTreeContents(RevTree.EMPTY, rightTree);
@@ -1356,24 +1439,70 @@ public class PreOrderDiffWalk {
         }
     }
 
+    /**
+     * Counts the differences reported by all walks, as the {@code diff.features},
+     * {@code diff.trees}, and {@code diff.buckets} {@link Metrics metrics}
+     */
     private static final class CancellableConsumer extends ForwardingConsumer {
 
-        private final AtomicBoolean cancel = new AtomicBoolean();
+        private static final Counter FEATURES = Metrics.counter("diff.features");
+
+        private static final Counter TREES = Metrics.counter("diff.trees");
+
+        private static final Counter BUCKETS = Metrics.counter("diff.buckets");
+
+        private final AtomicBoolean cancel;
+
+        /**
+         * Non null if this consumer records the events of an order preserving walk, in which case
+         * they're not counted, since they're counted when replayed
+         */
+        private final @Nullable OrderedWalkEvents ordered;
 
         public CancellableConsumer(Consumer delegate) {
+            this(delegate, new AtomicBoolean(), null);
+        }
+
+        private CancellableConsumer(Consumer delegate, AtomicBoolean cancel,
+                @Nullable OrderedWalkEvents ordered) {
             super(delegate);
+            this.cancel = cancel;
+            this.ordered = ordered;
+        }
+
+        /**
+         * @return a consumer for the tasks of an order preserving walk, that records their events
+         *         to be replayed to this one, and is cancelled along with it
+         */
+        CancellableConsumer recording(OrderedWalkEvents ordered) {
+            return new CancellableConsumer(ordered.recorder(), cancel, ordered);
         }
 
         private void abortTraversal() {
             this.cancel.set(true);
         }
 
+        /**
+         * @return whether the walk was aborted, or the events the calling task would record won't
+         *         be replayed
+         */
         public boolean isCancelled() {
-            return this.cancel.get();
+            return this.cancel.get() || (ordered != null && ordered.isCurrentSkipped());
+        }
+
+        private void count(Counter counter) {
+            if (ordered == null) {
+                counter.inc();
+            }
         }
 
         public @Override boolean feature(NodeRef left, NodeRef right) {
-            boolean continuteTraversal = !isCancelled() && delegate.feature(left, right);
+            count(FEATURES);
+            if (isCancelled()) {
+                // don't abort the whole walk if only this task's events are being skipped
+                return false;
+            }
+            boolean continuteTraversal = delegate.feature(left, right);
             if (!continuteTraversal) {
                 abortTraversal();
             }
@@ -1381,11 +1510,13 @@ public class PreOrderDiffWalk {
         }
 
         public @Override boolean tree(NodeRef left, NodeRef right) {
+            count(TREES);
             return !isCancelled() && delegate.tree(left, right);
         }
 
         public @Override boolean bucket(NodeRef leftParent, NodeRef rightParent,
                 BucketIndex bucketIndex, Bucket left, Bucket right) {
+            count(BUCKETS);
             return !isCancelled()
                     && delegate.bucket(leftParent, rightParent, bucketIndex, left, right);
         }
@@ -0,0 +1,271 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing.diff;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.QuadTreeBuilder;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.Consumer;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.geogig.repository.impl.DepthSearch;
+import org.locationtech.geogig.storage.IndexDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.jts.geom.Envelope;
+
+import lombok.NonNull;
+
+/**
+ * A {@link Consumer} decorator that, for each pair of feature type trees its delegate agrees to
+ * traverse, walks the differences between their spatial index trees instead of the canonical ones,
+ * if both have been indexed.
+ * <p>
+ * Quad-tree buckets have tight bounds and group features by location, so when the delegate prunes
+ * buckets by bounds (e.g. a {@link BoundsFilteringDiffConsumer}), only the quadrants that intersect
+ * the filter are walked, instead of every changed canonical bucket in the layer.
+ * <p>
+ * The delegate is notified of the indexed trees' features and buckets as if they were the
+ * canonical ones, with the feature type trees as parents. The order in which the features of an
+ * indexed layer are reported is the index's order, not the canonical one. Feature type trees that
+ * are not indexed at both sides, or whose index trees are not up to date, are walked as usual.
+ * <p>
+ * A feature whose bounds changed may be in a different quadrant at each side, for which the walk
+ * of the index trees finds a removal and an addition, or just one of them if the other quadrant is
+ * pruned by the delegate. The other side of such features is looked up by name in the canonical
+ * trees, so that they're reported once as modified, like the walk of the canonical trees does.
+ *
+ * @since 2.0
+ */
+public final class SpatialIndexDiffConsumer extends PreOrderDiffWalk.ForwardingConsumer {
+
+    private final ObjectStore leftSource, rightSource;
+
+    private final IndexDatabase leftIndexes, rightIndexes;
+
+    private final boolean preserveIterationOrder;
+
+    private volatile boolean cancelled;
+
+    /**
+     * @param leftSource where to find the canonical trees of the left side of the walk
+     * @param rightSource where to find the canonical trees of the right side of the walk
+     * @param leftIndexes where to find the spatial index trees of the left side of the walk
+     * @param rightIndexes where to find the spatial index trees of the right side of the walk
+     * @param preserveIterationOrder whether the walks of the indexed trees shall preserve the
+     *        iteration order, should be the same as for the walk this consumer is used with
+     */
+    public SpatialIndexDiffConsumer(@NonNull ObjectStore leftSource,
+            @NonNull ObjectStore rightSource, @NonNull IndexDatabase leftIndexes,
+            @NonNull IndexDatabase rightIndexes, boolean preserveIterationOrder,
+            @NonNull Consumer delegate) {
+        super(delegate);
+        this.leftSource = leftSource;
+        this.rightSource = rightSource;
+        this.leftIndexes = leftIndexes;
+        this.rightIndexes = rightIndexes;
+        this.preserveIterationOrder = preserveIterationOrder;
+    }
+
+    public @Override boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+        if (cancelled || !super.tree(left, right)) {
+            return false;
+        }
+        final NodeRef node = left == null ? right : left;
+        if (NodeRef.ROOT.equals(node.name())) {
+            return true;
+        }
+        Optional<IndexedTrees> indexed = resolveIndexedTrees(node.path(), left, right);
+        if (!indexed.isPresent()) {
+            return true;
+        }
+        IndexedTrees trees = indexed.get();
+        PreOrderDiffWalk walk = new PreOrderDiffWalk(trees.left, trees.right, leftIndexes,
+                rightIndexes, preserveIterationOrder);
+        walk.nodeOrder(QuadTreeBuilder.nodeOrdering(trees.maxBounds));
+        walk.walk(new IndexedTreeConsumer(left, right));
+        // the delegate was already notified of the tree contents, skip the canonical trees
+        return false;
+    }
+
+    public @Override boolean bucket(NodeRef leftParent, NodeRef rightParent,
+            BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+        return !cancelled && super.bucket(leftParent, rightParent, bucketIndex, left, right);
+    }
+
+    public @Override boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+        return !cancelled && super.feature(left, right);
+    }
+
+    private Optional<IndexedTrees> resolveIndexedTrees(String treePath, @Nullable NodeRef left,
+            @Nullable NodeRef right) {
+        final IndexInfo index = leftIndexes.getIndexInfos(treePath).stream()
+                .filter(i -> IndexType.QUADTREE.equals(i.getIndexType())).findFirst()
+                .orElse(null);
+        if (index == null || !rightIndexes.getIndexInfo(treePath, index.getAttributeName())
+                .filter(index::equals).isPresent()) {
+            return Optional.empty();
+        }
+        final Envelope maxBounds = IndexInfo.getMaxBounds(index);
+        if (maxBounds == null) {
+            return Optional.empty();
+        }
+        RevTree leftTree = resolveIndexedTree(leftIndexes, index, left);
+        RevTree rightTree = leftTree == null ? null
+                : resolveIndexedTree(rightIndexes, index, right);
+        if (leftTree == null || rightTree == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new IndexedTrees(leftTree, rightTree, maxBounds));
+    }
+
+    private @Nullable RevTree resolveIndexedTree(IndexDatabase indexes, IndexInfo index,
+            @Nullable NodeRef canonical) {
+        if (canonical == null || RevTree.EMPTY_TREE_ID.equals(canonical.getObjectId())) {
+            return RevTree.EMPTY;
+        }
+        ObjectId indexedTreeId = indexes.resolveIndexedTree(index, canonical.getObjectId())
+                .orElse(null);
+        if (indexedTreeId == null) {
+            return null;
+        }
+        return RevTree.EMPTY_TREE_ID.equals(indexedTreeId) ? RevTree.EMPTY
+                : indexes.getTree(indexedTreeId);
+    }
+
+    private static class IndexedTrees {
+        final RevTree left, right;
+
+        final Envelope maxBounds;
+
+        IndexedTrees(RevTree left, RevTree right, Envelope maxBounds) {
+            this.left = left;
+            this.right = right;
+            this.maxBounds = maxBounds;
+        }
+    }
+
+    /**
+     * Forwards the events of the walk of the indexed trees to the delegate, with the canonical
+     * feature type trees as parents, ignoring the events for the indexed trees themselves, and
+     * pairing the removal and addition of features that moved to another quadrant into a single
+     * modification
+     */
+    private class IndexedTreeConsumer implements Consumer {
+
+        private final @Nullable NodeRef leftTree, rightTree;
+
+        private RevTree leftCanonical, rightCanonical;
+
+        /**
+         * Names of the moved features already reported whose other side has not been found yet
+         */
+        private final Set<String> moved = ConcurrentHashMap.newKeySet();
+
+        IndexedTreeConsumer(@Nullable NodeRef leftTree, @Nullable NodeRef rightTree) {
+            this.leftTree = leftTree;
+            this.rightTree = rightTree;
+        }
+
+        public @Override boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+            if (cancelled) {
+                return false;
+            }
+            Node leftNode = left == null ? null : left.getNode();
+            Node rightNode = right == null ? null : right.getNode();
+            if (leftNode == null || rightNode == null) {
+                final String name = (left == null ? right : left).name();
+                if (leftNode == null) {
+                    leftNode = find(leftSource, leftCanonical(), name);
+                } else {
+                    rightNode = find(rightSource, rightCanonical(), name);
+                }
+                if (leftNode != null && rightNode != null) {
+                    // moved to another quadrant, report it as modified only once, and not at
+                    // all if it's the same feature
+                    if (sameObject(leftNode, rightNode) || !moved.add(name)) {
+                        moved.remove(name);
+                        return true;
+                    }
+                }
+            }
+            boolean continueTraversal = delegate.feature(child(leftTree, leftNode),
+                    child(rightTree, rightNode));
+            if (!continueTraversal) {
+                // abort the walk of the canonical trees too
+                cancelled = true;
+            }
+            return continueTraversal;
+        }
+
+        public @Override boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            return !cancelled;
+        }
+
+        public @Override void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
+            // the delegate is notified of the end of the canonical trees instead
+        }
+
+        public @Override boolean bucket(NodeRef leftParent, NodeRef rightParent,
+                BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+            return !cancelled && delegate.bucket(leftTree, rightTree, bucketIndex, left, right);
+        }
+
+        public @Override void endBucket(NodeRef leftParent, NodeRef rightParent,
+                BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+            delegate.endBucket(leftTree, rightTree, bucketIndex, left, right);
+        }
+
+        private synchronized RevTree leftCanonical() {
+            if (leftCanonical == null) {
+                leftCanonical = canonical(leftSource, leftTree);
+            }
+            return leftCanonical;
+        }
+
+        private synchronized RevTree rightCanonical() {
+            if (rightCanonical == null) {
+                rightCanonical = canonical(rightSource, rightTree);
+            }
+            return rightCanonical;
+        }
+
+        private RevTree canonical(ObjectStore source, @Nullable NodeRef tree) {
+            if (tree == null || RevTree.EMPTY_TREE_ID.equals(tree.getObjectId())) {
+                return RevTree.EMPTY;
+            }
+            return source.getTree(tree.getObjectId());
+        }
+
+        private @Nullable Node find(ObjectStore source, RevTree canonical, String name) {
+            return new DepthSearch(source).getDirectChild(canonical, name, 0).orElse(null);
+        }
+
+        private boolean sameObject(Node left, Node right) {
+            return left.getObjectId().equals(right.getObjectId())
+                    && left.getMetadataId().equals(right.getMetadataId());
+        }
+
+        private @Nullable NodeRef child(@Nullable NodeRef parent, @Nullable Node node) {
+            if (node == null) {
+                return null;
+            }
+            return NodeRef.create(parent.path(), node, parent.getMetadataId());
+        }
+    }
+}
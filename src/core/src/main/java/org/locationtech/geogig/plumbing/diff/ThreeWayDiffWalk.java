@@ -0,0 +1,500 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing.diff;
+
+import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.CanonicalNodeOrder;
+import org.locationtech.geogig.model.DiffEntry;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.NodeOrdering;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevObjectFactory;
+import org.locationtech.geogig.model.RevObjects;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.ObjectStore;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import lombok.NonNull;
+
+/**
+ * Walks the trees of a merge's common ancestor, and of the "ours" and "theirs" sides of the merge,
+ * at the same time, reporting each node "theirs" changed with respect to the ancestor together with
+ * the node "ours" has at the same path.
+ * <p>
+ * Trees and buckets "theirs" shares with the ancestor are not walked, since "theirs" changed
+ * nothing in them, and neither are those "theirs" shares with "ours" if both give their nodes the
+ * same default metadata id, since both sides changed them in the same way. For the same reason, no
+ * node both sides changed in the same way is reported.
+ * <p>
+ * The trees of each level are loaded for the three sides at once, and the buckets of a level are
+ * walked in parallel on the same pool as {@link PreOrderDiffWalk}. The results are still returned
+ * in the order of a depth first traversal of the trees, by the thread iterating over them, the same
+ * way an order preserving {@link PreOrderDiffWalk} notifies its consumer.
+ *
+ * @since 2.0
+ */
+public class ThreeWayDiffWalk {
+
+    private static final int ANCESTOR = 0, OURS = 1, THEIRS = 2;
+
+    private final ObjectStore source;
+
+    private final RevTree ancestor;
+
+    private final RevTree ours;
+
+    private final RevTree theirs;
+
+    private final NodeOrdering order = CanonicalNodeOrder.INSTANCE;
+
+    public ThreeWayDiffWalk(@NonNull ObjectStore source, @NonNull RevTree ancestor,
+            @NonNull RevTree ours, @NonNull RevTree theirs) {
+        this.source = source;
+        this.ancestor = ancestor;
+        this.ours = ours;
+        this.theirs = theirs;
+    }
+
+    /**
+     * A path changed by "theirs", with the ancestor, "ours", and "theirs" versions of it; at least
+     * one of them is not {@code null}, and the ancestor and "theirs" versions are different
+     */
+    public static final class MergeDiff {
+
+        private final @Nullable NodeRef ancestor;
+
+        private final @Nullable NodeRef ours;
+
+        private final @Nullable NodeRef theirs;
+
+        MergeDiff(@Nullable NodeRef ancestor, @Nullable NodeRef ours, @Nullable NodeRef theirs) {
+            this.ancestor = ancestor;
+            this.ours = ours;
+            this.theirs = theirs;
+        }
+
+        public @Nullable NodeRef ancestor() {
+            return ancestor;
+        }
+
+        public @Nullable NodeRef ours() {
+            return ours;
+        }
+
+        public @Nullable NodeRef theirs() {
+            return theirs;
+        }
+
+        public String path() {
+            return (theirs != null ? theirs : ancestor).path();
+        }
+
+        /**
+         * @return the change "ours" made to the path, or {@code null} if it didn't change it
+         */
+        public @Nullable DiffEntry oursDiff() {
+            Node a = ancestor == null ? null : ancestor.getNode();
+            Node o = ours == null ? null : ours.getNode();
+            return Objects.equal(a, o) ? null : new DiffEntry(ancestor, ours);
+        }
+
+        /**
+         * @return the change "theirs" made to the path
+         */
+        public DiffEntry theirsDiff() {
+            return new DiffEntry(ancestor, theirs);
+        }
+
+        public @Override String toString() {
+            return String.format("%s[ancestor: %s, ours: %s, theirs: %s]", path(),
+                    ancestor == null ? null : ancestor.getObjectId(),
+                    ours == null ? null : ours.getObjectId(),
+                    theirs == null ? null : theirs.getObjectId());
+        }
+    }
+
+    /**
+     * Starts walking the trees, the walk is stopped when the returned iterator is closed
+     */
+    public AutoCloseableIterator<MergeDiff> iterator() {
+        ForkJoinPool pool = PreOrderDiffWalk.sharedPool();
+        int maxPending = PreOrderDiffWalk.MAX_PENDING_SEGMENTS_PER_THREAD * pool.getParallelism();
+        return new Walk(pool, maxPending);
+    }
+
+    private final class Walk implements AutoCloseableIterator<MergeDiff> {
+
+        private final ForkJoinPool pool;
+
+        private final int maxPendingSegments;
+
+        /**
+         * Segments scheduled and not yet replayed
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private final Deque<Cursor> stack = new ArrayDeque<>();
+
+        private MergeDiff next;
+
+        Walk(ForkJoinPool pool, int maxPendingSegments) {
+            this.pool = pool;
+            this.maxPendingSegments = maxPendingSegments;
+            Node root = RevObjectFactory.defaultInstance().createNode(NodeRef.ROOT,
+                    ObjectId.NULL, ObjectId.NULL, TYPE.TREE, null, null);
+            NodeRef rootRef = NodeRef.createRoot(root);
+            Object[] inputs = { ancestor, ours, theirs };
+            if (!prune(inputs, rootRef, rootRef)) {
+                Segment segment = new Segment(NodeRef.ROOT,
+                        new NodeRef[] { rootRef, rootRef, rootRef }, 0, inputs);
+                segment.schedule();
+                stack.push(new Cursor(replay(segment)));
+            }
+        }
+
+        public @Override boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = computeNext();
+                } catch (RuntimeException e) {
+                    close();
+                    throw e;
+                }
+            }
+            return next != null;
+        }
+
+        public @Override MergeDiff next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            MergeDiff diff = next;
+            next = null;
+            return diff;
+        }
+
+        public @Override void close() {
+            cancelled.set(true);
+            stack.clear();
+        }
+
+        private @Nullable MergeDiff computeNext() {
+            while (!stack.isEmpty()) {
+                final Cursor cursor = stack.peek();
+                final List<Object> items = cursor.segment.items;
+                if (cursor.index == items.size()) {
+                    stack.pop();
+                    continue;
+                }
+                final Object item = items.get(cursor.index++);
+                if (item instanceof MergeDiff) {
+                    return (MergeDiff) item;
+                }
+                // schedule the segment and the following ones its parent couldn't, in order
+                cursor.scheduled = Math.max(cursor.scheduled, cursor.index);
+                ((Segment) item).schedule();
+                while (cursor.scheduled < items.size() && pending.get() < maxPendingSegments) {
+                    Object sibling = items.get(cursor.scheduled++);
+                    if (sibling instanceof Segment) {
+                        ((Segment) sibling).schedule();
+                    }
+                }
+                stack.push(new Cursor(replay((Segment) item)));
+            }
+            return null;
+        }
+
+        private Segment replay(Segment segment) {
+            try {
+                segment.join();
+            } finally {
+                pending.decrementAndGet();
+            }
+            return segment;
+        }
+
+        /**
+         * @return whether the trees at the three sides, either {@link RevTree}s, bucket tree ids,
+         *         or lists of nodes, contain no change from "theirs" worth reporting
+         */
+        private boolean prune(Object[] inputs, NodeRef oursParent, NodeRef theirsParent) {
+            final Object a = id(inputs[ANCESTOR]);
+            final Object o = id(inputs[OURS]);
+            final Object t = id(inputs[THEIRS]);
+            if (t == null) {
+                return a == null;
+            }
+            if (t instanceof ObjectId) {
+                return t.equals(a) || (t.equals(o)
+                        && oursParent.getMetadataId().equals(theirsParent.getMetadataId()));
+            }
+            return false;
+        }
+
+        private @Nullable Object id(@Nullable Object input) {
+            if (input instanceof RevTree) {
+                RevTree tree = (RevTree) input;
+                return tree.isEmpty() ? null : tree.getId();
+            }
+            if (input instanceof ObjectId) {
+                return RevTree.EMPTY_TREE_ID.equals(input) ? null : input;
+            }
+            return input;
+        }
+
+        private final class Cursor {
+
+            final Segment segment;
+
+            int index;
+
+            /**
+             * Index of the first item not yet checked for scheduling
+             */
+            int scheduled;
+
+            Cursor(Segment segment) {
+                this.segment = segment;
+            }
+        }
+
+        /**
+         * The walk of a tree, or of a bucket of it, at the three sides; records the differences
+         * found at its level and leaves a placeholder segment for each tree or bucket to walk
+         * below it
+         */
+        @SuppressWarnings("serial")
+        private final class Segment extends RecursiveAction {
+
+            private final String parentPath;
+
+            private final NodeRef[] parents;
+
+            private final int depth;
+
+            /**
+             * For each side, either a {@link RevTree}, the id of a bucket tree, a list of nodes,
+             * or {@code null}
+             */
+            private final Object[] inputs;
+
+            private final AtomicBoolean scheduled = new AtomicBoolean();
+
+            final List<Object> items = new ArrayList<>();
+
+            Segment(String parentPath, NodeRef[] parents, int depth, Object[] inputs) {
+                this.parentPath = parentPath;
+                this.parents = parents;
+                this.depth = depth;
+                this.inputs = inputs;
+            }
+
+            void schedule() {
+                if (scheduled.compareAndSet(false, true)) {
+                    pending.incrementAndGet();
+                    if (getPool() == pool) {
+                        fork();
+                    } else {
+                        pool.execute(this);
+                    }
+                }
+            }
+
+            protected @Override void compute() {
+                if (cancelled.get()) {
+                    return;
+                }
+                final RevTree[] bucketTrees = new RevTree[3];
+                final List<List<Node>> nodes = resolve(bucketTrees);
+                if (bucketTrees[ANCESTOR] == null && bucketTrees[OURS] == null
+                        && bucketTrees[THEIRS] == null) {
+                    compareNodes(nodes);
+                } else {
+                    compareBuckets(bucketTrees, nodes);
+                }
+                for (Object item : items) {
+                    if (pending.get() >= maxPendingSegments || cancelled.get()) {
+                        break;
+                    }
+                    if (item instanceof Segment) {
+                        ((Segment) item).schedule();
+                    }
+                }
+            }
+
+            /**
+             * Loads the trees of all sides at once, setting the ones with buckets to
+             * {@code bucketTrees}
+             *
+             * @return the nodes of each side not given as a bucket tree, in order
+             */
+            private List<List<Node>> resolve(RevTree[] bucketTrees) {
+                Set<ObjectId> ids = new HashSet<>();
+                for (Object input : inputs) {
+                    if (input instanceof ObjectId && !RevTree.EMPTY_TREE_ID.equals(input)) {
+                        ids.add((ObjectId) input);
+                    }
+                }
+                Map<ObjectId, RevTree> trees = new HashMap<>();
+                if (!ids.isEmpty()) {
+                    source.getAll(ids, NOOP_LISTENER, RevTree.class)
+                            .forEachRemaining(tree -> trees.put(tree.getId(), tree));
+                }
+                List<List<Node>> nodes = new ArrayList<>(3);
+                for (int side = 0; side < 3; side++) {
+                    final Object input = inputs[side];
+                    RevTree tree = null;
+                    if (input instanceof RevTree) {
+                        tree = (RevTree) input;
+                    } else if (input instanceof ObjectId) {
+                        tree = RevTree.EMPTY_TREE_ID.equals(input) ? RevTree.EMPTY
+                                : trees.get(input);
+                        if (tree == null) {
+                            throw new IllegalStateException("Tree not found: " + input);
+                        }
+                    }
+                    if (tree != null && tree.bucketsSize() > 0) {
+                        bucketTrees[side] = tree;
+                        nodes.add(Collections.emptyList());
+                    } else if (tree != null) {
+                        nodes.add(ImmutableList.copyOf(RevObjects.children(tree, order)));
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        List<Node> list = input == null ? Collections.emptyList()
+                                : (List<Node>) input;
+                        nodes.add(list);
+                    }
+                }
+                return nodes;
+            }
+
+            private void compareBuckets(RevTree[] bucketTrees, List<List<Node>> nodes) {
+                SortedMap<Integer, Object[]> children = new TreeMap<>();
+                for (int side = 0; side < 3; side++) {
+                    final int s = side;
+                    if (bucketTrees[side] != null) {
+                        for (Bucket bucket : bucketTrees[side].getBuckets()) {
+                            children.computeIfAbsent(bucket.getIndex(),
+                                    i -> new Object[3])[s] = bucket.getObjectId();
+                        }
+                    } else {
+                        for (Node node : nodes.get(side)) {
+                            Object[] child = children.computeIfAbsent(order.bucket(node, depth),
+                                    i -> new Object[3]);
+                            if (child[s] == null) {
+                                child[s] = new ArrayList<Node>();
+                            }
+                            @SuppressWarnings("unchecked")
+                            List<Node> list = (List<Node>) child[s];
+                            list.add(node);
+                        }
+                    }
+                }
+                for (Object[] child : children.values()) {
+                    if (!prune(child, parents[OURS], parents[THEIRS])) {
+                        items.add(new Segment(parentPath, parents, depth + 1, child));
+                    }
+                }
+            }
+
+            private void compareNodes(List<List<Node>> nodes) {
+                final int[] index = new int[3];
+                final Node[] heads = new Node[3];
+                while (!cancelled.get()) {
+                    Node min = null;
+                    for (int side = 0; side < 3; side++) {
+                        List<Node> list = nodes.get(side);
+                        heads[side] = index[side] < list.size() ? list.get(index[side]) : null;
+                        if (heads[side] != null
+                                && (min == null || order.compare(heads[side], min) < 0)) {
+                            min = heads[side];
+                        }
+                    }
+                    if (min == null) {
+                        break;
+                    }
+                    for (int side = 0; side < 3; side++) {
+                        if (heads[side] != null && order.compare(heads[side], min) == 0) {
+                            index[side]++;
+                        } else {
+                            heads[side] = null;
+                        }
+                    }
+                    compare(heads[ANCESTOR], heads[OURS], heads[THEIRS]);
+                }
+            }
+
+            private void compare(@Nullable Node a, @Nullable Node o, @Nullable Node t) {
+                if (Objects.equal(t, a)) {
+                    return;
+                }
+                final NodeRef[] refs = new NodeRef[3];
+                final Node[] nodes = { a, o, t };
+                final Object[] subtrees = new Object[3];
+                boolean isTree = false;
+                for (int side = 0; side < 3; side++) {
+                    Node node = nodes[side];
+                    if (node != null) {
+                        refs[side] = NodeRef.create(parentPath, node,
+                                parents[side].getMetadataId());
+                        if (TYPE.TREE == node.getType()) {
+                            subtrees[side] = node.getObjectId();
+                            isTree = true;
+                        }
+                    }
+                }
+                if (Objects.equal(t, o) && (t == null
+                        || refs[OURS].getMetadataId().equals(refs[THEIRS].getMetadataId()))) {
+                    // changed the same way on both sides
+                    return;
+                }
+                items.add(new MergeDiff(refs[ANCESTOR], refs[OURS], refs[THEIRS]));
+                if (isTree) {
+                    NodeRef[] treeRefs = new NodeRef[3];
+                    for (int side = 0; side < 3; side++) {
+                        treeRefs[side] = refs[side] == null ? parents[side] : refs[side];
+                    }
+                    if (!prune(subtrees, treeRefs[OURS], treeRefs[THEIRS])) {
+                        String path = refs[THEIRS] == null ? refs[ANCESTOR].path()
+                                : refs[THEIRS].path();
+                        items.add(new Segment(path, treeRefs, 0, subtrees));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -12,9 +12,19 @@ package org.locationtech.geogig.plumbing.index;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.NodeRef;
@@ -23,20 +33,37 @@ import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.plumbing.FindTreeChild;
-import org.locationtech.geogig.plumbing.ResolveTreeish;
 import org.locationtech.geogig.porcelain.BranchListOp;
 import org.locationtech.geogig.porcelain.LogOp;
 import org.locationtech.geogig.porcelain.index.IndexUtils;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
+import org.locationtech.geogig.repository.DefaultProgressListener;
 import org.locationtech.geogig.repository.IndexInfo;
 import org.locationtech.geogig.repository.ProgressListener;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Builds an index for every commit a given type tree is present at. Returns the number of trees
  * that were built.
+ * <p>
+ * Each distinct version of the type tree is indexed once, incrementally from the index of its
+ * previous version, with independent versions indexed concurrently.
  */
 public class BuildFullHistoryIndexOp extends AbstractGeoGigOp<Integer> {
 
+    /**
+     * Maximum number of index trees built concurrently
+     */
+    private static final int PARALLELISM = Math.max(1,
+            Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Minimum number of incremental builds before building a tree from scratch
+     */
+    private static final int MIN_CHAIN_LENGTH = 16;
+
     private String treeRefSpec;
 
     private @Nullable String attributeName;
@@ -94,73 +121,189 @@ public class BuildFullHistoryIndexOp extends AbstractGeoGigOp<Integer> {
 
     /**
      * Builds an index on every reachable commit in the history.
+     * <p>
+     * Each distinct version of the feature type tree is indexed once, incrementally from the
+     * version at its commit's parent, so that the builds form chains that follow the history.
+     * Chains longer than a share of the total work are split by building some versions from
+     * scratch, and independent chains are built concurrently.
      * 
      * @param index the {@link IndexInfo} to use
      * @return the number of trees that were built
      */
     private int indexHistory(IndexInfo index) {
+        final ProgressListener listener = getProgressListener();
+        // canonical tree -> canonical tree to build its index from, EMPTY_TREE_ID if none
+        final Map<ObjectId, ObjectId> bases = new LinkedHashMap<>();
+        // canonical tree -> feature type id
+        final Map<ObjectId, ObjectId> featureTypes = new HashMap<>();
+        final Map<ObjectId, Optional<NodeRef>> commitTrees = new HashMap<>();
+
         List<Ref> branches = command(BranchListOp.class).setLocal(true).setRemotes(true).call();
-        int builtTrees = 0;
-        ProgressListener listener = getProgressListener();
         for (Ref ref : branches) {
             if (listener.isCanceled()) {
-                break;
+                return 0;
             }
-            getProgressListener().setDescription("Building index for %s:%s at %s",
-                    index.getTreeName(), index.getAttributeName(), ref.getName());
+            listener.setDescription("Resolving history of %s:%s at %s", index.getTreeName(),
+                    index.getAttributeName(), ref.getName());
             Iterator<RevCommit> commits = command(LogOp.class).setUntil(ref.getObjectId()).call();
-            while (commits.hasNext()) {
-                if (listener.isCanceled()) {
-                    break;
+            while (commits.hasNext() && !listener.isCanceled()) {
+                RevCommit commit = commits.next();
+                NodeRef treeRef = resolveTree(index, commit.getId(), commitTrees).orElse(null);
+                if (treeRef == null || bases.containsKey(treeRef.getObjectId())
+                        || isIndexed(index, treeRef.getObjectId())) {
+                    continue;
                 }
-                RevCommit next = commits.next();
-                if (indexCommit(index, next)) {
-                    builtTrees++;
+                ObjectId treeId = treeRef.getObjectId();
+                bases.put(treeId, resolveBase(index, commit, treeId, commitTrees));
+                featureTypes.put(treeId, treeRef.getMetadataId());
+            }
+        }
+        commitTrees.clear();
+        if (bases.isEmpty() || listener.isCanceled()) {
+            return 0;
+        }
+        final int parallelism = Math.min(PARALLELISM, bases.size());
+        splitChains(bases, Math.max(MIN_CHAIN_LENGTH, bases.size() / (2 * parallelism)));
+
+        listener.setDescription("Building %,d index trees for %s:%s", bases.size(),
+                index.getTreeName(), index.getAttributeName());
+        listener.setMaxProgress(bases.size());
+        listener.setProgress(0);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("build-index-history-%d").setDaemon(true)
+                        .build());
+        final AtomicInteger builtTrees = new AtomicInteger();
+        try {
+            final Map<ObjectId, CompletableFuture<Void>> builds = new HashMap<>();
+            for (ObjectId treeId : bases.keySet()) {
+                // schedule the builds of the versions it depends on first
+                Deque<ObjectId> chain = new ArrayDeque<>();
+                ObjectId id = treeId;
+                while (bases.containsKey(id) && !builds.containsKey(id)) {
+                    chain.push(id);
+                    id = bases.get(id);
+                }
+                CompletableFuture<Void> base = builds.getOrDefault(id,
+                        CompletableFuture.completedFuture(null));
+                while (!chain.isEmpty()) {
+                    final ObjectId newTree = chain.pop();
+                    final ObjectId oldTree = bases.get(newTree);
+                    final ObjectId featureTypeId = featureTypes.get(newTree);
+                    base = base.thenRunAsync(() -> {
+                        if (build(index, oldTree, newTree, featureTypeId)) {
+                            int built = builtTrees.incrementAndGet();
+                            synchronized (listener) {
+                                listener.setProgress(built);
+                            }
+                        }
+                    }, executor);
+                    builds.put(newTree, base);
                 }
             }
+            CompletableFuture.allOf(builds.values().toArray(new CompletableFuture[builds.size()]))
+                    .join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
-        return builtTrees;
+        return builtTrees.get();
+    }
+
+    private boolean isIndexed(IndexInfo index, ObjectId canonicalTreeId) {
+        return indexDatabase().resolveIndexedTree(index, canonicalTreeId).isPresent();
     }
 
     /**
-     * Builds an index for a single commit.
-     * 
-     * @param index the {@link IndexInfo} to use
-     * @param commit the commit to build the index for
-     * @return {@code true} if an index tree was built, {@code false} otherwise
+     * @return the feature type tree at the given commit, if present
      */
-    private boolean indexCommit(IndexInfo index, RevCommit commit) {
-        RevTree commitTree = objectDatabase().getTree(commit.getTreeId());
-        Optional<NodeRef> treeNode = command(FindTreeChild.class).setChildPath(index.getTreeName())
-                .setParent(commitTree).call();
-        if (!treeNode.isPresent()) {
-            return false;
-        }
-        if (indexDatabase().resolveIndexedTree(index, treeNode.get().getObjectId()).isPresent()) {
-            return false;
+    private Optional<NodeRef> resolveTree(IndexInfo index, ObjectId commitId,
+            Map<ObjectId, Optional<NodeRef>> commitTrees) {
+        Optional<NodeRef> treeRef = commitTrees.get(commitId);
+        if (treeRef == null) {
+            RevCommit commit = objectDatabase().getCommit(commitId);
+            RevTree commitTree = objectDatabase().getTree(commit.getTreeId());
+            treeRef = command(FindTreeChild.class).setChildPath(index.getTreeName())
+                    .setParent(commitTree).call();
+            commitTrees.put(commitId, treeRef);
         }
-        RevTree newCanonicalTree = objectDatabase().getTree(treeNode.get().getObjectId());
-        List<ObjectId> oldCommits = graphDatabase().getChildren(commit.getId());
-        RevTree oldCanonicalTree = RevTree.EMPTY;
-        for (ObjectId oldCommitId : oldCommits) {
-            Optional<ObjectId> oldTreeId = command(ResolveTreeish.class)
-                    .setTreeish(oldCommitId.toString() + ":" + index.getTreeName()).call();
-            if (oldTreeId.isPresent()
-                    && indexDatabase().resolveIndexedTree(index, oldTreeId.get()).isPresent()) {
-                oldCanonicalTree = objectDatabase().getTree(oldTreeId.get());
+        return treeRef;
+    }
+
+    /**
+     * @return the closest different version of the feature type tree following the commit's first
+     *         parents, or {@link RevTree#EMPTY_TREE_ID} if it was created since
+     */
+    private ObjectId resolveBase(IndexInfo index, RevCommit commit, ObjectId treeId,
+            Map<ObjectId, Optional<NodeRef>> commitTrees) {
+        List<ObjectId> parents = commit.getParentIds();
+        while (!parents.isEmpty()) {
+            ObjectId parent = parents.get(0);
+            Optional<NodeRef> parentTree = resolveTree(index, parent, commitTrees);
+            if (!parentTree.isPresent()) {
                 break;
             }
+            if (!treeId.equals(parentTree.get().getObjectId())) {
+                return parentTree.get().getObjectId();
+            }
+            parents = objectDatabase().getCommit(parent).getParentIds();
+        }
+        return RevTree.EMPTY_TREE_ID;
+    }
+
+    /**
+     * Makes the trees that are more than {@code maxLength} builds away from one that's built from
+     * scratch be built from scratch too, so that no chain of builds is longer than that
+     */
+    private void splitChains(Map<ObjectId, ObjectId> bases, int maxLength) {
+        final Map<ObjectId, Integer> depths = new HashMap<>();
+        for (ObjectId treeId : bases.keySet()) {
+            Deque<ObjectId> chain = new ArrayDeque<>();
+            ObjectId id = treeId;
+            while (bases.containsKey(id) && !depths.containsKey(id)) {
+                chain.push(id);
+                id = bases.get(id);
+            }
+            int depth = depths.getOrDefault(id, 0);
+            while (!chain.isEmpty()) {
+                ObjectId next = chain.pop();
+                if (++depth > maxLength) {
+                    bases.put(next, RevTree.EMPTY_TREE_ID);
+                    depth = 0;
+                }
+                depths.put(next, depth);
+            }
         }
+    }
+
+    /**
+     * Builds the index tree for {@code newTree}, from the index tree of {@code oldTree}
+     * 
+     * @return {@code true} if an index tree was built, {@code false} if cancelled
+     */
+    private boolean build(IndexInfo index, ObjectId oldTree, ObjectId newTree,
+            ObjectId featureTypeId) {
+        final ProgressListener listener = getProgressListener();
+        if (listener.isCanceled()) {
+            return false;
+        }
+        RevTree oldCanonicalTree = RevTree.EMPTY_TREE_ID.equals(oldTree) ? RevTree.EMPTY
+                : objectDatabase().getTree(oldTree);
+        RevTree newCanonicalTree = RevTree.EMPTY_TREE_ID.equals(newTree) ? RevTree.EMPTY
+                : objectDatabase().getTree(newTree);
         command(BuildIndexOp.class)//
                 .setIndex(index)//
-                .setRevFeatureTypeId(treeNode.get().getMetadataId())//
+                .setRevFeatureTypeId(featureTypeId)//
                 .setOldCanonicalTree(oldCanonicalTree)//
                 .setNewCanonicalTree(newCanonicalTree)//
-                .setProgressListener(getProgressListener())//
+                .setProgressListener(new DefaultProgressListener() {
+                    public @Override boolean isCanceled() {
+                        return listener.isCanceled();
+                    }
+                })//
                 .call();
-        if (getProgressListener().isCanceled()) {
-            return false;
-        }
-        return true;
+        return !listener.isCanceled();
     }
 }
@@ -101,13 +101,19 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
         checkState(newCanonicalTree != null, "new canonical version of the tree was not provided");
         checkState(revFeatureTypeId != null, "FeatureType id was not provided");
 
-        final RevTreeBuilder builder = resolveTreeBuilder();
+        // the index tree is built by applying the changes between the canonical trees to the
+        // index tree of the old one, reusing all its unchanged nodes. If the old tree has not
+        // been indexed, the index has to be built from scratch out of all the new tree's features
+        final Optional<RevTree> oldIndexTree = resolveOldIndexTree();
+        final RevTree walkFrom = oldIndexTree.isPresent() ? oldCanonicalTree : RevTree.EMPTY;
+
+        final RevTreeBuilder builder = resolveTreeBuilder(oldIndexTree.orElse(RevTree.EMPTY));
         final ProgressListener progress = getProgressListener();
         final PreOrderDiffWalk.Consumer builderConsumer = resolveConsumer(builder, progress);
 
         boolean preserveIterationOrder = true;
         final ObjectDatabase canonicalStore = objectDatabase();
-        PreOrderDiffWalk walk = new PreOrderDiffWalk(oldCanonicalTree, newCanonicalTree,
+        PreOrderDiffWalk walk = new PreOrderDiffWalk(walkFrom, newCanonicalTree,
                 canonicalStore, canonicalStore, preserveIterationOrder);
 
         final Stopwatch dagTime = Stopwatch.createStarted();
@@ -144,7 +150,7 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
                 indexTree.getId());
 
         indexDatabase().addIndexedTree(index, newCanonicalTree.getId(), indexTree.getId());
-        progress.setDescription(String.format("QuadTree created. Size: %,d, time: %s",
+        progress.setDescription(String.format("Index created. Size: %,d, time: %s",
                 indexTree.size(), revTreeTime));
 
         progress.complete();
@@ -157,14 +163,22 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
             final ProgressListener progressListener) {
         final Set<String> attNames = IndexInfo.getMaterializedAttributeNames(index);
 
-        final boolean isMaterialized = !attNames.isEmpty();
+        final double[] simplificationTolerances = IndexInfo.getSimplificationTolerances(index);
+        final boolean isMaterialized = !attNames.isEmpty() || simplificationTolerances.length > 0;
         final Consumer consumer;
 
         if (isMaterialized) {
             Map<String, Integer> extraDataProperties = attributeIndexMapping(attNames);
 
-            consumer = new MaterializedBuilderConsumer(builder, objectDatabase(),
-                    extraDataProperties, progressListener);
+            MaterializedBuilderConsumer materializedConsumer = new MaterializedBuilderConsumer(
+                    builder, objectDatabase(), extraDataProperties, progressListener);
+            if (simplificationTolerances.length > 0) {
+                String geometryAttribute = index.getAttributeName();
+                RevFeatureType featureType = objectDatabase().getFeatureType(revFeatureTypeId);
+                materializedConsumer.simplify(geometryAttribute,
+                        indexOf(geometryAttribute, featureType), simplificationTolerances);
+            }
+            consumer = materializedConsumer;
         } else {
             consumer = new SimpleTreeBuilderConsumer(builder, progressListener);
         }
@@ -196,33 +210,35 @@ public class BuildIndexOp extends AbstractGeoGigOp<RevTree> {
                 featureType.getName().getLocalPart(), attName));
     }
 
-    private RevTreeBuilder resolveTreeBuilder() {
-        final IndexDatabase indexDatabase = indexDatabase();
-
-        final RevTree oldIndexTree;
+    /**
+     * @return the index tree of the old canonical tree, or empty if it has not been indexed
+     */
+    private Optional<RevTree> resolveOldIndexTree() {
         if (oldCanonicalTree.isEmpty()) {
-            oldIndexTree = RevTree.EMPTY;
-        } else {
-            final Optional<ObjectId> oldIndexTreeId = indexDatabase.resolveIndexedTree(index,
-                    oldCanonicalTree.getId());
-            if (oldIndexTreeId.isPresent()) {
-                oldIndexTree = indexDatabase.getTree(oldIndexTreeId.get());
-            } else {
-                oldIndexTree = RevTree.EMPTY;
-            }
+            return Optional.of(RevTree.EMPTY);
         }
+        final IndexDatabase indexDatabase = indexDatabase();
+        final Optional<ObjectId> oldIndexTreeId = indexDatabase.resolveIndexedTree(index,
+                oldCanonicalTree.getId());
+        return oldIndexTreeId.map(indexDatabase::getTree);
+    }
 
+    private RevTreeBuilder resolveTreeBuilder(RevTree oldIndexTree) {
         final IndexType indexType = index.getIndexType();
+        final ObjectStore source = indexDatabase();
+        final ObjectStore target = source;
         final RevTreeBuilder builder;
         switch (indexType) {
         case QUADTREE:
             final Envelope maxBounds = IndexInfo.getMaxBounds(index);
             checkState(null != maxBounds, "QuadTree index does not contain max bounds");
 
-            ObjectStore source = indexDatabase();
-            ObjectStore target = source;
             builder = RevTreeBuilder.quadBuilder(source, target, oldIndexTree, maxBounds);
             break;
+        case ATTRIBUTE:
+            builder = RevTreeBuilder.attributeBuilder(source, target, oldIndexTree,
+                    index.getAttributeName());
+            break;
         default:
             throw new UnsupportedOperationException("Uknown index type: " + indexType);
         }
@@ -38,6 +38,8 @@ import org.locationtech.geogig.repository.ProgressListener;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
@@ -74,6 +76,12 @@ class MaterializedBuilderConsumer extends AbstractConsumer {
 
     final Map<String, Integer> extraDataProperties;
 
+    private @Nullable String simplifiedAttribute;
+
+    private int simplifiedAttributeIndex = -1;
+
+    private double[] simplificationTolerances = new double[0];
+
     MaterializedBuilderConsumer(RevTreeBuilder builder, ObjectStore featureSource,
             Map<String, Integer> extraDataProperties, ProgressListener listener) {
         this.builder = builder;
@@ -82,6 +90,28 @@ class MaterializedBuilderConsumer extends AbstractConsumer {
         this.progress = listener;
     }
 
+    /**
+     * Materializes the geometry attribute {@code attName} simplified with each of the given
+     * distance tolerances, in addition to the {@link #extraDataProperties}
+     * 
+     * @see IndexInfo#MD_SIMPLIFICATION_TOLERANCES
+     */
+    void simplify(String attName, int attIndex, double[] tolerances) {
+        this.simplifiedAttribute = attName;
+        this.simplifiedAttributeIndex = attIndex;
+        this.simplificationTolerances = tolerances.clone();
+    }
+
+    /**
+     * Simplifies {@code geometry} preserving its topology, so that polygons and lines smaller than
+     * the tolerance don't collapse and disappear from index-only rendering; the original geometry
+     * is kept if the simplification still results in an empty one.
+     */
+    static Geometry simplify(Geometry geometry, double tolerance) {
+        Geometry simplified = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+        return simplified.isEmpty() ? geometry : simplified;
+    }
+
     public @Override boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
         return !progress.isCanceled();
     }
@@ -164,6 +194,16 @@ class MaterializedBuilderConsumer extends AbstractConsumer {
                 Optional<Object> value = f.get(attIndex.intValue());
                 atts.put(attName, value.orElse(null));
             });
+            if (simplifiedAttribute != null) {
+                Object geometry = f.get(simplifiedAttributeIndex).orElse(null);
+                for (double tolerance : simplificationTolerances) {
+                    Geometry simplified = geometry instanceof Geometry
+                            ? simplify((Geometry) geometry, tolerance)
+                            : null;
+                    atts.put(IndexInfo.getSimplifiedAttributeName(simplifiedAttribute, tolerance),
+                            simplified);
+                }
+            }
 
             Map<String, Object> extraData = new HashMap<>(node.getExtraData());
 
@@ -9,12 +9,9 @@
  */
 package org.locationtech.geogig.plumbing.merge;
 
-import static com.google.common.base.Preconditions.checkArgument;
-
 import java.util.Iterator;
 import java.util.Optional;
 
-import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.DiffEntry;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
@@ -22,8 +19,9 @@ import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.model.RevTree;
-import org.locationtech.geogig.plumbing.DiffTree;
 import org.locationtech.geogig.plumbing.FindCommonAncestor;
+import org.locationtech.geogig.plumbing.diff.ThreeWayDiffWalk;
+import org.locationtech.geogig.plumbing.diff.ThreeWayDiffWalk.MergeDiff;
 import org.locationtech.geogig.plumbing.merge.DiffMergeFeaturesOp.DiffMergeFeatureResult;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.Conflict;
@@ -31,9 +29,6 @@ import org.locationtech.geogig.repository.FeatureInfo;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Iterators;
-import com.google.common.collect.PeekingIterator;
 
 /**
  * Reports conflicts between changes introduced by two different histories. Given a commit and
@@ -80,115 +75,32 @@ public class ReportMergeScenarioOp extends AbstractGeoGigOp<MergeScenarioReport>
 
         final ObjectId ancestor = ancestorOpt.get();
 
-        MergeScenarioReport report = null;
-
-        try (AutoCloseableIterator<DiffEntry> mergeIntoDiffs = command(DiffTree.class)
-                .setOldTree(ancestor).setReportTrees(true).setNewTree(mergeInto.getId())
-                .setPreserveIterationOrder(true).call();
-                AutoCloseableIterator<DiffEntry> toMergeDiffs = command(DiffTree.class)
-                        .setOldTree(ancestor).setReportTrees(true).setNewTree(toMerge.getId())
-                        .setPreserveIterationOrder(true).call();) {
-
-            Iterator<MergeDiffRef> tupleIterator = new MergeDiffIterator(mergeIntoDiffs,
-                    toMergeDiffs);
+        final RevTree ancestorTree = objectDatabase()
+                .getTree(objectDatabase().getCommit(ancestor).getTreeId());
+        final RevTree mergeIntoTree = objectDatabase().getTree(mergeInto.getTreeId());
+        final RevTree toMergeTree = objectDatabase().getTree(toMerge.getTreeId());
 
-            final RevCommit ancestorCommit = objectDatabase().getCommit(ancestor);
-            final RevTree ancestorTree = objectDatabase().getTree(ancestorCommit.getTreeId());
-
-            report = process(tupleIterator, ancestorTree);
+        MergeScenarioReport report;
+        try (AutoCloseableIterator<MergeDiff> diffs = new ThreeWayDiffWalk(objectDatabase(),
+                ancestorTree, mergeIntoTree, toMergeTree).iterator()) {
+            report = process(diffs, ancestorTree);
         }
-
         return report;
-
-    }
-
-    private static class MergeDiffIterator extends AbstractIterator<MergeDiffRef> {
-
-        private PeekingIterator<DiffEntry> ours;
-
-        private PeekingIterator<DiffEntry> theirs;
-
-        MergeDiffIterator(AutoCloseableIterator<DiffEntry> ours,
-                AutoCloseableIterator<DiffEntry> theirs) {
-            this.ours = Iterators.peekingIterator(ours);
-            this.theirs = Iterators.peekingIterator(theirs);
-        }
-
-        protected @Override MergeDiffRef computeNext() {
-            DiffEntry left = ours.hasNext() ? ours.peek() : null;
-            DiffEntry right = theirs.hasNext() ? theirs.peek() : null;
-
-            if (left == null && right == null) {
-                return endOfData();
-            }
-            if (right == null) {
-                // no more their's diffs to process
-                return endOfData();
-            }
-
-            if (left != null && right != null) {
-                final int compare = DiffEntry.COMPARATOR.compare(left, right);
-                if (compare < 0) {
-                    // Only "our" branch modified the path, advance "our" iterator
-                    ours.next();
-                    right = null;
-                } else if (compare > 0) {
-                    // Only "their" branch modified the path, advance "their" iterator
-                    theirs.next();
-                    left = null;
-                } else {
-                    // Same path modified on both, advance both iterators
-                    ours.next();
-                    theirs.next();
-                }
-            } else if (left == null) {
-                theirs.next();
-            } else {
-                ours.next();
-            }
-
-            return new MergeDiffRef(left, right);
-        }
-
-    }
-
-    private static class MergeDiffRef {
-
-        private final DiffEntry ours;
-
-        private final DiffEntry theirs;
-
-        public MergeDiffRef(@Nullable DiffEntry ours, @Nullable DiffEntry theirs) {
-            checkArgument(!(ours == null && theirs == null));
-            this.ours = ours;
-            this.theirs = theirs;
-        }
-
-        public DiffEntry ours() {
-            return ours;
-        }
-
-        public DiffEntry theirs() {
-            return theirs;
-        }
     }
 
-    private MergeScenarioReport process(Iterator<MergeDiffRef> tupleIterator,
-            RevTree ancestorTree) {
+    private MergeScenarioReport process(Iterator<MergeDiff> tupleIterator, RevTree ancestorTree) {
 
         MergeScenarioReport report = new MergeScenarioReport();
         while (tupleIterator.hasNext()) {
-            MergeDiffRef mr = tupleIterator.next();
+            MergeDiff mr = tupleIterator.next();
 
-            DiffEntry ours = mr.ours();
-            DiffEntry theirs = mr.theirs();
+            // paths only "our" branch modified are not reported by the walk
+            DiffEntry ours = mr.oursDiff();
+            DiffEntry theirs = mr.theirsDiff();
             if (ours == null) {
                 // Only "their" branch modified the path
                 consumer.unconflicted(theirs);
                 report.addUnconflicted(theirs);
-            } else if (theirs == null) {
-                // Only "our" branch modified the path
-                // nothing else to do
             } else {
                 // both branches modifies the same path
                 processPossibleConflict(ours, theirs, ancestorTree, report);
@@ -30,6 +30,7 @@ import org.locationtech.geogig.plumbing.CleanRefsOp;
 import org.locationtech.geogig.plumbing.RefParse;
 import org.locationtech.geogig.plumbing.ResolveTreeish;
 import org.locationtech.geogig.plumbing.RevObjectParse;
+import org.locationtech.geogig.plumbing.UpdateCommitGraph;
 import org.locationtech.geogig.plumbing.UpdateRef;
 import org.locationtech.geogig.plumbing.UpdateSymRef;
 import org.locationtech.geogig.plumbing.WriteTree2;
@@ -43,6 +44,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Commits the staged changed in the index to the repository, creating a new commit pointing to the
@@ -55,6 +57,7 @@ import lombok.NonNull;
  * </p>
  * 
  */
+@Slf4j
 @Hookable(name = "commit")
 public class CommitOp extends AbstractGeoGigOp<RevCommit> {
 
@@ -364,6 +367,7 @@ public class CommitOp extends AbstractGeoGigOp<RevCommit> {
         }
         final ObjectStore objectDb = objectDatabase();
         objectDb.put(commit);
+        updateCommitGraph(commit);
         final Optional<Ref> branchHead = command(UpdateRef.class).setName(currentBranch)
                 .setNewValue(commit.getId()).setProgressListener(subProgress(1f)).call();
 
@@ -387,6 +391,18 @@ public class CommitOp extends AbstractGeoGigOp<RevCommit> {
         return commit;
     }
 
+    /**
+     * Adds the commit to the commit graph, failing to do so doesn't fail the commit since the
+     * commit graph is just an acceleration structure
+     */
+    private void updateCommitGraph(RevCommit commit) {
+        try {
+            command(UpdateCommitGraph.class).setCommit(commit.getId()).call();
+        } catch (RuntimeException e) {
+            log.warn("Error adding commit {} to the commit graph", commit.getId(), e);
+        }
+    }
+
     private Supplier<RevTree> resolveOldRoot() {
         Supplier<RevTree> supplier = new Supplier<RevTree>() {
             public @Override RevTree get() {
@@ -22,6 +22,7 @@ import java.util.regex.Pattern;
 import org.locationtech.geogig.di.CanRunDuringConflict;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdSet;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
@@ -34,6 +35,8 @@ import org.locationtech.geogig.plumbing.RevParse;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.GraphDatabase;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+import org.locationtech.geogig.storage.impl.CommitGraphStore;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
@@ -314,7 +317,7 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
         private Set<RevCommit> parents;
 
-        private Set<ObjectId> seenCommits; // don't re-traverse the same part of the tree
+        private ObjectIdSet seenCommits; // don't re-traverse the same part of the tree
 
         /**
          * Constructs a new {@code LinearHistoryIterator} with the given parameters.
@@ -325,7 +328,7 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
         public ChronologicalHistoryIterator(final List<ObjectId> tips, final Repository repo) {
             parents = Sets.newHashSet();
-            seenCommits = Sets.newHashSet();
+            seenCommits = ObjectIdSet.create();
             for (ObjectId tip : tips) {
                 if (!tip.isNull()) {
                     final RevCommit commit = repo.getCommit(tip);
@@ -537,6 +540,8 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
 
         private FindTreeChild findTreeChild;
 
+        private final CommitGraph commitGraph;
+
         /**
          * Constructs a new {@code LogFilter} with the given parameters.
          * 
@@ -556,6 +561,7 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             this.committer = commiter;
             this.paths = paths;
             findTreeChild = command(FindTreeChild.class);
+            commitGraph = paths == null ? null : CommitGraphStore.get(repository()).get();
         }
 
         /**
@@ -589,6 +595,9 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
                 return false;
             }
             if (paths != null) {
+                if (!mightHaveChanged(commit)) {
+                    return false;
+                }
                 applies = false;
                 final Repository repository = repository();
                 // did this commit touch any of the paths?
@@ -626,6 +635,19 @@ public class LogOp extends AbstractGeoGigOp<Iterator<RevCommit>> {
             return applies;
         }
 
+        /**
+         * Uses the commit graph's changed paths filters to rule out commits that didn't change any
+         * of the paths without comparing their trees
+         */
+        private boolean mightHaveChanged(RevCommit commit) {
+            for (String path : paths) {
+                if (commitGraph.mightHaveChanged(commit.getId(), path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private ObjectId getPathHash(RevTree tree, String path) {
             ObjectId hash = ObjectId.NULL;
             Optional<NodeRef> ref = findTreeChild.setChildPath(path).setParent(tree).call();
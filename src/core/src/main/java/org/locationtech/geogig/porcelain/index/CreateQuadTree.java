@@ -11,6 +11,7 @@ package org.locationtech.geogig.porcelain.index;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -50,6 +51,8 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
 
     private @Nullable Envelope bounds;
 
+    private @Nullable double[] simplificationTolerances;
+
     /**
      * @param typeTreeRef the {@link NodeRef} of the canonical tree to build a quadtree from
      * @return {@code this}
@@ -111,6 +114,22 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
         return this;
     }
 
+    /**
+     * Optional, distance tolerances, in the units of the geometry attribute's CRS, to store the
+     * indexed geometry simplified with in the index nodes, so that queries that allow geometries to
+     * be simplified (e.g. map rendering at a given scale) can be served without fetching the
+     * features.
+     * 
+     * @param tolerances the positive simplification distances, in any order
+     * @return {@code this}
+     * @see IndexInfo#MD_SIMPLIFICATION_TOLERANCES
+     * @since 2.0
+     */
+    public CreateQuadTree setSimplificationTolerances(@Nullable double... tolerances) {
+        this.simplificationTolerances = tolerances == null ? null : tolerances.clone();
+        return this;
+    }
+
     /**
      * Performs the operation.
      * 
@@ -143,6 +162,13 @@ public class CreateQuadTree extends AbstractGeoGigOp<Index> {
         if (extraAttributes != null) {
             metadata.put(IndexInfo.FEATURE_ATTRIBUTES_EXTRA_DATA, extraAttributes);
         }
+        if (simplificationTolerances != null && simplificationTolerances.length > 0) {
+            double[] tolerances = Arrays.stream(simplificationTolerances).distinct().sorted()
+                    .toArray();
+            checkArgument(tolerances[0] > 0, "Simplification tolerances must be positive: %s",
+                    Arrays.toString(simplificationTolerances));
+            metadata.put(IndexInfo.MD_SIMPLIFICATION_TOLERANCES, tolerances);
+        }
 
         Index index = command(CreateIndexOp.class)//
                 .setTreeName(treeName)//
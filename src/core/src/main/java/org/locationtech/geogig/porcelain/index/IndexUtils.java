@@ -20,8 +20,11 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.crs.CoordinateReferenceSystem;
 import org.locationtech.geogig.feature.FeatureType;
 import org.locationtech.geogig.feature.PropertyDescriptor;
+import org.locationtech.geogig.model.NodeOrdering;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.impl.AttributeTreeBuilder;
+import org.locationtech.geogig.model.impl.QuadTreeBuilder;
 import org.locationtech.geogig.plumbing.FindFeatureTypeTrees;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.IndexInfo;
@@ -166,4 +169,25 @@ public class IndexUtils {
         }
         return descriptor;
     }
+
+    /**
+     * Resolves the order in which the nodes of the index trees of the given index are sorted and
+     * clustered, to be used when walking the differences between two of them.
+     * 
+     * @param index the index
+     * @return the {@link NodeOrdering} of the index trees
+     * @since 2.0
+     */
+    public static NodeOrdering nodeOrdering(IndexInfo index) {
+        switch (index.getIndexType()) {
+        case QUADTREE:
+            Envelope maxBounds = IndexInfo.getMaxBounds(index);
+            checkArgument(maxBounds != null, "QuadTree index does not contain max bounds");
+            return QuadTreeBuilder.nodeOrdering(maxBounds);
+        case ATTRIBUTE:
+            return AttributeTreeBuilder.nodeOrdering(index.getAttributeName());
+        default:
+            throw new UnsupportedOperationException("Unknown index type: " + index.getIndexType());
+        }
+    }
 }
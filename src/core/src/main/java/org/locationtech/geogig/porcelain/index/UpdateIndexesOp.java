@@ -12,9 +12,11 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.model.SymRef;
 import org.locationtech.geogig.plumbing.FindFeatureTypeTrees;
+import org.locationtech.geogig.plumbing.FindTreeChild;
 import org.locationtech.geogig.plumbing.index.BuildIndexOp;
 import org.locationtech.geogig.repository.AbstractGeoGigOp;
 import org.locationtech.geogig.repository.IndexInfo;
@@ -37,6 +39,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
 
+    /**
+     * Maximum number of first-parent ancestors to look at for an indexed version of a tree to
+     * update the index from, before resorting to building it from scratch
+     */
+    private static final int MAX_BASE_SEARCH_DEPTH = 100;
+
     private Ref rootRefSpec;
 
     /**
@@ -83,7 +91,8 @@ public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
             if (!layerIndexes.isEmpty()) {
                 final @Nullable NodeRef oldTreeRef = previousTreeRefs.get(treePath);
 
-                List<Index> updated = updateIndexes(oldTreeRef, treeRef, layerIndexes);
+                List<Index> updated = updateIndexes(branchRef, oldTreeRef, treeRef,
+                        layerIndexes);
                 if (getProgressListener().isCanceled()) {
                     return null;
                 }
@@ -93,8 +102,8 @@ public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
         return updatedIndexes;
     }
 
-    private List<Index> updateIndexes(final @Nullable NodeRef oldTreeRef, final NodeRef newTreeRef,
-            List<IndexInfo> indexes) {
+    private List<Index> updateIndexes(final Ref branchRef, final @Nullable NodeRef oldTreeRef,
+            final NodeRef newTreeRef, List<IndexInfo> indexes) {
 
         List<Index> updated = new ArrayList<>(indexes.size());
 
@@ -122,6 +131,9 @@ public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
                 if (oldTreeRef != null && indexDatabase
                         .resolveIndexedTree(index, oldTreeRef.getObjectId()).isPresent()) {
                     oldCanonicalTree = objectDatabase().getTree(oldTreeRef.getObjectId());
+                } else if (oldTreeRef != null) {
+                    oldCanonicalTree = findIndexedAncestorTree(index, branchRef, newTreeRef.path())
+                            .orElse(RevTree.EMPTY);
                 } else {
                     oldCanonicalTree = RevTree.EMPTY;
                 }
@@ -156,4 +168,34 @@ public class UpdateIndexesOp extends AbstractGeoGigOp<List<Index>> {
         }
         return updated;
     }
+
+    /**
+     * Follows the first parents of the commit {@code branchRef} points to, looking for the closest
+     * version of the tree at {@code treePath} that has already been indexed, so that the index can
+     * be updated incrementally instead of built from scratch.
+     * 
+     * @return the closest indexed version of the tree, or empty if none is found within
+     *         {@link #MAX_BASE_SEARCH_DEPTH} commits, or the tree didn't exist before that
+     */
+    private Optional<RevTree> findIndexedAncestorTree(IndexInfo index, Ref branchRef,
+            String treePath) {
+        final IndexDatabase indexDatabase = indexDatabase();
+        List<ObjectId> parents = objectDatabase().getCommit(branchRef.getObjectId())
+                .getParentIds();
+        for (int depth = 0; depth < MAX_BASE_SEARCH_DEPTH && !parents.isEmpty(); depth++) {
+            final RevCommit commit = objectDatabase().getCommit(parents.get(0));
+            final RevTree root = objectDatabase().getTree(commit.getTreeId());
+            Optional<NodeRef> treeRef = command(FindTreeChild.class).setParent(root)
+                    .setChildPath(treePath).call();
+            if (!treeRef.isPresent()) {
+                break;
+            }
+            ObjectId treeId = treeRef.get().getObjectId();
+            if (indexDatabase.resolveIndexedTree(index, treeId).isPresent()) {
+                return Optional.of(objectDatabase().getTree(treeId));
+            }
+            parents = commit.getParentIds();
+        }
+        return Optional.empty();
+    }
 }
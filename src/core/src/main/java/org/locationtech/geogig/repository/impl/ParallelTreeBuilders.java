@@ -0,0 +1,250 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.repository.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.RevTreeBuilder;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * Feeds and builds the trees of several feature types concurrently.
+ * <p>
+ * The nodes added to or removed from each tree are queued and handed over to its
+ * {@link RevTreeBuilder} by a task running on an executor shared by all working trees. There's at
+ * most one such task per tree at any time, so each builder gets its changes in order, while
+ * different trees are fed concurrently. Queues are bounded, so a producer faster than the builders
+ * blocks instead of piling up nodes on the heap.
+ * <p>
+ * {@link #build()} builds all the trees concurrently on the same executor. Since each
+ * {@link RevTreeBuilder#build()} runs on the fork-join pool shared by all tree builders, a single
+ * large tree still gets all the cores once the smaller ones are done.
+ *
+ * @since 2.0
+ */
+final class ParallelTreeBuilders {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private static final ExecutorService SHARED_EXECUTOR;
+    static {
+        final int nThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(nThreads, nThreads, 60,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+                        .setDaemon(true).setNameFormat("WorkingTree-tree-builder-%d").build());
+        executor.allowCoreThreadTimeOut(true);
+        SHARED_EXECUTOR = executor;
+    }
+
+    private final ExecutorService executor;
+
+    private final Map<String, TreeFeeder> feeders = new LinkedHashMap<>();
+
+    ParallelTreeBuilders() {
+        this(SHARED_EXECUTOR);
+    }
+
+    ParallelTreeBuilders(@NonNull ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public boolean contains(@NonNull String treePath) {
+        return feeders.containsKey(treePath);
+    }
+
+    /**
+     * @return the paths of the trees added to this instance, in the order they were added
+     */
+    public Set<String> getTreePaths() {
+        return feeders.keySet();
+    }
+
+    public void add(@NonNull String treePath, @NonNull RevTreeBuilder builder) {
+        checkArgument(!feeders.containsKey(treePath), "Tree %s already added", treePath);
+        feeders.put(treePath, new TreeFeeder(treePath, builder));
+    }
+
+    /**
+     * Asynchronously adds {@code node} to the builder of the tree at {@code treePath}, blocking if
+     * the builder is lagging behind
+     */
+    public void put(@NonNull String treePath, @NonNull Node node) {
+        feeder(treePath).offer(builder -> builder.put(node));
+    }
+
+    /**
+     * Asynchronously removes {@code node} from the builder of the tree at {@code treePath},
+     * blocking if the builder is lagging behind
+     */
+    public void remove(@NonNull String treePath, @NonNull Node node) {
+        feeder(treePath).offer(builder -> builder.remove(node));
+    }
+
+    /**
+     * Waits for all the pending changes to be applied and builds all the trees concurrently.
+     *
+     * @return the built trees keyed by path, in the order they were added
+     */
+    public Map<String, RevTree> build() {
+        for (TreeFeeder feeder : feeders.values()) {
+            feeder.await();
+        }
+        List<Future<RevTree>> futures = new ArrayList<>(feeders.size());
+        for (TreeFeeder feeder : feeders.values()) {
+            futures.add(executor.submit(feeder.builder::build));
+        }
+        Map<String, RevTree> trees = new LinkedHashMap<>();
+        int i = 0;
+        for (String treePath : feeders.keySet()) {
+            trees.put(treePath, get(futures.get(i++)));
+        }
+        return trees;
+    }
+
+    /**
+     * Discards all pending changes and disposes the tree builders without building the trees
+     */
+    public void dispose() {
+        for (TreeFeeder feeder : feeders.values()) {
+            feeder.queue.clear();
+            try {
+                feeder.await();
+            } catch (RuntimeException e) {
+                // the builder failed, nothing to discard
+            }
+            feeder.builder.dispose();
+        }
+    }
+
+    private TreeFeeder feeder(String treePath) {
+        TreeFeeder feeder = feeders.get(treePath);
+        checkArgument(feeder != null, "No tree builder for %s", treePath);
+        return feeder;
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Applies the queued changes to a tree builder, one executor task at a time
+     */
+    private class TreeFeeder {
+
+        private final String treePath;
+
+        private final RevTreeBuilder builder;
+
+        private final BlockingQueue<Consumer<RevTreeBuilder>> queue = new ArrayBlockingQueue<>(
+                QUEUE_CAPACITY);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile Throwable failure;
+
+        TreeFeeder(String treePath, RevTreeBuilder builder) {
+            this.treePath = treePath;
+            this.builder = builder;
+        }
+
+        void offer(Consumer<RevTreeBuilder> change) {
+            checkFailure();
+            try {
+                queue.put(change);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    Consumer<RevTreeBuilder> change = queue.poll();
+                    if (change == null) {
+                        scheduled.set(false);
+                        // a change may have been queued after the poll and before resetting the
+                        // flag, in which case its producer didn't schedule a new task
+                        if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                            break;
+                        }
+                    } else {
+                        change.accept(builder);
+                    }
+                }
+            } catch (Throwable e) {
+                failure = e;
+                // unblock the producer, it'll get the failure on its next offer
+                queue.clear();
+                scheduled.set(false);
+            }
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Waits until all the queued changes have been applied
+         */
+        synchronized void await() {
+            while (scheduled.get() || !queue.isEmpty()) {
+                checkFailure();
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() {
+            Throwable e = failure;
+            if (e != null) {
+                Throwables.throwIfUnchecked(e);
+                throw new IllegalStateException("Error building tree " + treePath, e);
+            }
+        }
+    }
+}
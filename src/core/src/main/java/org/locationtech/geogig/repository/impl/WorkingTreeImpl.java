@@ -14,13 +14,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.locationtech.geogig.model.RevTree.EMPTY;
 import static org.locationtech.geogig.model.RevTree.EMPTY_TREE_ID;
 
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
@@ -66,7 +63,6 @@ import com.google.common.base.Predicates;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import lombok.NonNull;
 
@@ -232,47 +228,40 @@ public class WorkingTreeImpl implements WorkingTree {
 
     public @Override ObjectId delete(Iterator<String> features, ProgressListener progress) {
 
-        final ExecutorService treeBuildingService = Executors.newSingleThreadExecutor(
-                new ThreadFactoryBuilder().setNameFormat("WorkingTree-tree-builder-%d").build());
+        final WorkingTreeInsertHelper insertHelper;
+        final RevTree currewntWorkHead = getTree();
 
-        try {
-            final WorkingTreeInsertHelper insertHelper;
-            final RevTree currewntWorkHead = getTree();
+        insertHelper = new WorkingTreeInsertHelper(context, currewntWorkHead);
 
-            insertHelper = new WorkingTreeInsertHelper(context, currewntWorkHead,
-                    treeBuildingService);
-
-            while (features.hasNext() && !progress.isCanceled()) {
-                String featurePath = features.next();
-                insertHelper.remove(featurePath);
-            }
-            if (progress.isCanceled()) {
-                return currewntWorkHead.getId();
-            }
+        while (features.hasNext() && !progress.isCanceled()) {
+            String featurePath = features.next();
+            insertHelper.remove(featurePath);
+        }
+        if (progress.isCanceled()) {
+            insertHelper.dispose();
+            return currewntWorkHead.getId();
+        }
 
-            final Map<NodeRef, RevTree> trees = insertHelper.buildTrees();
+        final Map<NodeRef, RevTree> trees = insertHelper.buildTrees();
 
-            UpdateTree updateTree = context.command(UpdateTree.class).setRoot(currewntWorkHead);
+        UpdateTree updateTree = context.command(UpdateTree.class).setRoot(currewntWorkHead);
 
-            for (Map.Entry<NodeRef, RevTree> treeEntry : trees.entrySet()) {
-                if (progress.isCanceled()) {
-                    return currewntWorkHead.getId();
-                }
-                NodeRef treeRef = treeEntry.getKey();
-                assert indexDatabase.exists(treeRef.getObjectId());
-                updateTree.setChild(treeRef);
+        for (Map.Entry<NodeRef, RevTree> treeEntry : trees.entrySet()) {
+            if (progress.isCanceled()) {
+                return currewntWorkHead.getId();
             }
+            NodeRef treeRef = treeEntry.getKey();
+            assert indexDatabase.exists(treeRef.getObjectId());
+            updateTree.setChild(treeRef);
+        }
 
-            final RevTree newWorkHead = updateTree.call();
-
-            if (!newWorkHead.equals(currewntWorkHead) && !progress.isCanceled()) {
-                updateWorkHead(newWorkHead.getId());
-            }
+        final RevTree newWorkHead = updateTree.call();
 
-            return newWorkHead.getId();
-        } finally {
-            treeBuildingService.shutdownNow();
+        if (!newWorkHead.equals(currewntWorkHead) && !progress.isCanceled()) {
+            updateWorkHead(newWorkHead.getId());
         }
+
+        return newWorkHead.getId();
     }
 
     public @Override synchronized NodeRef createTypeTree(final String treePath,
@@ -323,7 +312,8 @@ public class WorkingTreeImpl implements WorkingTree {
         final Map<String, NodeRef> currentTrees = Maps
                 .newHashMap(Maps.uniqueIndex(getFeatureTypeTrees(), NodeRef::path));
 
-        Map<String, RevTreeBuilder> parentBuilders = new HashMap<>();
+        // feeds and builds the trees of all the feature types concurrently
+        final ParallelTreeBuilders parentBuilders = new ParallelTreeBuilders();
 
         progress.setProgress(0);
         final AtomicLong p = new AtomicLong();
@@ -332,18 +322,19 @@ public class WorkingTreeImpl implements WorkingTree {
             final String fid = NodeRef.nodeFromPath(fi.getPath());
             @Nullable
             ObjectId metadataId = fi.getFeatureTypeId();
-            RevTreeBuilder parentBuilder = getTreeBuilder(currentTrees, parentBuilders, parentPath,
-                    metadataId);
+            final boolean hasParentBuilder = addTreeBuilder(currentTrees, parentBuilders,
+                    parentPath, metadataId);
 
             if (fi.isDelete()) {
-                if (parentBuilder != null) {
-                    parentBuilder.remove(RevObjectFactory.defaultInstance().createNode(fid,
-                            ObjectId.NULL, ObjectId.NULL, TYPE.FEATURE, null, null));
+                if (hasParentBuilder) {
+                    parentBuilders.remove(parentPath, RevObjectFactory.defaultInstance()
+                            .createNode(fid, ObjectId.NULL, ObjectId.NULL, TYPE.FEATURE, null,
+                                    null));
                 }
                 return null;
             }
 
-            Preconditions.checkState(parentBuilder != null);
+            Preconditions.checkState(hasParentBuilder);
             RevFeature feature = fi.getFeature();
             NodeRef parentRef = currentTrees.get(parentPath);
             Preconditions.checkNotNull(parentRef);
@@ -356,7 +347,7 @@ public class WorkingTreeImpl implements WorkingTree {
             Node featureNode = RevObjectFactory.defaultInstance().createNode(fid, oid, metadataId,
                     TYPE.FEATURE, bounds, null);
 
-            parentBuilder.put(featureNode);
+            parentBuilders.put(parentPath, featureNode);
 
             progress.setProgress(p.incrementAndGet());
             return feature;
@@ -379,21 +370,23 @@ public class WorkingTreeImpl implements WorkingTree {
         indexDatabase.putAll(features);
         insertTime.stop();
         if (progress.isCanceled()) {
+            parentBuilders.dispose();
             return currentWorkHead.getId();
         }
 
         progress.setDescription(String.format("%,d features inserted in %s", p.get(), insertTime));
 
-        UpdateTree updateTree = context.command(UpdateTree.class).setRoot(currentWorkHead);
-        parentBuilders.forEach((path, builder) -> {
+        progress.setDescription(String.format("Building final trees %s...",
+                parentBuilders.getTreePaths()));
+        Stopwatch treeTime = Stopwatch.createStarted();
+        final Map<String, RevTree> newFeatureTrees = parentBuilders.build();
+        treeTime.stop();
+        progress.setDescription(String.format("%,d feature trees built in %s",
+                newFeatureTrees.size(), treeTime));
 
+        UpdateTree updateTree = context.command(UpdateTree.class).setRoot(currentWorkHead);
+        newFeatureTrees.forEach((path, newFeatureTree) -> {
             final NodeRef oldTreeRef = currentTrees.get(path);
-            progress.setDescription(String.format("Building final tree %s...", oldTreeRef.name()));
-            Stopwatch treeTime = Stopwatch.createStarted();
-            final RevTree newFeatureTree = builder.build();
-            treeTime.stop();
-            progress.setDescription(String.format("%,d features tree built in %s",
-                    newFeatureTree.size(), treeTime));
             final NodeRef newTreeRef = oldTreeRef.update(newFeatureTree.getId(),
                     SpatialOps.boundsOf(newFeatureTree));
             updateTree.setChild(newTreeRef);
@@ -403,17 +396,21 @@ public class WorkingTreeImpl implements WorkingTree {
         return updateWorkHead(newWorkHead.getId());
     }
 
-    @Nullable
-    private RevTreeBuilder getTreeBuilder(final @NonNull Map<String, NodeRef> currentTrees,
-            final @NonNull Map<String, RevTreeBuilder> treeBuilders, final @NonNull String treePath,
+    /**
+     * Adds the builder for the tree at {@code treePath} to {@code treeBuilders} if not already
+     * there, creating the tree if it doesn't exist and {@code featureMetadataId} is provided.
+     *
+     * @return whether {@code treeBuilders} has a builder for {@code treePath}
+     */
+    private boolean addTreeBuilder(final @NonNull Map<String, NodeRef> currentTrees,
+            final @NonNull ParallelTreeBuilders treeBuilders, final @NonNull String treePath,
             final @Nullable ObjectId featureMetadataId) {
 
-        RevTreeBuilder builder = treeBuilders.get(treePath);
-        if (builder == null) {
+        if (!treeBuilders.contains(treePath)) {
             NodeRef treeRef = currentTrees.get(treePath);
             if (treeRef == null) {
                 if (featureMetadataId == null) {
-                    return null;
+                    return false;
                 }
                 String parentPath = NodeRef.parentPath(treePath);
                 String name = NodeRef.nodeFromPath(treePath);
@@ -422,12 +419,12 @@ public class WorkingTreeImpl implements WorkingTree {
                 treeRef = new NodeRef(treeNode, parentPath, featureMetadataId);
                 currentTrees.put(treePath, treeRef);
             }
-            builder = RevTreeBuilder.builder(indexDatabase,
+            RevTreeBuilder builder = RevTreeBuilder.builder(indexDatabase,
                     context.command(FindOrCreateSubtree.class).setParent(getTree())
                             .setChildPath(treePath).call());
-            treeBuilders.put(treePath, builder);
+            treeBuilders.add(treePath, builder);
         }
-        return builder;
+        return true;
     }
 
     /**
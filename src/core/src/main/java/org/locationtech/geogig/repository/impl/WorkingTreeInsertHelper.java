@@ -10,13 +10,11 @@
 package org.locationtech.geogig.repository.impl;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -37,7 +35,6 @@ import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.storage.ObjectDatabase;
 import org.locationtech.jts.geom.Envelope;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 class WorkingTreeInsertHelper {
@@ -56,33 +53,28 @@ class WorkingTreeInsertHelper {
 
     private final Map<String, RevFeatureType> revFeatureTypes = Maps.newConcurrentMap();
 
-    private final Map<String, RevTreeBuilder> treeBuilders = Maps.newHashMap();
+    private final ParallelTreeBuilders treeBuilders = new ParallelTreeBuilders();
 
-    private final ExecutorService executorService;
-
-    public WorkingTreeInsertHelper(Context context, RevTree tree,
-            ExecutorService treeBuildingService) {
-        this(context, tree, SIMPLE_PATH_RESOLVER, treeBuildingService);
+    public WorkingTreeInsertHelper(Context context, RevTree tree) {
+        this(context, tree, SIMPLE_PATH_RESOLVER);
     }
 
     public WorkingTreeInsertHelper(Context context, RevTree workHead,
-            final Function<Feature, String> treePathResolver,
-            final ExecutorService treeBuildingService) {
+            final Function<Feature, String> treePathResolver) {
 
         this.db = context.objectDatabase();
         this.context = context;
         this.workHead = workHead;
         this.treePathResolver = treePathResolver;
-        this.executorService = treeBuildingService;
     }
 
     public List<String> getTreeNames() {
-        return new ArrayList<>(treeBuilders.keySet());
+        return new ArrayList<>(treeBuilders.getTreePaths());
     }
 
     public Node put(final ObjectId revFeatureId, final Feature feature) {
 
-        final RevTreeBuilder treeBuilder = getTreeBuilder(feature);
+        final String treePath = addTreeBuilder(feature);
 
         String fid = feature.getId();
         // System.err.printf("%s -> %s\n", fid, treeBuilder);
@@ -90,7 +82,7 @@ class WorkingTreeInsertHelper {
         FeatureType type = feature.getType();
 
         final Node node = createFeatureNode(revFeatureId, fid, bounds, type);
-        treeBuilder.put(node);
+        treeBuilders.put(treePath, node);
         return node;
     }
 
@@ -111,28 +103,28 @@ class WorkingTreeInsertHelper {
     }
 
     public void remove(FeatureToDelete feature) {
-        final RevTreeBuilder treeBuilder = getTreeBuilder(feature);
+        final String treePath = addTreeBuilder(feature);
         String fid = feature.getId();
         Node featureNode = RevObjectFactory.defaultInstance().createNode(fid, ObjectId.NULL,
                 ObjectId.NULL, TYPE.FEATURE, null, null);
-        treeBuilder.remove(featureNode);
+        treeBuilders.remove(treePath, featureNode);
     }
 
     public void remove(String featurePath) {
         final String treePath = NodeRef.parentPath(featurePath);
         final String featureId = NodeRef.nodeFromPath(featurePath);
-        Optional<RevTreeBuilder> treeBuilder = getTreeBuilder(treePath);
-        if (treeBuilder.isPresent()) {
-            RevTreeBuilder builder = treeBuilder.get();
+        if (addExistingTreeBuilder(treePath)) {
             Node featureNode = RevObjectFactory.defaultInstance().createNode(featureId,
                     ObjectId.NULL, ObjectId.NULL, TYPE.FEATURE, null, null);
-            builder.remove(featureNode);
+            treeBuilders.remove(treePath, featureNode);
         }
     }
 
-    private Optional<RevTreeBuilder> getTreeBuilder(final String treePath) {
-        RevTreeBuilder builder = treeBuilders.get(treePath);
-        if (builder == null) {
+    /**
+     * @return whether there's a builder for the existing tree at {@code treePath}
+     */
+    private boolean addExistingTreeBuilder(final String treePath) {
+        if (!treeBuilders.contains(treePath)) {
             Optional<NodeRef> treeNode = context.command(FindTreeChild.class).setParent(workHead)
                     .setChildPath(treePath).call();
             if (treeNode.isPresent()) {
@@ -142,19 +134,22 @@ class WorkingTreeInsertHelper {
                     RevFeatureType featureType = db.getFeatureType(metadataId);
                     revFeatureTypes.put(treePath, featureType);
                 }
-                builder = createBuilder(parentTree);
-                treeBuilders.put(treePath, builder);
+                treeBuilders.add(treePath, createBuilder(parentTree));
+                return true;
             }
+            return false;
         }
-        return Optional.ofNullable(builder);
+        return true;
     }
 
-    private RevTreeBuilder getTreeBuilder(final Feature feature) {
+    /**
+     * @return the path of the tree the feature belongs to, making sure there's a builder for it
+     */
+    private String addTreeBuilder(final Feature feature) {
 
         final String treePath = treePathResolver.apply(feature);
-        RevTreeBuilder builder = getTreeBuilder(treePath).orElse(null);
 
-        if (builder == null) {
+        if (!addExistingTreeBuilder(treePath)) {
             final FeatureType type = feature.getType();
             final NodeRef treeRef = findOrCreateTree(treePath, type);
             final ObjectId treeId = treeRef.getObjectId();
@@ -164,11 +159,10 @@ class WorkingTreeInsertHelper {
                 RevFeatureType featureType = db.getFeatureType(defaultMetadataId);
                 revFeatureTypes.put(treePath, featureType);
             }
-            builder = createBuilder(origTree);
-            treeBuilders.put(treePath, builder);
+            treeBuilders.add(treePath, createBuilder(origTree));
         }
 
-        return builder;
+        return treePath;
     }
 
     private NodeRef findOrCreateTree(final String treePath, final FeatureType type) {
@@ -196,77 +190,54 @@ class WorkingTreeInsertHelper {
         return RevTreeBuilder.builder(db, origTree);
     }
 
-    public Map<NodeRef, RevTree> buildTrees() {
+    /**
+     * Discards the pending changes without building the trees
+     */
+    public void dispose() {
+        treeBuilders.dispose();
+    }
 
-        final Map<NodeRef, RevTree> builtTrees = new ConcurrentHashMap<>();
+    public Map<NodeRef, RevTree> buildTrees() {
 
-        List<AsyncBuildTree> tasks = Lists.newArrayList();
+        final Map<NodeRef, RevTree> builtTrees = new LinkedHashMap<>();
 
-        for (Entry<String, RevTreeBuilder> builderEntry : treeBuilders.entrySet()) {
-            final String treePath = builderEntry.getKey();
-            final RevTreeBuilder builder = builderEntry.getValue();
+        for (Entry<String, RevTree> treeEntry : treeBuilders.build().entrySet()) {
+            final String treePath = treeEntry.getKey();
+            final RevTree tree = treeEntry.getValue();
             final RevFeatureType revFeatureType = revFeatureTypes.get(treePath);
             final ObjectId metadataId = revFeatureType.getId();
-            tasks.add(new AsyncBuildTree(treePath, builder, metadataId, builtTrees));
-        }
-        try {
-            executorService.invokeAll(tasks);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            builtTrees.put(createTreeRef(treePath, tree, metadataId), tree);
         }
         db.putAll(builtTrees.values().iterator());
         return builtTrees;
     }
 
-    private class AsyncBuildTree implements Callable<Void> {
-
-        private String treePath;
-
-        private RevTreeBuilder builder;
-
-        private Map<NodeRef, RevTree> target;
-
-        private ObjectId defaultMetadataId;
-
-        AsyncBuildTree(final String treePath, final RevTreeBuilder builder,
-                final ObjectId defaultMetadataId, final Map<NodeRef, RevTree> target) {
-
-            this.treePath = treePath;
-            this.builder = builder;
-            this.defaultMetadataId = defaultMetadataId;
-            this.target = target;
+    private NodeRef createTreeRef(final String treePath, final RevTree tree,
+            final ObjectId defaultMetadataId) {
+
+        Node treeNode;
+        {
+            ObjectId treeMetadataId = defaultMetadataId;
+            String name = NodeRef.nodeFromPath(treePath);
+            ObjectId oid = tree.getId();
+            Envelope bounds = SpatialOps.boundsOf(tree);
+            treeNode = RevObjectFactory.defaultInstance().createNode(name, oid, treeMetadataId,
+                    RevObject.TYPE.TREE, bounds, null);
         }
 
-        public @Override Void call() {
-            RevTree tree = builder.build();
-
-            Node treeNode;
-            {
-                ObjectId treeMetadataId = defaultMetadataId;
-                String name = NodeRef.nodeFromPath(treePath);
-                ObjectId oid = tree.getId();
-                Envelope bounds = SpatialOps.boundsOf(tree);
-                treeNode = RevObjectFactory.defaultInstance().createNode(name, oid, treeMetadataId,
-                        RevObject.TYPE.TREE, bounds, null);
-            }
-
-            final String parentPath = NodeRef.parentPath(treePath);
-            final ObjectId parentMetadataId;
-            if (NodeRef.ROOT.equals(parentPath)) {
-                parentMetadataId = ObjectId.NULL;
-            } else {
-                Optional<NodeRef> parentRef = context.command(FindTreeChild.class)
-                        .setChildPath(parentPath).setParent(workHead).setParentPath(NodeRef.ROOT)
-                        .call();
-
-                parentMetadataId = parentRef.isPresent() ? parentRef.get().getMetadataId()
-                        : ObjectId.NULL;
-            }
-            NodeRef newTreeRef = new NodeRef(treeNode, parentPath, parentMetadataId);
-            target.put(newTreeRef, tree);
-            return null;
+        final String parentPath = NodeRef.parentPath(treePath);
+        final ObjectId parentMetadataId;
+        if (NodeRef.ROOT.equals(parentPath)) {
+            parentMetadataId = ObjectId.NULL;
+        } else {
+            Optional<NodeRef> parentRef = context.command(FindTreeChild.class)
+                    .setChildPath(parentPath).setParent(workHead).setParentPath(NodeRef.ROOT)
+                    .call();
+
+            parentMetadataId = parentRef.isPresent() ? parentRef.get().getMetadataId()
+                    : ObjectId.NULL;
         }
-
+        return new NodeRef(treeNode, parentPath, parentMetadataId);
     }
 
 }
\ No newline at end of file
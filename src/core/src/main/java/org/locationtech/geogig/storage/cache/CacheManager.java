@@ -50,13 +50,18 @@ import lombok.NonNull;
  * <h3>Configuration</h3> The initial maximum capacity for the shared cache defaults to 25% of the
  * JVM's maximum heap size.
  * <p>
+ * The cache implementation is looked up as the {@link SharedCacheBuilder} service with the highest
+ * priority in the classpath, or given by the {@link #ENV_VAR SHARED_CACHE_BUILDER} System property
+ * or environment variable.
+ * <p>
  * This value can be overridden either by an environment variable or Java System property called
  * {@code GEOGIG_CACHE_MAX_SIZE}, with the System property taking precedence over the environment
  * variable.
  * <p>
  * The value of the {@code GEOGIG_CACHE_MAX_SIZE} can be expressed as a percentage of the JVM's
  * maximum heap size or an absolute size. In either case, it cannot exceed 90% of the JVM's maximum
- * heap size.
+ * heap size, unless the cache implementation stores objects {@link SharedCacheBuilder#isOffHeap()
+ * off-heap}.
  * <p>
  * The {@code GEOGIG_CACHE_MAX_SIZE} argument value can be expressed in the following format:
  * <ul>
@@ -105,6 +110,11 @@ public class CacheManager implements CacheManagerBean {
 
     private final AtomicInteger CACHE_ID_SEQ = new AtomicInteger();
 
+    /**
+     * Quotas set by {@link #setQuota}, to apply to the shared cache when it's replaced
+     */
+    private final ConcurrentMap<CacheIdentifier, long[]> QUOTAS = new ConcurrentHashMap<>();
+
     /**
      * Cached value of {@link #resolveDefaultMaxSize()}
      */
@@ -241,7 +251,7 @@ public class CacheManager implements CacheManagerBean {
      * @return -1 if {@code sizeArg} is null, the parsed size in bytes otherwise
      * @throws IllegalArgumentException if {@code sizeArg} is non null and can't be parsed
      */
-    long parseCacheSizeArgument(@Nullable String sizeArg) throws IllegalArgumentException {
+    public long parseCacheSizeArgument(@Nullable String sizeArg) throws IllegalArgumentException {
         if (null == sizeArg) {
             return -1L;
         }
@@ -293,6 +303,10 @@ public class CacheManager implements CacheManagerBean {
      * @param uniqueCacheIdentifier a client defined identifier for the objectcache
      */
     public ObjectCache acquire(final @NonNull String uniqueCacheIdentifier) {
+        return CACHES.acquire(cacheId(uniqueCacheIdentifier));
+    }
+
+    private CacheIdentifier cacheId(final String uniqueCacheIdentifier) {
         CacheIdentifier prefix = CACHE_IDS.get(uniqueCacheIdentifier);
         if (prefix == null) {
             prefix = new CacheIdentifier(CACHE_ID_SEQ.incrementAndGet());
@@ -301,8 +315,29 @@ public class CacheManager implements CacheManagerBean {
                 prefix = existing;
             }
         }
+        return prefix;
+    }
 
-        return CACHES.acquire(prefix);
+    /**
+     * Limits the share of the shared cache the objects of an {@link ObjectCache} can use, if the
+     * shared cache implementation keeps the objects of each one apart.
+     * 
+     * @param uniqueCacheIdentifier the identifier the object cache is {@link #acquire acquired}
+     *        with
+     * @param maxSizeBytes the maximum size in bytes, or {@code 0} for no limit other than its share
+     *        of the cache
+     * @param weight the size of its share of the cache relative to the weights of the others,
+     *        which default to {@code 1}
+     * @see SharedCache#setQuota
+     * @since 2.0
+     */
+    public void setQuota(final @NonNull String uniqueCacheIdentifier, long maxSizeBytes,
+            int weight) {
+        checkArgument(maxSizeBytes >= 0, "Quota can't be < 0, 0 meaning no quota");
+        checkArgument(weight > 0, "Weight must be a positive integer");
+        CacheIdentifier cacheId = cacheId(uniqueCacheIdentifier);
+        QUOTAS.put(cacheId, new long[] { maxSizeBytes, weight });
+        sharedCache().setQuota(cacheId, maxSizeBytes, weight);
     }
 
     /**
@@ -421,8 +456,7 @@ public class CacheManager implements CacheManagerBean {
         } else {
             SharedCacheBuilder builder;
             try {
-                builder = new ServiceFinder().environmentVariable(ENV_VAR).systemProperty(ENV_VAR)
-                        .lookupDefaultService(SharedCacheBuilder.class);
+                builder = lookupCacheBuilder();
                 LOG.info("Obtained cache builder {}", builder.getClass().getName());
                 builder.setMaxSizeBytes(maxSizeBytes);
                 cache = builder.build();
@@ -435,10 +469,12 @@ public class CacheManager implements CacheManagerBean {
             }
         }
 
+        final SharedCache newCache = cache;
+        QUOTAS.forEach((id, quota) -> newCache.setQuota(id, quota[0], (int) quota[1]));
         SharedCache old = _SHARED_CACHE;
         _SHARED_CACHE = cache;
         if (old != null) {
-            old.invalidateAll();
+            old.dispose();
         }
         this.currentMaxCacheSize = maxSizeBytes;
     }
@@ -458,11 +494,39 @@ public class CacheManager implements CacheManagerBean {
         return maxMemory / (double) (1024 * 1024);
     }
 
+    /**
+     * @return 90% of the maximum heap size, or {@link Long#MAX_VALUE} if the cache implementation
+     *         stores objects off-heap
+     */
     long getAbsoluteMaximumSize() {
+        if (isOffHeap()) {
+            return Long.MAX_VALUE;
+        }
         double maxMemory = getMaximumHeapSize();
         return (long) (maxMemory * 0.9);
     }
 
+    /**
+     * @return whether the {@link SharedCacheBuilder} in use builds caches that store objects
+     *         outside the JVM heap
+     * @see SharedCacheBuilder#isOffHeap()
+     */
+    boolean isOffHeap() {
+        try {
+            return lookupCacheBuilder().isOffHeap();
+        } catch (NoSuchElementException noBuilderPresent) {
+            return false;
+        }
+    }
+
+    /**
+     * @throws NoSuchElementException if no {@link SharedCacheBuilder} is found
+     */
+    SharedCacheBuilder lookupCacheBuilder() throws NoSuchElementException {
+        return new ServiceFinder().environmentVariable(ENV_VAR).systemProperty(ENV_VAR)
+                .lookupDefaultService(SharedCacheBuilder.class);
+    }
+
     @Nullable
     public @Override String getMaximumSizeSystemProperty() {
         return System.getProperty(GEOGIG_CACHE_MAX_SIZE);
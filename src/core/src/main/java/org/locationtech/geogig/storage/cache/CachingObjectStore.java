@@ -0,0 +1,26 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.cache;
+
+import org.locationtech.geogig.storage.ObjectStore;
+
+/**
+ * Implemented by {@link ObjectStore}s that keep their objects in the {@link CacheManager shared
+ * cache}, to give access to their share of it.
+ *
+ * @since 2.0
+ */
+public interface CachingObjectStore {
+
+    /**
+     * @return the cache the object store {@link CacheManager#acquire acquired}
+     */
+    ObjectCache getCache();
+}
@@ -12,6 +12,8 @@ package org.locationtech.geogig.storage.cache;
 import java.util.function.Supplier;
 
 import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.Counter;
+import org.locationtech.geogig.metrics.Metrics;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.storage.ObjectStore;
@@ -27,6 +29,10 @@ import org.locationtech.geogig.storage.ObjectStore;
  * <p>
  * Once an {@code ObjectStore} is done with its cache, must return it to the {@code CacheManager}
  * through its {@link CacheManager#release(ObjectCache)} method.
+ * <p>
+ * Lookups are reported to the {@link Metrics} registry as {@code cache.<prefix>.hits} and
+ * {@code cache.<prefix>.misses}, where {@code prefix} is the {@link CacheIdentifier#prefix()
+ * cache identifier} prefix.
  *
  */
 public class ObjectCache {
@@ -35,9 +41,13 @@ public class ObjectCache {
 
     private final Supplier<SharedCache> sharedCache;
 
+    private final Counter hits, misses;
+
     public ObjectCache(Supplier<SharedCache> cache, CacheIdentifier prefix) {
         this.sharedCache = cache;
         this.keyPrefix = prefix;
+        this.hits = Metrics.counter("cache." + prefix.prefix() + ".hits");
+        this.misses = Metrics.counter("cache." + prefix.prefix() + ".misses");
     }
 
     /**
@@ -67,10 +77,22 @@ public class ObjectCache {
         cache.put(key, obj);
     }
 
+    /**
+     * @return whether this cache uses all the room it can in the shared cache, so adding more
+     *         objects to it would evict others of its own
+     * @see SharedCache#isFull(CacheIdentifier)
+     * @since 2.0
+     */
+    public boolean isFull() {
+        return sharedCache.get().isFull(keyPrefix);
+    }
+
     /**
      * Returns the cached object with the given id, if present, or {@code null} otherwise
      */
     public @Nullable RevObject getIfPresent(ObjectId id) {
-        return sharedCache.get().getIfPresent(keyPrefix.create(id));
+        RevObject cached = sharedCache.get().getIfPresent(keyPrefix.create(id));
+        (cached == null ? misses : hits).inc();
+        return cached;
     }
 }
@@ -78,6 +78,30 @@ public interface SharedCache {
     default void invalidate(CacheKey id) {
     }
 
+    /**
+     * Limits the share of the cache the objects of the given {@link ObjectCache} can use, for cache
+     * implementations that keep the objects of each one apart; ignored otherwise.
+     * 
+     * @param maxSizeBytes the maximum size in bytes, or {@code 0} for no limit other than its share
+     *        of the cache
+     * @param weight the size of its share of the cache relative to the weights of the others,
+     *        which default to {@code 1}
+     * @since 2.0
+     */
+    default void setQuota(CacheIdentifier cacheId, long maxSizeBytes, int weight) {
+    }
+
+    /**
+     * Whether the objects of the given {@link ObjectCache} use all the room they can, so adding
+     * more of them would evict others, for cache implementations that can tell; {@code false}
+     * otherwise.
+     * 
+     * @since 2.0
+     */
+    default boolean isFull(CacheIdentifier cacheId) {
+        return false;
+    }
+
     default @Nullable RevObject getIfPresent(CacheKey key) {
         return null;
     }
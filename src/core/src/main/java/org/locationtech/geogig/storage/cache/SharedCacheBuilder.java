@@ -22,6 +22,15 @@ public interface SharedCacheBuilder extends PriorityService {
 
     void setMaxSizeBytes(long maxSizeBytes);
 
+    /**
+     * Whether the caches built by this builder store their objects outside the JVM heap, in which
+     * case the {@link CacheManager} does not limit the maximum cache size to a fraction of the
+     * maximum heap size.
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+
     SharedCache build();
 
 }
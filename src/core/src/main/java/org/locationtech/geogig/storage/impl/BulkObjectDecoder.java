@@ -0,0 +1,408 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.metrics.Metrics;
+import org.locationtech.geogig.metrics.Timer;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.RevObjectSerializer;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * A pipelined decoding stage for {@link ObjectStore} bulk queries.
+ * <p>
+ * Backends fetch batches of raw objects ({@link Encoded} id and serialized form pairs) from their
+ * storage, and this stage decodes them through a {@link RevObjectSerializer} on a bounded thread
+ * pool, splitting each batch in chunks so that large batches are decoded by several cores at once.
+ * <p>
+ * When decoding a stream of batches through {@link #decode(Iterator, RevObjectSerializer, boolean)}
+ * the next batches are fetched from the source iterator (i.e. the storage I/O happens) on the
+ * calling thread while the pool decodes the previous ones, keeping a bounded number of chunks in
+ * flight. Results can be returned in the same order as the source batches, or in completion order
+ * if the caller does not need to preserve the query order.
+ *
+ * @since 2.0
+ */
+public class BulkObjectDecoder {
+
+    /**
+     * Default number of objects per decoding task
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    /**
+     * Time taken to decode each chunk of objects
+     */
+    private static final Timer DECODE_TIMER = Metrics.timer("storage.decode");
+
+    private static final BulkObjectDecoder INSTANCE = new BulkObjectDecoder(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), DEFAULT_CHUNK_SIZE);
+
+    private final ExecutorService executor;
+
+    private final int parallelism;
+
+    private final int chunkSize;
+
+    /**
+     * Creates a decoder with its own pool of {@code parallelism} daemon threads.
+     */
+    public BulkObjectDecoder(int parallelism, int chunkSize) {
+        checkArgument(parallelism > 0, "parallelism must be > 0: %s", parallelism);
+        checkArgument(chunkSize > 0, "chunkSize must be > 0: %s", chunkSize);
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setDaemon(true).setNameFormat("geogig-object-decoder-%d").build());
+    }
+
+    /**
+     * @return the JVM wide decoder, using as many threads as available processors
+     */
+    public static BulkObjectDecoder shared() {
+        return INSTANCE;
+    }
+
+    /**
+     * A serialized object as fetched from the storage backend.
+     *
+     * @param <A> the type of the caller provided attachment (e.g. the {@code NodeRef} the object
+     *        was requested for), use {@code Void} if not needed
+     */
+    public static final class Encoded<A> {
+
+        private final ObjectId id;
+
+        private final A attachment;
+
+        private final byte[] bytes;
+
+        private Encoded(ObjectId id, @Nullable A attachment, @Nullable byte[] bytes) {
+            this.id = id;
+            this.attachment = attachment;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @param bytes the serialized object, or {@code null} if the object was not found
+         */
+        public static <A> Encoded<A> of(@NonNull ObjectId id, @Nullable A attachment,
+                @Nullable byte[] bytes) {
+            return new Encoded<>(id, attachment, bytes);
+        }
+
+        public static Encoded<Void> of(@NonNull ObjectId id, @Nullable byte[] bytes) {
+            return new Encoded<>(id, null, bytes);
+        }
+
+        public ObjectId id() {
+            return id;
+        }
+
+        public @Nullable A attachment() {
+            return attachment;
+        }
+
+        public @Nullable byte[] bytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * The result of decoding an {@link Encoded} object
+     */
+    public static final class Decoded<A> {
+
+        private final ObjectId id;
+
+        private final A attachment;
+
+        private final RevObject object;
+
+        private final int size;
+
+        private Decoded(ObjectId id, @Nullable A attachment, @Nullable RevObject object,
+                int size) {
+            this.id = id;
+            this.attachment = attachment;
+            this.object = object;
+            this.size = size;
+        }
+
+        public ObjectId id() {
+            return id;
+        }
+
+        public @Nullable A attachment() {
+            return attachment;
+        }
+
+        /**
+         * @return the decoded object, or {@code null} if the object was not found
+         */
+        public @Nullable RevObject object() {
+            return object;
+        }
+
+        /**
+         * @return the serialized size of the object, {@code 0} if not found
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Decodes a single object on the calling thread
+     */
+    public static <A> Decoded<A> decode(Encoded<A> encoded, RevObjectSerializer serializer) {
+        final ObjectId id = encoded.id();
+        final byte[] bytes = encoded.bytes();
+        if (bytes == null) {
+            return new Decoded<>(id, encoded.attachment(), null, 0);
+        }
+        RevObject object;
+        try {
+            object = serializer.read(id, bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Decoded<>(id, encoded.attachment(), object, bytes.length);
+    }
+
+    /**
+     * Decodes the batch of objects using the thread pool and waits for the result.
+     *
+     * @return the decoded objects in the same order as {@code batch}
+     */
+    public <A> List<Decoded<A>> decode(List<Encoded<A>> batch, RevObjectSerializer serializer) {
+        if (batch.size() <= chunkSize) {
+            return decodeChunk(batch, serializer);
+        }
+        List<Future<List<Decoded<A>>>> futures = new ArrayList<>();
+        for (List<Encoded<A>> chunk : Lists.partition(batch, chunkSize)) {
+            futures.add(executor.submit(() -> decodeChunk(chunk, serializer)));
+        }
+        List<Decoded<A>> result = new ArrayList<>(batch.size());
+        try {
+            for (Future<List<Decoded<A>>> f : futures) {
+                result.addAll(get(f));
+            }
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return result;
+    }
+
+    /**
+     * Creates a pipelined decoding iterator over the {@code batches} of raw objects.
+     * <p>
+     * The source iterator is consumed on the calling thread as the returned iterator is traversed,
+     * while up to twice the pool size chunks are being decoded in the background.
+     *
+     * @param ordered whether to return the decoded objects in the same order as they're provided
+     *        by {@code batches}, otherwise they're returned as soon as each chunk is decoded
+     * @return an iterator of decoded objects whose {@link AutoCloseableIterator#close() close()}
+     *         method cancels any pending decoding task
+     */
+    public <A> AutoCloseableIterator<Decoded<A>> decode(@NonNull Iterator<List<Encoded<A>>> batches,
+            @NonNull RevObjectSerializer serializer, boolean ordered) {
+        Iterator<List<Encoded<A>>> chunks = Iterators.concat(
+                Iterators.transform(batches, b -> Lists.partition(b, chunkSize).iterator()));
+        final int maxInFlight = 2 * parallelism;
+        if (ordered) {
+            return new OrderedIterator<>(chunks, serializer, maxInFlight);
+        }
+        return new UnorderedIterator<>(chunks, serializer, maxInFlight);
+    }
+
+    private static <A> List<Decoded<A>> decodeChunk(List<Encoded<A>> chunk,
+            RevObjectSerializer serializer) {
+        final long start = DECODE_TIMER.start();
+        List<Decoded<A>> decoded = new ArrayList<>(chunk.size());
+        for (Encoded<A> e : chunk) {
+            decoded.add(decode(e, serializer));
+        }
+        DECODE_TIMER.stop(start);
+        return decoded;
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfUnchecked(cause);
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private abstract class DecodingIterator<A> implements AutoCloseableIterator<Decoded<A>> {
+
+        protected final Iterator<List<Encoded<A>>> chunks;
+
+        protected final RevObjectSerializer serializer;
+
+        protected final int maxInFlight;
+
+        private Iterator<Decoded<A>> current = Collections.emptyIterator();
+
+        private boolean closed;
+
+        DecodingIterator(Iterator<List<Encoded<A>>> chunks, RevObjectSerializer serializer,
+                int maxInFlight) {
+            this.chunks = chunks;
+            this.serializer = serializer;
+            this.maxInFlight = maxInFlight;
+        }
+
+        protected Future<List<Decoded<A>>> submit(List<Encoded<A>> chunk) {
+            return executor.submit(() -> decodeChunk(chunk, serializer));
+        }
+
+        /**
+         * Submits chunks from the source until there are {@code maxInFlight} pending tasks
+         */
+        protected abstract void fill();
+
+        /**
+         * Takes the next decoded chunk, or {@code null} if there are no pending tasks
+         */
+        protected abstract @Nullable Future<List<Decoded<A>>> take();
+
+        protected abstract void cancelPending();
+
+        public @Override boolean hasNext() {
+            while (!closed && !current.hasNext()) {
+                fill();
+                Future<List<Decoded<A>>> next = take();
+                if (next == null) {
+                    return false;
+                }
+                // keep the pipeline full while we wait for the next result
+                fill();
+                current = get(next).iterator();
+            }
+            return !closed && current.hasNext();
+        }
+
+        public @Override Decoded<A> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        public @Override void close() {
+            closed = true;
+            current = Collections.emptyIterator();
+            cancelPending();
+        }
+    }
+
+    private class OrderedIterator<A> extends DecodingIterator<A> {
+
+        private final Deque<Future<List<Decoded<A>>>> pending = new ArrayDeque<>();
+
+        OrderedIterator(Iterator<List<Encoded<A>>> chunks, RevObjectSerializer serializer,
+                int maxInFlight) {
+            super(chunks, serializer, maxInFlight);
+        }
+
+        protected @Override void fill() {
+            while (pending.size() < maxInFlight && chunks.hasNext()) {
+                pending.addLast(submit(chunks.next()));
+            }
+        }
+
+        protected @Override Future<List<Decoded<A>>> take() {
+            return pending.pollFirst();
+        }
+
+        protected @Override void cancelPending() {
+            pending.forEach(f -> f.cancel(true));
+            pending.clear();
+        }
+    }
+
+    private class UnorderedIterator<A> extends DecodingIterator<A> {
+
+        private final CompletionService<List<Decoded<A>>> completionService;
+
+        private final List<Future<List<Decoded<A>>>> pending = new ArrayList<>();
+
+        UnorderedIterator(Iterator<List<Encoded<A>>> chunks, RevObjectSerializer serializer,
+                int maxInFlight) {
+            super(chunks, serializer, maxInFlight);
+            this.completionService = new ExecutorCompletionService<>(executor);
+        }
+
+        protected @Override Future<List<Decoded<A>>> submit(List<Encoded<A>> chunk) {
+            return completionService.submit(() -> decodeChunk(chunk, serializer));
+        }
+
+        protected @Override void fill() {
+            while (pending.size() < maxInFlight && chunks.hasNext()) {
+                pending.add(submit(chunks.next()));
+            }
+        }
+
+        protected @Override Future<List<Decoded<A>>> take() {
+            if (pending.isEmpty()) {
+                return null;
+            }
+            Future<List<Decoded<A>>> next;
+            try {
+                next = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            pending.remove(next);
+            return next;
+        }
+
+        protected @Override void cancelPending() {
+            pending.forEach(f -> f.cancel(true));
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.NodeRef;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import lombok.NonNull;
+
+/**
+ * Bloom filter of the tree paths changed by a commit, stored in the {@link CommitGraph} to quickly
+ * tell commits that didn't modify a given path apart.
+ * <p>
+ * The filter of a commit holds the paths of all the trees that differ between the commit's root
+ * tree and the root tree of any of its parents (or the empty tree for root commits), plus the
+ * {@link #ROOT_FEATURES} key if features directly under the root tree changed. Since a change to
+ * a feature changes its parent tree and all the trees up to the root, a commit can only have
+ * changed a path if the filter contains the path itself (when it's a tree) or its parent path
+ * (when it's a feature).
+ * <p>
+ * Uses 10 bits per path and 7 hash functions, for a false positive rate of about 1%. Commits
+ * that change more than {@link #MAX_PATHS} trees get no filter.
+ *
+ * @since 2.0
+ */
+public final class ChangedPathsFilter {
+
+    /**
+     * Key added when features directly under the root tree changed, same as the root tree path
+     */
+    public static final String ROOT_FEATURES = NodeRef.ROOT;
+
+    public static final int MAX_PATHS = 512;
+
+    private static final int BITS_PER_PATH = 10;
+
+    private static final int NUM_HASHES = 7;
+
+    /**
+     * Small filters get a minimum size to keep the false positive rate low
+     */
+    private static final int MIN_BITS = Long.SIZE;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private ChangedPathsFilter() {
+        // utility class
+    }
+
+    /**
+     * @return the filter for the given changed paths, or {@code null} if there are more than
+     *         {@link #MAX_PATHS}
+     */
+    public static @Nullable byte[] create(@NonNull Collection<String> changedPaths) {
+        if (changedPaths.size() > MAX_PATHS) {
+            return null;
+        }
+        final int numBits = Math.max(MIN_BITS, changedPaths.size() * BITS_PER_PATH);
+        final byte[] filter = new byte[(numBits + Byte.SIZE - 1) / Byte.SIZE];
+        for (String path : changedPaths) {
+            final HashCode hash = hash(path);
+            final long h1 = hash.asLong();
+            final long h2 = h2(hash);
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int bit = bitIndex(h1, h2, i, filter.length);
+                filter[bit >>> 3] |= (1 << (bit & 7));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * @return {@code false} if {@code key} is definitely not in the filter
+     */
+    public static boolean mightContain(@NonNull byte[] filter, @NonNull String key) {
+        if (filter.length == 0) {
+            return true;
+        }
+        final HashCode hash = hash(key);
+        final long h1 = hash.asLong();
+        final long h2 = h2(hash);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            int bit = bitIndex(h1, h2, i, filter.length);
+            if ((filter[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param filter the commit's filter, or {@code null} if unknown
+     * @param path the path of a tree or feature
+     * @return {@code false} if the commit definitely didn't change {@code path}
+     */
+    public static boolean mightHaveChanged(@Nullable byte[] filter, @NonNull String path) {
+        if (filter == null) {
+            return true;
+        }
+        if (mightContain(filter, path)) {
+            return true;
+        }
+        // top level paths have the ROOT_FEATURES key as parent path
+        final String parentPath = NodeRef.parentPath(path);
+        return parentPath == null || mightContain(filter, parentPath);
+    }
+
+    private static HashCode hash(String path) {
+        return HASH.hashString(path, StandardCharsets.UTF_8);
+    }
+
+    private static long h2(HashCode hash) {
+        byte[] bytes = hash.asBytes();
+        return Longs.fromBytes(bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13],
+                bytes[14], bytes[15]);
+    }
+
+    private static int bitIndex(long h1, long h2, int i, int filterBytes) {
+        long combined = h1 + i * h2;
+        return (int) Long.remainderUnsigned(combined, filterBytes * (long) Byte.SIZE);
+    }
+}
@@ -0,0 +1,316 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.storage.GraphDatabase;
+
+import com.google.common.collect.ImmutableList;
+
+import lombok.NonNull;
+
+/**
+ * An immutable snapshot of the commit graph acceleration index, as maintained by
+ * {@link CommitGraphStore}.
+ * <p>
+ * The commit graph holds, for each indexed commit, its parents, commit time, and generation
+ * number, and optionally a {@link ChangedPathsFilter filter} of the paths it changed, in a compact
+ * form that doesn't require a {@link GraphDatabase} or object database lookup
+ * per commit while traversing the history. The generation number of a commit is one more than the
+ * maximum generation number of its parents, root commits having generation {@code 1}, which allows
+ * graph walks to visit commits in an order where every commit is visited after all its descendants,
+ * and hence to stop as soon as the answer is known instead of walking the whole history.
+ * <p>
+ * A commit is only indexed if all its ancestors are indexed too, so the graph can answer
+ * reachability questions for any commit it {@link #contains(ObjectId) contains}. Since commits are
+ * immutable, a snapshot never becomes invalid, at most it lacks the commits created after it was
+ * taken.
+ *
+ * @since 2.0
+ */
+public final class CommitGraph {
+
+    static final CommitGraph EMPTY = new CommitGraph(Collections.emptyList());
+
+    private static final byte LEFT = 0x01, RIGHT = 0x02, STALE = 0x04, RESULT = 0x08;
+
+    private static final byte BOTH = LEFT | RIGHT;
+
+    /**
+     * Layers, lower layer first
+     */
+    final List<CommitGraphLayer> layers;
+
+    private final int size;
+
+    CommitGraph(List<CommitGraphLayer> layers) {
+        this.layers = ImmutableList.copyOf(layers);
+        this.size = layers.stream().mapToInt(l -> l.size).sum();
+    }
+
+    /**
+     * @return the number of commits in the graph
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(@NonNull ObjectId commitId) {
+        return position(commitId) >= 0;
+    }
+
+    /**
+     * @return the generation number of the commit, or {@link Optional#empty() empty} if it's not
+     *         in the graph
+     */
+    public Optional<Integer> getGeneration(@NonNull ObjectId commitId) {
+        final int pos = position(commitId);
+        return pos < 0 ? Optional.empty() : Optional.of(generation(pos));
+    }
+
+    /**
+     * @return the parents of the commit, or {@link Optional#empty() empty} if it's not in the
+     *         graph
+     */
+    public Optional<List<ObjectId>> getParents(@NonNull ObjectId commitId) {
+        final int pos = position(commitId);
+        if (pos < 0) {
+            return Optional.empty();
+        }
+        List<ObjectId> parents = new ArrayList<>(2);
+        forEachParent(pos, p -> parents.add(id(p)));
+        return Optional.of(parents);
+    }
+
+    /**
+     * Uses the commit's {@link ChangedPathsFilter changed paths filter} to tell whether it could
+     * have modified the tree or feature at {@code path} with respect to any of its parents.
+     *
+     * @return {@code false} if the commit is in the graph and definitely didn't change
+     *         {@code path}, {@code true} otherwise
+     */
+    public boolean mightHaveChanged(@NonNull ObjectId commitId, @NonNull String path) {
+        final int pos = position(commitId);
+        if (pos < 0) {
+            return true;
+        }
+        return ChangedPathsFilter.mightHaveChanged(changedPaths(pos), path);
+    }
+
+    /**
+     * Finds the best common ancestor of two commits, that is, the common ancestor that's not an
+     * ancestor of any other common ancestor. If there's more than one (e.g. criss-cross merges),
+     * returns the one with the highest generation number and most recent commit time.
+     *
+     * @throws IllegalArgumentException if either commit is not in the graph
+     */
+    public Optional<ObjectId> findLowestCommonAncestor(@NonNull ObjectId left,
+            @NonNull ObjectId right) {
+        final int leftPos = position(left);
+        final int rightPos = position(right);
+        checkArgument(leftPos >= 0, "commit %s is not in the commit graph", left);
+        checkArgument(rightPos >= 0, "commit %s is not in the commit graph", right);
+        if (leftPos == rightPos) {
+            return Optional.of(left);
+        }
+
+        final byte[] flags = new byte[size];
+        final PriorityQueue<Integer> queue = newQueue();
+        final List<Integer> results = new ArrayList<>(2);
+        flags[leftPos] |= LEFT;
+        flags[rightPos] |= RIGHT;
+        queue.add(leftPos);
+        queue.add(rightPos);
+
+        while (hasNonStale(queue, flags, STALE)) {
+            final int commit = queue.poll();
+            int f = flags[commit] & (BOTH | STALE);
+            if ((f & BOTH) == BOTH) {
+                if ((flags[commit] & RESULT) == 0) {
+                    flags[commit] |= RESULT;
+                    results.add(commit);
+                }
+                f |= STALE;
+            }
+            final byte paint = (byte) f;
+            forEachParent(commit, parent -> {
+                if ((flags[parent] & paint) != paint) {
+                    flags[parent] |= paint;
+                    queue.add(parent);
+                }
+            });
+        }
+
+        // ancestors of other results got painted as stale by them
+        return results.stream().filter(pos -> (flags[pos] & STALE) == 0)
+                .min(descendantsFirst()).map(this::id);
+    }
+
+    /**
+     * Counts the commits reachable from one commit and not the other.
+     *
+     * @return a two element array with the number of commits reachable from {@code left} but not
+     *         from {@code right} at index {@code 0}, and the number of commits reachable from
+     *         {@code right} but not from {@code left} at index {@code 1}
+     * @throws IllegalArgumentException if either commit is not in the graph
+     */
+    public int[] countAheadBehind(@NonNull ObjectId left, @NonNull ObjectId right) {
+        final int leftPos = position(left);
+        final int rightPos = position(right);
+        checkArgument(leftPos >= 0, "commit %s is not in the commit graph", left);
+        checkArgument(rightPos >= 0, "commit %s is not in the commit graph", right);
+        if (leftPos == rightPos) {
+            return new int[2];
+        }
+        final byte[] flags = new byte[size];
+        final PriorityQueue<Integer> queue = newQueue();
+        final List<Integer> visited = new ArrayList<>();
+        flags[leftPos] |= LEFT;
+        flags[rightPos] |= RIGHT;
+        queue.add(leftPos);
+        queue.add(rightPos);
+        visited.add(leftPos);
+        visited.add(rightPos);
+
+        // commits are polled after all their descendants, so by the time all the queued commits
+        // are reachable from both sides, the flags of the visited commits are final
+        while (hasNonStale(queue, flags, BOTH)) {
+            final int commit = queue.poll();
+            final byte paint = (byte) (flags[commit] & BOTH);
+            forEachParent(commit, parent -> {
+                if (flags[parent] == 0) {
+                    visited.add(parent);
+                }
+                if ((flags[parent] & paint) != paint) {
+                    flags[parent] |= paint;
+                    queue.add(parent);
+                }
+            });
+        }
+        int ahead = 0, behind = 0;
+        for (int pos : visited) {
+            final int f = flags[pos] & BOTH;
+            if (f == LEFT) {
+                ahead++;
+            } else if (f == RIGHT) {
+                behind++;
+            }
+        }
+        return new int[] { ahead, behind };
+    }
+
+    public @Override String toString() {
+        return String.format("%s[commits: %,d, layers: %d]", getClass().getSimpleName(), size,
+                layers.size());
+    }
+
+    /**
+     * @return the position of the commit in the graph, or {@code -1} if not found
+     */
+    int position(ObjectId commitId) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            CommitGraphLayer layer = layers.get(i);
+            int index = layer.find(commitId);
+            if (index >= 0) {
+                return layer.base + index;
+            }
+        }
+        return -1;
+    }
+
+    ObjectId id(int pos) {
+        CommitGraphLayer layer = layer(pos);
+        return layer.id(pos - layer.base);
+    }
+
+    int generation(int pos) {
+        CommitGraphLayer layer = layer(pos);
+        return layer.generation(pos - layer.base);
+    }
+
+    long commitTime(int pos) {
+        CommitGraphLayer layer = layer(pos);
+        return layer.commitTime(pos - layer.base);
+    }
+
+    @Nullable
+    byte[] changedPaths(int pos) {
+        CommitGraphLayer layer = layer(pos);
+        return layer.changedPaths(pos - layer.base);
+    }
+
+    void forEachParent(final int pos, IntConsumer consumer) {
+        final CommitGraphLayer layer = layer(pos);
+        final int index = pos - layer.base;
+        final int parent1 = layer.parent1(index);
+        if (parent1 == CommitGraphLayer.PARENT_NONE) {
+            return;
+        }
+        consumer.accept(parent1);
+        final int parent2 = layer.parent2(index);
+        if (parent2 == CommitGraphLayer.PARENT_NONE) {
+            return;
+        }
+        if ((parent2 & CommitGraphLayer.EXTRA_EDGES) == 0) {
+            consumer.accept(parent2);
+            return;
+        }
+        int edgeIndex = parent2 & ~CommitGraphLayer.EXTRA_EDGES;
+        int edge;
+        do {
+            edge = layer.edge(edgeIndex++);
+            consumer.accept(edge & ~CommitGraphLayer.LAST_EDGE);
+        } while ((edge & CommitGraphLayer.LAST_EDGE) == 0);
+    }
+
+    private CommitGraphLayer layer(int pos) {
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            CommitGraphLayer layer = layers.get(i);
+            if (pos >= layer.base) {
+                return layer;
+            }
+        }
+        throw new IndexOutOfBoundsException(String.valueOf(pos));
+    }
+
+    /**
+     * Higher generation first, then most recent commit time first
+     */
+    private Comparator<Integer> descendantsFirst() {
+        return (p1, p2) -> {
+            int c = Integer.compare(generation(p2), generation(p1));
+            return c == 0 ? Long.compare(commitTime(p2), commitTime(p1)) : c;
+        };
+    }
+
+    private PriorityQueue<Integer> newQueue() {
+        return new PriorityQueue<>(descendantsFirst());
+    }
+
+    private static boolean hasNonStale(PriorityQueue<Integer> queue, byte[] flags, byte stale) {
+        for (int pos : queue) {
+            if ((flags[pos] & stale) != stale) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,332 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObjects;
+
+/**
+ * A single file of a {@link CommitGraph}, holding a set of commits sorted by id.
+ * <p>
+ * Commits are addressed by their position in the whole graph, which is the position of the commit
+ * inside its layer plus the number of commits in all the layers below it, hence parent positions
+ * of commits in a layer may point to commits in the same layer or in any layer below it, but never
+ * above it.
+ * <p>
+ * File layout, all numbers big endian:
+ *
+ * <pre>
+ * <code>
+ * header:  int magic, int version, int commit count, int extra edges count, int filters size
+ * fanout:  256 int, number of commits whose id's first byte is less than or equal to the index
+ * ids:     commit count * 20 bytes, sorted
+ * data:    commit count * (int generation, int parent1, int parent2, long commit time)
+ * edges:   extra edges count * int
+ * filters: commit count * int, end offset of each commit's filter in the filter data
+ * filter data: filters size bytes
+ * </code>
+ * </pre>
+ *
+ * {@code parent1} and {@code parent2} are {@link #PARENT_NONE} for commits with less than one or
+ * two parents. Commits with more than two parents have the {@link #EXTRA_EDGES} bit set in
+ * {@code parent2}, and the remaining bits are the index in the edges section of the list of
+ * parents after the first one, where the last one has the {@link #LAST_EDGE} bit set.
+ * <p>
+ * Commits whose {@link ChangedPathsFilter changed paths filter} is unknown have an empty filter.
+ */
+final class CommitGraphLayer {
+
+    static final int MAGIC = 0x47474347;// "GGCG"
+
+    static final int VERSION = 1;
+
+    static final int PARENT_NONE = 0x70000000;
+
+    static final int EXTRA_EDGES = 0x80000000;
+
+    static final int LAST_EDGE = 0x80000000;
+
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+
+    private static final int FANOUT_SIZE = 256 * Integer.BYTES;
+
+    private static final int RECORD_SIZE = 3 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * Commit information used to build layers
+     */
+    static final class Entry {
+
+        final ObjectId id;
+
+        final List<ObjectId> parents;
+
+        final long commitTime;
+
+        final @Nullable byte[] changedPaths;
+
+        int generation;
+
+        boolean excluded;
+
+        Entry(ObjectId id, List<ObjectId> parents, long commitTime,
+                @Nullable byte[] changedPaths) {
+            this.id = id;
+            this.parents = parents;
+            this.commitTime = commitTime;
+            this.changedPaths = changedPaths;
+        }
+
+        Entry(ObjectId id, List<ObjectId> parents, long commitTime, @Nullable byte[] changedPaths,
+                int generation) {
+            this(id, parents, commitTime, changedPaths);
+            this.generation = generation;
+        }
+    }
+
+    final String name;
+
+    /**
+     * Position of the first commit of this layer in the whole graph
+     */
+    final int base;
+
+    final int size;
+
+    private final ByteBuffer buffer;
+
+    private final int idsOffset;
+
+    private final int dataOffset;
+
+    private final int edgesOffset;
+
+    private final int filtersOffset;
+
+    private final int filterDataOffset;
+
+    CommitGraphLayer(String name, ByteBuffer buffer, int base) {
+        checkArgument(buffer.capacity() >= HEADER_SIZE + FANOUT_SIZE,
+                "Invalid commit graph file %s", name);
+        checkArgument(MAGIC == buffer.getInt(0), "Invalid commit graph file %s", name);
+        final int version = buffer.getInt(Integer.BYTES);
+        checkArgument(VERSION == version, "Unsupported commit graph file version %s: %s", name,
+                version);
+        this.name = name;
+        this.buffer = buffer;
+        this.base = base;
+        this.size = buffer.getInt(2 * Integer.BYTES);
+        this.idsOffset = HEADER_SIZE + FANOUT_SIZE;
+        this.dataOffset = idsOffset + size * ObjectId.NUM_BYTES;
+        this.edgesOffset = dataOffset + size * RECORD_SIZE;
+        this.filtersOffset = edgesOffset + buffer.getInt(3 * Integer.BYTES) * Integer.BYTES;
+        this.filterDataOffset = filtersOffset + size * Integer.BYTES;
+    }
+
+    /**
+     * @return the index of the commit in this layer, or {@code -1} if not found
+     */
+    int find(final ObjectId id) {
+        final int h1 = RevObjects.h1(id);
+        final long h2 = RevObjects.h2(id);
+        final long h3 = RevObjects.h3(id);
+        final int firstByte = h1 >>> 24;
+        int low = firstByte == 0 ? 0 : buffer.getInt(HEADER_SIZE + (firstByte - 1) * Integer.BYTES);
+        int high = buffer.getInt(HEADER_SIZE + firstByte * Integer.BYTES) - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int offset = idsOffset + mid * ObjectId.NUM_BYTES;
+            int c = Integer.compareUnsigned(buffer.getInt(offset), h1);
+            if (c == 0) {
+                c = Long.compareUnsigned(buffer.getLong(offset + Integer.BYTES), h2);
+                if (c == 0) {
+                    c = Long.compareUnsigned(
+                            buffer.getLong(offset + Integer.BYTES + Long.BYTES), h3);
+                }
+            }
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    ObjectId id(int index) {
+        final int offset = idsOffset + index * ObjectId.NUM_BYTES;
+        return ObjectId.create(buffer.getInt(offset), buffer.getLong(offset + Integer.BYTES),
+                buffer.getLong(offset + Integer.BYTES + Long.BYTES));
+    }
+
+    int generation(int index) {
+        return buffer.getInt(dataOffset + index * RECORD_SIZE);
+    }
+
+    int parent1(int index) {
+        return buffer.getInt(dataOffset + index * RECORD_SIZE + Integer.BYTES);
+    }
+
+    int parent2(int index) {
+        return buffer.getInt(dataOffset + index * RECORD_SIZE + 2 * Integer.BYTES);
+    }
+
+    long commitTime(int index) {
+        return buffer.getLong(dataOffset + index * RECORD_SIZE + 3 * Integer.BYTES);
+    }
+
+    int edge(int edgeIndex) {
+        return buffer.getInt(edgesOffset + edgeIndex * Integer.BYTES);
+    }
+
+    /**
+     * @return the commit's {@link ChangedPathsFilter changed paths filter}, or {@code null} if
+     *         unknown
+     */
+    @Nullable
+    byte[] changedPaths(int index) {
+        final int endOffset = filtersOffset + index * Integer.BYTES;
+        final int start = index == 0 ? 0 : buffer.getInt(endOffset - Integer.BYTES);
+        final int end = buffer.getInt(endOffset);
+        if (start == end) {
+            return null;
+        }
+        byte[] filter = new byte[end - start];
+        ByteBuffer data = buffer.duplicate();
+        data.position(filterDataOffset + start);
+        data.get(filter);
+        return filter;
+    }
+
+    /**
+     * Encodes a layer out of the given entries
+     *
+     * @param entries the commits in the layer, sorted by id
+     * @param base the position of the first commit of the layer in the whole graph
+     * @param positions resolves the position in the whole graph of parent commits that belong to
+     *        lower layers, returning {@code -1} if not found
+     */
+    static byte[] encode(final List<Entry> entries, final int base,
+            final ToIntFunction<ObjectId> positions) {
+
+        final int size = entries.size();
+        final ToIntFunction<ObjectId> positionOf = parentId -> {
+            int pos = positions.applyAsInt(parentId);
+            if (pos < 0) {
+                int index = binarySearch(entries, parentId);
+                checkArgument(index >= 0, "Parent commit %s is not part of the graph", parentId);
+                pos = base + index;
+            }
+            return pos;
+        };
+
+        int extraEdges = 0;
+        int filtersSize = 0;
+        for (Entry e : entries) {
+            if (e.parents.size() > 2) {
+                extraEdges += e.parents.size() - 1;
+            }
+            if (e.changedPaths != null) {
+                filtersSize += e.changedPaths.length;
+            }
+        }
+        final int length = HEADER_SIZE + FANOUT_SIZE
+                + size * (ObjectId.NUM_BYTES + RECORD_SIZE + Integer.BYTES)
+                + extraEdges * Integer.BYTES + filtersSize;
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(size);
+        buffer.putInt(extraEdges);
+        buffer.putInt(filtersSize);
+
+        int[] fanout = new int[256];
+        for (Entry e : entries) {
+            fanout[RevObjects.h1(e.id) >>> 24]++;
+        }
+        for (int i = 0, count = 0; i < 256; i++) {
+            count += fanout[i];
+            buffer.putInt(count);
+        }
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        for (Entry e : entries) {
+            e.id.getRawValue(raw);
+            buffer.put(raw);
+        }
+
+        final int edgesOffset = buffer.position() + size * RECORD_SIZE;
+        int edgeIndex = 0;
+        for (Entry e : entries) {
+            final List<ObjectId> parents = e.parents;
+            final int numParents = parents.size();
+            int parent1 = numParents > 0 ? positionOf.applyAsInt(parents.get(0)) : PARENT_NONE;
+            int parent2;
+            if (numParents < 2) {
+                parent2 = PARENT_NONE;
+            } else if (numParents == 2) {
+                parent2 = positionOf.applyAsInt(parents.get(1));
+            } else {
+                parent2 = EXTRA_EDGES | edgeIndex;
+                for (int p = 1; p < numParents; p++) {
+                    int pos = positionOf.applyAsInt(parents.get(p));
+                    if (p == numParents - 1) {
+                        pos |= LAST_EDGE;
+                    }
+                    buffer.putInt(edgesOffset + edgeIndex * Integer.BYTES, pos);
+                    edgeIndex++;
+                }
+            }
+            buffer.putInt(e.generation);
+            buffer.putInt(parent1);
+            buffer.putInt(parent2);
+            buffer.putLong(e.commitTime);
+        }
+
+        buffer.position(edgesOffset + extraEdges * Integer.BYTES);
+        int filterEnd = 0;
+        for (Entry e : entries) {
+            if (e.changedPaths != null) {
+                filterEnd += e.changedPaths.length;
+            }
+            buffer.putInt(filterEnd);
+        }
+        for (Entry e : entries) {
+            if (e.changedPaths != null) {
+                buffer.put(e.changedPaths);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static int binarySearch(List<Entry> entries, ObjectId id) {
+        int low = 0, high = entries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = entries.get(mid).id.compareTo(id);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
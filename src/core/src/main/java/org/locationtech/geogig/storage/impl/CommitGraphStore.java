@@ -0,0 +1,419 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdMap;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BlobStore;
+import org.locationtech.geogig.storage.impl.CommitGraphLayer.Entry;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import lombok.NonNull;
+
+/**
+ * Maintains a repository's {@link CommitGraph}.
+ * <p>
+ * The graph is stored as a chain of {@link CommitGraphLayer layer} files plus a
+ * {@code commit-graph-chain} file listing the layer file names, lower layer first. New commits are
+ * {@link #add added} as a new layer on top of the chain, merging it with the layers below it while
+ * the new layer is at least half their size, which keeps the number of layers logarithmic on the
+ * number of commits while making incremental updates proportional to the number of new commits.
+ * <p>
+ * For file system based repositories the files are stored in the {@code .geogig/commit-graph}
+ * directory and memory mapped, otherwise they're stored in the repository's {@link BlobStore}.
+ * Writers are serialized per store instance, and readers get an immutable snapshot through
+ * {@link #get()}.
+ *
+ * @since 2.0
+ */
+public abstract class CommitGraphStore {
+
+    static final String CHAIN = "commit-graph-chain";
+
+    private static final Cache<Repository, CommitGraphStore> STORES = CacheBuilder.newBuilder()
+            .weakKeys().build();
+
+    private volatile CommitGraph graph;
+
+    /**
+     * Commits whose history was too far ahead of the graph to be added incrementally, until the
+     * graph is rebuilt
+     */
+    private final Set<ObjectId> behind = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @return the store for the given repository, shared by all callers
+     */
+    public static CommitGraphStore get(@NonNull Repository repository) {
+        try {
+            return STORES.get(repository, () -> create(repository));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static CommitGraphStore create(Repository repository) {
+        URI location = repository.getLocation();
+        if (location != null && "file".equals(location.getScheme())) {
+            return new FileStore(new File(location).toPath().resolve("commit-graph"));
+        }
+        return new BlobStoreStore(repository.blobStore());
+    }
+
+    @VisibleForTesting
+    public static CommitGraphStore of(@NonNull BlobStore blobStore) {
+        return new BlobStoreStore(blobStore);
+    }
+
+    @VisibleForTesting
+    public static CommitGraphStore of(@NonNull Path directory) {
+        return new FileStore(directory);
+    }
+
+    /**
+     * @return the current commit graph
+     */
+    public CommitGraph get() {
+        CommitGraph current = this.graph;
+        if (current == null) {
+            synchronized (this) {
+                current = this.graph;
+                if (current == null) {
+                    this.graph = current = load();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Records that the history of the given commit is too far ahead of the graph to be added to it
+     * incrementally, so that adding its descendants can give up as soon as they reach it. The
+     * record is kept in memory until the graph is {@link #rebuild rebuilt}.
+     */
+    public void markBehind(@NonNull ObjectId commitId) {
+        behind.add(commitId);
+    }
+
+    /**
+     * @return whether {@link #markBehind} was called for the given commit since the graph was
+     *         last rebuilt
+     */
+    public boolean isBehind(@NonNull ObjectId commitId) {
+        return behind.contains(commitId);
+    }
+
+    /**
+     * Adds the given commits to the graph. Commits already in the graph and commits whose parents
+     * are neither in the graph nor in {@code commits} are ignored.
+     *
+     * @return the updated graph
+     */
+    public CommitGraph add(@NonNull Iterable<RevCommit> commits) {
+        return add(commits, c -> null);
+    }
+
+    /**
+     * Adds the given commits to the graph, along with their {@link ChangedPathsFilter changed
+     * paths filters}. Commits already in the graph and commits whose parents are neither in the
+     * graph nor in {@code commits} are ignored.
+     *
+     * @param changedPaths computes the changed paths filter of a commit, may return {@code null}
+     *        if unknown
+     * @return the updated graph
+     */
+    public synchronized CommitGraph add(@NonNull Iterable<RevCommit> commits,
+            @NonNull Function<RevCommit, byte[]> changedPaths) {
+        final CommitGraph current = get();
+        ObjectIdMap<Entry> candidates = new ObjectIdMap<>();
+        List<Entry> entries = new ArrayList<>();
+        for (RevCommit c : commits) {
+            if (!current.contains(c.getId()) && candidates.get(c.getId()) == null) {
+                Entry e = new Entry(c.getId(), c.getParentIds(), c.getCommitter().getTimestamp(),
+                        changedPaths.apply(c));
+                candidates.put(c.getId(), e);
+                entries.add(e);
+            }
+        }
+        computeGenerations(current, entries, candidates);
+        List<Entry> newEntries = entries.stream().filter(e -> !e.excluded)
+                .collect(Collectors.toList());
+        if (newEntries.isEmpty()) {
+            return current;
+        }
+
+        // merge the new layer with the ones below while it's at least half their size
+        List<CommitGraphLayer> layers = new ArrayList<>(current.layers);
+        List<CommitGraphLayer> merged = new ArrayList<>();
+        while (!layers.isEmpty()
+                && 2 * newEntries.size() >= layers.get(layers.size() - 1).size) {
+            CommitGraphLayer top = layers.remove(layers.size() - 1);
+            merged.add(top);
+            newEntries.addAll(entries(current, top));
+        }
+        return replace(layers, newEntries, merged);
+    }
+
+    /**
+     * Replaces the graph by one built out of the given commits, as a single layer
+     *
+     * @return the new graph
+     */
+    public CommitGraph rebuild(@NonNull Iterable<RevCommit> commits) {
+        return rebuild(commits, c -> null);
+    }
+
+    /**
+     * Replaces the graph by one built out of the given commits and their {@link ChangedPathsFilter
+     * changed paths filters}, as a single layer
+     *
+     * @param changedPaths computes the changed paths filter of a commit, may return {@code null}
+     *        if unknown
+     * @return the new graph
+     */
+    public synchronized CommitGraph rebuild(@NonNull Iterable<RevCommit> commits,
+            @NonNull Function<RevCommit, byte[]> changedPaths) {
+        final CommitGraph current = get();
+        ObjectIdMap<Entry> candidates = new ObjectIdMap<>();
+        List<Entry> entries = new ArrayList<>();
+        for (RevCommit c : commits) {
+            if (candidates.get(c.getId()) == null) {
+                Entry e = new Entry(c.getId(), c.getParentIds(), c.getCommitter().getTimestamp(),
+                        changedPaths.apply(c));
+                candidates.put(c.getId(), e);
+                entries.add(e);
+            }
+        }
+        computeGenerations(CommitGraph.EMPTY, entries, candidates);
+        List<Entry> newEntries = entries.stream().filter(e -> !e.excluded)
+                .collect(Collectors.toList());
+        CommitGraph rebuilt = replace(Collections.emptyList(), newEntries, current.layers);
+        behind.clear();
+        return rebuilt;
+    }
+
+    private CommitGraph replace(List<CommitGraphLayer> lowerLayers, List<Entry> newEntries,
+            List<CommitGraphLayer> obsolete) {
+
+        final CommitGraph base = new CommitGraph(lowerLayers);
+        List<CommitGraphLayer> layers = new ArrayList<>(lowerLayers);
+        if (!newEntries.isEmpty()) {
+            newEntries.sort((e1, e2) -> e1.id.compareTo(e2.id));
+            byte[] contents = CommitGraphLayer.encode(newEntries, base.size(), base::position);
+            String name = "graph-" + Hashing.sha1().hashBytes(contents) + ".cgl";
+            write(name, contents);
+            layers.add(new CommitGraphLayer(name, read(name).get(), base.size()));
+        }
+        String chain = layers.stream().map(l -> l.name).collect(Collectors.joining("\n"));
+        write(CHAIN, chain.getBytes(StandardCharsets.UTF_8));
+
+        CommitGraph updated = new CommitGraph(layers);
+        this.graph = updated;
+        for (CommitGraphLayer l : obsolete) {
+            if (!layers.stream().anyMatch(nl -> nl.name.equals(l.name))) {
+                delete(l.name);
+            }
+        }
+        return updated;
+    }
+
+    private CommitGraph load() {
+        Optional<ByteBuffer> chain = read(CHAIN);
+        if (!chain.isPresent()) {
+            return CommitGraph.EMPTY;
+        }
+        ByteBuffer buff = chain.get();
+        byte[] contents = new byte[buff.remaining()];
+        buff.get(contents);
+        List<CommitGraphLayer> layers = new ArrayList<>();
+        int base = 0;
+        for (String name : Splitter.on('\n').omitEmptyStrings()
+                .split(new String(contents, StandardCharsets.UTF_8))) {
+            Optional<ByteBuffer> layerContents = read(name);
+            if (!layerContents.isPresent()) {
+                // layer removed by a concurrent writer, use the graph up to the last good layer
+                break;
+            }
+            CommitGraphLayer layer = new CommitGraphLayer(name, layerContents.get(), base);
+            layers.add(layer);
+            base += layer.size;
+        }
+        return new CommitGraph(layers);
+    }
+
+    /**
+     * Extracts the entries of the given layer, resolving parent positions to ids
+     */
+    private static List<Entry> entries(CommitGraph graph, CommitGraphLayer layer) {
+        List<Entry> entries = new ArrayList<>(layer.size);
+        for (int i = 0; i < layer.size; i++) {
+            final int pos = layer.base + i;
+            List<ObjectId> parents = new ArrayList<>(2);
+            graph.forEachParent(pos, p -> parents.add(graph.id(p)));
+            entries.add(new Entry(layer.id(i), parents, layer.commitTime(i),
+                    layer.changedPaths(i), layer.generation(i)));
+        }
+        return entries;
+    }
+
+    /**
+     * Computes the generation number of each entry, or sets its {@link Entry#excluded} flag if
+     * any of its ancestors is neither in {@code graph} nor in {@code candidates}. Uses an explicit
+     * stack since histories can be deeper than the call stack allows.
+     */
+    private static void computeGenerations(CommitGraph graph, List<Entry> entries,
+            ObjectIdMap<Entry> candidates) {
+
+        Deque<Entry> stack = new ArrayDeque<>();
+        for (Entry entry : entries) {
+            stack.push(entry);
+            while (!stack.isEmpty()) {
+                final Entry e = stack.peek();
+                if (e.generation > 0 || e.excluded) {
+                    stack.pop();
+                    continue;
+                }
+                int maxParentGeneration = 0;
+                boolean resolved = true;
+                for (ObjectId parentId : e.parents) {
+                    final int pos = graph.position(parentId);
+                    if (pos >= 0) {
+                        maxParentGeneration = Math.max(maxParentGeneration,
+                                graph.generation(pos));
+                        continue;
+                    }
+                    final Entry parent = candidates.get(parentId);
+                    if (parent == null || parent.excluded) {
+                        e.excluded = true;
+                        resolved = false;
+                        break;
+                    }
+                    if (parent.generation == 0) {
+                        stack.push(parent);
+                        resolved = false;
+                        break;
+                    }
+                    maxParentGeneration = Math.max(maxParentGeneration, parent.generation);
+                }
+                if (resolved) {
+                    e.generation = maxParentGeneration + 1;
+                }
+                if (resolved || e.excluded) {
+                    stack.pop();
+                }
+            }
+        }
+    }
+
+    protected abstract Optional<ByteBuffer> read(String name);
+
+    protected abstract void write(String name, byte[] contents);
+
+    protected abstract void delete(String name);
+
+    private static class FileStore extends CommitGraphStore {
+
+        private final Path directory;
+
+        FileStore(Path directory) {
+            this.directory = directory;
+        }
+
+        protected @Override Optional<ByteBuffer> read(String name) {
+            Path file = directory.resolve(name);
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return Optional.of(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes to a temporary file and moves it to its final location, so concurrent readers
+         * never see partially written files
+         */
+        protected @Override void write(String name, byte[] contents) {
+            try {
+                Files.createDirectories(directory);
+                Path tmp = Files.createTempFile(directory, name, ".tmp");
+                Files.write(tmp, contents);
+                Files.move(tmp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        protected @Override void delete(String name) {
+            try {
+                Files.deleteIfExists(directory.resolve(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class BlobStoreStore extends CommitGraphStore {
+
+        private static final String PREFIX = "commit-graph/";
+
+        private final BlobStore blobStore;
+
+        BlobStoreStore(BlobStore blobStore) {
+            this.blobStore = blobStore;
+        }
+
+        protected @Override Optional<ByteBuffer> read(String name) {
+            return blobStore.getBlob(PREFIX + name).map(ByteBuffer::wrap);
+        }
+
+        protected @Override void write(String name, byte[] contents) {
+            blobStore.putBlob(PREFIX + name, contents);
+        }
+
+        protected @Override void delete(String name) {
+            blobStore.removeBlob(PREFIX + name);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.locationtech.geogig.metrics.Counter;
+import org.locationtech.geogig.metrics.Metrics;
+import org.locationtech.geogig.metrics.Timer;
+import org.locationtech.geogig.storage.ObjectStore;
+
+import lombok.NonNull;
+
+/**
+ * {@link Metrics} of the raw storage access of an {@link ObjectStore} backend, shared by all the
+ * object stores of the same backend:
+ * <ul>
+ * <li>{@code storage.<backend>.get}: time to fetch a single object
+ * <li>{@code storage.<backend>.getAll}: time to fetch a batch of objects
+ * <li>{@code storage.<backend>.put}: time to store one or a batch of objects
+ * <li>{@code storage.<backend>.objectsRead}, {@code storage.<backend>.bytesRead}: number and
+ * serialized size of the objects fetched
+ * <li>{@code storage.<backend>.objectsWritten}, {@code storage.<backend>.bytesWritten}: number and
+ * serialized size of the objects stored
+ * </ul>
+ * Timings cover the round trip to the storage only, not the encoding or decoding of objects.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * <code>
+ * final long start = metrics.start();
+ * byte[] raw = db.get(key);
+ * metrics.get(start, raw == null ? 0 : raw.length);
+ * </code>
+ * </pre>
+ *
+ * @since 2.0
+ */
+public final class ObjectStoreMetrics {
+
+    private static final ConcurrentMap<String, ObjectStoreMetrics> BACKENDS = //
+            new ConcurrentHashMap<>();
+
+    private final Timer get, getAll, put;
+
+    private final Counter objectsRead, bytesRead, objectsWritten, bytesWritten;
+
+    private ObjectStoreMetrics(String backend) {
+        final String prefix = "storage." + backend + ".";
+        get = Metrics.timer(prefix + "get");
+        getAll = Metrics.timer(prefix + "getAll");
+        put = Metrics.timer(prefix + "put");
+        objectsRead = Metrics.counter(prefix + "objectsRead");
+        bytesRead = Metrics.counter(prefix + "bytesRead");
+        objectsWritten = Metrics.counter(prefix + "objectsWritten");
+        bytesWritten = Metrics.counter(prefix + "bytesWritten");
+    }
+
+    /**
+     * @param backend a short name for the storage backend, like {@code rocksdb} or
+     *        {@code postgres}
+     */
+    public static ObjectStoreMetrics forBackend(@NonNull String backend) {
+        return BACKENDS.computeIfAbsent(backend, ObjectStoreMetrics::new);
+    }
+
+    /**
+     * @return the start time of the operation to give to the other methods
+     */
+    public long start() {
+        return get.start();
+    }
+
+    /**
+     * Records a single object fetch that started at {@code start}
+     * 
+     * @param bytes the size of the object, or {@code 0} if not found
+     */
+    public void get(long start, int bytes) {
+        get.stop(start);
+        if (bytes > 0) {
+            objectsRead.inc();
+            bytesRead.add(bytes);
+        }
+    }
+
+    /**
+     * Records a batch fetch that started at {@code start}
+     * 
+     * @param count the number of objects found
+     * @param bytes the size of the objects found
+     */
+    public void getAll(long start, int count, long bytes) {
+        getAll.stop(start);
+        objectsRead.add(count);
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * Records the storage of one or many objects that started at {@code start}
+     * 
+     * @param count the number of objects stored
+     * @param bytes the size of the objects stored
+     */
+    public void put(long start, int count, long bytes) {
+        put.stop(start);
+        objectsWritten.add(count);
+        bytesWritten.add(bytes);
+    }
+}
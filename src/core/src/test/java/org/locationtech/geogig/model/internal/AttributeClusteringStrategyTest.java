@@ -0,0 +1,205 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.model.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevObjectFactory;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.RevTreeBuilder;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Test suite for {@link AttributeClusteringStrategy}
+ */
+public class AttributeClusteringStrategyTest {
+
+    private static final String ATTRIBUTE = "value";
+
+    private ObjectStore store;
+
+    @Before
+    public void before() {
+        store = new HeapObjectStore();
+        store.open();
+    }
+
+    @After
+    public void after() {
+        store.close();
+    }
+
+    public @Test void testTreeIsIndependentOfInsertionOrder() {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            // repeated values to get nodes with the same key in the same leaf trees
+            nodes.add(createNode("node-" + i, Integer.valueOf(i % 300)));
+        }
+        RevTree tree = build(RevTree.EMPTY, nodes);
+        assertTrue(tree.bucketsSize() > 0);
+        assertEquals(nodes.size(), tree.size());
+
+        List<Node> shuffled = new ArrayList<>(nodes);
+        Collections.shuffle(shuffled, new Random(1));
+        assertEquals(tree, build(RevTree.EMPTY, shuffled));
+
+        Collections.reverse(shuffled);
+        assertEquals(tree, build(RevTree.EMPTY, shuffled));
+
+        // inserting in two steps, the second one on top of the first tree
+        RevTree half = build(RevTree.EMPTY, shuffled.subList(0, 1000));
+        assertEquals(tree, build(half, shuffled.subList(1000, shuffled.size())));
+
+        assertEquals(new HashSet<>(nodes), RevObjectTestSupport.getTreeNodes(tree, store));
+    }
+
+    public @Test void testBucketsFollowKeyDigits() {
+        final ClusteringStrategy strategy = newStrategy();
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Node node = createNode("node-" + i, "value-" + i);
+            nodes.add(node);
+            strategy.put(node);
+        }
+        for (Node node : nodes) {
+            NodeId id = strategy.computeId(node);
+            String key = AttributeIndexKeys.encode(IndexInfo.getMaterializedAttribute(ATTRIBUTE,
+                    node));
+            assertEquals(key, id.value());
+            TreeId bucketId = strategy.computeBucketId(id, 3);
+            for (int depth = 0; depth < 3; depth++) {
+                assertEquals(AttributeIndexKeys.digit(key, depth),
+                        bucketId.bucketIndex(depth).intValue());
+            }
+        }
+    }
+
+    public @Test void testOverflowToExtraBucket() {
+        final Integer value = Integer.valueOf(7);
+        final String key = AttributeIndexKeys.encode(value);
+        final int count = 2 * 256;
+
+        final ClusteringStrategy strategy = newStrategy();
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Node node = createNode("node-" + i, value);
+            nodes.add(node);
+            strategy.put(node);
+        }
+
+        // the nodes share the whole key, so they're split by every digit of it...
+        byte[] path = new byte[key.length() + 1];
+        for (int depth = 0; depth < key.length(); depth++) {
+            path[depth] = (byte) AttributeIndexKeys.digit(key, depth);
+        }
+        // ...and then moved to the extra bucket, which is subdivided in canonical order
+        path[key.length()] = (byte) AttributeIndexKeys.RADIX;
+        DAG extraBucket = findDAG(strategy, new TreeId(path));
+        assertNotNull(extraBucket);
+        assertEquals(count, extraBucket.getTotalChildCount());
+        assertTrue(extraBucket.numBuckets() > 1);
+        extraBucket.forEachBucket(bucketId -> {
+            assertEquals(key.length() + 2, bucketId.depthLength());
+        });
+
+        RevTree tree = DAGTreeBuilder.build(strategy, store);
+        assertEquals(count, tree.size());
+        assertEquals(new HashSet<>(nodes), RevObjectTestSupport.getTreeNodes(tree, store));
+
+        // and the same tree results regardless of the insertion order
+        List<Node> shuffled = new ArrayList<>(nodes);
+        Collections.shuffle(shuffled, new Random(1));
+        assertEquals(tree, build(RevTree.EMPTY, shuffled));
+    }
+
+    public @Test void testUpdate() {
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            nodes.add(createNode("node-" + i, Integer.valueOf(i)));
+        }
+        final RevTree tree = build(RevTree.EMPTY, nodes);
+
+        final List<Node> updated = new ArrayList<>(nodes);
+        RevTreeBuilder builder = RevTreeBuilder.attributeBuilder(store, store, tree, ATTRIBUTE);
+        for (int i = 0; i < 1000; i += 10) {
+            Node oldNode = nodes.get(i);
+            // change the indexed value of some nodes, and only the object id of others
+            Node newNode = i % 20 == 0 ? createNode(oldNode.getName(), Integer.valueOf(-i))
+                    : createNode(oldNode.getName(), Integer.valueOf(i), "changed");
+            assertTrue(builder.update(oldNode, newNode));
+            updated.set(i, newNode);
+        }
+        RevTree updatedTree = builder.build();
+
+        assertEquals(nodes.size(), updatedTree.size());
+        assertEquals(new HashSet<>(updated),
+                RevObjectTestSupport.getTreeNodes(updatedTree, store));
+        assertEquals(build(RevTree.EMPTY, updated), updatedTree);
+    }
+
+    private ClusteringStrategy newStrategy() {
+        return ClusteringStrategyBuilder.attribute(store).original(RevTree.EMPTY)
+                .attributeName(ATTRIBUTE).build();
+    }
+
+    private RevTree build(RevTree original, List<Node> nodes) {
+        RevTreeBuilder builder = RevTreeBuilder.attributeBuilder(store, store, original,
+                ATTRIBUTE);
+        nodes.forEach(builder::put);
+        return builder.build();
+    }
+
+    private Node createNode(String name, @Nullable Object value) {
+        return createNode(name, value, "");
+    }
+
+    private Node createNode(String name, @Nullable Object value, String version) {
+        ObjectId id = RevObjectTestSupport.hashString(name + version);
+        return RevObjectFactory.defaultInstance().createNode(name, id, ObjectId.NULL,
+                TYPE.FEATURE, null, ImmutableMap.of(IndexInfo.FEATURE_ATTRIBUTES_EXTRA_DATA,
+                        Collections.singletonMap(ATTRIBUTE, value)));
+    }
+
+    private @Nullable DAG findDAG(ClusteringStrategy strategy, TreeId id) {
+        DAG dag = strategy.root;
+        for (TreeId child : id.deglose()) {
+            if (!dag.containsBucket(child)) {
+                return null;
+            }
+            try {
+                dag = strategy.getDagTrees(Collections.singleton(child)).get(0);
+            } catch (NoSuchElementException e) {
+                return null;
+            }
+        }
+        return dag;
+    }
+}
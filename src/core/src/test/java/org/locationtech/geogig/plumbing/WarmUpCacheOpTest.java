@@ -0,0 +1,108 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp.Result;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.cache.CachingObjectStore;
+import org.locationtech.geogig.storage.cache.ObjectCache;
+import org.locationtech.geogig.storage.decorator.ForwardingObjectDatabase;
+import org.locationtech.geogig.test.TestData;
+import org.locationtech.geogig.test.TestRepository;
+
+public class WarmUpCacheOpTest {
+
+    public @Rule TestRepository testRepo = new TestRepository();
+
+    private Repository repo;
+
+    private Context context;
+
+    public @Before void setUp() {
+        repo = testRepo.repository();
+        new TestData(repo).init().loadDefaultData();
+        ObjectDatabase db = new CachingObjectDatabase(repo.objectDatabase(),
+                mock(ObjectCache.class));
+        context = spy(repo.context());
+        doReturn(db).when(context).objectDatabase();
+    }
+
+    public @Test void testAllBranches() {
+        Result result = context.command(WarmUpCacheOp.class).call();
+        // master, branch1 and branch2 have different root and layer trees
+        assertEquals(12, result.getTrees());
+        assertEquals(3, result.getFeatureTypes());
+    }
+
+    public @Test void testRefs() {
+        Result result = context.command(WarmUpCacheOp.class)
+                .setRefs(Collections.singleton("master")).call();
+        assertEquals(4, result.getTrees());
+        assertEquals(3, result.getFeatureTypes());
+    }
+
+    public @Test void testPaths() {
+        Result result = context.command(WarmUpCacheOp.class)
+                .setRefs(Collections.singleton("master"))
+                .setPaths(Collections.singleton("Points")).call();
+        assertEquals(1, result.getTrees());
+        assertEquals(1, result.getFeatureTypes());
+    }
+
+    public @Test void testNoFeatureTypes() {
+        Result result = context.command(WarmUpCacheOp.class)
+                .setRefs(Collections.singleton("master")).setFeatureTypes(false).call();
+        assertEquals(4, result.getTrees());
+        assertEquals(0, result.getFeatureTypes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRef() {
+        context.command(WarmUpCacheOp.class).setRefs(Collections.singleton("nonexistent"))
+                .call();
+    }
+
+    public @Test void testNotCachingObjectDatabase() {
+        // the test repository's object database doesn't use the shared cache
+        Result result = repo.command(WarmUpCacheOp.class).call();
+        assertEquals(0, result.getTrees());
+        assertEquals(0, result.getFeatureTypes());
+    }
+
+    /**
+     * Stands for an object database backed by the shared cache, the cache is never full
+     */
+    private static class CachingObjectDatabase extends ForwardingObjectDatabase
+            implements CachingObjectStore {
+
+        private final ObjectCache cache;
+
+        CachingObjectDatabase(ObjectDatabase actual, ObjectCache cache) {
+            super(actual);
+            this.cache = cache;
+        }
+
+        public @Override ObjectCache getCache() {
+            return cache;
+        }
+    }
+}
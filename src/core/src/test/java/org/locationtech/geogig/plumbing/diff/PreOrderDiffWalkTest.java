@@ -31,6 +31,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -949,6 +951,83 @@ public class PreOrderDiffWalkTest {
         testIsPreorderTraversal(expectedChanges, left, right, false, true);
     }
 
+    @Test
+    public void checkOrderPreservingWalkMatchesSequentialWalk() {
+        final RevTree left = RevObjectTestSupport.INSTANCE.createFeaturesTree(leftSource, "f",
+                50_000);
+        final RevTree right = RevObjectTestSupport.INSTANCE.createFeaturesTree(rightSource, "f",
+                50_000, 20_000, true);
+
+        // decline every third tree and bucket, and then also stop the walk after 10k events
+        for (int limit : new int[] { Integer.MAX_VALUE, 10_000 }) {
+            List<String> expected = events(
+                    new PreOrderDiffWalk(left, right, leftSource, rightSource).sequential(),
+                    limit);
+            List<String> actual = events(
+                    new PreOrderDiffWalk(left, right, leftSource, rightSource, true), limit);
+            assertTrue(expected.size() > 1000);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void checkOrderPreservingWalksFromPoolWorkers() throws Exception {
+        final RevTree left = RevObjectTestSupport.INSTANCE.createFeaturesTree(leftSource, "f",
+                10_000);
+        final RevTree right = RevObjectTestSupport.INSTANCE.createFeaturesTree(rightSource, "f",
+                10_000, 5_000, true);
+        final List<String> expected = events(
+                new PreOrderDiffWalk(left, right, leftSource, rightSource).sequential(),
+                Integer.MAX_VALUE);
+
+        // as many walks as threads in the pool their tasks run on, each replaying from one of its
+        // workers, which must not leave the walk tasks without a thread to run on
+        final ForkJoinPool pool = PreOrderDiffWalk.sharedPool();
+        List<Future<List<String>>> walks = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            walks.add(pool.submit(() -> events(
+                    new PreOrderDiffWalk(left, right, leftSource, rightSource, true),
+                    Integer.MAX_VALUE)));
+        }
+        for (Future<List<String>> walk : walks) {
+            assertEquals(expected, walk.get(60, TimeUnit.SECONDS));
+        }
+    }
+
+    private List<String> events(PreOrderDiffWalk walk, final int maxFeatures) {
+        final List<String> events = new ArrayList<>();
+        final AtomicInteger starts = new AtomicInteger();
+        Consumer c = new Consumer() {
+            public @Override boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
+                events.add("feature " + left + " " + right);
+                return events.size() < maxFeatures;
+            }
+
+            public @Override boolean tree(@Nullable NodeRef left, @Nullable NodeRef right) {
+                events.add("tree " + left + " " + right);
+                return starts.incrementAndGet() % 3 != 0;
+            }
+
+            public @Override void endTree(@Nullable NodeRef left, @Nullable NodeRef right) {
+                events.add("endTree " + left + " " + right);
+            }
+
+            public @Override boolean bucket(NodeRef leftParent, NodeRef rightParent,
+                    BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+                events.add("bucket " + bucketIndex + " " + left + " " + right);
+                return starts.incrementAndGet() % 3 != 0;
+            }
+
+            public @Override void endBucket(NodeRef leftParent, NodeRef rightParent,
+                    BucketIndex bucketIndex, @Nullable Bucket left, @Nullable Bucket right) {
+                events.add("endBucket " + bucketIndex + " " + left + " " + right);
+            }
+        };
+        walk.walk(c);
+        return events;
+    }
+
     private void testIsPreorderTraversal(List<Bounded> expectedEvents, RevTree left, RevTree right,
             final boolean collectLeft, final boolean collectRight) {
 
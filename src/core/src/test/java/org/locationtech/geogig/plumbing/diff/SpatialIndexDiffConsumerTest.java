@@ -0,0 +1,171 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing.diff;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.DiffEntry;
+import org.locationtech.geogig.model.DiffEntry.ChangeType;
+import org.locationtech.geogig.model.NodeRef;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.plumbing.DiffCount;
+import org.locationtech.geogig.plumbing.DiffTree;
+import org.locationtech.geogig.plumbing.index.BuildFullHistoryIndexOp;
+import org.locationtech.geogig.plumbing.index.IndexTestSupport;
+import org.locationtech.geogig.porcelain.RemoveOp;
+import org.locationtech.geogig.porcelain.index.CreateQuadTree;
+import org.locationtech.geogig.repository.DiffObjectCount;
+import org.locationtech.geogig.repository.FeatureInfo;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.test.integration.RepositoryTestCase;
+import org.locationtech.jts.geom.Envelope;
+
+public class SpatialIndexDiffConsumerTest extends RepositoryTestCase {
+
+    private NodeRef worldPointsLayer;
+
+    private final Set<String> removed = new HashSet<>();
+
+    protected @Override void setUpInternal() throws Exception {
+        worldPointsLayer = IndexTestSupport.createWorldPointsLayer(repo);
+        super.add();
+        super.commit("created world points layer");
+        for (int x = -180; x <= 180; x += 20) {
+            for (int y = -90; y <= 90; y += 20) {
+                String fid = IndexTestSupport.getPointFid(x, y);
+                repo.command(RemoveOp.class)
+                        .addPathToRemove(NodeRef.appendChild(worldPointsLayer.name(), fid))
+                        .call();
+                if (x >= 0 && x <= 50 && y >= 0 && y <= 50) {
+                    removed.add(fid);
+                }
+            }
+        }
+        super.add();
+        super.commit("removed some points");
+        repo.command(CreateQuadTree.class).setTreeRefSpec(worldPointsLayer.name())
+                .setIndexHistory(true).call();
+    }
+
+    @Test
+    public void testDiffTreeUsesIndex() {
+        final Envelope bounds = new Envelope(0, 50, 0, 50);
+
+        DiffTree indexed = repo.command(DiffTree.class).setOldVersion("HEAD~1")
+                .setNewVersion("HEAD").setBoundsFilter(bounds).recordStats();
+        assertEquals(removed, removedFids(indexed));
+
+        // explicitly setting the sources disables the use of the spatial index
+        DiffTree canonical = repo.command(DiffTree.class).setOldVersion("HEAD~1")
+                .setNewVersion("HEAD").setBoundsFilter(bounds)
+                .setLeftSource(repo.objectDatabase()).setRightSource(repo.objectDatabase())
+                .recordStats();
+        assertEquals(removed, removedFids(canonical));
+
+        long indexedBuckets = indexed.getStats().get().allBuckets.get();
+        long canonicalBuckets = canonical.getStats().get().allBuckets.get();
+        assertTrue(indexedBuckets < canonicalBuckets);
+    }
+
+    @Test
+    public void testDiffCountUsesIndex() {
+        DiffObjectCount count = repo.command(DiffCount.class).setOldVersion("HEAD~1")
+                .setNewVersion("HEAD").setBoundsFilter(new Envelope(0, 50, 0, 50)).call();
+        assertEquals(removed.size(), count.getFeaturesRemoved());
+        assertEquals(0, count.getFeaturesAdded());
+        assertEquals(0, count.getFeaturesChanged());
+    }
+
+    @Test
+    public void testFeatureMovedToAnotherQuadrant() {
+        final Envelope bounds = new Envelope(0, 50, 0, 50);
+        // both locations are inside the bounds filter, but in different quadrants
+        move(5, 5, 45, 40);
+        Map<String, ChangeType> expected = new HashMap<>();
+        expected.put(IndexTestSupport.getPointFid(5, 5), ChangeType.MODIFIED);
+
+        assertEquals(expected, changes(bounds, true));
+        assertEquals(expected, changes(bounds, false));
+        assertCount(bounds, 1);
+    }
+
+    @Test
+    public void testFeatureMovedOutOfBoundsFilter() {
+        final Envelope bounds = new Envelope(0, 50, 0, 50);
+        // the new location is in a quadrant that doesn't intersect the bounds filter
+        move(10, 10, -100, -60);
+        Map<String, ChangeType> expected = new HashMap<>();
+        expected.put(IndexTestSupport.getPointFid(10, 10), ChangeType.MODIFIED);
+
+        assertEquals(expected, changes(bounds, true));
+        assertEquals(expected, changes(bounds, false));
+        assertCount(bounds, 1);
+    }
+
+    /**
+     * Commits a change to the location of the point feature at {@code x,y}, and updates the index
+     */
+    private void move(int x, int y, int newX, int newY) {
+        String fid = IndexTestSupport.getPointFid(x, y);
+        RevFeature feature = IndexTestSupport.createPointFeature(newX, newY, Double.valueOf(x),
+                Double.valueOf(y), fid);
+        String path = NodeRef.appendChild(worldPointsLayer.path(), fid);
+        repo.workingTree()
+                .insert(FeatureInfo.insert(feature, worldPointsLayer.getMetadataId(), path));
+        super.add();
+        super.commit("moved " + fid);
+        repo.command(BuildFullHistoryIndexOp.class).setTreeRefSpec(worldPointsLayer.path())
+                .setAttributeName("geom").call();
+    }
+
+    /**
+     * @return the change type of each feature changed by the last commit that intersects
+     *         {@code bounds}, using the spatial index or not
+     */
+    private Map<String, ChangeType> changes(Envelope bounds, boolean useIndex) {
+        DiffTree diff = repo.command(DiffTree.class).setOldVersion("HEAD~1").setNewVersion("HEAD")
+                .setBoundsFilter(bounds);
+        if (!useIndex) {
+            diff.setLeftSource(repo.objectDatabase()).setRightSource(repo.objectDatabase());
+        }
+        Map<String, ChangeType> changes = new HashMap<>();
+        try (AutoCloseableIterator<DiffEntry> entries = diff.call()) {
+            entries.forEachRemaining(e -> {
+                ChangeType previous = changes.put(e.name(), e.changeType());
+                assertNull("reported twice: " + e, previous);
+            });
+        }
+        return changes;
+    }
+
+    private void assertCount(Envelope bounds, int expectedChanged) {
+        DiffObjectCount count = repo.command(DiffCount.class).setOldVersion("HEAD~1")
+                .setNewVersion("HEAD").setBoundsFilter(bounds).call();
+        assertEquals(0, count.getFeaturesRemoved());
+        assertEquals(0, count.getFeaturesAdded());
+        assertEquals(expectedChanged, count.getFeaturesChanged());
+    }
+
+    private Set<String> removedFids(DiffTree diff) {
+        Set<String> fids = new HashSet<>();
+        try (AutoCloseableIterator<DiffEntry> entries = diff.call()) {
+            entries.forEachRemaining(e -> {
+                assertNull(e.getNewObject());
+                assertEquals(worldPointsLayer.path(), e.getOldObject().getParentPath());
+                fids.add(e.getOldObject().name());
+            });
+        }
+        return fids;
+    }
+}
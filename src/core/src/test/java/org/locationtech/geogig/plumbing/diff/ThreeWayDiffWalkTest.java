@@ -0,0 +1,188 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.CanonicalNodeNameOrder;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevObjectFactory;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.RevTreeBuilder;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.plumbing.diff.ThreeWayDiffWalk.MergeDiff;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabase;
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.Lists;
+
+public class ThreeWayDiffWalkTest {
+
+    private ObjectDatabase db;
+
+    private RevTree ancestor;
+
+    @Before
+    public void before() {
+        db = new HeapObjectDatabase();
+        db.open();
+        // a tree with buckets
+        ancestor = RevObjectTestSupport.INSTANCE.createFeaturesTree(db, "f", 3000);
+    }
+
+    @After
+    public void after() {
+        db.close();
+    }
+
+    private Node feature(String name, String version) {
+        return RevObjectFactory.defaultInstance().createNode(name,
+                RevObjectTestSupport.hashString(name + version), ObjectId.NULL, TYPE.FEATURE,
+                new Envelope(0, 1, 0, 1), null);
+    }
+
+    private RevTree build(RevTreeBuilder builder) {
+        RevTree tree = builder.build();
+        db.put(tree);
+        return tree;
+    }
+
+    private RevTree rootTree(RevTree layer, ObjectId metadataId) {
+        RevTreeBuilder builder = RevTreeBuilder.builder(db);
+        builder.put(RevObjectFactory.defaultInstance().createNode("layer", layer.getId(),
+                metadataId, TYPE.TREE, null, null));
+        return build(builder);
+    }
+
+    private List<MergeDiff> walk(RevTree ancestor, RevTree ours, RevTree theirs) {
+        try (AutoCloseableIterator<MergeDiff> it = new ThreeWayDiffWalk(db, ancestor, ours,
+                theirs).iterator()) {
+            return Lists.newArrayList(it);
+        }
+    }
+
+    private List<String> paths(List<MergeDiff> diffs) {
+        return diffs.stream().map(MergeDiff::path).collect(Collectors.toList());
+    }
+
+    private List<String> sorted(List<String> names) {
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(CanonicalNodeNameOrder.INSTANCE);
+        return sorted;
+    }
+
+    @Test
+    public void testTheirsUnchanged() {
+        RevTreeBuilder ours = RevTreeBuilder.builder(db, ancestor);
+        ours.put(feature("f1", "ours"));
+        assertTrue(walk(ancestor, build(ours), ancestor).isEmpty());
+    }
+
+    @Test
+    public void testSameChanges() {
+        RevTreeBuilder builder = RevTreeBuilder.builder(db, ancestor);
+        builder.put(feature("f1", "changed"));
+        builder.remove(RevObjectTestSupport.featureNode("f", 2));
+        RevTree changed = build(builder);
+        assertTrue(walk(ancestor, changed, changed).isEmpty());
+    }
+
+    @Test
+    public void testChanges() {
+        RevTreeBuilder ours = RevTreeBuilder.builder(db, ancestor);
+        RevTreeBuilder theirs = RevTreeBuilder.builder(db, ancestor);
+        List<String> expected = new ArrayList<>();
+        IntStream.range(0, 100).forEach(i -> ours.put(feature("f" + i, "ours")));
+        IntStream.range(100, 200).forEach(i -> {
+            ours.put(feature("f" + i, "both"));
+            theirs.put(feature("f" + i, "both"));
+        });
+        IntStream.range(200, 300).forEach(i -> {
+            ours.put(feature("f" + i, "ours"));
+            theirs.put(feature("f" + i, "theirs"));
+            expected.add("f" + i);
+        });
+        IntStream.range(300, 350).forEach(i -> {
+            ours.remove(RevObjectTestSupport.featureNode("f", i));
+            theirs.put(feature("f" + i, "theirs"));
+            expected.add("f" + i);
+        });
+        IntStream.range(400, 410).forEach(i -> {
+            theirs.remove(RevObjectTestSupport.featureNode("f", i));
+            expected.add("f" + i);
+        });
+        IntStream.range(0, 10).forEach(i -> {
+            theirs.put(feature("g" + i, "theirs"));
+            expected.add("g" + i);
+        });
+
+        List<MergeDiff> diffs = walk(ancestor, build(ours), build(theirs));
+        assertEquals(sorted(expected), paths(diffs));
+        for (MergeDiff diff : diffs) {
+            String name = diff.path();
+            if (name.startsWith("g")) {
+                assertNull(diff.ancestor());
+                assertNull(diff.oursDiff());
+            } else {
+                int i = Integer.parseInt(name.substring(1));
+                assertNotNull(diff.ancestor());
+                if (i < 300) {
+                    assertNotNull(diff.oursDiff());
+                } else if (i < 350) {
+                    assertNull(diff.ours());
+                    assertNotNull(diff.oursDiff());
+                } else {
+                    assertNull(diff.theirs());
+                    assertNull(diff.oursDiff());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBucketsAgainstLeaf() {
+        RevTree theirs = RevObjectTestSupport.INSTANCE.createFeaturesTree(db, "f", 10);
+        assertEquals(0, theirs.bucketsSize());
+        List<MergeDiff> diffs = walk(ancestor, ancestor, theirs);
+        List<String> expected = IntStream.range(10, 3000).mapToObj(i -> "f" + i)
+                .collect(Collectors.toList());
+        assertEquals(sorted(expected), paths(diffs));
+    }
+
+    @Test
+    public void testNestedTrees() {
+        final ObjectId metadataId = RevObjectTestSupport.hashString("featureType");
+        RevTree root = rootTree(ancestor, metadataId);
+
+        RevTreeBuilder layer = RevTreeBuilder.builder(db, ancestor);
+        layer.put(feature("f1", "theirs"));
+        RevTree theirs = rootTree(build(layer), metadataId);
+
+        List<MergeDiff> diffs = walk(root, root, theirs);
+        assertEquals(Lists.newArrayList("layer", "layer/f1"), paths(diffs));
+        assertEquals(metadataId, diffs.get(1).theirs().getMetadataId());
+        assertNull(diffs.get(0).oursDiff());
+    }
+}
@@ -171,6 +171,35 @@ public class BuildFullHistoryIndexOpTest extends RepositoryTestCase {
                 "x", "xystr");
     }
 
+    @Test
+    public void testBuildLongHistory() {
+        // long enough for the chains of incremental builds to be split
+        final int commits = 40;
+        for (int i = 0; i < commits; i++) {
+            String fid = IndexTestSupport.getPointFid(-180 + 5 * i, 0);
+            repo.command(RemoveOp.class)
+                    .addPathToRemove(NodeRef.appendChild(worldPointsLayer.getName(), fid)).call();
+            super.add();
+            super.commit("deleted " + fid);
+        }
+        indexInfo = createIndex();
+        int treesUpdated = repo.command(BuildFullHistoryIndexOp.class)//
+                .setTreeRefSpec(indexInfo.getTreeName())//
+                .call();
+
+        assertEquals(4 + commits, treesUpdated);
+
+        for (int i = 0; i <= commits + 2; i++) {
+            ObjectId canonicalFeatureTreeId = repo.command(ResolveTreeish.class)
+                    .setTreeish("HEAD~" + i + ":" + worldPointsLayer.getName()).call().get();
+            Optional<ObjectId> indexedTreeId = indexdb.resolveIndexedTree(indexInfo,
+                    canonicalFeatureTreeId);
+            assertTrue(indexedTreeId.isPresent());
+            IndexTestSupport.verifyIndex(repo.context(), indexedTreeId.get(),
+                    canonicalFeatureTreeId);
+        }
+    }
+
     @Test
     public void testBuildFullHistoryNoTreeName() {
         indexInfo = createIndex();
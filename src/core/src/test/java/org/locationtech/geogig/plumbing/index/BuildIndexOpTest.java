@@ -5,6 +5,7 @@ import static org.locationtech.geogig.model.impl.RevObjectTestSupport.getTreeNod
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -22,6 +23,9 @@ import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.model.impl.CanonicalTreeBuilder;
+import org.locationtech.geogig.model.internal.AttributeIndexKeys;
+import org.locationtech.geogig.plumbing.LsTreeOp;
+import org.locationtech.geogig.plumbing.LsTreeOp.Strategy;
 import org.locationtech.geogig.porcelain.BranchCreateOp;
 import org.locationtech.geogig.porcelain.CheckoutOp;
 import org.locationtech.geogig.porcelain.RemoveOp;
@@ -140,6 +144,29 @@ public class BuildIndexOpTest extends RepositoryTestCase {
                 "y", "xystr");
     }
 
+    @Test
+    public void testCreatesAttributeIndex() {
+        indexInfo = createAttributeIndex("xystr");
+        RevTree indexTree = createIndexFor(worldPointsTree);
+
+        assertNotEquals(RevTree.EMPTY, indexTree);
+        IndexTestSupport.verifyIndex(repo.context(), indexTree.getId(), worldPointsTree.getId(),
+                "xystr");
+    }
+
+    @Test
+    public void testUpdatesAttributeIndex() {
+        indexInfo = createAttributeIndex("x");
+        RevTree newCanonicalTree = checkUpdatesNodes();
+        ObjectId indexId = indexdb.resolveIndexedTree(indexInfo, newCanonicalTree.getId()).get();
+        IndexTestSupport.verifyIndex(repo.context(), indexId, newCanonicalTree.getId(), "x");
+        assertSortedBy("x", indexId);
+
+        // the updated index tree is the same than the one built out of all the features at once
+        RevTree fromScratch = createIndexFor(newCanonicalTree);
+        assertEquals(indexId, fromScratch.getId());
+    }
+
     @Test
     public void testSupportsDuplicatedData() throws Exception {
         testSupportsDuplicatedData((String[]) null);
@@ -293,6 +320,25 @@ public class BuildIndexOpTest extends RepositoryTestCase {
         }
     }
 
+    private IndexInfo createAttributeIndex(String attributeName) {
+        return indexdb.createIndexInfo(worldPointsLayer.getName(), attributeName,
+                IndexType.ATTRIBUTE, new HashMap<>());
+    }
+
+    private void assertSortedBy(String attributeName, ObjectId indexTreeId) {
+        Iterator<NodeRef> features = repo.command(LsTreeOp.class)
+                .setReference(indexTreeId.toString())
+                .setStrategy(Strategy.DEPTHFIRST_ONLY_FEATURES).setSource(indexdb).call();
+        String previous = null;
+        while (features.hasNext()) {
+            Node node = features.next().getNode();
+            String key = AttributeIndexKeys
+                    .encode(IndexInfo.getMaterializedAttribute(attributeName, node));
+            assertTrue(previous == null || previous.compareTo(key) <= 0);
+            previous = key;
+        }
+    }
+
     private RevTree checkUpdatesNodes() {
         final RevTree oldCanonicalTree = worldPointsTree;
         final RevTree newCanonicalTree;
@@ -0,0 +1,46 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.plumbing.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.WKTReader;
+
+public class MaterializedBuilderConsumerTest {
+
+    private final WKTReader reader = new WKTReader();
+
+    @Test
+    public void testSimplifyFeaturesSmallerThanTolerance() throws Exception {
+        final double tolerance = 10;
+        Geometry polygon = reader.read("POLYGON((0 0, 0 1, 0.5 1.5, 1 1, 1 0, 0.5 0.2, 0 0))");
+        Geometry line = reader.read("LINESTRING(0 0, 0.5 0.1, 1 0)");
+        Geometry point = reader.read("POINT(0 0)");
+
+        for (Geometry geom : new Geometry[] { polygon, line, point }) {
+            Geometry simplified = MaterializedBuilderConsumer.simplify(geom, tolerance);
+            assertFalse(geom.toString(), simplified.isEmpty());
+            assertTrue(geom.toString(), simplified.isValid());
+            assertEquals(geom.getGeometryType(), simplified.getGeometryType());
+            assertTrue(geom.getEnvelopeInternal().contains(simplified.getEnvelopeInternal()));
+        }
+    }
+
+    @Test
+    public void testSimplify() throws Exception {
+        Geometry line = reader.read("LINESTRING(0 0, 10 0.1, 20 0, 30 0.1, 40 0)");
+        Geometry simplified = MaterializedBuilderConsumer.simplify(line, 1);
+        assertEquals(reader.read("LINESTRING(0 0, 40 0)"), simplified);
+    }
+}
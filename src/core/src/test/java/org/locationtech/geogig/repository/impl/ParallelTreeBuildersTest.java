@@ -0,0 +1,125 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.RevTreeBuilder;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabase;
+
+public class ParallelTreeBuildersTest {
+
+    private ObjectStore store;
+
+    private ParallelTreeBuilders builders;
+
+    public @Before void before() {
+        store = new HeapObjectDatabase();
+        store.open();
+        builders = new ParallelTreeBuilders();
+    }
+
+    public @After void after() {
+        store.close();
+    }
+
+    public @Test void testBuildsAllTreesInOrder() {
+        List<String> paths = Arrays.asList("layer3", "layer1", "layer2");
+        for (String path : paths) {
+            builders.add(path, RevTreeBuilder.builder(store));
+        }
+        final int size = 25_000;
+        for (int i = 0; i < size; i++) {
+            for (String path : paths) {
+                Node node = RevObjectTestSupport.featureNode(path, i);
+                builders.put(path, node);
+                if (i % 10 == 0) {
+                    builders.remove(path, node);
+                }
+            }
+        }
+        Map<String, RevTree> trees = builders.build();
+        assertEquals(paths, new ArrayList<>(trees.keySet()));
+        for (String path : paths) {
+            RevTree tree = trees.get(path);
+            assertEquals(size - size / 10, tree.size());
+
+            RevTreeBuilder serial = RevTreeBuilder.builder(store);
+            for (int i = 0; i < size; i++) {
+                if (i % 10 != 0) {
+                    serial.put(RevObjectTestSupport.featureNode(path, i));
+                }
+            }
+            assertEquals(serial.build().getId(), tree.getId());
+        }
+    }
+
+    public @Test void testBuilderFailure() {
+        RuntimeException error = new IllegalStateException("expected");
+        RevTreeBuilder failing = new RevTreeBuilder() {
+            public @Override RevTreeBuilder original(RevTree original) {
+                return this;
+            }
+
+            public @Override boolean put(Node node) {
+                throw error;
+            }
+
+            public @Override boolean remove(Node node) {
+                return false;
+            }
+
+            public @Override boolean update(Node oldNode, Node newNode) {
+                return false;
+            }
+
+            public @Override RevTree build() {
+                return RevTree.EMPTY;
+            }
+
+            public @Override RevTree build(BooleanSupplier abortFlag) {
+                return RevTree.EMPTY;
+            }
+
+            public @Override void dispose() {
+            }
+        };
+        builders.add("layer", failing);
+        try {
+            for (int i = 0; i < 100_000; i++) {
+                builders.put("layer", RevObjectTestSupport.featureNode("f", i));
+            }
+            builders.build();
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownTree() {
+        builders.put("layer", RevObjectTestSupport.featureNode("f", 1));
+    }
+}
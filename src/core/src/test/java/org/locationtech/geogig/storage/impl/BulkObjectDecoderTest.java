@@ -0,0 +1,112 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.locationtech.geogig.model.impl.RevObjectTestSupport.feature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.RevObjectSerializer;
+import org.locationtech.geogig.storage.datastream.DataStreamRevObjectSerializerV2_2;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Decoded;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Encoded;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+
+public class BulkObjectDecoderTest {
+
+    private final RevObjectSerializer serializer = DataStreamRevObjectSerializerV2_2.INSTANCE;
+
+    private BulkObjectDecoder decoder;
+
+    private List<RevFeature> features;
+
+    private List<Encoded<Integer>> encoded;
+
+    @Before
+    public void before() throws IOException {
+        decoder = new BulkObjectDecoder(4, 10);
+        features = IntStream.range(0, 1000).mapToObj(i -> feature(i, "value " + i))
+                .collect(Collectors.toList());
+        encoded = new ArrayList<>();
+        for (int i = 0; i < features.size(); i++) {
+            RevFeature f = features.get(i);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            serializer.write(f, out);
+            encoded.add(Encoded.of(f.getId(), Integer.valueOf(i), out.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testDecodeBatch() {
+        List<Decoded<Integer>> decoded = decoder.decode(encoded, serializer);
+        assertEquals(features, Lists.transform(decoded, Decoded::object));
+        for (int i = 0; i < decoded.size(); i++) {
+            assertEquals(Integer.valueOf(i), decoded.get(i).attachment());
+            assertEquals(encoded.get(i).bytes().length, decoded.get(i).size());
+        }
+    }
+
+    @Test
+    public void testDecodeNotFound() {
+        ObjectId missing = RevObjectTestSupport.hashString("missing");
+        Decoded<Void> decoded = BulkObjectDecoder.decode(Encoded.of(missing, null), serializer);
+        assertEquals(missing, decoded.id());
+        assertNull(decoded.object());
+        assertEquals(0, decoded.size());
+    }
+
+    @Test
+    public void testDecodeOrdered() {
+        List<RevObject> result = new ArrayList<>();
+        try (AutoCloseableIterator<Decoded<Integer>> it = decoder
+                .decode(Iterators.partition(encoded.iterator(), 33), serializer, true)) {
+            it.forEachRemaining(d -> result.add(d.object()));
+        }
+        assertEquals(features, result);
+    }
+
+    @Test
+    public void testDecodeUnordered() {
+        Set<RevObject> result = new HashSet<>();
+        try (AutoCloseableIterator<Decoded<Integer>> it = decoder
+                .decode(Iterators.partition(encoded.iterator(), 33), serializer, false)) {
+            it.forEachRemaining(d -> result.add(d.object()));
+        }
+        assertEquals(new HashSet<>(features), result);
+    }
+
+    @Test
+    public void testClose() {
+        AutoCloseableIterator<Decoded<Integer>> it = decoder
+                .decode(Iterators.partition(encoded.iterator(), 33), serializer, true);
+        it.next();
+        it.close();
+        assertFalse(it.hasNext());
+    }
+}
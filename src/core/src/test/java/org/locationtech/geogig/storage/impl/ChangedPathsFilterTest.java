@@ -0,0 +1,75 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ChangedPathsFilterTest {
+
+    public @Test void testEmpty() {
+        byte[] filter = ChangedPathsFilter.create(Collections.emptyList());
+        assertNotNull(filter);
+        assertFalse(ChangedPathsFilter.mightHaveChanged(filter, "roads"));
+        assertFalse(ChangedPathsFilter.mightHaveChanged(filter, "roads/1"));
+    }
+
+    public @Test void testUnknown() {
+        assertTrue(ChangedPathsFilter.mightHaveChanged(null, "roads"));
+    }
+
+    public @Test void testTreesAndFeatures() {
+        byte[] filter = ChangedPathsFilter.create(Arrays.asList("roads", "places/cities"));
+        assertTrue(ChangedPathsFilter.mightHaveChanged(filter, "roads"));
+        assertTrue(ChangedPathsFilter.mightHaveChanged(filter, "roads/1"));
+        assertTrue(ChangedPathsFilter.mightHaveChanged(filter, "places/cities"));
+        assertTrue(ChangedPathsFilter.mightHaveChanged(filter, "places/cities/1"));
+        assertFalse(ChangedPathsFilter.mightHaveChanged(filter, "buildings"));
+        assertFalse(ChangedPathsFilter.mightHaveChanged(filter, "buildings/1"));
+        // a feature directly under the root tree
+        assertFalse(ChangedPathsFilter.mightHaveChanged(filter, "feature"));
+
+        filter = ChangedPathsFilter.create(Arrays.asList(ChangedPathsFilter.ROOT_FEATURES));
+        assertTrue(ChangedPathsFilter.mightHaveChanged(filter, "feature"));
+        assertFalse(ChangedPathsFilter.mightHaveChanged(filter, "roads/1"));
+    }
+
+    public @Test void testFalsePositiveRate() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add("layer" + i);
+        }
+        byte[] filter = ChangedPathsFilter.create(paths);
+        int falsePositives = 0;
+        for (int i = 100; i < 10_100; i++) {
+            if (ChangedPathsFilter.mightContain(filter, "layer" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+    }
+
+    public @Test void testTooManyPaths() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i <= ChangedPathsFilter.MAX_PATHS; i++) {
+            paths.add("layer" + i);
+        }
+        assertNull(ChangedPathsFilter.create(paths));
+    }
+}
@@ -0,0 +1,239 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.storage.memory.HeapBlobStore;
+
+public class CommitGraphStoreTest {
+
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
+    private CommitGraphStore store;
+
+    private long timestamp;
+
+    public @Before void before() {
+        store = CommitGraphStore.of(tmp.getRoot().toPath());
+    }
+
+    private RevCommit commit(RevCommit... parents) {
+        List<ObjectId> parentIds = new ArrayList<>();
+        for (RevCommit p : parents) {
+            parentIds.add(p.getId());
+        }
+        return RevCommit.builder().treeId(RevTree.EMPTY_TREE_ID).parentIds(parentIds)
+                .message("commit " + timestamp).committerTimestamp(++timestamp).build();
+    }
+
+    public @Test void testEmpty() {
+        CommitGraph graph = store.get();
+        assertEquals(0, graph.size());
+        assertFalse(graph.contains(RevTree.EMPTY_TREE_ID));
+    }
+
+    /**
+     * <pre>
+     * <code>
+     *          c2 - c3
+     *         /       \
+     *  root - c1 - c4 - c5 - c6
+     *                \
+     *                 c7 - c8
+     * </code>
+     * </pre>
+     */
+    public @Test void testFindLowestCommonAncestor() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(c1);
+        RevCommit c3 = commit(c2);
+        RevCommit c4 = commit(c1);
+        RevCommit c5 = commit(c4, c3);
+        RevCommit c6 = commit(c5);
+        RevCommit c7 = commit(c4);
+        RevCommit c8 = commit(c7);
+        CommitGraph graph = store.add(Arrays.asList(c8, c7, c6, c5, c4, c3, c2, c1, root));
+        assertEquals(9, graph.size());
+
+        assertEquals(Optional.of(c4.getId()),
+                graph.findLowestCommonAncestor(c6.getId(), c8.getId()));
+        assertEquals(Optional.of(c1.getId()),
+                graph.findLowestCommonAncestor(c3.getId(), c7.getId()));
+        assertEquals(Optional.of(c3.getId()),
+                graph.findLowestCommonAncestor(c3.getId(), c6.getId()));
+        assertEquals(Optional.of(c8.getId()),
+                graph.findLowestCommonAncestor(c8.getId(), c8.getId()));
+
+        assertEquals(Optional.of(1), graph.getGeneration(root.getId()));
+        assertEquals(Optional.of(5), graph.getGeneration(c5.getId()));
+        assertEquals(Optional.of(Arrays.asList(c4.getId(), c3.getId())),
+                graph.getParents(c5.getId()));
+    }
+
+    public @Test void testNoCommonAncestor() {
+        RevCommit root1 = commit();
+        RevCommit root2 = commit();
+        RevCommit c1 = commit(root1);
+        RevCommit c2 = commit(root2);
+        CommitGraph graph = store.add(Arrays.asList(root1, root2, c1, c2));
+        assertEquals(Optional.empty(), graph.findLowestCommonAncestor(c1.getId(), c2.getId()));
+        assertArrayEquals(new int[] { 2, 2 }, graph.countAheadBehind(c1.getId(), c2.getId()));
+    }
+
+    public @Test void testCountAheadBehind() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(c1);
+        RevCommit c3 = commit(c2);
+        RevCommit c4 = commit(c1);
+        RevCommit c5 = commit(c4, c2);
+        CommitGraph graph = store.add(Arrays.asList(root, c1, c2, c3, c4, c5));
+
+        assertArrayEquals(new int[] { 1, 2 }, graph.countAheadBehind(c3.getId(), c5.getId()));
+        assertArrayEquals(new int[] { 2, 1 }, graph.countAheadBehind(c5.getId(), c3.getId()));
+        assertArrayEquals(new int[] { 0, 3 }, graph.countAheadBehind(c1.getId(), c5.getId()));
+        assertArrayEquals(new int[] { 0, 0 }, graph.countAheadBehind(c5.getId(), c5.getId()));
+    }
+
+    public @Test void testOctopusMerge() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(root);
+        RevCommit c3 = commit(root);
+        RevCommit c4 = commit(root);
+        RevCommit merge = commit(c1, c2, c3, c4);
+        CommitGraph graph = store.add(Arrays.asList(root, c1, c2, c3, c4, merge));
+
+        assertEquals(Optional.of(merge.getParentIds()), graph.getParents(merge.getId()));
+        assertEquals(Optional.of(c4.getId()),
+                graph.findLowestCommonAncestor(merge.getId(), c4.getId()));
+        assertArrayEquals(new int[] { 4, 0 }, graph.countAheadBehind(merge.getId(), c4.getId()));
+    }
+
+    public @Test void testCommitsWithMissingParentsAreIgnored() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(c1);
+
+        CommitGraph graph = store.add(Arrays.asList(root, c2));
+        assertEquals(1, graph.size());
+        assertTrue(graph.contains(root.getId()));
+        assertFalse(graph.contains(c2.getId()));
+
+        graph = store.add(Arrays.asList(c1, c2));
+        assertEquals(3, graph.size());
+        assertEquals(Optional.of(3), graph.getGeneration(c2.getId()));
+    }
+
+    public @Test void testIncrementalAddsMergeLayers() {
+        List<RevCommit> commits = new ArrayList<>();
+        RevCommit tip = commit();
+        commits.add(tip);
+        store.add(Collections.singleton(tip));
+        for (int i = 0; i < 1000; i++) {
+            tip = commit(tip);
+            commits.add(tip);
+            store.add(Collections.singleton(tip));
+        }
+        CommitGraph graph = store.get();
+        assertEquals(1001, graph.size());
+        assertTrue(graph.layers.size() <= 10);
+        // obsolete layers are removed
+        assertEquals(graph.layers.size() + 1, tmp.getRoot().list().length);
+        for (RevCommit c : commits) {
+            assertEquals(Optional.of(c.getParentIds()), graph.getParents(c.getId()));
+        }
+        assertEquals(Optional.of(commits.get(10).getId()), graph
+                .findLowestCommonAncestor(commits.get(10).getId(), commits.get(1000).getId()));
+    }
+
+    public @Test void testReload() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(c1);
+        store.add(Arrays.asList(root, c1));
+        store.add(Arrays.asList(c2));
+
+        CommitGraph graph = CommitGraphStore.of(tmp.getRoot().toPath()).get();
+        assertEquals(3, graph.size());
+        assertEquals(Optional.of(c1.getId()),
+                graph.findLowestCommonAncestor(c1.getId(), c2.getId()));
+    }
+
+    public @Test void testRebuild() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(c1);
+        store.add(Arrays.asList(root));
+        store.add(Arrays.asList(c1));
+        store.add(Arrays.asList(c2));
+
+        CommitGraph graph = store.rebuild(Arrays.asList(c2, c1, root));
+        assertEquals(3, graph.size());
+        assertEquals(1, graph.layers.size());
+        File[] files = tmp.getRoot().listFiles();
+        assertEquals(2, files.length);
+    }
+
+    public @Test void testChangedPaths() {
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        RevCommit c2 = commit(c1);
+        byte[] rootFilter = ChangedPathsFilter.create(Arrays.asList("roads", "buildings"));
+        byte[] c1Filter = ChangedPathsFilter.create(Arrays.asList("roads"));
+        store.add(Arrays.asList(root), c -> rootFilter);
+        store.add(Arrays.asList(c1), c -> c1Filter);
+        // merges the layers, keeping the filters of the existing commits
+        CommitGraph graph = store.add(Arrays.asList(c2));
+        assertEquals(1, graph.layers.size());
+
+        assertTrue(graph.mightHaveChanged(root.getId(), "buildings/1"));
+        assertTrue(graph.mightHaveChanged(c1.getId(), "roads/1"));
+        assertFalse(graph.mightHaveChanged(c1.getId(), "buildings/1"));
+        // unknown filter
+        assertTrue(graph.mightHaveChanged(c2.getId(), "buildings/1"));
+        // not in the graph
+        assertTrue(graph.mightHaveChanged(commit(c2).getId(), "buildings/1"));
+
+        graph = CommitGraphStore.of(tmp.getRoot().toPath()).get();
+        assertFalse(graph.mightHaveChanged(c1.getId(), "buildings"));
+    }
+
+    public @Test void testBlobStore() {
+        HeapBlobStore blobStore = new HeapBlobStore();
+        store = CommitGraphStore.of(blobStore);
+        RevCommit root = commit();
+        RevCommit c1 = commit(root);
+        store.add(Arrays.asList(root, c1));
+
+        CommitGraph graph = CommitGraphStore.of(blobStore).get();
+        assertEquals(2, graph.size());
+        assertTrue(blobStore.getBlob("commit-graph/" + CommitGraphStore.CHAIN).isPresent());
+    }
+}
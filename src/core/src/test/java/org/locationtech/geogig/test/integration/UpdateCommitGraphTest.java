@@ -0,0 +1,132 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.test.integration;
+
+import java.util.Optional;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevCommitBuilder;
+import org.locationtech.geogig.plumbing.RebuildGraphOp;
+import org.locationtech.geogig.plumbing.UpdateCommitGraph;
+import org.locationtech.geogig.plumbing.UpdateRef;
+import org.locationtech.geogig.porcelain.BranchCreateOp;
+import org.locationtech.geogig.porcelain.CheckoutOp;
+import org.locationtech.geogig.porcelain.CommitOp;
+import org.locationtech.geogig.porcelain.ConfigOp;
+import org.locationtech.geogig.porcelain.ConfigOp.ConfigAction;
+import org.locationtech.geogig.porcelain.MergeOp;
+import org.locationtech.geogig.porcelain.MergeOp.MergeReport;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+import org.locationtech.geogig.storage.impl.CommitGraphStore;
+
+import com.google.common.collect.ImmutableList;
+
+public class UpdateCommitGraphTest extends RepositoryTestCase {
+
+    protected @Override void setUpInternal() throws Exception {
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.name")
+                .setValue("groldan").call();
+        repo.command(ConfigOp.class).setAction(ConfigAction.CONFIG_SET).setName("user.email")
+                .setValue("groldan@boundlessgeo.com").call();
+    }
+
+    private CommitGraph commitGraph() {
+        return CommitGraphStore.get(repo).get();
+    }
+
+    @Test
+    public void testMergeCommitIsIndexed() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = repo.command(CommitOp.class).setMessage("points1").call();
+        repo.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1").call();
+        insertAndAdd(points2);
+        final RevCommit c2 = repo.command(CommitOp.class).setMessage("points2").call();
+        repo.command(CheckoutOp.class).setSource("master").call();
+        insertAndAdd(points3);
+        final RevCommit c3 = repo.command(CommitOp.class).setMessage("points3").call();
+
+        MergeReport report = repo.command(MergeOp.class).addCommit(c2.getId())
+                .setNoFastForward(true).call();
+        RevCommit merge = report.getMergeCommit();
+
+        CommitGraph graph = commitGraph();
+        assertEquals(Optional.of(1), graph.getGeneration(c1.getId()));
+        assertEquals(Optional.of(2), graph.getGeneration(c3.getId()));
+        assertEquals(Optional.of(3), graph.getGeneration(merge.getId()));
+        assertEquals(Optional.of(c1.getId()),
+                graph.findLowestCommonAncestor(c2.getId(), c3.getId()));
+    }
+
+    @Test
+    public void testCommitsNotCreatedByCommitOp() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = repo.command(CommitOp.class).setMessage("points1").call();
+
+        // fake fetching two commits into a remote tracking branch
+        RevCommit fetched1 = commit(c1, "fetched1");
+        RevCommit fetched2 = commit(fetched1, "fetched2");
+        repo.objectDatabase().put(fetched1);
+        repo.objectDatabase().put(fetched2);
+        assertFalse(commitGraph().contains(fetched2.getId()));
+
+        repo.command(UpdateRef.class).setName("refs/remotes/origin/master")
+                .setNewValue(fetched2.getId()).call();
+
+        CommitGraph graph = commitGraph();
+        assertEquals(Optional.of(2), graph.getGeneration(fetched1.getId()));
+        assertEquals(Optional.of(3), graph.getGeneration(fetched2.getId()));
+    }
+
+    @Test
+    public void testMissingAncestors() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = repo.command(CommitOp.class).setMessage("points1").call();
+        // the parent is not in the repository, like at the bottom of a shallow clone
+        RevCommit missing = commit(c1, "missing");
+        RevCommit orphan = commit(missing, "orphan");
+        repo.objectDatabase().put(orphan);
+
+        CommitGraph graph = repo.command(UpdateCommitGraph.class).setCommit(orphan.getId())
+                .call();
+        assertFalse(graph.contains(orphan.getId()));
+        assertTrue(graph.contains(c1.getId()));
+    }
+
+    @Test
+    public void testUnbuiltGraphIsLeftForRebuild() throws Exception {
+        insertAndAdd(points1);
+        final RevCommit c1 = repo.command(CommitOp.class).setMessage("points1").call();
+        final RevCommit c2 = commit(c1, "c2");
+        repo.objectDatabase().put(c2);
+        // the graph of a repository that existed before the commit graph is empty
+        CommitGraphStore.get(repo).rebuild(ImmutableList.of());
+
+        CommitGraph graph = repo.command(UpdateCommitGraph.class).setCommit(c2.getId()).call();
+        assertEquals(0, graph.size());
+
+        repo.command(RebuildGraphOp.class).call();
+        graph = commitGraph();
+        assertEquals(Optional.of(1), graph.getGeneration(c1.getId()));
+    }
+
+    private RevCommit commit(RevCommit parent, String message) {
+        RevCommitBuilder cb = RevCommit.builder();
+        cb.parentIds(ImmutableList.of(parent.getId()));
+        cb.message(message);
+        cb.author("groldan");
+        cb.committer("groldan");
+        cb.treeId(parent.getTreeId());
+        long now = System.currentTimeMillis();
+        cb.authorTimestamp(now);
+        cb.committerTimestamp(now);
+        return cb.build();
+    }
+}
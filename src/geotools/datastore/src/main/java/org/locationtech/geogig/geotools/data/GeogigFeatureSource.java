@@ -35,6 +35,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.util.factory.Hints;
 import org.locationtech.geogig.geotools.adapt.GT;
 import org.locationtech.geogig.geotools.data.reader.FeatureReaderBuilder;
+import org.locationtech.geogig.geotools.data.reader.SpatialAggregator;
 import org.locationtech.geogig.geotools.data.reader.WalkInfo;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
@@ -44,6 +45,7 @@ import org.locationtech.geogig.plumbing.RevObjectParse;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.WorkingTree;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.opengis.feature.Feature;
 import org.opengis.feature.FeatureVisitor;
@@ -104,8 +106,12 @@ public class GeogigFeatureSource extends ContentFeatureSource {
         return true;
     }
 
+    /**
+     * @return {@code true}, features are sorted in-process with bounded memory, see
+     *         {@link FeatureReaderBuilder#maxInMemorySort}
+     */
     protected @Override boolean canSort() {
-        return false;
+        return true;
     }
 
     /**
@@ -190,10 +196,21 @@ public class GeogigFeatureSource extends ContentFeatureSource {
             return ReferencedEnvelope.create(crs);
         }
 
+        ReferencedEnvelope bounds = new ReferencedEnvelope(crs);
+        final boolean paging = query.getStartIndex() != null || !query.isMaxFeaturesUnlimited();
+        Optional<SpatialAggregator> aggregator = paging ? Optional.empty()
+                : spatialAggregator(filter);
+        if (aggregator.isPresent()) {
+            Envelope matchingBounds = aggregator.get().run().getBounds();
+            if (!matchingBounds.isNull()) {
+                bounds.init(matchingBounds);
+            }
+            return bounds;
+        }
+
         query = new Query(query);
         query.setPropertyNames(Query.NO_NAMES);
 
-        ReferencedEnvelope bounds = new ReferencedEnvelope(crs);
         try (FeatureReader<SimpleFeatureType, SimpleFeature> features = getNativeReader(query,
                 false)) {
             while (features.hasNext()) {
@@ -215,12 +232,19 @@ public class GeogigFeatureSource extends ContentFeatureSource {
         final Integer maxFeatures = query.getMaxFeatures() == Integer.MAX_VALUE ? null
                 : query.getMaxFeatures();
 
-        int size;
+        int size = -1;
         if (Filter.INCLUDE.equals(filter)) {
             RevTree tree = getTypeTree();
             size = (int) tree.size();
+        } else {
+            Optional<SpatialAggregator> aggregator = spatialAggregator(filter);
+            if (aggregator.isPresent()) {
+                size = (int) aggregator.get().run().getCount();
+            }
+        }
+        if (size > -1) {
             if (offset != null) {
-                size = size - offset.intValue();
+                size = Math.max(0, size - offset.intValue());
             }
             if (maxFeatures != null) {
                 size = Math.min(size, maxFeatures.intValue());
@@ -280,6 +304,23 @@ public class GeogigFeatureSource extends ContentFeatureSource {
         return retypeRequired;
     }
 
+    /**
+     * @return an aggregator to compute the count and bounds of the features matching
+     *         {@code filter} out of the feature type tree nodes, if {@code filter} is a rectangular
+     *         spatial filter
+     * @see SpatialAggregator
+     */
+    private Optional<SpatialAggregator> spatialAggregator(Filter filter) {
+        final Context context = getCommandLocator();
+        final RevFeatureType nativeType = getNativeType();
+        WalkInfo walkInfo = FeatureReaderBuilder.builder(context, nativeType, getTypeRef())//
+                .targetSchema(getSchema())//
+                .filter(filter)//
+                .headRef(getRootRef())//
+                .buildTreeWalk();
+        return SpatialAggregator.create(context, nativeType, walkInfo);
+    }
+
     public @VisibleForTesting @Override boolean handleVisitor(Query query, FeatureVisitor visitor) {
         return visitorHandler.handle(visitor, query, this);
     }
@@ -309,6 +350,7 @@ public class GeogigFeatureSource extends ContentFeatureSource {
         final @Nullable ScreenMap screenMap = (ScreenMap) hints.get(Hints.SCREENMAP);
         final @Nullable String[] propertyNames = query.getPropertyNames();
         final @Nullable SortBy[] sortBy = query.getSortBy();
+        final @Nullable Integer maxInMemorySort = (Integer) hints.get(Hints.MAX_MEMORY_SORT);
         // final Name assignedName = getEntry().getName();
 
         final Filter filter = query.getFilter();
@@ -332,6 +374,7 @@ public class GeogigFeatureSource extends ContentFeatureSource {
                 .propertyNames(propertyNames)//
                 .screenMap(screenMap)//
                 .sortBy(sortBy)//
+                .maxInMemorySort(maxInMemorySort)//
                 .retypeIfNeeded(retypeIfNeeded)//
                 .build();
 
@@ -0,0 +1,199 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import java.util.Optional;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.util.Converters;
+import org.locationtech.geogig.model.internal.AttributeIndexKeys;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Or;
+import org.opengis.filter.PropertyIsBetween;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.PropertyIsGreaterThan;
+import org.opengis.filter.PropertyIsGreaterThanOrEqualTo;
+import org.opengis.filter.PropertyIsLessThan;
+import org.opengis.filter.PropertyIsLessThanOrEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Predicate;
+
+import lombok.NonNull;
+
+/**
+ * The range of {@link AttributeIndexKeys attribute index keys} the features matching a filter
+ * may have, used to skip the buckets of an attribute index tree that can't contain any of them.
+ * <p>
+ * The range is conservative: it may include keys of features that don't match the filter, which
+ * is then evaluated on each feature node anyway.
+ */
+final class AttributeKeyRange implements Predicate<BucketIndex> {
+
+    @VisibleForTesting
+    final @Nullable String min, max;
+
+    AttributeKeyRange(@Nullable String min, @Nullable String max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return whether the bucket may contain keys in this range
+     */
+    public @Override boolean apply(BucketIndex bucketIndex) {
+        return AttributeIndexKeys.intersects(bucketIndex.getIndexPath(), min, max);
+    }
+
+    public @Override String toString() {
+        return String.format("AttributeKeyRange[%s, %s]", min, max);
+    }
+
+    /**
+     * Extracts the range of keys the features matching {@code filter} may have for the
+     * {@code attribute} attribute.
+     *
+     * @param binding the attribute's value type, literals are converted to it
+     * @return the key range, or empty if the filter doesn't constrain the attribute value
+     */
+    public static Optional<AttributeKeyRange> of(@NonNull Filter filter,
+            @NonNull String attribute, @NonNull Class<?> binding) {
+        return Optional.ofNullable(extract(filter, attribute, binding));
+    }
+
+    private static @Nullable AttributeKeyRange extract(Filter filter, String attribute,
+            Class<?> binding) {
+        if (filter instanceof And) {
+            AttributeKeyRange range = null;
+            for (Filter child : ((And) filter).getChildren()) {
+                AttributeKeyRange childRange = extract(child, attribute, binding);
+                if (childRange != null) {
+                    range = range == null ? childRange : range.intersection(childRange);
+                }
+            }
+            return range;
+        }
+        if (filter instanceof Or) {
+            AttributeKeyRange range = null;
+            for (Filter child : ((Or) filter).getChildren()) {
+                AttributeKeyRange childRange = extract(child, attribute, binding);
+                if (childRange == null) {
+                    return null;
+                }
+                range = range == null ? childRange : range.union(childRange);
+            }
+            return range;
+        }
+        if (filter instanceof PropertyIsBetween) {
+            PropertyIsBetween between = (PropertyIsBetween) filter;
+            if (!isProperty(between.getExpression(), attribute)) {
+                return null;
+            }
+            Object lower = value(between.getLowerBoundary(), binding);
+            Object upper = value(between.getUpperBoundary(), binding);
+            if (!AttributeIndexKeys.isOrderPreserving(lower)
+                    || !AttributeIndexKeys.isOrderPreserving(upper)) {
+                return null;
+            }
+            return new AttributeKeyRange(AttributeIndexKeys.encode(lower),
+                    AttributeIndexKeys.encode(upper));
+        }
+        if (filter instanceof BinaryComparisonOperator) {
+            return extract((BinaryComparisonOperator) filter, attribute, binding);
+        }
+        return null;
+    }
+
+    private static @Nullable AttributeKeyRange extract(BinaryComparisonOperator filter,
+            String attribute, Class<?> binding) {
+        final boolean reversed;
+        final Expression literal;
+        if (isProperty(filter.getExpression1(), attribute)) {
+            reversed = false;
+            literal = filter.getExpression2();
+        } else if (isProperty(filter.getExpression2(), attribute)) {
+            reversed = true;
+            literal = filter.getExpression1();
+        } else {
+            return null;
+        }
+        final Object value = value(literal, binding);
+        if (value == null || (value instanceof String && !filter.isMatchingCase())) {
+            return null;
+        }
+        final String key = AttributeIndexKeys.encode(value);
+        if (filter instanceof PropertyIsEqualTo) {
+            return new AttributeKeyRange(key, key);
+        }
+        if (!AttributeIndexKeys.isOrderPreserving(value)) {
+            return null;
+        }
+        final boolean lessThan = filter instanceof PropertyIsLessThan
+                || filter instanceof PropertyIsLessThanOrEqualTo;
+        final boolean greaterThan = filter instanceof PropertyIsGreaterThan
+                || filter instanceof PropertyIsGreaterThanOrEqualTo;
+        if (lessThan != reversed && (lessThan || greaterThan)) {
+            return new AttributeKeyRange(null, key);
+        }
+        if (greaterThan != reversed && (lessThan || greaterThan)) {
+            return new AttributeKeyRange(key, null);
+        }
+        return null;
+    }
+
+    private static boolean isProperty(Expression expression, String attribute) {
+        if (!(expression instanceof PropertyName)) {
+            return false;
+        }
+        String name = ((PropertyName) expression).getPropertyName();
+        return attribute.equals(name) || name.endsWith(":" + attribute);
+    }
+
+    private static @Nullable Object value(Expression expression, Class<?> binding) {
+        if (!(expression instanceof Literal)) {
+            return null;
+        }
+        Object value = ((Literal) expression).getValue();
+        return value == null ? null : Converters.convert(value, binding);
+    }
+
+    AttributeKeyRange intersection(AttributeKeyRange other) {
+        return new AttributeKeyRange(max(min, other.min, true), min(max, other.max, true));
+    }
+
+    AttributeKeyRange union(AttributeKeyRange other) {
+        return new AttributeKeyRange(min(min, other.min, false), max(max, other.max, false));
+    }
+
+    /**
+     * @param nullIsUnbounded whether a {@code null} argument is ignored, otherwise it's the result
+     */
+    private static @Nullable String min(@Nullable String k1, @Nullable String k2,
+            boolean nullIsUnbounded) {
+        if (k1 == null || k2 == null) {
+            return nullIsUnbounded ? (k1 == null ? k2 : k1) : null;
+        }
+        return k1.compareTo(k2) <= 0 ? k1 : k2;
+    }
+
+    private static @Nullable String max(@Nullable String k1, @Nullable String k2,
+            boolean nullIsUnbounded) {
+        if (k1 == null || k2 == null) {
+            return nullIsUnbounded ? (k1 == null ? k2 : k1) : null;
+        }
+        return k1.compareTo(k2) >= 0 ? k1 : k2;
+    }
+}
@@ -0,0 +1,255 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.locationtech.geogig.model.FieldType;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.geogig.storage.datastream.DataStreamValueSerializerV2;
+import org.locationtech.geogig.storage.datastream.ValueSerializer;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.google.common.base.Preconditions;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * External merge sort of features: the input is split in runs of at most a given number of
+ * features, each run is sorted in memory and written to a temporary file, and the sorted runs are
+ * then merged as the result is consumed.
+ * <p>
+ * At most {@link #MAX_MERGE_FAN_IN} runs are merged at once, so that the number of open files and
+ * read buffers is bounded. If there are more runs, groups of them are first merged into
+ * intermediate runs, in as many passes as needed.
+ * <p>
+ * Feature attribute values are written with the same {@link ValueSerializer} used for the
+ * repository objects, so any value a {@code RevFeature} can hold can be sorted. If the whole input
+ * fits in a single run, nothing is written to disk.
+ */
+@Slf4j
+final class ExternalFeatureSort {
+
+    private static final ValueSerializer ENCODER = DataStreamValueSerializerV2.INSTANCE;
+
+    /**
+     * Maximum number of runs merged at once
+     */
+    static final int MAX_MERGE_FAN_IN = 64;
+
+    private ExternalFeatureSort() {
+        // static utility
+    }
+
+    /**
+     * Consumes and closes {@code features} and returns them sorted. The returned iterator deletes
+     * the temporary files when closed.
+     */
+    public static AutoCloseableIterator<SimpleFeature> sort(
+            AutoCloseableIterator<SimpleFeature> features, SimpleFeatureType schema,
+            Comparator<SimpleFeature> comparator, final int maxInMemory) {
+        return sort(features, schema, comparator, maxInMemory, MAX_MERGE_FAN_IN);
+    }
+
+    static AutoCloseableIterator<SimpleFeature> sort(AutoCloseableIterator<SimpleFeature> features,
+            SimpleFeatureType schema, Comparator<SimpleFeature> comparator, final int maxInMemory,
+            final int maxFanIn) {
+        Preconditions.checkArgument(maxFanIn > 1, "maxFanIn must be at least 2");
+
+        final List<Run> runs = new ArrayList<>();
+        try (AutoCloseableIterator<SimpleFeature> input = features) {
+            List<SimpleFeature> buffer = new ArrayList<>();
+            while (input.hasNext()) {
+                buffer.add(input.next());
+                if (buffer.size() == maxInMemory) {
+                    buffer.sort(comparator);
+                    runs.add(Run.write(buffer.iterator(), schema));
+                    buffer.clear();
+                }
+            }
+            buffer.sort(comparator);
+            if (runs.isEmpty()) {
+                return AutoCloseableIterator.fromIterator(buffer.iterator());
+            }
+            if (!buffer.isEmpty()) {
+                runs.add(Run.write(buffer.iterator(), schema));
+            }
+            buffer = null;
+            log.debug("Merging {} sorted runs of up to {} features", runs.size(), maxInMemory);
+            // merge the oldest runs first, so every pass merges runs of similar sizes
+            while (runs.size() > maxFanIn) {
+                List<Run> group = runs.subList(0, maxFanIn);
+                MergingIterator merging = new MergingIterator(new ArrayList<>(group), schema,
+                        comparator);
+                group.clear();
+                try {
+                    runs.add(Run.write(merging, schema));
+                } finally {
+                    merging.close();
+                }
+            }
+            return new MergingIterator(runs, schema, comparator);
+        } catch (IOException e) {
+            runs.forEach(Run::close);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            runs.forEach(Run::close);
+            throw e;
+        }
+    }
+
+    private static class Run {
+
+        private final Path file;
+
+        private int remaining;
+
+        private DataInputStream in;
+
+        private Run(Path file, int size) {
+            this.file = file;
+            this.remaining = size;
+        }
+
+        static Run write(Iterator<SimpleFeature> sorted, SimpleFeatureType schema)
+                throws IOException {
+            final Path file = Files.createTempFile("geogig-sort-", ".run");
+            int size = 0;
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file)))) {
+                final int attributeCount = schema.getAttributeCount();
+                while (sorted.hasNext()) {
+                    SimpleFeature feature = sorted.next();
+                    size++;
+                    ENCODER.writeString(feature.getID(), out);
+                    for (int i = 0; i < attributeCount; i++) {
+                        Object value = feature.getAttribute(i);
+                        FieldType type = FieldType.forValue(value);
+                        out.writeByte(type.getTag());
+                        ENCODER.encode(type, value, out);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            return new Run(file, size);
+        }
+
+        @Nullable
+        SimpleFeature next(SimpleFeatureBuilder builder) throws IOException {
+            if (remaining == 0) {
+                return null;
+            }
+            if (in == null) {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            }
+            remaining--;
+            final String id = ENCODER.readString(in);
+            final int attributeCount = builder.getFeatureType().getAttributeCount();
+            builder.reset();
+            for (int i = 0; i < attributeCount; i++) {
+                FieldType type = FieldType.valueOf(in.readUnsignedByte());
+                builder.set(i, ENCODER.decode(type, in));
+            }
+            return builder.buildFeature(id);
+        }
+
+        void close() {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Error deleting temporary sort file " + file, e);
+            }
+        }
+    }
+
+    private static class MergingIterator implements AutoCloseableIterator<SimpleFeature> {
+
+        private final List<Run> runs;
+
+        private final SimpleFeatureBuilder builder;
+
+        private final PriorityQueue<Head> heads;
+
+        private static class Head {
+            final SimpleFeature feature;
+
+            final Run run;
+
+            Head(SimpleFeature feature, Run run) {
+                this.feature = feature;
+                this.run = run;
+            }
+        }
+
+        MergingIterator(List<Run> runs, SimpleFeatureType schema,
+                Comparator<SimpleFeature> comparator) throws IOException {
+            this.runs = runs;
+            this.builder = new SimpleFeatureBuilder(schema);
+            this.heads = new PriorityQueue<>(runs.size(),
+                    (h1, h2) -> comparator.compare(h1.feature, h2.feature));
+            for (Run run : runs) {
+                advance(run);
+            }
+        }
+
+        private void advance(Run run) throws IOException {
+            SimpleFeature next = run.next(builder);
+            if (next == null) {
+                run.close();
+            } else {
+                heads.offer(new Head(next, run));
+            }
+        }
+
+        public @Override boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        public @Override SimpleFeature next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                advance(head.run);
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+            return head.feature;
+        }
+
+        public @Override void close() {
+            heads.clear();
+            runs.forEach(Run::close);
+        }
+    }
+}
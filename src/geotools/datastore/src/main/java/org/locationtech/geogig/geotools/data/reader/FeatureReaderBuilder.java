@@ -53,15 +53,16 @@ import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.RevTree;
-import org.locationtech.geogig.model.impl.QuadTreeBuilder;
 import org.locationtech.geogig.plumbing.DiffTree;
 import org.locationtech.geogig.plumbing.FindTreeChild;
 import org.locationtech.geogig.plumbing.RefParse;
 import org.locationtech.geogig.plumbing.ResolveTreeish;
 import org.locationtech.geogig.plumbing.RevObjectParse;
 import org.locationtech.geogig.porcelain.index.Index;
+import org.locationtech.geogig.porcelain.index.IndexUtils;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
 import org.locationtech.geogig.repository.impl.SpatialOps;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
 import org.locationtech.geogig.storage.IndexDatabase;
@@ -106,6 +107,11 @@ public class FeatureReaderBuilder {
     private static final GeometryFactory DEFAULT_GEOMETRY_FACTORY = new GeometryFactory(
             new PackedCoordinateSequenceFactory());
 
+    /**
+     * Default maximum number of features to hold in memory when sorting
+     */
+    public static final int DEFAULT_MAX_IN_MEMORY_SORT = 10_000;
+
     // cache filter factory to avoid the overhead of repeated calls to
     // CommonFactoryFinder.getFilterFactory2
     private static final FilterFactory2 filterFactory = CommonFactoryFinder.getFilterFactory2();
@@ -148,6 +154,8 @@ public class FeatureReaderBuilder {
 
     private @Nullable SortBy[] sortBy;
 
+    private int maxInMemorySort = DEFAULT_MAX_IN_MEMORY_SORT;
+
     private @Nullable Integer limit;
 
     private @Nullable Integer offset;
@@ -254,6 +262,18 @@ public class FeatureReaderBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum number of features to hold in memory when sorting, sorts that need more
+     * spill sorted runs of features to disk.
+     */
+    public FeatureReaderBuilder maxInMemorySort(@Nullable Integer maxFeatures) {
+        Preconditions.checkArgument(maxFeatures == null || maxFeatures.intValue() > 0,
+                "max in memory sort must be a positive integer: %s", maxFeatures);
+        this.maxInMemorySort = maxFeatures == null ? DEFAULT_MAX_IN_MEMORY_SORT
+                : maxFeatures.intValue();
+        return this;
+    }
+
     public FeatureReaderBuilder offset(@Nullable Integer offset) {
         this.offset = offset;
         return this;
@@ -312,8 +332,21 @@ public class FeatureReaderBuilder {
             boundsPreFilter = createBoundsFilter(info.fullSchema, info.nativeFilter,
                     oldFeatureTypeTree, leftSource, newFeatureTypeTree, rightSource);
 
-            final Optional<Index>[] indexes = resolveIndexes(oldFeatureTypeTree, newFeatureTypeTree,
-                    info.nativeFilter);
+            // paging in natural order is cheaper walking the canonical trees, which are already in
+            // natural order, than sorting the whole index output for every page
+            final boolean ignoreIndexes = ignoreIndexes(info.nativeFilter)
+                    || (isNaturalOrderRequested() && (limit != null || offset != null));
+            Optional<Index>[] indexes = ignoreIndexes ? NO_INDEX
+                    : resolveSpatialIndexes(oldFeatureTypeTree, newFeatureTypeTree);
+            // unless the spatial index can prune by the query bounds, prefer an attribute index
+            // that can prune by the range of values of the indexed attribute the filter selects
+            if (!ignoreIndexes && (boundsPreFilter == null || !indexes[0].isPresent())) {
+                Optional<Index>[] attributeIndexes = resolveAttributeIndexes(oldFeatureTypeTree,
+                        newFeatureTypeTree, info);
+                if (attributeIndexes[0].isPresent()) {
+                    indexes = attributeIndexes;
+                }
+            }
             info.leftIndex = indexes[0];
             info.rightIndex = indexes[1];
 
@@ -329,13 +362,7 @@ public class FeatureReaderBuilder {
                 leftSource = leftRepo.indexDatabase();
                 rightSource = rightRepo.indexDatabase();
                 IndexInfo indexInfo = leftIndex.info();
-
-                Envelope maxBounds = IndexInfo.getMaxBounds(indexInfo);
-                if (maxBounds == null) {
-                    maxBounds = IndexInfo.getMaxBounds(indexInfo);
-                }
-                Preconditions.checkNotNull(maxBounds);
-                diffNodeOrdering = QuadTreeBuilder.nodeOrdering(maxBounds);
+                diffNodeOrdering = IndexUtils.nodeOrdering(indexInfo);
                 info.diffUsesIndex = true;
                 info.materializedIndexProperties = resolveMaterializedProperties(indexInfo);
             }
@@ -347,8 +374,14 @@ public class FeatureReaderBuilder {
             info.preFilter = filterSplitter.getPreFilter();
             info.postFilter = filterSplitter.getPostFilter();
 
-            info.indexContainsAllRequiredProperties = info.materializedIndexProperties
-                    .containsAll(info.requiredProperties);
+            // the index may cover the required geometry with a simplified version of it
+            final @Nullable IndexInfo walkedIndex = info.diffUsesIndex
+                    ? info.leftIndex.get().info()
+                    : null;
+            info.materializedCoverage = MaterializedCoverage.of(walkedIndex,
+                    info.requiredProperties, simplificationDistance,
+                    requiredAttributes(info.postFilter)).orElse(null);
+            info.indexContainsAllRequiredProperties = info.materializedCoverage != null;
 
             info.filterIsFullySupportedByIndex = Filter.INCLUDE.equals(info.postFilter);
 
@@ -366,6 +399,7 @@ public class FeatureReaderBuilder {
                 // geotools feature model, settings the DiffWalk bounds filter helps in avoiding a
                 // lot of those more expensive checks
                 .setBoundsFilter(boundsPreFilter) //
+                .setBucketFilter(info.attributeKeyRange) //
                 .setChangeTypeFilter(resolveChangeType()) //
                 .setOldTree(oldFeatureTypeTree) //
                 .setNewTree(newFeatureTypeTree) //
@@ -378,30 +412,78 @@ public class FeatureReaderBuilder {
         return info;
     }
 
-    private Optional<Index>[] resolveIndexes(final ObjectId oldCanonicalTreeId,
-            final ObjectId newCanonicalTreeId, final Filter nativeFilter) {
-        Optional<Index> indexes[];
+    private boolean ignoreIndexes(final Filter nativeFilter) {
+        final boolean ignoreIndexVmArg = Boolean.getBoolean("geogig.ignoreindex");
+        if (ignoreIndexVmArg) {
+            log.info("Ignoring index lookup for {} as indicated by -Dgeogig.ignoreindex=true",
+                    nativeSchema.getTypeName());
+        }
+        // if native filter is a simple "fid filter" then force ignoring the index for a faster
+        // look-up (looking up for a fid in the canonical tree is much faster)
+        return ignoreIndexVmArg || this.ignoreIndex || nativeFilter instanceof Id;
+    }
 
+    private Optional<Index>[] resolveSpatialIndexes(final ObjectId oldCanonicalTreeId,
+            final ObjectId newCanonicalTreeId) {
         // TODO: resolve based on filter, in case the feature type has more than one geometry
         // attribute
         final @Nullable GeometryDescriptor geometryAttribute = nativeSchema.getGeometryDescriptor();
+        if (geometryAttribute == null) {
+            return NO_INDEX;
+        }
         final String typeName = nativeSchema.getTypeName();
-        final boolean ignoreIndexVmArg = Boolean.getBoolean("geogig.ignoreindex");
-        if (ignoreIndexVmArg) {
-            log.info("Ignoring index lookup for {} as indicated by -Dgeogig.ignoreindex=true",
-                    typeName);
+        Optional<Index>[] indexes = resolveIndex(oldCanonicalTreeId, newCanonicalTreeId, typeName,
+                geometryAttribute.getLocalName());
+        if (indexes[0].isPresent()
+                && !IndexType.QUADTREE.equals(indexes[0].get().info().getIndexType())) {
+            return NO_INDEX;
         }
+        return indexes;
+    }
 
-        // if native filter is a simple "fid filter" then force ignoring the index for a faster
-        // look-up (looking up for a fid in the canonical tree is much faster)
-        final boolean ignoreIndex = ignoreIndexVmArg || geometryAttribute == null
-                || this.ignoreIndex || nativeFilter instanceof Id;
-        indexes = ignoreIndex ? NO_INDEX
-                : resolveIndex(oldCanonicalTreeId, newCanonicalTreeId, typeName,
-                        geometryAttribute.getLocalName());
+    /**
+     * Resolves the {@link IndexType#ATTRIBUTE attribute} indexes of the layer on an attribute the
+     * filter constrains to a range of values, preferring the ones constrained to a single value,
+     * and sets {@link WalkInfo#attributeKeyRange} accordingly.
+     */
+    private Optional<Index>[] resolveAttributeIndexes(final ObjectId oldCanonicalTreeId,
+            final ObjectId newCanonicalTreeId, WalkInfo info) {
+        final String typeName = nativeSchema.getTypeName();
+        Optional<Index>[] indexes = NO_INDEX;
+        AttributeKeyRange indexRange = null;
+        for (IndexInfo indexInfo : leftRepo.indexDatabase().getIndexInfos(typeName)) {
+            if (!IndexType.ATTRIBUTE.equals(indexInfo.getIndexType())) {
+                continue;
+            }
+            final String attribute = indexInfo.getAttributeName();
+            final AttributeDescriptor descriptor = nativeSchema.getDescriptor(attribute);
+            if (descriptor == null) {
+                continue;
+            }
+            final Class<?> binding = descriptor.getType().getBinding();
+            AttributeKeyRange range = AttributeKeyRange.of(info.nativeFilter, attribute, binding)
+                    .orElse(null);
+            if (range == null || (indexRange != null && !isSingleValue(range))) {
+                continue;
+            }
+            Optional<Index>[] candidates = resolveIndex(oldCanonicalTreeId, newCanonicalTreeId,
+                    typeName, attribute);
+            if (candidates[0].isPresent()) {
+                indexes = candidates;
+                indexRange = range;
+                if (isSingleValue(range)) {
+                    break;
+                }
+            }
+        }
+        info.attributeKeyRange = indexRange;
         return indexes;
     }
 
+    private static boolean isSingleValue(AttributeKeyRange range) {
+        return range.min != null && range.min.equals(range.max);
+    }
+
     public FeatureReader<SimpleFeatureType, SimpleFeature> build() {
         WalkInfo info = buildTreeWalk();
 
@@ -409,8 +491,12 @@ public class FeatureReaderBuilder {
 
         AutoCloseableIterator<NodeRef> featureRefs = toFeatureRefs(diffs, changeType);
 
+        // features in natural order come straight out of the diff walk, otherwise offset and limit
+        // apply to the sorted features
+        final boolean sortRequired = isSortRequired(info);
+
         // post-processing
-        if (info.filterIsFullySupportedByIndex) {
+        if (info.filterIsFullySupportedByIndex && !sortRequired) {
             featureRefs = applyOffsetAndLimit(featureRefs);
         }
 
@@ -429,7 +515,7 @@ public class FeatureReaderBuilder {
             org.locationtech.geogig.crs.CoordinateReferenceSystem nativeGigCrs = GT
                     .adapt(nativeCrs);
             features = MaterializedIndexFeatureIterator.create(GT.adapt(resultSchema), featureRefs,
-                    geometryFactory, nativeGigCrs);
+                    geometryFactory, nativeGigCrs, info.materializedCoverage);
         } else {
             BulkFeatureRetriever retriever;
             retriever = new BulkFeatureRetriever(leftFeatureSource, rightFeatureSource);
@@ -451,7 +537,13 @@ public class FeatureReaderBuilder {
 
         if (!info.filterIsFullySupportedByIndex) {
             features = applyPostFilter(info.postFilter, features);
-            features = applyOffsetAndLimit(features);
+            if (!sortRequired) {
+                features = applyOffsetAndLimit(features);
+            }
+        }
+
+        if (sortRequired) {
+            features = applySort(features, resultSchema);
         }
 
         if ((screenMap != null)) {
@@ -572,6 +664,26 @@ public class FeatureReaderBuilder {
         return resultSchema;
     }
 
+    /**
+     * Sorts the features by {@link #sortBy}, keeping only the top {@code offset + limit} ones in
+     * memory if a limit is set, and applies offset and limit to the result
+     */
+    private AutoCloseableIterator<SimpleFeature> applySort(
+            AutoCloseableIterator<SimpleFeature> features, SimpleFeatureType schema) {
+        @Nullable
+        Integer topN = null;
+        if (limit != null) {
+            long n = limit.longValue() + (offset == null ? 0L : offset.longValue());
+            topN = Integer.valueOf((int) Math.min(Integer.MAX_VALUE, n));
+        }
+        SortBy[] sortBy = this.sortBy;
+        if (sortBy == null || sortBy.length == 0) {
+            sortBy = new SortBy[] { SortBy.NATURAL_ORDER };
+        }
+        features = FeatureSorting.sort(features, schema, sortBy, topN, maxInMemorySort);
+        return applyOffsetAndLimit(features);
+    }
+
     private <T> AutoCloseableIterator<T> applyOffsetAndLimit(AutoCloseableIterator<T> iterator) {
         Integer offset = this.offset;
         Integer limit = this.limit;
@@ -687,13 +799,16 @@ public class FeatureReaderBuilder {
         }
 
         final Set<String> filterAttributes = requiredAttributes(nativeFilter);
+        final Set<String> sortAttributes = FeatureSorting.sortAttributes(sortBy);
 
         if (outputSchemaPropertyNames.length == 0
-                /* Query.NO_NAMES */ && filterAttributes.isEmpty()) {
+                /* Query.NO_NAMES */ && filterAttributes.isEmpty() && sortAttributes.isEmpty()) {
             return Collections.emptySet();
         }
 
         Set<String> requiredProps = Sets.newHashSet(outputSchemaPropertyNames);
+        // props required to sort in-process
+        requiredProps.addAll(sortAttributes);
         // if the filter is a simple BBOX filter against the default geometry attribute, don't force
         // it, we can optimize bbox filter out of Node.bounds()
         if (!(nativeFilter instanceof BBOX)) {
@@ -919,6 +1034,30 @@ public class FeatureReaderBuilder {
         return pathFilters;
     }
 
+    /**
+     * Determines if the features need to be sorted in-process.
+     * <p>
+     * Features in {@link SortBy#NATURAL_ORDER natural order} come straight out of the diff walk
+     * only if it walks the canonical trees. A walk over a spatial or attribute index returns them
+     * in the index order instead, which is deterministic and hence fine for paging if no sort order
+     * was given, so they're sorted in canonical order only if the natural order was requested
+     * explicitly. Paged queries in natural order don't walk the index to begin with.
+     */
+    private boolean isSortRequired(WalkInfo info) {
+        if (!FeatureSorting.isNaturalOrder(sortBy)) {
+            return true;
+        }
+        return info.diffUsesIndex && isNaturalOrderRequested();
+    }
+
+    /**
+     * @return {@code true} if the {@link SortBy#NATURAL_ORDER natural order} was requested
+     *         explicitly, as opposed to no sort order at all
+     */
+    private boolean isNaturalOrderRequested() {
+        return sortBy != null && sortBy.length > 0 && FeatureSorting.isNaturalOrder(sortBy);
+    }
+
     /**
      * Determines if the returned iterator shall preserve iteration order among successive calls of
      * the same query.
@@ -928,14 +1067,16 @@ public class FeatureReaderBuilder {
      * <li>{@link #limit} and/or {@link #offset} have been set, since most probably the caller is
      * doing paging
      * </ul>
+     * Unless the features are sorted in-process by other than their {@link SortBy#NATURAL_ORDER
+     * natural order}, since then the sort order is total regardless of the order they're found
+     * in.
      */
     private boolean shallPreserveIterationOrder() {
+        if (!FeatureSorting.isNaturalOrder(sortBy)) {
+            return false;
+        }
         boolean preserveIterationOrder = false;
         preserveIterationOrder |= limit != null || offset != null;
-        // TODO: revisit, sortBy should only force iteration order if we can return features in the
-        // requested order, otherwise a higher level decorator will still perform the sort
-        // in-process so there's no point in forcing the iteration order here
-        // preserveIterationOrder |= sortBy != null && sortBy.length > 0;
         return true;// preserveIterationOrder;
     }
 }
@@ -0,0 +1,208 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.CanonicalNodeNameOrder;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+import com.google.common.base.Preconditions;
+
+import lombok.NonNull;
+
+/**
+ * Sorts the features of a query, as requested by its {@link SortBy} clauses.
+ * <p>
+ * The {@link SortBy#NATURAL_ORDER natural order} of a GeoGig layer is the order of its canonical
+ * tree, in which the diff walk already returns the features, so no sorting is needed for it, and
+ * the {@link SortBy#REVERSE_ORDER reverse order} sorts by feature id in reverse canonical order.
+ * Any other sort order is broken by canonical feature id order, so that paging through sorted
+ * results is consistent.
+ * <p>
+ * When the query has a limit, only the top {@code offset + limit} features are kept in memory.
+ * Otherwise, or if there are too many of them, features are sorted with an
+ * {@link ExternalFeatureSort external merge sort} that keeps at most a given number of features in
+ * memory.
+ */
+final class FeatureSorting {
+
+    private static final Comparator<SimpleFeature> CANONICAL_ORDER = (f1,
+            f2) -> CanonicalNodeNameOrder.INSTANCE.compare(f1.getID(), f2.getID());
+
+    private FeatureSorting() {
+        // static utility
+    }
+
+    /**
+     * @return {@code true} if {@code sortBy} requests no sorting, or sorting in natural order
+     */
+    public static boolean isNaturalOrder(@Nullable SortBy[] sortBy) {
+        if (sortBy != null) {
+            for (SortBy s : sortBy) {
+                if (!SortBy.NATURAL_ORDER.equals(s)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the names of the attributes needed to sort by {@code sortBy}
+     */
+    public static Set<String> sortAttributes(@Nullable SortBy[] sortBy) {
+        if (sortBy == null) {
+            return Collections.emptySet();
+        }
+        Set<String> names = new HashSet<>();
+        for (SortBy s : sortBy) {
+            PropertyName property = s.getPropertyName();
+            if (property != null) {
+                String name = property.getPropertyName();
+                names.add(name.substring(name.indexOf(':') + 1));
+            }
+        }
+        return names;
+    }
+
+    public static Comparator<SimpleFeature> comparator(@NonNull SortBy[] sortBy) {
+        Comparator<SimpleFeature> comparator = null;
+        for (SortBy s : sortBy) {
+            final Comparator<SimpleFeature> c;
+            final PropertyName property = s.getPropertyName();
+            if (property == null) {
+                // natural or reverse order
+                c = CANONICAL_ORDER;
+            } else {
+                c = (f1, f2) -> compare(property.evaluate(f1), property.evaluate(f2));
+            }
+            final Comparator<SimpleFeature> ordered = SortOrder.DESCENDING
+                    .equals(s.getSortOrder()) ? c.reversed() : c;
+            comparator = comparator == null ? ordered : comparator.thenComparing(ordered);
+        }
+        return comparator == null ? CANONICAL_ORDER : comparator.thenComparing(CANONICAL_ORDER);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compare(@Nullable Object v1, @Nullable Object v2) {
+        if (v1 == null || v2 == null) {
+            // nulls first
+            return v1 == null ? (v2 == null ? 0 : -1) : 1;
+        }
+        if (v1 instanceof Comparable && v1.getClass().isInstance(v2)) {
+            return ((Comparable) v1).compareTo(v2);
+        }
+        return v1.toString().compareTo(v2.toString());
+    }
+
+    /**
+     * Sorts {@code features} lazily, on the first call to {@code hasNext()}.
+     *
+     * @param schema the type of the features
+     * @param topN if not {@code null}, the number of features to return at most
+     * @param maxInMemory the maximum number of features to hold in memory at any time
+     */
+    public static AutoCloseableIterator<SimpleFeature> sort(
+            @NonNull AutoCloseableIterator<SimpleFeature> features,
+            @NonNull SimpleFeatureType schema, @NonNull SortBy[] sortBy, @Nullable Integer topN,
+            int maxInMemory) {
+        Preconditions.checkArgument(maxInMemory > 0);
+        final Comparator<SimpleFeature> comparator = comparator(sortBy);
+        if (topN != null && topN.intValue() <= maxInMemory) {
+            return new LazySortIterator(features, () -> topN(features, comparator, topN));
+        }
+        return new LazySortIterator(features,
+                () -> ExternalFeatureSort.sort(features, schema, comparator, maxInMemory));
+    }
+
+    private static AutoCloseableIterator<SimpleFeature> topN(
+            AutoCloseableIterator<SimpleFeature> features, Comparator<SimpleFeature> comparator,
+            final int n) {
+        if (n == 0) {
+            return AutoCloseableIterator.emptyIterator();
+        }
+        // max-heap of the n smallest features seen so far
+        PriorityQueue<SimpleFeature> heap = new PriorityQueue<>(Math.min(n, 1024),
+                comparator.reversed());
+        while (features.hasNext()) {
+            SimpleFeature feature = features.next();
+            if (heap.size() < n) {
+                heap.offer(feature);
+            } else if (comparator.compare(feature, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(feature);
+            }
+        }
+        List<SimpleFeature> sorted = new ArrayList<>(heap);
+        sorted.sort(comparator);
+        return AutoCloseableIterator.fromIterator(sorted.iterator());
+    }
+
+    private static class LazySortIterator implements AutoCloseableIterator<SimpleFeature> {
+
+        private interface Sorter {
+            AutoCloseableIterator<SimpleFeature> sort();
+        }
+
+        private final AutoCloseableIterator<SimpleFeature> source;
+
+        private final Sorter sorter;
+
+        private AutoCloseableIterator<SimpleFeature> sorted;
+
+        LazySortIterator(AutoCloseableIterator<SimpleFeature> source, Sorter sorter) {
+            this.source = source;
+            this.sorter = sorter;
+        }
+
+        public @Override boolean hasNext() {
+            if (sorted == null) {
+                try {
+                    sorted = sorter.sort();
+                } catch (RuntimeException e) {
+                    close();
+                    throw e;
+                }
+            }
+            return sorted.hasNext();
+        }
+
+        public @Override SimpleFeature next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return sorted.next();
+        }
+
+        public @Override void close() {
+            try {
+                source.close();
+            } finally {
+                if (sorted != null) {
+                    sorted.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.repository.IndexInfo;
+
+import lombok.NonNull;
+
+/**
+ * Plans how to build the features of a query out of the attributes materialized in the index nodes'
+ * {@link Node#getExtraData() extra data}, when they cover all the properties the query requires.
+ * <p>
+ * Besides the {@link IndexInfo#getMaterializedAttributeNames materialized attributes}, the indexed
+ * geometry is covered by its {@link IndexInfo#MD_SIMPLIFICATION_TOLERANCES simplified versions} if
+ * the query allows simplifying geometries by at least one of the index tolerances, and the geometry
+ * is not needed to evaluate the filter in-process. The coarsest of such versions is used, which
+ * lets map rendering of large layers be served from the index alone, with geometries whose size
+ * matches the rendering scale.
+ */
+final class MaterializedCoverage {
+
+    private static final MaterializedCoverage EMPTY = new MaterializedCoverage(
+            Collections.emptyMap());
+
+    /**
+     * Name of the materialized attribute that backs each required property, if different
+     */
+    private final Map<String, String> sources;
+
+    private MaterializedCoverage(Map<String, String> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * @return the name under which the value of {@code property} is materialized
+     */
+    public String source(String property) {
+        return sources.getOrDefault(property, property);
+    }
+
+    /**
+     * @param index the index whose trees are walked, or {@code null} if the walk is over the
+     *        canonical trees
+     * @param requiredProperties the properties needed for the output schema and the in-process
+     *        filter
+     * @param simplificationDistance the distance by which the query allows geometries to be
+     *        simplified, if any
+     * @param postFilterProperties the properties needed to evaluate the in-process filter
+     * @return the plan to build features out of the index nodes, or empty if they don't cover all
+     *         the required properties
+     */
+    public static Optional<MaterializedCoverage> of(@Nullable IndexInfo index,
+            @NonNull Set<String> requiredProperties, @Nullable Double simplificationDistance,
+            @NonNull Set<String> postFilterProperties) {
+        if (requiredProperties.isEmpty()) {
+            return Optional.of(EMPTY);
+        }
+        if (index == null) {
+            return Optional.empty();
+        }
+        final Set<String> materialized = IndexInfo.getMaterializedAttributeNames(index);
+        final String geometryAttribute = index.getAttributeName();
+        @Nullable
+        String simplifiedGeometry = null;
+        if (simplificationDistance != null
+                && !postFilterProperties.contains(geometryAttribute)) {
+            for (double tolerance : IndexInfo.getSimplificationTolerances(index)) {
+                if (tolerance <= simplificationDistance.doubleValue()) {
+                    simplifiedGeometry = IndexInfo.getSimplifiedAttributeName(geometryAttribute,
+                            tolerance);
+                }
+            }
+        }
+        Map<String, String> sources = new HashMap<>();
+        for (String property : requiredProperties) {
+            if (simplifiedGeometry != null && property.equals(geometryAttribute)) {
+                sources.put(property, simplifiedGeometry);
+            } else if (!materialized.contains(property)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new MaterializedCoverage(sources));
+    }
+}
@@ -15,6 +15,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureImpl;
@@ -57,21 +58,44 @@ class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFe
 
     private final CoordinateReferenceSystem crs;
 
+    private final Function<String, String> sources;
+
     private MaterializedIndexFeatureIterator(final SimpleFeatureBuilder builder,
             AutoCloseableIterator<NodeRef> nodes, GeometryFactory geometryFactory,
-            CoordinateReferenceSystem crs) {
+            CoordinateReferenceSystem crs, Function<String, String> sources) {
         this.featureBuilder = builder;
         this.nodes = nodes;
         this.geometryFactory = geometryFactory;
         this.crs = crs;
+        this.sources = sources;
     }
 
     public static MaterializedIndexFeatureIterator create(FeatureType outputSchema,
             AutoCloseableIterator<NodeRef> nodes, GeometryFactory geometryFactory,
             org.locationtech.geogig.crs.CoordinateReferenceSystem crs) {
 
+        return create(outputSchema, nodes, geometryFactory, crs, Function.identity());
+    }
+
+    /**
+     * @param coverage determines the materialized attribute each property's value is taken from
+     */
+    public static MaterializedIndexFeatureIterator create(FeatureType outputSchema,
+            AutoCloseableIterator<NodeRef> nodes, GeometryFactory geometryFactory,
+            org.locationtech.geogig.crs.CoordinateReferenceSystem crs,
+            MaterializedCoverage coverage) {
+
+        return create(outputSchema, nodes, geometryFactory, crs, coverage::source);
+    }
+
+    private static MaterializedIndexFeatureIterator create(FeatureType outputSchema,
+            AutoCloseableIterator<NodeRef> nodes, GeometryFactory geometryFactory,
+            org.locationtech.geogig.crs.CoordinateReferenceSystem crs,
+            Function<String, String> sources) {
+
         SimpleFeatureBuilder builder = new SimpleFeatureBuilder(GT.adapt(outputSchema));
-        return new MaterializedIndexFeatureIterator(builder, nodes, geometryFactory, GT.adapt(crs));
+        return new MaterializedIndexFeatureIterator(builder, nodes, geometryFactory, GT.adapt(crs),
+                sources);
     }
 
     public @Override void close() {
@@ -126,7 +150,7 @@ class MaterializedIndexFeatureIterator implements AutoCloseableIterator<SimpleFe
             for (int i = 0; i < attributeDescriptors.size(); i++) {
                 AttributeDescriptor descriptor = attributeDescriptors.get(i);
                 String localName = descriptor.getLocalName();
-                Object value = materializedAttributes.get(localName);
+                Object value = materializedAttributes.get(sources.apply(localName));
                 if (value instanceof Geometry) {
                     value = geometryFactory.createGeometry((Geometry) value);
                 }
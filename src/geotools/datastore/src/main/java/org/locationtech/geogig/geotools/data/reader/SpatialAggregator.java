@@ -0,0 +1,323 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import static org.locationtech.geogig.model.RevTree.EMPTY_TREE_ID;
+import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevFeatureType;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.porcelain.index.Index;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.geogig.repository.impl.SpatialOps;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.filter.spatial.BBOX;
+import org.opengis.filter.spatial.BBOX3D;
+import org.opengis.filter.spatial.BinarySpatialOperator;
+import org.opengis.filter.spatial.Intersects;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import lombok.NonNull;
+
+/**
+ * Computes the number and bounds of the features matching a rectangular spatial filter (a
+ * {@link BBOX} or an {@link Intersects} against a rectangle) out of the feature type tree, or its
+ * spatial index tree if available, without fetching the features whose bounds are known to be
+ * inside or outside the filter.
+ * <p>
+ * The tree is walked top-down: buckets fully contained in the filter envelope contribute their
+ * tree's {@link RevTree#size() size} and bounds as a whole, buckets disjoint with it are skipped,
+ * and only the buckets overlapping its edges are descended into. Likewise, feature nodes are
+ * matched by their bounds, and only those crossing the edges of the filter envelope have their
+ * geometry fetched and checked for intersection, in batches.
+ * <p>
+ * Spatial index trees only hold features with a non empty geometry, hence the size of a contained
+ * bucket is its number of matching features. Buckets of the canonical tree may also hold features
+ * with no geometry though, so they're descended into until their feature nodes can be counted,
+ * still without fetching the features.
+ * <p>
+ * The resulting bounds are the union of the matching nodes bounds, as for the bounds of the whole
+ * feature type tree.
+ *
+ * @since 2.0
+ */
+public class SpatialAggregator {
+
+    private static final int FETCH_BATCH_SIZE = 10_000;
+
+    private static final int TREE_BATCH_SIZE = 1_000;
+
+    private final ObjectStore treeSource;
+
+    private final ObjectStore featureSource;
+
+    private final RevTree tree;
+
+    private final Envelope filter;
+
+    private final PreparedGeometry filterGeometry;
+
+    private final int geometryIndex;
+
+    /**
+     * Whether all the feature nodes in {@link #tree} have bounds, and hence the size of a bucket
+     * whose bounds are contained in the filter is the number of features it matches
+     */
+    private final boolean boundedNodesOnly;
+
+    private final GeometryFactory geometryFactory;
+
+    private long count;
+
+    private final Envelope bounds = new Envelope();
+
+    /**
+     * Feature nodes partially overlapping the filter envelope, whose geometry needs to be checked
+     */
+    private final List<Node> pending = new ArrayList<>();
+
+    private SpatialAggregator(ObjectStore treeSource, ObjectStore featureSource, RevTree tree,
+            Envelope filter, int geometryIndex, boolean boundedNodesOnly) {
+        this.treeSource = treeSource;
+        this.featureSource = featureSource;
+        this.tree = tree;
+        this.filter = filter;
+        this.geometryIndex = geometryIndex;
+        this.boundedNodesOnly = boundedNodesOnly;
+        this.geometryFactory = new GeometryFactory();
+        this.filterGeometry = PreparedGeometryFactory.prepare(geometryFactory.toGeometry(filter));
+    }
+
+    /**
+     * Creates an aggregator for the tree walk resolved by
+     * {@link FeatureReaderBuilder#buildTreeWalk()}, if its native filter is a rectangular filter on
+     * the default geometry attribute and it's not comparing two trees.
+     *
+     * @return the aggregator, or {@link Optional#empty() empty} if the walk's filter can't be
+     *         aggregated from the tree nodes
+     */
+    public static Optional<SpatialAggregator> create(@NonNull Context context,
+            @NonNull RevFeatureType nativeType, @NonNull WalkInfo info) {
+
+        final int geometryIndex = nativeType.type().getGeometryDescriptorIndex();
+        if (geometryIndex < 0 || !EMPTY_TREE_ID.equals(info.leftTree)) {
+            return Optional.empty();
+        }
+        final String geometryName = nativeType.descriptors().get(geometryIndex).getLocalName();
+        final @Nullable Envelope filter = rectangle(info.nativeFilter, geometryName);
+        if (filter == null) {
+            return Optional.empty();
+        }
+        // the walk may use a non spatial index, whose bucket bounds are not tight
+        final Optional<Index> spatialIndex = info.rightIndex
+                .filter(i -> IndexType.QUADTREE.equals(i.info().getIndexType()));
+        final ObjectStore treeSource;
+        final RevTree tree;
+        if (spatialIndex.isPresent()) {
+            treeSource = context.indexDatabase();
+            tree = spatialIndex.get().indexTree();
+        } else {
+            treeSource = context.objectDatabase();
+            tree = treeSource.getTree(info.rightTree);
+        }
+        return Optional.of(new SpatialAggregator(treeSource, context.objectDatabase(), tree,
+                filter, geometryIndex, spatialIndex.isPresent()));
+    }
+
+    /**
+     * @return the filter envelope if {@code filter} is a 2D {@link BBOX} or an {@link Intersects}
+     *         against a rectangular literal, on the default geometry attribute, {@code null}
+     *         otherwise
+     */
+    static @Nullable Envelope rectangle(Filter filter, String geometryName) {
+        if (!(filter instanceof BBOX || filter instanceof Intersects)
+                || filter instanceof BBOX3D) {
+            return null;
+        }
+        final BinarySpatialOperator op = (BinarySpatialOperator) filter;
+        final Expression property = op.getExpression1();
+        final Expression literal = op.getExpression2();
+        if (!(property instanceof PropertyName && literal instanceof Literal)) {
+            return null;
+        }
+        final String propertyName = ((PropertyName) property).getPropertyName();
+        if (!(propertyName.isEmpty() || propertyName.equals(geometryName)
+                || propertyName.endsWith(":" + geometryName))) {
+            return null;
+        }
+        final Object value = ((Literal) literal).getValue();
+        if (value instanceof Envelope) {
+            return new Envelope((Envelope) value);
+        }
+        if (value instanceof Geometry && ((Geometry) value).isRectangle()) {
+            return new Envelope(((Geometry) value).getEnvelopeInternal());
+        }
+        if (filter instanceof BBOX) {
+            return new Envelope(ReferencedEnvelope.reference(((BBOX) filter).getBounds()));
+        }
+        return null;
+    }
+
+    /**
+     * Walks the tree and computes the number and bounds of the matching features
+     */
+    public SpatialAggregator run() {
+        final Envelope treeBounds = SpatialOps.boundsOf(tree);
+        if (boundedNodesOnly && filter.contains(treeBounds)) {
+            count = tree.size();
+            bounds.init(treeBounds);
+            return this;
+        }
+        if (filter.intersects(treeBounds)) {
+            walk(Collections.singletonList(tree));
+            flushPending();
+        }
+        return this;
+    }
+
+    /**
+     * Visits the given trees and descends, depth first, into their buckets overlapping the filter,
+     * a batch of them at a time to bound the number of trees held in memory
+     */
+    private void walk(List<RevTree> trees) {
+        List<ObjectId> contained = new ArrayList<>();
+        List<ObjectId> overlapping = new ArrayList<>();
+        for (RevTree t : trees) {
+            t.forEachFeature(this::visit);
+            t.forEachBucket(bucket -> visit(bucket, contained, overlapping));
+        }
+        for (List<ObjectId> batch : Lists.partition(contained, TREE_BATCH_SIZE)) {
+            for (RevTree t : getTrees(batch)) {
+                count += t.size();
+            }
+        }
+        for (List<ObjectId> batch : Lists.partition(overlapping, TREE_BATCH_SIZE)) {
+            walk(getTrees(batch));
+        }
+    }
+
+    /**
+     * @return the number of features matching the filter
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the bounds of the features matching the filter, {@link Envelope#isNull() null} if
+     *         none matched
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    private void visit(Bucket bucket, List<ObjectId> contained, List<ObjectId> overlapping) {
+        Optional<Envelope> bucketBounds = bucket.bounds();
+        if (!bucketBounds.isPresent() || !filter.intersects(bucketBounds.get())) {
+            return;
+        }
+        if (boundedNodesOnly && filter.contains(bucketBounds.get())) {
+            contained.add(bucket.getObjectId());
+            bounds.expandToInclude(bucketBounds.get());
+        } else {
+            overlapping.add(bucket.getObjectId());
+        }
+    }
+
+    private void visit(Node node) {
+        Optional<Envelope> nodeBounds = node.bounds();
+        // features with no bounds have a null or empty geometry, that intersects nothing
+        if (!nodeBounds.isPresent() || !filter.intersects(nodeBounds.get())) {
+            return;
+        }
+        if (filter.contains(nodeBounds.get())) {
+            count++;
+            bounds.expandToInclude(nodeBounds.get());
+        } else {
+            pending.add(node);
+            if (pending.size() >= FETCH_BATCH_SIZE) {
+                flushPending();
+            }
+        }
+    }
+
+    private void flushPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Set<ObjectId> ids = new HashSet<>();
+        pending.forEach(n -> ids.add(n.getObjectId()));
+
+        Set<ObjectId> matches = new HashSet<>();
+        Iterator<RevFeature> features = featureSource.getAll(ids, NOOP_LISTENER,
+                RevFeature.class);
+        while (features.hasNext()) {
+            RevFeature feature = features.next();
+            Optional<Geometry> geometry = feature.get(geometryIndex, geometryFactory);
+            if (geometry.isPresent() && filterGeometry.intersects(geometry.get())) {
+                matches.add(feature.getId());
+            }
+        }
+        for (Node node : pending) {
+            if (matches.contains(node.getObjectId())) {
+                count++;
+                node.expand(bounds);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return the trees in the same order as {@code ids}, fetched all at once
+     */
+    private List<RevTree> getTrees(List<ObjectId> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<ObjectId, RevTree> found = new HashMap<>();
+        treeSource.getAll(new HashSet<>(ids), NOOP_LISTENER, RevTree.class)
+                .forEachRemaining(t -> found.put(t.getId(), t));
+        List<RevTree> trees = new ArrayList<>(ids.size());
+        for (ObjectId id : ids) {
+            RevTree tree = found.get(id);
+            Preconditions.checkState(tree != null, "tree %s not found", id);
+            trees.add(tree);
+        }
+        return trees;
+    }
+}
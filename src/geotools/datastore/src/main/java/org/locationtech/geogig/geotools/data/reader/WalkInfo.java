@@ -41,6 +41,10 @@ public class WalkInfo {
     // RevFeatures from the database)
     public boolean indexContainsAllRequiredProperties;
 
+    // how to build features out of the RevTree nodes, if indexContainsAllRequiredProperties
+    @Nullable
+    MaterializedCoverage materializedCoverage;
+
     // whether the filter is fully supported by the NodeRef filtering (hence no need for
     // pos-processing filtering). This is the case if the filter is a simple BBOX, Id, or
     // INCLUDE, or all the required properties are present in the index Nodes
@@ -48,6 +52,10 @@ public class WalkInfo {
 
     public boolean diffUsesIndex;
 
+    // the range of attribute index keys the filter selects, if the diff uses an attribute index
+    @Nullable
+    AttributeKeyRange attributeKeyRange;
+
     public DiffTree diffOp;
 
     public ScreenMapPredicate screenMapFilter;
@@ -313,6 +313,52 @@ public class GeoGigFeatureSourceTest extends RepositoryTestCase {
         assertEquals(2, linesSource.getCount(new Query(linesName, filter)));
     }
 
+    @Test
+    public void testGetCountAndBoundsBBox() throws Exception {
+        assertCountAndBoundsBBox();
+    }
+
+    @Test
+    public void testGetCountAndBoundsBBoxWithSpatialIndex() throws Exception {
+        createQuadTree(pointsName);
+        createQuadTree(linesName);
+        assertCountAndBoundsBBox();
+    }
+
+    private void assertCountAndBoundsBBox() throws Exception {
+        final String pointsGeom = pointsType.getGeometryDescriptor().get().getLocalName();
+        final String linesGeom = linesType.getGeometryDescriptor().get().getLocalName();
+        Filter filter;
+
+        // contains all
+        filter = ff.bbox(pointsGeom, 0, 0, 10, 10, null);
+        assertEquals(3, pointsSource.getCount(new Query(pointsName, filter)));
+        assertEquals(boundsOf(points1, points2, points3),
+                pointsSource.getBounds(new Query(pointsName, filter)));
+
+        filter = ff.bbox(pointsGeom, 0, 0, 2.5, 2.5, null);
+        assertEquals(2, pointsSource.getCount(new Query(pointsName, filter)));
+        assertEquals(boundsOf(points1, points2),
+                pointsSource.getBounds(new Query(pointsName, filter)));
+        assertEquals(1, pointsSource.getCount(new Query(pointsName, filter, 1, (String[]) null,
+                "handle")));
+
+        filter = ff.bbox(pointsGeom, 10, 10, 20, 20, null);
+        assertEquals(0, pointsSource.getCount(new Query(pointsName, filter)));
+        assertTrue(pointsSource.getBounds(new Query(pointsName, filter)).isEmpty());
+
+        // lines1 and lines2 bounds overlap the filter, and so do their geometries
+        filter = ff.bbox(linesGeom, 1.5, 1.5, 3.5, 3.5, null);
+        assertEquals(2, linesSource.getCount(new Query(linesName, filter)));
+        assertEquals(boundsOf(lines1, lines2),
+                linesSource.getBounds(new Query(linesName, filter)));
+
+        // lines2 bounds overlap the filter but its geometry doesn't
+        filter = ff.bbox(linesGeom, 3.6, 3, 4, 3.3, null);
+        assertEquals(0, linesSource.getCount(new Query(linesName, filter)));
+        assertTrue(linesSource.getBounds(new Query(linesName, filter)).isEmpty());
+    }
+
     @Test
     public void testGetFeatures() throws Exception {
         SimpleFeatureCollection collection;
@@ -17,11 +17,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.simple.SimpleFeatureStore;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -40,6 +42,7 @@ import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.model.impl.CanonicalTreeBuilder;
 import org.locationtech.geogig.model.internal.QuadTreeTestSupport;
 import org.locationtech.geogig.plumbing.index.IndexTestSupport;
+import org.locationtech.geogig.porcelain.index.CreateAttributeIndex;
 import org.locationtech.geogig.porcelain.index.CreateQuadTree;
 import org.locationtech.geogig.porcelain.index.Index;
 import org.locationtech.geogig.repository.IndexInfo;
@@ -342,6 +345,51 @@ public class GeoGigFeatureStoreIndexedTest extends GeoGigFeatureStoreTest {
         // IndexTestSupport.verifyIndex(geogig, indexTreeId, canonicalTreeId, extraAttributes);
     }
 
+    @Test
+    public void testAttributeIndexQueriesMatchCanonicalQueries() throws Exception {
+        final NodeRef layerNode = IndexTestSupport.createWorldPointsLayer(repo);
+        final String typeName = layerNode.getNode().getName();
+
+        add();
+        commit("created layer " + typeName);
+        repo.command(CreateAttributeIndex.class).setTypeTreeRef(layerNode).setAttributeName("x")
+                .call();
+        repo.command(CreateAttributeIndex.class).setTypeTreeRef(layerNode)
+                .setAttributeName("xystr").call();
+
+        List<Filter> filters = Arrays.asList(//
+                ff.equals(ff.property("x"), ff.literal(10)), //
+                ff.less(ff.property("x"), ff.literal(-170)), //
+                ff.greaterOrEqual(ff.property("x"), ff.literal(175d)), //
+                ff.between(ff.property("x"), ff.literal(-10), ff.literal(10)), //
+                ff.or(ff.equals(ff.property("x"), ff.literal(-45)),
+                        ff.equals(ff.property("x"), ff.literal(45))), //
+                ff.and(ff.greater(ff.property("x"), ff.literal(0)),
+                        ff.lessOrEqual(ff.property("y"), ff.literal(-80))), //
+                ff.equals(ff.property("xystr"), ff.literal(IndexTestSupport.getPointFid(5, 5))), //
+                ff.greater(ff.property("xystr"), ff.literal("5")));
+
+        SimpleFeatureSource source = dataStore.getFeatureSource(typeName);
+        for (Filter filter : filters) {
+            Query query = new Query(typeName, filter);
+            Set<String> indexed = fids(source, query);
+            Set<String> canonical;
+            System.setProperty("geogig.ignoreindex", "true");
+            try {
+                canonical = fids(source, query);
+            } finally {
+                System.clearProperty("geogig.ignoreindex");
+            }
+            assertFalse(filter.toString(), canonical.isEmpty());
+            assertEquals(filter.toString(), canonical, indexed);
+        }
+    }
+
+    private Set<String> fids(SimpleFeatureSource source, Query query) throws IOException {
+        return DataUtilities.list(source.getFeatures(query)).stream().map(f -> f.getID())
+                .collect(Collectors.toSet());
+    }
+
     public static NodeRef createOddLayer(String typeName, Repository repository) {
         String typeSpec = "geom:Point:srid=4326,x:Double,y:Double,xystr:String";
         SimpleFeatureType type;
@@ -0,0 +1,110 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import static org.geotools.filter.text.ecql.ECQL.toFilter;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.internal.AttributeIndexKeys;
+import org.opengis.filter.Filter;
+
+public class AttributeKeyRangeTest {
+
+    private Optional<AttributeKeyRange> range(String ecql, Class<?> binding) throws Exception {
+        Filter filter = toFilter(ecql);
+        return AttributeKeyRange.of(filter, "att", binding);
+    }
+
+    private static String key(Object value) {
+        return AttributeIndexKeys.encode(value);
+    }
+
+    @Test
+    public void testKeysPreserveOrder() {
+        assertTrue(key(null).compareTo(key(-1)) < 0);
+        assertTrue(key(-10.5).compareTo(key(-1)) < 0);
+        assertTrue(key(-1).compareTo(key(0)) < 0);
+        assertEquals(key(0.0), key(-0.0));
+        assertTrue(key(1).compareTo(key(1000L)) < 0);
+        assertTrue(key("a").compareTo(key("ab")) < 0);
+        assertTrue(key("ab").compareTo(key("b")) < 0);
+    }
+
+    @Test
+    public void testUnconstrained() throws Exception {
+        assertFalse(range("other = 1", Integer.class).isPresent());
+        assertFalse(range("att <> 1", Integer.class).isPresent());
+        assertFalse(range("att = 1 OR other = 2", Integer.class).isPresent());
+        assertFalse(range("att LIKE 'a%'", String.class).isPresent());
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        AttributeKeyRange r = range("att = 10", Integer.class).get();
+        assertEquals(key(10), r.min);
+        assertEquals(key(10), r.max);
+
+        r = range("att > 10", Integer.class).get();
+        assertEquals(key(10), r.min);
+        assertNull(r.max);
+
+        r = range("10 > att", Integer.class).get();
+        assertNull(r.min);
+        assertEquals(key(10), r.max);
+
+        r = range("att BETWEEN 1 AND 5", Integer.class).get();
+        assertEquals(key(1), r.min);
+        assertEquals(key(5), r.max);
+    }
+
+    @Test
+    public void testLogicalOperators() throws Exception {
+        AttributeKeyRange r = range("att >= 1 AND att < 5 AND other = 'x'", Integer.class).get();
+        assertEquals(key(1), r.min);
+        assertEquals(key(5), r.max);
+
+        r = range("att = 2 OR att = 7", Integer.class).get();
+        assertEquals(key(2), r.min);
+        assertEquals(key(7), r.max);
+
+        r = range("att IN (3, 9, 1)", Integer.class).get();
+        assertEquals(key(1), r.min);
+        assertEquals(key(9), r.max);
+    }
+
+    @Test
+    public void testLiteralsAreConvertedToTheAttributeType() throws Exception {
+        AttributeKeyRange r = range("att = '10'", Integer.class).get();
+        assertEquals(key(10), r.min);
+    }
+
+    @Test
+    public void testIntersects() {
+        final String key = key("b");
+        final int[] path = new int[key.length()];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = AttributeIndexKeys.digit(key, i);
+        }
+        assertTrue(AttributeIndexKeys.intersects(path, key, key));
+        assertTrue(AttributeIndexKeys.intersects(new int[] { path[0] }, key, key));
+        assertTrue(AttributeIndexKeys.intersects(path, key("a"), null));
+        assertFalse(AttributeIndexKeys.intersects(path, key("c"), null));
+        assertFalse(AttributeIndexKeys.intersects(path, null, key("a")));
+        // the unpromotable bucket holds the nodes whose key is the bucket path
+        int[] exact = new int[] { path[0], AttributeIndexKeys.RADIX };
+        assertFalse(AttributeIndexKeys.intersects(exact, key, key));
+    }
+}
@@ -19,6 +19,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -38,11 +39,14 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.locationtech.geogig.geotools.adapt.GT;
 import org.locationtech.geogig.model.Bounded;
+import org.locationtech.geogig.model.CanonicalNodeNameOrder;
 import org.locationtech.geogig.model.DiffEntry;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevFeatureType;
 import org.locationtech.geogig.plumbing.DiffTree;
+import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.porcelain.index.CreateAttributeIndex;
 import org.locationtech.geogig.porcelain.index.CreateQuadTree;
 import org.locationtech.geogig.porcelain.index.Index;
 import org.locationtech.geogig.repository.Context;
@@ -50,6 +54,7 @@ import org.locationtech.geogig.storage.AutoCloseableIterator;
 import org.locationtech.geogig.test.integration.RepositoryTestCase;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
@@ -356,6 +361,97 @@ public class FeatureReaderBuilderTest extends RepositoryTestCase {
         verifyUsesIndex(index);
     }
 
+    @Test
+    public void testFiltersUsingAttributeIndex() throws Exception {
+        // enough features for the index tree to have buckets
+        List<org.locationtech.geogig.feature.Feature> features = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            features.add(feature(pointsType, "Points.x" + i, "StringProp_x" + i,
+                    Integer.valueOf(10_000 + i), "POINT(" + (i % 180) + " 0)"));
+        }
+        insert(features);
+        add();
+        commit("more points");
+        Index index = repo.command(CreateAttributeIndex.class).setTreeRefSpec(pointsName)
+                .setAttributeName("ip").call();
+        builder = spy(FeatureReaderBuilder.builder(context,
+                RevFeatureType.builder().type(pointsType).build(),
+                context.workingTree().getFeatureTypeTrees().get(0)));
+
+        Query query = new Query();
+        query.setPropertyNames(Query.ALL_NAMES);
+        FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+        query.setFilter(ff.between(ff.property("ip"), ff.literal(10_100), ff.literal(10_109)));
+        verifyFeatures(query, features.subList(100, 110)
+                .toArray(new org.locationtech.geogig.feature.Feature[10]));
+        verifyUsesIndex(index);
+
+        ArgumentCaptor<Predicate<BucketIndex>> bucketFilter = ArgumentCaptor
+                .forClass(Predicate.class);
+        verify(difftree).setBucketFilter(bucketFilter.capture());
+        assertTrue(bucketFilter.getValue() instanceof AttributeKeyRange);
+
+        // buckets that can't contain the selected values were pruned
+        DiffTree.Stats stats = difftree.getStats().get();
+        assertTrue(stats.acceptedBuckets.get() < stats.allBuckets.get());
+        assertTrue(stats.allFeatures.get() < features.size());
+    }
+
+    @Test
+    public void testNaturalOrderPagingWithSpatialIndex() throws Exception {
+        // enough features spread around for the quadtree order to differ from the canonical one
+        List<org.locationtech.geogig.feature.Feature> features = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String wkt = "POINT(" + (i * 37 % 360 - 180) + " " + (i * 53 % 180 - 90) + ")";
+            features.add(feature(pointsType, "Points.x" + i, "StringProp_x" + i,
+                    Integer.valueOf(i), wkt));
+        }
+        insert(features);
+        add();
+        commit("more points");
+        Index index = createIndex();
+
+        List<String> canonicalOrder = features.stream().map(f -> f.getId())
+                .collect(Collectors.toList());
+        canonicalOrder.addAll(Arrays.asList(points1.getId(), points2.getId(), points3.getId()));
+        canonicalOrder.sort(CanonicalNodeNameOrder.INSTANCE);
+
+        // no sort order nor paging, the features come out in index order
+        List<String> indexOrder = fids(new Query(pointsName));
+        verifyUsesIndex(index);
+        assertEquals(ImmutableSet.copyOf(canonicalOrder), ImmutableSet.copyOf(indexOrder));
+        assertNotEquals(canonicalOrder, indexOrder);
+
+        Query query = new Query(pointsName);
+        query.setSortBy(new SortBy[] { SortBy.NATURAL_ORDER });
+        assertEquals(canonicalOrder, fids(query));
+
+        // paging with no sort order pages over the index order, without sorting
+        query = new Query(pointsName);
+        query.setStartIndex(100);
+        query.setMaxFeatures(50);
+        assertEquals(indexOrder.subList(100, 150), fids(query));
+
+        // paging in natural order walks the canonical tree
+        query.setSortBy(new SortBy[] { SortBy.NATURAL_ORDER });
+        assertEquals(canonicalOrder.subList(100, 150), fids(query));
+        query.setStartIndex(990);
+        assertEquals(canonicalOrder.subList(990, canonicalOrder.size()), fids(query));
+    }
+
+    private List<String> fids(Query query) throws IOException {
+        getReader(query);
+        List<String> fids = new ArrayList<>();
+        try {
+            while (reader.hasNext()) {
+                fids.add(reader.next().getID());
+            }
+        } finally {
+            reader.close();
+        }
+        return fids;
+    }
+
     public @Test void testDiffTreeIteratorIsClosedOnError() throws IOException {
         RuntimeException expected = new RuntimeException();
         AutoCloseableIterator<DiffEntry> mockIt = mock(AutoCloseableIterator.class);
@@ -0,0 +1,176 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.CanonicalNodeNameOrder;
+import org.locationtech.geogig.storage.AutoCloseableIterator;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
+
+import com.google.common.collect.Lists;
+
+public class FeatureSortingTest {
+
+    private final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2();
+
+    private SimpleFeatureType type;
+
+    private List<SimpleFeature> features;
+
+    @Before
+    public void before() throws Exception {
+        type = DataUtilities.createType("points", "name:String,num:Integer,geom:Point");
+        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+        GeometryFactory gf = new GeometryFactory();
+        features = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // repeated values to exercise the tie breaker
+            builder.set("name", "name-" + (i % 7));
+            builder.set("num", i % 2 == 0 ? null : Integer.valueOf(i % 5));
+            builder.set("geom", gf.createPoint(new Coordinate(i, i)));
+            features.add(builder.buildFeature("points." + i));
+        }
+        Collections.shuffle(features);
+    }
+
+    private List<String> sort(Integer topN, int maxInMemory, SortBy... sortBy) {
+        AutoCloseableIterator<SimpleFeature> sorted = FeatureSorting.sort(
+                AutoCloseableIterator.fromIterator(features.iterator()), type, sortBy, topN,
+                maxInMemory);
+        try (AutoCloseableIterator<SimpleFeature> it = sorted) {
+            return Lists.newArrayList(it).stream().map(SimpleFeature::getID)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<String> expected(int limit, SortBy... sortBy) {
+        List<SimpleFeature> list = new ArrayList<>(features);
+        list.sort(FeatureSorting.comparator(sortBy));
+        return list.stream().limit(limit).map(SimpleFeature::getID).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testIsNaturalOrder() {
+        assertTrue(FeatureSorting.isNaturalOrder(null));
+        assertTrue(FeatureSorting.isNaturalOrder(new SortBy[0]));
+        assertTrue(FeatureSorting.isNaturalOrder(new SortBy[] { SortBy.NATURAL_ORDER }));
+        assertFalse(FeatureSorting.isNaturalOrder(new SortBy[] { SortBy.REVERSE_ORDER }));
+        assertFalse(FeatureSorting.isNaturalOrder(new SortBy[] { ff.sort("num", null) }));
+    }
+
+    @Test
+    public void testComparator() {
+        SortBy[] sortBy = { ff.sort("num", SortOrder.DESCENDING),
+                ff.sort("name", SortOrder.ASCENDING) };
+        List<SimpleFeature> sorted = new ArrayList<>(features);
+        sorted.sort(FeatureSorting.comparator(sortBy));
+        for (int i = 1; i < sorted.size(); i++) {
+            SimpleFeature prev = sorted.get(i - 1);
+            SimpleFeature curr = sorted.get(i);
+            Integer n1 = (Integer) prev.getAttribute("num");
+            Integer n2 = (Integer) curr.getAttribute("num");
+            // nulls sort first, hence last in descending order
+            assertTrue(n2 == null || (n1 != null && n1 >= n2));
+            if (n1 == n2 || (n1 != null && n1.equals(n2))) {
+                String s1 = (String) prev.getAttribute("name");
+                String s2 = (String) curr.getAttribute("name");
+                assertTrue(s1.compareTo(s2) <= 0);
+                if (s1.equals(s2)) {
+                    assertTrue(CanonicalNodeNameOrder.INSTANCE.compare(prev.getID(),
+                            curr.getID()) < 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReverseOrder() {
+        List<String> ids = sort(null, 100, SortBy.REVERSE_ORDER);
+        List<String> expected = features.stream().map(SimpleFeature::getID)
+                .sorted(CanonicalNodeNameOrder.INSTANCE.reversed()).collect(Collectors.toList());
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    public void testTopN() {
+        SortBy sortBy = ff.sort("num", SortOrder.DESCENDING);
+        assertEquals(expected(5, sortBy), sort(5, 100, sortBy));
+        assertEquals(expected(20, sortBy), sort(50, 100, sortBy));
+        assertEquals(Collections.emptyList(), sort(0, 100, sortBy));
+    }
+
+    @Test
+    public void testInMemorySort() {
+        SortBy sortBy = ff.sort("name", SortOrder.ASCENDING);
+        assertEquals(expected(20, sortBy), sort(null, 100, sortBy));
+    }
+
+    @Test
+    public void testExternalSort() {
+        SortBy[] sortBy = { ff.sort("num", SortOrder.ASCENDING),
+                ff.sort("name", SortOrder.DESCENDING) };
+        // more runs than features in memory
+        assertEquals(expected(20, sortBy), sort(null, 3, sortBy));
+        // top-N larger than what can be held in memory
+        assertEquals(expected(10, sortBy), sort(10, 3, sortBy).subList(0, 10));
+    }
+
+    @Test
+    public void testExternalSortMultiPassMerge() {
+        SortBy[] sortBy = { ff.sort("name", SortOrder.ASCENDING) };
+        // 20 runs of one feature, merged at most 3 at a time
+        AutoCloseableIterator<SimpleFeature> sorted = ExternalFeatureSort.sort(
+                AutoCloseableIterator.fromIterator(features.iterator()), type,
+                FeatureSorting.comparator(sortBy), 1, 3);
+        List<String> ids;
+        try (AutoCloseableIterator<SimpleFeature> it = sorted) {
+            ids = Lists.newArrayList(it).stream().map(SimpleFeature::getID)
+                    .collect(Collectors.toList());
+        }
+        assertEquals(expected(20, sortBy), ids);
+    }
+
+    @Test
+    public void testExternalSortPreservesValues() {
+        SortBy sortBy = ff.sort("num", SortOrder.ASCENDING);
+        AutoCloseableIterator<SimpleFeature> sorted = FeatureSorting.sort(
+                AutoCloseableIterator.fromIterator(features.iterator()), type,
+                new SortBy[] { sortBy }, null, 4);
+        List<SimpleFeature> list;
+        try (AutoCloseableIterator<SimpleFeature> it = sorted) {
+            list = Lists.newArrayList(it);
+        }
+        assertEquals(features.size(), list.size());
+        for (SimpleFeature actual : list) {
+            SimpleFeature expected = features.stream()
+                    .filter(f -> f.getID().equals(actual.getID())).findFirst().get();
+            assertEquals(expected.getAttributes(), actual.getAttributes());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.geotools.data.reader;
+
+import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.locationtech.geogig.repository.IndexInfo;
+import org.locationtech.geogig.repository.IndexInfo.IndexType;
+import org.locationtech.jts.geom.Envelope;
+
+import com.google.common.collect.ImmutableSet;
+
+public class MaterializedCoverageTest {
+
+    private IndexInfo index(double[] tolerances, String... extraAttributes) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(IndexInfo.MD_QUAD_MAX_BOUNDS, new Envelope(-180, 180, -90, 90));
+        metadata.put(IndexInfo.FEATURE_ATTRIBUTES_EXTRA_DATA, extraAttributes);
+        if (tolerances != null) {
+            metadata.put(IndexInfo.MD_SIMPLIFICATION_TOLERANCES, tolerances);
+        }
+        return new IndexInfo("points", "geom", IndexType.QUADTREE, metadata);
+    }
+
+    @Test
+    public void testNoRequiredProperties() {
+        assertTrue(MaterializedCoverage.of(null, emptySet(), null, emptySet()).isPresent());
+    }
+
+    @Test
+    public void testMaterializedAttributes() {
+        IndexInfo index = index(null, "geom", "name");
+        Optional<MaterializedCoverage> coverage = MaterializedCoverage.of(index,
+                ImmutableSet.of("geom", "name"), null, emptySet());
+        assertTrue(coverage.isPresent());
+        assertEquals("geom", coverage.get().source("geom"));
+
+        assertFalse(MaterializedCoverage
+                .of(index, ImmutableSet.of("geom", "rank"), null, emptySet()).isPresent());
+        assertFalse(MaterializedCoverage.of(null, ImmutableSet.of("geom"), null, emptySet())
+                .isPresent());
+    }
+
+    @Test
+    public void testSimplifiedGeometry() {
+        IndexInfo index = index(new double[] { 0.5, 2 }, "name");
+
+        // no simplification allowed
+        assertFalse(MaterializedCoverage.of(index, ImmutableSet.of("geom", "name"), null,
+                emptySet()).isPresent());
+        // allowed simplification finer than the index tolerances
+        assertFalse(MaterializedCoverage.of(index, ImmutableSet.of("geom", "name"), 0.1,
+                emptySet()).isPresent());
+
+        Optional<MaterializedCoverage> coverage = MaterializedCoverage.of(index,
+                ImmutableSet.of("geom", "name"), 1d, emptySet());
+        assertTrue(coverage.isPresent());
+        assertEquals(IndexInfo.getSimplifiedAttributeName("geom", 0.5),
+                coverage.get().source("geom"));
+        assertEquals("name", coverage.get().source("name"));
+
+        coverage = MaterializedCoverage.of(index, ImmutableSet.of("geom"), 10d, emptySet());
+        assertEquals(IndexInfo.getSimplifiedAttributeName("geom", 2),
+                coverage.get().source("geom"));
+
+        // the in-process filter needs the actual geometry
+        assertFalse(MaterializedCoverage.of(index, ImmutableSet.of("geom"), 10d,
+                ImmutableSet.of("geom")).isPresent());
+    }
+}
@@ -31,6 +31,8 @@ import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.ProgressListener;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.repository.impl.GeogigTransaction;
+import org.locationtech.geogig.storage.impl.CommitGraph;
+import org.locationtech.geogig.storage.impl.CommitGraphStore;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
@@ -154,6 +156,12 @@ public @CanRunDuringConflict class PRHealthCheckOp extends PRCommand<PRStatus> {
         }
 
         return CompletableFuture.supplyAsync(() -> {
+            CommitGraph commitGraph = CommitGraphStore.get(context.repository()).get();
+            ObjectId oldId = oldTip.getObjectId();
+            ObjectId newId = newTip.getObjectId();
+            if (commitGraph.contains(oldId) && commitGraph.contains(newId)) {
+                return Integer.valueOf(commitGraph.countAheadBehind(newId, oldId)[0]);
+            }
             Iterator<RevCommit> missingCommits = context.command(LogOp.class)
                     .setUntil(newTip.getObjectId()).setSince(oldTip.getObjectId()).call();
             int commitsBehind = Iterators.size(missingCommits);
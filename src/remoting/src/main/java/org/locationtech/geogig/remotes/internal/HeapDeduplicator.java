@@ -9,48 +9,51 @@
  */
 package org.locationtech.geogig.remotes.internal;
 
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdSet;
 
-import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
 
+/**
+ * {@link Deduplicator} backed by a concurrent {@link ObjectIdSet}.
+ * <p>
+ * {@code (left, right)} pairs with a non {@link ObjectId#NULL NULL} left id are tracked by the
+ * SHA-1 hash of both ids. Once the number of tracked ids exceeds the
+ * {@code geogig.deduplicator.maxHeapEntries} system property (defaults to 8M, roughly 160MB of
+ * heap) the set spills over to memory mapped files in the {@code java.io.tmpdir} directory.
+ */
 public class HeapDeduplicator implements Deduplicator {
 
-    private static class IdTuple {
-        private final ObjectId left;
-
-        private final ObjectId right;
-
-        private IdTuple(ObjectId left, ObjectId right) {
-            this.left = left;
-            this.right = right;
-        }
-
-        static IdTuple of(ObjectId left, ObjectId right) {
-            return new IdTuple(left, right);
-        }
+    private static final long MAX_HEAP_ENTRIES = Long
+            .getLong("geogig.deduplicator.maxHeapEntries", 8 * 1024 * 1024);
 
-        public @Override boolean equals(Object o) {
-            IdTuple t = (IdTuple) o;
-            return left.equals(t.left) && right.equals(t.right);
-        }
+    private ObjectIdSet seen = ObjectIdSet.builder().concurrent()
+            .spillToDisk(Paths.get(System.getProperty("java.io.tmpdir")), MAX_HEAP_ENTRIES)
+            .build();
 
-        public @Override int hashCode() {
-            return 31 * left.hashCode() + right.hashCode();
+    private static ObjectId key(ObjectId left, ObjectId right) {
+        if (left.isNull()) {
+            return right;
         }
+        byte[] raw = new byte[ObjectId.NUM_BYTES];
+        Hasher hasher = ObjectId.HASH_FUNCTION.newHasher();
+        left.getRawValue(raw);
+        hasher.putBytes(raw);
+        right.getRawValue(raw);
+        hasher.putBytes(raw);
+        return ObjectId.create(hasher.hash().asBytes());
     }
 
-    private Set<IdTuple> seen = Sets.newConcurrentHashSet();
-
     public @Override boolean visit(ObjectId right) {
         return visit(ObjectId.NULL, right);
     }
 
     public @Override boolean visit(ObjectId left, ObjectId right) {
-        return seen.add(IdTuple.of(left, right));
+        return seen.add(key(left, right));
     }
 
     public @Override boolean isDuplicate(ObjectId id) {
@@ -58,14 +61,14 @@ public class HeapDeduplicator implements Deduplicator {
     }
 
     public @Override boolean isDuplicate(ObjectId left, ObjectId right) {
-        return seen.contains(IdTuple.of(left, right));
+        return seen.contains(key(left, right));
     }
 
     public @Override void removeDuplicates(List<ObjectId> ids) {
         Iterator<ObjectId> iterator = ids.iterator();
         while (iterator.hasNext()) {
             ObjectId id = iterator.next();
-            if (seen.contains(IdTuple.of(ObjectId.NULL, id))) {
+            if (seen.contains(id)) {
                 iterator.remove();
             }
         }
@@ -76,6 +79,6 @@ public class HeapDeduplicator implements Deduplicator {
     }
 
     public @Override void release() {
-        seen = null;
+        seen.close();
     }
 }
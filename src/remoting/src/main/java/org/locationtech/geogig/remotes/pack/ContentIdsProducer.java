@@ -5,6 +5,7 @@ import static org.locationtech.geogig.model.RevTree.EMPTY_TREE_ID;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.function.Consumer;
 
@@ -15,21 +16,23 @@ import org.locationtech.geogig.model.NodeOrdering;
 import org.locationtech.geogig.model.NodeRef;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevTree;
-import org.locationtech.geogig.model.impl.QuadTreeBuilder;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk;
 import org.locationtech.geogig.plumbing.diff.PreOrderDiffWalk.BucketIndex;
+import org.locationtech.geogig.porcelain.index.IndexUtils;
 import org.locationtech.geogig.remotes.internal.Deduplicator;
 import org.locationtech.geogig.repository.IndexInfo;
 import org.locationtech.geogig.storage.IndexDatabase;
 import org.locationtech.geogig.storage.ObjectStore;
-import org.locationtech.jts.geom.Envelope;
-
-import com.google.common.base.Preconditions;
 
 import lombok.NonNull;
 
 class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runnable {
 
+    /**
+     * @param diffTreeIds pairs of old and new root tree ids to walk, in order. A pair can have the
+     *        id of a commit as a third element, to be emitted after the pair has been walked to
+     *        signal all the commit contents have been emitted
+     */
     public static ContentIdsProducer forCommits(ObjectStore source, List<ObjectId[]> diffTreeIds,
             Deduplicator deduplicator, ObjectReporter objectReport) {
 
@@ -38,13 +41,29 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
                 reportFeatures);
     }
 
+    /**
+     * Like {@link #forCommits(ObjectStore, List, Deduplicator, ObjectReporter)}, additionally
+     * recording in {@code deltaBases} which object each new tree, bucket, and feature replaces.
+     * 
+     * @param presentRootTrees the root trees at the left side of {@code diffTreeIds} that the
+     *        receiving end already has
+     */
+    public static ContentIdsProducer forCommits(ObjectStore source, List<ObjectId[]> diffTreeIds,
+            Deduplicator deduplicator, ObjectReporter objectReport,
+            @NonNull DeltaBases deltaBases, @NonNull Set<ObjectId> presentRootTrees) {
+
+        ContentIdsProducer producer = forCommits(source, diffTreeIds, deduplicator,
+                objectReport);
+        producer.deltaBases = deltaBases;
+        producer.presentRootTrees = presentRootTrees;
+        return producer;
+    }
+
     public static ContentIdsProducer forIndex(@NonNull IndexInfo indexInfo,
             @NonNull IndexDatabase sourceStore, @NonNull List<ObjectId[]> treeIds,
             @NonNull Deduplicator deduplicator, @NonNull ObjectReporter objectReport) {
 
-        Envelope maxBounds = IndexInfo.getMaxBounds(indexInfo);
-        Preconditions.checkNotNull(maxBounds);
-        NodeOrdering diffNodeOrdering = QuadTreeBuilder.nodeOrdering(maxBounds);
+        NodeOrdering diffNodeOrdering = IndexUtils.nodeOrdering(indexInfo);
 
         boolean reportFeatures = false;
         ContentIdsProducer producer = new ContentIdsProducer(sourceStore, treeIds, deduplicator,
@@ -67,6 +86,10 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
 
     private NodeOrdering diffOrder = CanonicalNodeOrder.INSTANCE;
 
+    private @Nullable DeltaBases deltaBases;
+
+    private Set<ObjectId> presentRootTrees;
+
     private ContentIdsProducer(ObjectStore source, List<ObjectId[]> diffTreeIds,
             Deduplicator deduplicator, ObjectReporter objectReport, boolean reportFeatures) {
         this.source = source;
@@ -85,7 +108,13 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
         for (ObjectId[] oldNewTreeId : this.roots) {
             ObjectId leftRootId = oldNewTreeId[0];
             ObjectId rightRootId = oldNewTreeId[1];
-            visitPreorder(leftRootId, rightRootId, deduplicator, objectReport, this);
+            boolean basesPresent = deltaBases != null && presentRootTrees.contains(leftRootId);
+            visitPreorder(leftRootId, rightRootId, basesPresent, deduplicator, objectReport,
+                    this);
+            if (oldNewTreeId.length > 2) {
+                // all the contents of the commit have been emitted, signal it's complete
+                accept(oldNewTreeId[2]);
+            }
         }
         accept(ObjectId.NULL);// terminal token
     }
@@ -100,7 +129,8 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
     }
 
     private void visitPreorder(final ObjectId leftTreeId, final ObjectId rightTreeId,
-            Deduplicator deduplicator, ObjectReporter progress, Consumer<ObjectId> consumer) {
+            final boolean basesPresent, Deduplicator deduplicator, ObjectReporter progress,
+            Consumer<ObjectId> consumer) {
         if (deduplicator.isDuplicate(rightTreeId)) {
             return;
         }
@@ -135,16 +165,32 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
              * visited and hence consumed
              */
             private boolean consume(ObjectId objectId) {
+                return consume(objectId, null);
+            }
+
+            /**
+             * Same as {@link #consume(ObjectId)}, recording {@code baseId} as the delta base of
+             * {@code objectId} before handing it over, if it's going to be consumed
+             */
+            private boolean consume(ObjectId objectId, @Nullable ObjectId baseId) {
                 if (deduplicator.visit(objectId)) {
+                    if (deltaBases != null && baseId != null && !baseId.isNull()
+                            && !EMPTY_TREE_ID.equals(baseId)) {
+                        deltaBases.add(objectId, baseId, basesPresent);
+                    }
                     consumer.accept(objectId);
                     return true;
                 }
                 return false;
             }
 
+            private @Nullable ObjectId baseId(@Nullable NodeRef left) {
+                return left == null ? null : left.getObjectId();
+            }
+
             public @Override boolean feature(@Nullable NodeRef left, @Nullable NodeRef right) {
                 if (reportFeatures) {
-                    if (right != null && consume(right.getObjectId())) {
+                    if (right != null && consume(right.getObjectId(), baseId(left))) {
                         progress.addFeature();
                         addMetadataId(progress, right);
                     }
@@ -159,7 +205,7 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
                 }
                 // which "old" object the "new" bucket is being compared against.
                 ObjectId leftId = left == null ? RevTree.EMPTY_TREE_ID : left.getObjectId();
-                boolean r = addTree(progress, leftId, right);
+                boolean r = addTree(progress, leftId, right, baseId(left));
                 return r;
             }
 
@@ -172,13 +218,15 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
 
                 // which "old" object the "new" bucket is being compared against.
                 final ObjectId leftId = bucketIndex.left().getId();
-                boolean r = addBucket(progress, leftId, right);
+                boolean r = addBucket(progress, leftId, right,
+                        left == null ? null : left.getObjectId());
                 return r;
             }
 
-            private boolean addTree(ObjectReporter progress, ObjectId left, NodeRef right) {
+            private boolean addTree(ObjectReporter progress, ObjectId left, NodeRef right,
+                    @Nullable ObjectId baseId) {
                 if (visitPair(left, right.getObjectId())) {
-                    if (consume(right.getObjectId())) {
+                    if (consume(right.getObjectId(), baseId)) {
                         progress.addTree();
                     }
                     addMetadataId(progress, right);
@@ -197,9 +245,9 @@ class ContentIdsProducer implements java.util.function.Consumer<ObjectId>, Runna
             }
 
             private boolean addBucket(@NonNull ObjectReporter progress, @NonNull ObjectId left,
-                    @NonNull Bucket right) {
+                    @NonNull Bucket right, @Nullable ObjectId baseId) {
                 if (visitPair(left, right.getObjectId())) {
-                    if (consume(right.getObjectId())) {
+                    if (consume(right.getObjectId(), baseId)) {
                         progress.addBucket();
                     }
                     return true;
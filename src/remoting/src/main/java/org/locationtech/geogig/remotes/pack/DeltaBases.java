@@ -0,0 +1,86 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.remotes.pack;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import org.locationtech.geogig.model.ObjectId;
+
+import lombok.NonNull;
+
+/**
+ * Delta base hints gathered while walking the contents of a {@link Pack}, for
+ * {@link PackProcessor}s that can encode objects as differences against a previous version of
+ * them.
+ * <p>
+ * When a missing commit is compared against its parent, the tree, bucket, or feature a new object
+ * replaces on the parent's side is recorded as its delta base. If the parent commit is not part of
+ * the pack, the receiving end already has it, and hence all the objects reachable from its tree.
+ * Otherwise the base may or may not have been transferred earlier in the pack, which only the
+ * processor can tell.
+ * <p>
+ * Hints are added by the thread producing the object ids before they're handed over to the
+ * processor, and are removed as the processor consumes them.
+ *
+ * @see PackProcessor#getDeltaBases()
+ * @since 2.0
+ */
+public final class DeltaBases {
+
+    private final Map<ObjectId, Base> bases = new ConcurrentHashMap<>();
+
+    private static final class Base {
+        final ObjectId id;
+
+        final boolean present;
+
+        Base(ObjectId id, boolean present) {
+            this.id = id;
+            this.present = present;
+        }
+    }
+
+    /**
+     * @param objectId the new object
+     * @param baseId the object {@code objectId} replaces
+     * @param basePresent whether the receiving end had {@code baseId} before the pack was applied
+     */
+    void add(@NonNull ObjectId objectId, @NonNull ObjectId baseId, boolean basePresent) {
+        bases.put(objectId, new Base(baseId, basePresent));
+    }
+
+    /**
+     * Removes the delta base hint for the given object
+     *
+     * @param objectId the object about to be sent
+     * @param sent tells whether an object sent earlier in the pack is still available to the
+     *        receiving end as a delta base
+     * @return the id of the object to encode {@code objectId} against, if a base was recorded and
+     *         it's known to be available to the receiving end
+     */
+    public Optional<ObjectId> remove(@NonNull ObjectId objectId,
+            @NonNull Predicate<ObjectId> sent) {
+        Base base = bases.remove(objectId);
+        if (base == null || !(base.present || sent.test(base.id))) {
+            return Optional.empty();
+        }
+        return Optional.of(base.id);
+    }
+
+    /**
+     * @return the number of hints not yet consumed
+     */
+    public int size() {
+        return bases.size();
+    }
+}
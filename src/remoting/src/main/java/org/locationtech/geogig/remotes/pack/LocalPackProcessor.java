@@ -47,6 +47,10 @@ public class LocalPackProcessor implements PackProcessor {
         target.putAll(iterator, listener);
     }
 
+    public @Override Optional<ObjectStore> getTargetStore() {
+        return Optional.of(target);
+    }
+
     public @Override void putIndex(//@formatter:off
             @NonNull IndexDef indexDef, 
             @NonNull IndexDatabase sourceStore,
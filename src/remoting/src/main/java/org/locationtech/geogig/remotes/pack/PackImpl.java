@@ -13,18 +13,20 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.ObjectIdMap;
 import org.locationtech.geogig.model.Ref;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
@@ -37,13 +39,14 @@ import org.locationtech.geogig.repository.ProgressListener;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.IndexDatabase;
 import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
 
-import com.google.common.base.Predicate;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.collect.PeekingIterator;
 
 import lombok.NonNull;
 
@@ -62,6 +65,11 @@ class PackImpl implements Pack {
 
     private final List<RevTag> missingTags;
 
+    /**
+     * Ids of all the commits in {@link #missingCommits}, lazily computed
+     */
+    private Set<ObjectId> missingCommitIds;
+
     protected PackImpl(@NonNull Repository source, @NonNull List<RevTag> missingTags,
             @NonNull LinkedHashMap<RefRequest, List<RevCommit>> missingCommits,
             @NonNull LinkedHashMap<RefRequest, List<IndexDef>> missingIndexes) {
@@ -127,37 +135,25 @@ class PackImpl implements Pack {
 
         final ObjectDatabase sourceStore = source.objectDatabase();
 
-        List<ObjectId[]> diffRootTreeIds = collectMissingRootTreeIdPairs(commits, sourceStore);
+        final Set<ObjectId> presentRootTrees = new HashSet<>();
+        List<ObjectId[]> diffRootTreeIds = collectMissingRootTreeIdPairs(commits, sourceStore,
+                presentRootTrees);
 
-        final ContentIdsProducer producer = ContentIdsProducer.forCommits(sourceStore,
-                diffRootTreeIds, deduplicator, objectReport);
+        final Optional<DeltaBases> deltaBases = target.getDeltaBases();
+        final ContentIdsProducer producer = deltaBases.isPresent()
+                ? ContentIdsProducer.forCommits(sourceStore, diffRootTreeIds, deduplicator,
+                        objectReport, deltaBases.get(), presentRootTrees)
+                : ContentIdsProducer.forCommits(sourceStore, diffRootTreeIds, deduplicator,
+                        objectReport);
 
         final ExecutorService producerThread = Executors.newSingleThreadExecutor();
         try {
             producerThread.submit(producer);
             Iterator<ObjectId> missingContentIds = producer.iterator();
 
-            Iterator<RevObject> allObjects;
-            {
-                Iterator<RevObject> missingContents;
-                Iterator<RevCommit> commitsIterator;
-                missingContents = sourceStore.getAll(() -> missingContentIds);
-
-                // (c) -> {
-                // objectReport.addCommit();
-                // return true;
-                // }
-                Predicate<RevCommit> fn = new Predicate<RevCommit>() {
-                    public @Override boolean apply(RevCommit c) {
-                        objectReport.addCommit();
-                        return true;
-                    }
-                };
-
-                commitsIterator = Iterators.filter(commits.iterator(), fn);
+            Iterator<RevObject> allObjects = new ContentsByCommit(missingContentIds, commits,
+                    sourceStore, objectReport);
 
-                allObjects = Iterators.concat(missingContents, commitsIterator);
-            }
             final Stopwatch sw = Stopwatch.createStarted();
 
             target.putAll(allObjects, objectReport);
@@ -181,11 +177,18 @@ class PackImpl implements Pack {
         return changedRef;
     }
 
+    /**
+     * The last pair of each commit carries the commit id as a third element, for the
+     * {@link ContentIdsProducer} to emit it once the commit contents have been walked.
+     * 
+     * @param presentRootTrees collects the root trees of the parent commits that are not part of
+     *        the pack, and hence the receiving end already has
+     */
     private List<ObjectId[]> collectMissingRootTreeIdPairs(List<RevCommit> commits,
-            ObjectDatabase sourceStore) {
+            ObjectDatabase sourceStore, Set<ObjectId> presentRootTrees) {
 
-        final Map<ObjectId, RevCommit> rootsById = new HashMap<>(
-                Maps.uniqueIndex(commits, RevCommit::getId));
+        final ObjectIdMap<RevCommit> rootsById = new ObjectIdMap<>(commits.size());
+        commits.forEach(c -> rootsById.put(c.getId(), c));
 
         List<ObjectId[]> diffRootTreeIds = new ArrayList<>();
 
@@ -194,7 +197,8 @@ class PackImpl implements Pack {
             final ObjectId rightTreeId = commit.getTreeId();
             List<ObjectId> parentIds = commit.getParentIds();
             if (parentIds.isEmpty()) {
-                diffRootTreeIds.add(new ObjectId[] { RevTree.EMPTY_TREE_ID, rightTreeId });
+                diffRootTreeIds.add(
+                        new ObjectId[] { RevTree.EMPTY_TREE_ID, rightTreeId, commit.getId() });
                 continue;
             }
             for (ObjectId parentId : parentIds) {
@@ -207,17 +211,85 @@ class PackImpl implements Pack {
                 };
 
                 final @Nullable RevCommit parent = parentId.isNull() ? null
-                        : Optional.ofNullable((RevCommit) rootsById.get(parentId)).orElseGet(fn);
+                        : Optional.ofNullable(rootsById.get(parentId)).orElseGet(fn);
 
                 ObjectId oldRootTreeId = parent == null ? RevTree.EMPTY_TREE_ID
                         : parent.getTreeId();
+                if (parent != null && !isMissing(parentId)) {
+                    presentRootTrees.add(oldRootTreeId);
+                }
                 diffRootTreeIds.add(new ObjectId[] { oldRootTreeId, rightTreeId });
             }
+            ObjectId[] last = diffRootTreeIds.get(diffRootTreeIds.size() - 1);
+            diffRootTreeIds.set(diffRootTreeIds.size() - 1,
+                    new ObjectId[] { last[0], last[1], commit.getId() });
         }
 
         return diffRootTreeIds;
     }
 
+    /**
+     * Fetches the objects whose ids are emitted by a {@link ContentIdsProducer}, returning each
+     * commit right after its contents, so that the receiving end has all the objects reachable
+     * from a commit by the time it gets it.
+     */
+    private static class ContentsByCommit extends AbstractIterator<RevObject> {
+
+        private final PeekingIterator<ObjectId> ids;
+
+        private final ObjectIdMap<RevCommit> commits;
+
+        private final ObjectStore store;
+
+        private final ObjectReporter objectReport;
+
+        private Iterator<RevObject> contents = Collections.emptyIterator();
+
+        ContentsByCommit(Iterator<ObjectId> ids, List<RevCommit> commits, ObjectStore store,
+                ObjectReporter objectReport) {
+            this.ids = Iterators.peekingIterator(ids);
+            this.commits = new ObjectIdMap<>(commits.size());
+            commits.forEach(c -> this.commits.put(c.getId(), c));
+            this.store = store;
+            this.objectReport = objectReport;
+        }
+
+        protected @Override RevObject computeNext() {
+            while (true) {
+                if (contents.hasNext()) {
+                    return contents.next();
+                }
+                if (!ids.hasNext()) {
+                    return endOfData();
+                }
+                RevCommit commit = commits.get(ids.peek());
+                if (commit != null) {
+                    ids.next();
+                    objectReport.addCommit();
+                    return commit;
+                }
+                Iterator<ObjectId> commitContents = new AbstractIterator<ObjectId>() {
+                    protected @Override ObjectId computeNext() {
+                        if (ids.hasNext() && commits.get(ids.peek()) == null) {
+                            return ids.next();
+                        }
+                        return endOfData();
+                    }
+                };
+                contents = store.getAll(() -> commitContents);
+            }
+        }
+    }
+
+    private boolean isMissing(ObjectId commitId) {
+        if (missingCommitIds == null) {
+            missingCommitIds = new HashSet<>();
+            missingCommits.values()
+                    .forEach(commits -> commits.forEach(c -> missingCommitIds.add(c.getId())));
+        }
+        return missingCommitIds.contains(commitId);
+    }
+
     private void applyIndex(PackProcessor target, RefRequest req, Deduplicator deduplicator,
             ProgressListener progress) {
 
@@ -10,11 +10,13 @@
 package org.locationtech.geogig.remotes.pack;
 
 import java.util.Iterator;
+import java.util.Optional;
 
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.remotes.internal.Deduplicator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.IndexDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
 
 /**
  * Applies changes of a pack to a repository.
@@ -31,4 +33,26 @@ public interface PackProcessor {
     public void putIndex(Pack.IndexDef index, IndexDatabase sourceStore,
             ObjectReporter objectReport, Deduplicator deduplicator);
 
+    /**
+     * Processors that can encode objects as differences against objects the receiving end already
+     * has return a {@link DeltaBases} instance, to be filled with delta base hints while the pack
+     * contents are walked, and consulted by {@link #putAll} as objects are received.
+     * 
+     * @return the delta base hints to fill, or {@link Optional#empty() empty} (the default) if
+     *         this processor doesn't use them
+     * @since 2.0
+     */
+    public default Optional<DeltaBases> getDeltaBases() {
+        return Optional.empty();
+    }
+
+    /**
+     * @return the store holding the objects the target repository had before the pack is applied,
+     *         used to resolve the base objects of delta encoded packs, or {@link Optional#empty()
+     *         empty} (the default) if not applicable
+     * @since 2.0
+     */
+    public default Optional<ObjectStore> getTargetStore() {
+        return Optional.empty();
+    }
 }
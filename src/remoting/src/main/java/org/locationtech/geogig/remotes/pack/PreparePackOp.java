@@ -16,12 +16,23 @@ import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Lists.newArrayList;
 import static org.locationtech.geogig.storage.BulkOpListener.NOOP_LISTENER;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -41,15 +52,43 @@ import org.locationtech.geogig.storage.IndexDatabase;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
 
 /**
  * Takes a {@link PackRequest} and a {@link PackBuilder} to be used to create a {@link Pack}.
+ * <p>
+ * The commits missing for each requested ref, and the index trees changed by them if indexes are
+ * to be synchronized, are resolved concurrently, each ref streaming them through a bounded queue
+ * that's handed over to the builder in request order. A commit reachable from more than one ref is
+ * added to the response of the first one, and its index changes are only resolved once.
  */
 public class PreparePackOp extends AbstractGeoGigOp<Pack> {
 
+    /**
+     * Maximum number of refs whose missing commits are resolved concurrently
+     */
+    private static final int MAX_CONCURRENT_REFS = Math.max(2,
+            Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Maximum number of resolved commits buffered for each ref ahead of the builder
+     */
+    private static final int REF_QUEUE_CAPACITY = 1_000;
+
+    private static final Integer ADDED = Integer.valueOf(-1);
+
+    private static final CompletableFuture<List<IndexChange>> NO_INDEX_CHANGES = CompletableFuture
+            .completedFuture(Collections.emptyList());
+
+    private static final MissingCommit END_OF_REF = new MissingCommit(null, NO_INDEX_CHANGES);
+
     private PackRequest request;
 
     private PackBuilder builder;
@@ -196,7 +235,7 @@ public class PreparePackOp extends AbstractGeoGigOp<Pack> {
             PackBuilder builder//
     ) {
 
-        Repository local = repository();
+        final Repository local = repository();
         final ProgressListener progress = getProgressListener();
         java.util.function.Function<ProgressListener, String> oldIndicator = progress
                 .progressIndicator();
@@ -205,69 +244,184 @@ public class PreparePackOp extends AbstractGeoGigOp<Pack> {
                 (p) -> String.format("Resolving missing commits... %,d", (int) p.getProgress()));
         progress.started();
 
-        Set<RevCommit> visited = new HashSet<>();
-
-        for (RefRequest req : allrefs) {
-            builder.startRefResponse(req);
-            final String refName = req.name;
-            checkArgument(!req.want.isNull(), "Requested NULL tip for ref %s", refName);
-
-            ObjectId wantCommit = req.want;
-            ObjectId haveCommit = req.have.orElse(ObjectId.NULL);
-            Iterator<RevCommit> branchCommits;
-            if (wantCommit.equals(haveCommit)) {
-                branchCommits = Collections.emptyIterator();
-            } else {
-                if (refName.startsWith(Ref.TAGS_PREFIX)) {
-                    wantCommit = local.objectDatabase().getTag(wantCommit).getCommitId();
-                    if (!haveCommit.isNull()) {
-                        haveCommit = local.objectDatabase().getTag(haveCommit).getCommitId();
+        final List<RefRequest> requests = newArrayList(allrefs);
+        final Map<String, IndexInfo> indexInfos = request.isSyncIndexes()
+                ? resolveIndexInfos(local)
+                : Collections.emptyMap();
+
+        // position in the request of the ref each commit goes with, or ADDED once it's in the pack
+        final ConcurrentMap<ObjectId, Integer> owners = new ConcurrentHashMap<>();
+        // index changes of the commits not yet added to the pack, resolved by the first ref that
+        // claims each commit and shared with an earlier ref that may take it over
+        final ConcurrentMap<ObjectId, CompletableFuture<List<IndexChange>>> indexChanges;
+        indexChanges = new ConcurrentHashMap<>();
+
+        final int nThreads = Math.max(1, Math.min(MAX_CONCURRENT_REFS, requests.size()));
+        final ExecutorService executor = Executors.newFixedThreadPool(nThreads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("prepare-pack-%d")
+                        .build());
+        try {
+            final Deque<RefStream> pending = new ArrayDeque<>();
+            final Iterator<RefRequest> remaining = requests.iterator();
+            int index = 0;
+            int count = 0;
+            while (remaining.hasNext() || !pending.isEmpty()) {
+                // at most one ref per thread, so the ref being added is never waiting for a
+                // thread held by a later ref whose queue is full
+                while (remaining.hasNext() && pending.size() < nThreads) {
+                    final RefStream next = new RefStream(remaining.next(), index++);
+                    next.task = executor.submit(() -> {
+                        resolveMissingCommits(local, next, owners, indexChanges, indexInfos);
+                        return null;
+                    });
+                    pending.add(next);
+                }
+                final RefStream stream = pending.removeFirst();
+                builder.startRefResponse(stream.request);
+                MissingCommit missing;
+                while ((missing = take(stream.queue)) != END_OF_REF) {
+                    final ObjectId commitId = missing.getCommit().getId();
+                    // the refs before this one are all resolved, so if it still owns the commit
+                    // no earlier ref reaches it
+                    if (owners.get(commitId).intValue() == stream.index) {
+                        owners.put(commitId, ADDED);
+                        add(missing, builder);
+                        indexChanges.remove(commitId);
+                        progress.setProgress(++count);
                     }
                 }
-
-                branchCommits = local.command(LogOp.class)//
-                        .setTopoOrder(true)//
-                        .setUntil(wantCommit)//
-                        .setSince(haveCommit.isNull() ? null : haveCommit)//
-                        .call();
+                // propagate any failure resolving the ref
+                get(stream.task);
+                builder.endRefResponse();
             }
-            int count = 0;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        progress.complete();
+        progress.setProgressIndicator(oldIndicator);
+    }
+
+    /**
+     * Streams the commits missing on the remote end for the given ref, newest first, and the index
+     * trees changed by each of them if indexes are to be synchronized, to the ref's queue.
+     * <p>
+     * Each commit is claimed for the ref that comes first in the request among the ones reaching
+     * it, atomically through {@code owners}: a commit already claimed by an earlier ref, or
+     * already added to the pack, is skipped, and a commit claimed by a later ref is taken over.
+     * The index changes of a commit are only resolved by the first ref claiming it.
+     */
+    private void resolveMissingCommits(Repository local, RefStream stream,
+            ConcurrentMap<ObjectId, Integer> owners,
+            ConcurrentMap<ObjectId, CompletableFuture<List<IndexChange>>> indexChanges,
+            Map<String, IndexInfo> indexInfos) throws InterruptedException {
+        try {
+            final Iterator<RevCommit> branchCommits = missingCommits(local, stream.request);
             while (branchCommits.hasNext()) {
-                RevCommit commit = branchCommits.next();
-                if (visited.add(commit)) {
-                    builder.addCommit(commit);
-                    if (request.isSyncIndexes()) {
-                        addIndexes(builder, local, commit);
-                    }
-                    progress.setProgress(++count);
+                final RevCommit commit = branchCommits.next();
+                final ObjectId commitId = commit.getId();
+                final Integer owner = owners.merge(commitId, stream.index, Math::min);
+                if (owner.intValue() != stream.index) {
+                    continue;
                 }
+                final CompletableFuture<List<IndexChange>> indexes = indexInfos.isEmpty()
+                        ? NO_INDEX_CHANGES
+                        : sharedIndexChanges(local, commit, indexInfos, indexChanges);
+                stream.queue.put(new MissingCommit(commit, indexes));
             }
+        } finally {
+            stream.queue.put(END_OF_REF);
+        }
+    }
+
+    private CompletableFuture<List<IndexChange>> sharedIndexChanges(Repository local,
+            RevCommit commit, Map<String, IndexInfo> indexInfos,
+            ConcurrentMap<ObjectId, CompletableFuture<List<IndexChange>>> indexChanges) {
 
-            builder.endRefResponse();
+        final CompletableFuture<List<IndexChange>> created = new CompletableFuture<>();
+        final CompletableFuture<List<IndexChange>> existing = indexChanges
+                .putIfAbsent(commit.getId(), created);
+        if (existing != null) {
+            return existing;
         }
+        try {
+            created.complete(resolveIndexChanges(local, commit, indexInfos));
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        }
+        return created;
+    }
 
-        progress.complete();
-        progress.setProgressIndicator(oldIndicator);
+    private static <T> T take(BlockingQueue<T> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void add(MissingCommit missing, PackBuilder builder) {
+        builder.addCommit(missing.getCommit());
+        for (IndexChange i : get(missing.getIndexes())) {
+            builder.addIndex(i.getIndexInfo(), i.getCanonicalTreeId(), i.getOldIndexTreeId(),
+                    i.getNewIndexTreeId());
+        }
     }
 
-    private Map<String, IndexInfo> indexInfosByFeatureTreeName;
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-    private void addIndexes(PackBuilder builder, Repository local, RevCommit commit) {
-        if (indexInfosByFeatureTreeName != null && indexInfosByFeatureTreeName.isEmpty()) {
-            return;
+    /**
+     * @return the commits missing on the remote end for the given ref, newest first
+     */
+    private Iterator<RevCommit> missingCommits(Repository local, RefRequest req) {
+        final String refName = req.name;
+        checkArgument(!req.want.isNull(), "Requested NULL tip for ref %s", refName);
+
+        ObjectId wantCommit = req.want;
+        ObjectId haveCommit = req.have.orElse(ObjectId.NULL);
+        if (wantCommit.equals(haveCommit)) {
+            return Collections.emptyIterator();
+        }
+        if (refName.startsWith(Ref.TAGS_PREFIX)) {
+            wantCommit = local.objectDatabase().getTag(wantCommit).getCommitId();
+            if (!haveCommit.isNull()) {
+                haveCommit = local.objectDatabase().getTag(haveCommit).getCommitId();
+            }
         }
 
-        final IndexDatabase indexdb = local.indexDatabase();
-        indexInfosByFeatureTreeName = indexdb.getIndexInfos().stream()
+        return local.command(LogOp.class)//
+                .setTopoOrder(true)//
+                .setUntil(wantCommit)//
+                .setSince(haveCommit.isNull() ? null : haveCommit)//
+                .call();
+    }
+
+    private Map<String, IndexInfo> resolveIndexInfos(Repository local) {
+        return local.indexDatabase().getIndexInfos().stream()
                 .collect(Collectors.toMap(i -> i.getTreeName(), i -> i));
-        if (indexInfosByFeatureTreeName.isEmpty()) {
-            return;
-        }
+    }
+
+    private List<IndexChange> resolveIndexChanges(Repository local, RevCommit commit,
+            Map<String, IndexInfo> indexInfosByFeatureTreeName) {
 
+        final IndexDatabase indexdb = local.indexDatabase();
         final List<ObjectId> parents = commit.getParentIds().isEmpty()
                 ? Collections.singletonList(ObjectId.NULL)
                 : commit.getParentIds();
 
+        List<IndexChange> changes = new ArrayList<>();
         for (ObjectId parentId : parents) {
             List<DiffEntry> changedTrees = local.command(FindChangedTrees.class)
                     .setOldTreeIsh(parentId).setNewTreeIsh(commit.getId()).call();
@@ -290,9 +444,41 @@ public class PreparePackOp extends AbstractGeoGigOp<Pack> {
                 ObjectId newIndexTreeId = indexdb.resolveIndexedTree(indexInfo, newCanonical)
                         .orElse(RevTree.EMPTY_TREE_ID);
 
-                builder.addIndex(indexInfo, newCanonical, oldIndexTreeId, newIndexTreeId);
-
+                changes.add(new IndexChange(indexInfo, newCanonical, oldIndexTreeId,
+                        newIndexTreeId));
             }
         }
+        return changes;
+    }
+
+    private static class RefStream {
+        final RefRequest request;
+
+        final int index;
+
+        final BlockingQueue<MissingCommit> queue = new ArrayBlockingQueue<>(REF_QUEUE_CAPACITY);
+
+        Future<?> task;
+
+        RefStream(RefRequest request, int index) {
+            this.request = request;
+            this.index = index;
+        }
+    }
+
+    private static @AllArgsConstructor @Value class MissingCommit {
+        private RevCommit commit;
+
+        private Future<List<IndexChange>> indexes;
+    }
+
+    private static @AllArgsConstructor @Value class IndexChange {
+        private IndexInfo indexInfo;
+
+        private ObjectId canonicalTreeId;
+
+        private ObjectId oldIndexTreeId;
+
+        private ObjectId newIndexTreeId;
     }
 }
@@ -0,0 +1,184 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.test.integration.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.locationtech.geogig.test.integration.remoting.RemotesIndexTestSupport.createIndexes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevTag;
+import org.locationtech.geogig.plumbing.RevParse;
+import org.locationtech.geogig.porcelain.BranchCreateOp;
+import org.locationtech.geogig.porcelain.CheckoutOp;
+import org.locationtech.geogig.remotes.pack.Pack;
+import org.locationtech.geogig.remotes.pack.PackBuilder;
+import org.locationtech.geogig.remotes.pack.PackRequest;
+import org.locationtech.geogig.remotes.pack.PreparePackOp;
+import org.locationtech.geogig.remotes.pack.RefRequest;
+import org.locationtech.geogig.repository.IndexInfo;
+
+public class PreparePackOpTest extends RemoteRepositoryTestCase {
+
+    private RevCommit c1, c2, c3, c4;
+
+    protected @Override void setUpInternal() throws Exception {
+        // c1 <- c2 (master)
+        // ....\<- c3 (branch1)
+        // ....\<- c4 (branch2)
+        insertAndAdd(originRepo, points1);
+        c1 = commit(originRepo, "points1");
+        insertAndAdd(originRepo, points2);
+        c2 = commit(originRepo, "points2");
+
+        originRepo.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch1")
+                .setSource(c1.getId().toString()).call();
+        insertAndAdd(originRepo, points3);
+        c3 = commit(originRepo, "points3");
+
+        originRepo.command(BranchCreateOp.class).setAutoCheckout(true).setName("branch2")
+                .setSource(c1.getId().toString()).call();
+        insertAndAdd(originRepo, lines1);
+        c4 = commit(originRepo, "lines1");
+
+        originRepo.command(CheckoutOp.class).setSource("master").call();
+    }
+
+    private RefRequest master(ObjectId have) {
+        return RefRequest.create("refs/heads/master", c2.getId(), have);
+    }
+
+    private RefRequest branch1(ObjectId have) {
+        return RefRequest.create("refs/heads/branch1", c3.getId(), have);
+    }
+
+    private RefRequest branch2(ObjectId have) {
+        return RefRequest.create("refs/heads/branch2", c4.getId(), have);
+    }
+
+    @Test
+    public void testSharedHistoryIsSentOnce() {
+        PackRequest request = new PackRequest().addRef(master(null)).addRef(branch1(null))
+                .addRef(branch2(null));
+        RecordingPackBuilder pack = prepare(request);
+
+        Map<String, List<ObjectId>> expected = new LinkedHashMap<>();
+        expected.put("refs/heads/master", ids(c2, c1));
+        expected.put("refs/heads/branch1", ids(c3));
+        expected.put("refs/heads/branch2", ids(c4));
+        assertEquals(expected, pack.commits);
+        assertTrue(pack.indexes.isEmpty());
+    }
+
+    @Test
+    public void testSharedHistoryGoesToTheFirstRefRequestingIt() {
+        PackRequest request = new PackRequest().addRef(branch2(null)).addRef(master(null))
+                .addRef(branch1(c1.getId()));
+        RecordingPackBuilder pack = prepare(request);
+
+        Map<String, List<ObjectId>> expected = new LinkedHashMap<>();
+        expected.put("refs/heads/branch2", ids(c4, c1));
+        expected.put("refs/heads/master", ids(c2));
+        expected.put("refs/heads/branch1", ids(c3));
+        assertEquals(expected, pack.commits);
+    }
+
+    @Test
+    public void testIndexChangesAreResolvedOncePerCommit() {
+        createIndexes(originRepo);
+
+        PackRequest request = new PackRequest().addRef(master(null)).addRef(branch1(null))
+                .addRef(branch2(null)).syncIndexes(true);
+        RecordingPackBuilder pack = prepare(request);
+
+        // each commit changes a single indexed feature tree
+        List<String> expected = Arrays.asList(//
+                index(c2, "Points"), //
+                index(c1, "Points"), //
+                index(c3, "Points"), //
+                index(c4, "Lines"));
+        assertEquals(expected, pack.indexes);
+    }
+
+    private RecordingPackBuilder prepare(PackRequest request) {
+        RecordingPackBuilder builder = new RecordingPackBuilder();
+        originRepo.command(PreparePackOp.class).setRequest(request).setPackBuilder(builder)
+                .call();
+        return builder;
+    }
+
+    private List<ObjectId> ids(RevCommit... commits) {
+        List<ObjectId> ids = new ArrayList<>();
+        for (RevCommit c : commits) {
+            ids.add(c.getId());
+        }
+        return ids;
+    }
+
+    private String index(RevCommit commit, String treeName) {
+        ObjectId canonicalTreeId = originRepo.command(RevParse.class)
+                .setRefSpec(commit.getId() + ":" + treeName).call().get();
+        return commit.getId() + ":" + treeName + ":" + canonicalTreeId;
+    }
+
+    /**
+     * Records the commits added to each ref response, and the index changes as
+     * {@code <last added commit>:<tree name>:<canonical tree id>}
+     */
+    private static class RecordingPackBuilder implements PackBuilder {
+
+        final Map<String, List<ObjectId>> commits = new LinkedHashMap<>();
+
+        final List<String> indexes = new ArrayList<>();
+
+        private final Set<ObjectId> added = new HashSet<>();
+
+        private List<ObjectId> current;
+
+        private ObjectId lastCommit;
+
+        public @Override void start(Set<RevTag> tags) {
+        }
+
+        public @Override void startRefResponse(RefRequest req) {
+            current = new ArrayList<>();
+            commits.put(req.name, current);
+        }
+
+        public @Override void addCommit(RevCommit commit) {
+            assertTrue("commit added twice: " + commit.getId(), added.add(commit.getId()));
+            current.add(commit.getId());
+            lastCommit = commit.getId();
+        }
+
+        public @Override void addIndex(IndexInfo indexDef, ObjectId canonicalFeatureTreeId,
+                ObjectId oldIndexTreeId, ObjectId newIndexTreeId) {
+            indexes.add(lastCommit + ":" + indexDef.getTreeName() + ":" + canonicalFeatureTreeId);
+        }
+
+        public @Override void endRefResponse() {
+            current = null;
+        }
+
+        public @Override Pack build() {
+            return null;
+        }
+    }
+}
@@ -35,6 +35,12 @@ public class CaffeineSharedCache implements SharedCache {
 
     private static final RevObjectSerializer ENCODER = new FlatBuffersRevObjectSerializer();
 
+    /**
+     * Entries are evicted as soon as the cache outgrows its maximum size, so it's considered full
+     * once its size is within this ratio of it
+     */
+    private static final double FULL_RATIO = 0.95;
+
     private RevObjectSerializer encoder = ENCODER;
 
     /**
@@ -80,7 +86,7 @@ public class CaffeineSharedCache implements SharedCache {
 
     private final SizeTracker sizeTracker;
 
-    private long maxCacheSizeBytes;
+    private volatile long maxCacheSizeBytes;
 
     CaffeineSharedCache() {
         this.byteCache = Caffeine.newBuilder().maximumSize(0).build();
@@ -88,11 +94,13 @@ public class CaffeineSharedCache implements SharedCache {
     }
 
     public CaffeineSharedCache(final long maxCacheSizeBytes) {
+        this(maxCacheSizeBytes, 1_000_000);
+    }
+
+    CaffeineSharedCache(final long maxCacheSizeBytes, final int initialCapacityCount) {
         this.maxCacheSizeBytes = maxCacheSizeBytes;
         checkArgument(maxCacheSizeBytes >= 0, "Cache size can't be < 0, 0 meaning no cache at all");
 
-        int initialCapacityCount = 1_000_000;
-
         Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder();
         cacheBuilder = cacheBuilder.maximumWeight(maxCacheSizeBytes);
         cacheBuilder.weigher(SizeTracker.WEIGHER);
@@ -108,6 +116,19 @@ public class CaffeineSharedCache implements SharedCache {
         this.sizeTracker = sizeTracker;
     }
 
+    long getMaximumSizeBytes() {
+        return maxCacheSizeBytes;
+    }
+
+    /**
+     * Changes the maximum size of the cache, evicting entries as needed to fit in it
+     */
+    void setMaximumSizeBytes(final long maxCacheSizeBytes) {
+        checkArgument(maxCacheSizeBytes >= 0, "Cache size can't be < 0, 0 meaning no cache at all");
+        this.maxCacheSizeBytes = maxCacheSizeBytes;
+        byteCache.policy().eviction().ifPresent(e -> e.setMaximum(maxCacheSizeBytes));
+    }
+
     public @Override boolean contains(CacheKey id) {
         return byteCache.asMap().containsKey(id);
     }
@@ -211,6 +232,22 @@ public class CaffeineSharedCache implements SharedCache {
         return sizeTracker.size.get();
     }
 
+    /**
+     * @return whether the cache is about its maximum size, so adding more entries would evict
+     *         others
+     */
+    boolean isFull() {
+        return sizeBytes() >= (long) (FULL_RATIO * maxCacheSizeBytes);
+    }
+
+    /**
+     * Entries of all cache identifiers compete for the same room, hence the given one is full if
+     * the whole cache is
+     */
+    public @Override boolean isFull(CacheIdentifier cacheId) {
+        return isFull();
+    }
+
     public @Override long objectCount() {
         return byteCache.estimatedSize();
     }
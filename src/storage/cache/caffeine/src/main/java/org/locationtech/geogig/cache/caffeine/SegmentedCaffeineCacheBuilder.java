@@ -0,0 +1,39 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.caffeine;
+
+import org.locationtech.geogig.storage.cache.CacheManager;
+import org.locationtech.geogig.storage.cache.SharedCache;
+import org.locationtech.geogig.storage.cache.SharedCacheBuilder;
+
+/**
+ * Builds a {@link SegmentedCaffeineSharedCache}.
+ * <p>
+ * Not registered as a service, select it by setting the {@link CacheManager#ENV_VAR
+ * SHARED_CACHE_BUILDER} System property or environment variable to the name of this class.
+ *
+ * @since 2.0
+ */
+public class SegmentedCaffeineCacheBuilder implements SharedCacheBuilder {
+
+    private long maxSizeBytes;
+
+    public @Override int getPriority() {
+        return 0;
+    }
+
+    public @Override void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public @Override SharedCache build() {
+        return new SegmentedCaffeineSharedCache(maxSizeBytes);
+    }
+}
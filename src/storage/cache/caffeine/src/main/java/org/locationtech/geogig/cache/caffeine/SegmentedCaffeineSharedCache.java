@@ -0,0 +1,308 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.caffeine;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.storage.RevObjectSerializer;
+import org.locationtech.geogig.storage.cache.CacheIdentifier;
+import org.locationtech.geogig.storage.cache.CacheKey;
+import org.locationtech.geogig.storage.cache.CacheStats;
+import org.locationtech.geogig.storage.cache.SharedCache;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import lombok.NonNull;
+
+/**
+ * A {@link SharedCache} that keeps the objects of each {@link CacheIdentifier} apart, in a segment
+ * of its own with a share of the maximum cache size.
+ * <p>
+ * Each segment is a {@link CaffeineSharedCache} whose maximum size is the share of the global
+ * maximum size given by its {@link #setQuota weight} among the segments in use, limited to its
+ * quota, if any. What a segment can't use due to its quota is split among the others. Segments are
+ * created as objects are added to them, and dropped as a whole by
+ * {@link #invalidateAll(CacheIdentifier)}, so releasing the cache of a repository does not scan the
+ * entries of the others, and objects are only evicted to make room for objects of the same
+ * repository.
+ *
+ * @since 2.0
+ */
+public class SegmentedCaffeineSharedCache implements SharedCache {
+
+    /**
+     * Initial capacity of each segment, in number of entries
+     */
+    private static final int SEGMENT_INITIAL_CAPACITY = 10_000;
+
+    private static final Quota DEFAULT_QUOTA = new Quota(0L, 1);
+
+    private static final class Quota {
+
+        final long maxSizeBytes;
+
+        final int weight;
+
+        Quota(long maxSizeBytes, int weight) {
+            this.maxSizeBytes = maxSizeBytes;
+            this.weight = weight;
+        }
+    }
+
+    private final long maxCacheSizeBytes;
+
+    private final ConcurrentMap<Integer, CaffeineSharedCache> segments = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Integer, Quota> quotas = new ConcurrentHashMap<>();
+
+    private volatile RevObjectSerializer encoder;
+
+    /**
+     * Statistics of the segments already dropped, plus the misses for keys of absent segments
+     */
+    private final AtomicLong hitCount = new AtomicLong(), missCount = new AtomicLong(),
+            evictionCount = new AtomicLong();
+
+    public SegmentedCaffeineSharedCache(final long maxCacheSizeBytes) {
+        checkArgument(maxCacheSizeBytes >= 0, "Cache size can't be < 0, 0 meaning no cache at all");
+        this.maxCacheSizeBytes = maxCacheSizeBytes;
+    }
+
+    public @Override void setEncoder(@NonNull RevObjectSerializer encoder) {
+        this.encoder = encoder;
+        segments.values().forEach(s -> s.setEncoder(encoder));
+    }
+
+    public @Override synchronized void setQuota(@NonNull CacheIdentifier cacheId,
+            long maxSizeBytes, int weight) {
+        checkArgument(maxSizeBytes >= 0, "Quota can't be < 0, 0 meaning no quota");
+        checkArgument(weight > 0, "Weight must be a positive integer");
+        quotas.put(cacheId.prefix(), new Quota(maxSizeBytes, weight));
+        rebalance(segments);
+    }
+
+    /**
+     * @return the maximum size of the segment for the given cache identifier, or {@code -1} if
+     *         there's no such segment
+     */
+    @VisibleForTesting
+    long getMaximumSizeBytes(CacheIdentifier cacheId) {
+        CaffeineSharedCache segment = segments.get(cacheId.prefix());
+        return segment == null ? -1L : segment.getMaximumSizeBytes();
+    }
+
+    private @Nullable CaffeineSharedCache segment(CacheKey key) {
+        return segments.get(key.prefix());
+    }
+
+    private CaffeineSharedCache getOrCreateSegment(final int prefix) {
+        CaffeineSharedCache segment = segments.get(prefix);
+        if (segment == null) {
+            synchronized (this) {
+                segment = segments.get(prefix);
+                if (segment == null) {
+                    segment = new CaffeineSharedCache(0L, SEGMENT_INITIAL_CAPACITY);
+                    RevObjectSerializer encoder = this.encoder;
+                    if (encoder != null) {
+                        segment.setEncoder(encoder);
+                    }
+                    // size it before it's visible to other threads
+                    Map<Integer, CaffeineSharedCache> updated = new HashMap<>(segments);
+                    updated.put(prefix, segment);
+                    rebalance(updated);
+                    segments.put(prefix, segment);
+                }
+            }
+        }
+        return segment;
+    }
+
+    private void rebalance(Map<Integer, CaffeineSharedCache> segments) {
+        final int size = segments.size();
+        final List<CaffeineSharedCache> caches = new ArrayList<>(size);
+        final long[] caps = new long[size];
+        final int[] weights = new int[size];
+        int i = 0;
+        for (Map.Entry<Integer, CaffeineSharedCache> e : segments.entrySet()) {
+            Quota quota = quotas.getOrDefault(e.getKey(), DEFAULT_QUOTA);
+            caches.add(e.getValue());
+            caps[i] = quota.maxSizeBytes;
+            weights[i] = quota.weight;
+            i++;
+        }
+        final long[] allocation = allocate(maxCacheSizeBytes, caps, weights);
+        for (i = 0; i < size; i++) {
+            caches.get(i).setMaximumSizeBytes(allocation[i]);
+        }
+    }
+
+    /**
+     * Splits {@code budget} in shares proportional to {@code weights}, limiting each share to its
+     * cap, if greater than zero, and splitting the remainder of the capped shares among the rest.
+     */
+    @VisibleForTesting
+    static long[] allocate(final long budget, final long[] caps, final int[] weights) {
+        final int size = weights.length;
+        final long[] allocation = new long[size];
+        final boolean[] capped = new boolean[size];
+        long remaining = budget;
+        boolean done = false;
+        while (!done) {
+            long totalWeight = 0;
+            for (int i = 0; i < size; i++) {
+                totalWeight += capped[i] ? 0 : weights[i];
+            }
+            if (totalWeight == 0) {
+                break;
+            }
+            done = true;
+            for (int i = 0; i < size; i++) {
+                if (capped[i]) {
+                    continue;
+                }
+                long share = (long) ((double) remaining * weights[i] / totalWeight);
+                if (caps[i] > 0 && caps[i] <= share) {
+                    allocation[i] = caps[i];
+                    capped[i] = true;
+                    remaining -= caps[i];
+                    done = false;
+                    break;
+                }
+                allocation[i] = share;
+            }
+        }
+        return allocation;
+    }
+
+    /**
+     * Accumulates the statistics of a segment about to be dropped
+     */
+    private void retire(CaffeineSharedCache segment) {
+        CacheStats stats = segment.getStats();
+        hitCount.addAndGet(stats.hitCount());
+        missCount.addAndGet(stats.missCount());
+        evictionCount.addAndGet(stats.evictionCount());
+    }
+
+    public @Override boolean contains(CacheKey id) {
+        CaffeineSharedCache segment = segment(id);
+        return segment != null && segment.contains(id);
+    }
+
+    public @Override synchronized void invalidateAll() {
+        segments.values().forEach(this::retire);
+        segments.clear();
+    }
+
+    /**
+     * Drops the segment for the given cache identifier, leaving its entries to the garbage
+     * collector
+     */
+    public @Override synchronized void invalidateAll(CacheIdentifier prefix) {
+        CaffeineSharedCache segment = segments.remove(prefix.prefix());
+        if (segment != null) {
+            retire(segment);
+            rebalance(segments);
+        }
+    }
+
+    public @Override void dispose() {
+        invalidateAll();
+    }
+
+    public @Override void invalidate(CacheKey id) {
+        CaffeineSharedCache segment = segment(id);
+        if (segment != null) {
+            segment.invalidate(id);
+        }
+    }
+
+    public @Override @Nullable RevObject getIfPresent(CacheKey key) {
+        CaffeineSharedCache segment = segment(key);
+        if (segment == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        return segment.getIfPresent(key);
+    }
+
+    public @Override @Nullable Future<?> put(CacheKey key, RevObject obj) {
+        if (maxCacheSizeBytes > 0L) {
+            return getOrCreateSegment(key.prefix()).put(key, obj);
+        }
+        return null;
+    }
+
+    /**
+     * A cache identifier's objects can only evict each other, hence it's full if its segment is,
+     * regardless of the others
+     */
+    public @Override boolean isFull(CacheIdentifier cacheId) {
+        CaffeineSharedCache segment = segments.get(cacheId.prefix());
+        return segment != null && segment.isFull();
+    }
+
+    public @Override long sizeBytes() {
+        return segments.values().stream().mapToLong(CaffeineSharedCache::sizeBytes).sum();
+    }
+
+    public @Override long objectCount() {
+        return segments.values().stream().mapToLong(CaffeineSharedCache::objectCount).sum();
+    }
+
+    public @Override CacheStats getStats() {
+        long hits = hitCount.get(), misses = missCount.get(), evictions = evictionCount.get();
+        for (CaffeineSharedCache segment : segments.values()) {
+            CacheStats stats = segment.getStats();
+            hits += stats.hitCount();
+            misses += stats.missCount();
+            evictions += stats.evictionCount();
+        }
+        final long hitCount = hits, missCount = misses, evictionCount = evictions;
+        final long requestCount = hitCount + missCount;
+        return new CacheStats() {
+            public @Override long hitCount() {
+                return hitCount;
+            }
+
+            public @Override double hitRate() {
+                return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+            }
+
+            public @Override long missCount() {
+                return missCount;
+            }
+
+            public @Override double missRate() {
+                return requestCount == 0 ? 0.0 : (double) missCount / requestCount;
+            }
+
+            public @Override long evictionCount() {
+                return evictionCount;
+            }
+        };
+    }
+
+    public @Override String toString() {
+        return String.format("Segments: %,d, size: %,d, bytes: %,d, hit rate: %.2f",
+                segments.size(), objectCount(), sizeBytes(), getStats().hitRate());
+    }
+}
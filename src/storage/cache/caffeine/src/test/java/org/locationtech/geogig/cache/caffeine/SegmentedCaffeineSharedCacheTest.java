@@ -0,0 +1,117 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.caffeine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.cache.CacheIdentifier;
+import org.locationtech.geogig.storage.cache.CacheKey;
+import org.locationtech.geogig.storage.cache.SharedCache;
+import org.locationtech.geogig.storage.cache.SharedCacheTest;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+public class SegmentedCaffeineSharedCacheTest extends SharedCacheTest {
+
+    protected @Override SharedCache createCache(int l1Capacity, long maxCacheSizeBytes) {
+        return new SegmentedCaffeineSharedCache(maxCacheSizeBytes);
+    }
+
+    public @Test void testAllocate() {
+        // equal shares
+        assertArrayEquals(new long[] { 50, 50 },
+                SegmentedCaffeineSharedCache.allocate(100, new long[2], new int[] { 1, 1 }));
+        // weighted shares
+        assertArrayEquals(new long[] { 25, 75 },
+                SegmentedCaffeineSharedCache.allocate(100, new long[2], new int[] { 1, 3 }));
+        // a capped share leaves the rest to the others
+        assertArrayEquals(new long[] { 10, 45, 45 }, SegmentedCaffeineSharedCache.allocate(100,
+                new long[] { 10, 0, 0 }, new int[] { 1, 1, 1 }));
+        // a cap greater than the share makes no difference
+        assertArrayEquals(new long[] { 50, 50 }, SegmentedCaffeineSharedCache.allocate(100,
+                new long[] { 80, 0 }, new int[] { 1, 1 }));
+        // all capped
+        assertArrayEquals(new long[] { 10, 20 }, SegmentedCaffeineSharedCache.allocate(100,
+                new long[] { 10, 20 }, new int[] { 1, 1 }));
+    }
+
+    public @Test void testSegments() {
+        final long maxSize = 1024 * 1024;
+        SegmentedCaffeineSharedCache cache = new SegmentedCaffeineSharedCache(maxSize);
+        HeapObjectStore store = new HeapObjectStore();
+        store.open();
+        try {
+            RevTree tree = RevObjectTestSupport.INSTANCE.createFeaturesTree(store, "f", 10);
+            CacheIdentifier repo1 = new CacheIdentifier(1);
+            CacheIdentifier repo2 = new CacheIdentifier(2);
+            CacheKey k1 = repo1.create(tree.getId());
+            CacheKey k2 = repo2.create(tree.getId());
+
+            assertEquals(-1L, cache.getMaximumSizeBytes(repo1));
+            cache.put(k1, tree);
+            assertEquals(maxSize, cache.getMaximumSizeBytes(repo1));
+
+            cache.setQuota(repo2, 0L, 3);
+            cache.put(k2, tree);
+            assertEquals(maxSize / 4, cache.getMaximumSizeBytes(repo1));
+            assertEquals(3 * maxSize / 4, cache.getMaximumSizeBytes(repo2));
+
+            cache.setQuota(repo1, 1024, 1);
+            assertEquals(1024, cache.getMaximumSizeBytes(repo1));
+            assertEquals(maxSize - 1024, cache.getMaximumSizeBytes(repo2));
+
+            assertTrue(cache.contains(k1));
+            assertTrue(cache.contains(k2));
+            cache.invalidateAll(repo2);
+            assertFalse(cache.contains(k2));
+            assertTrue(cache.contains(k1));
+            assertEquals(-1L, cache.getMaximumSizeBytes(repo2));
+            assertEquals(1024, cache.getMaximumSizeBytes(repo1));
+            assertEquals(cache.objectCount(), 1L);
+
+            // quotas outlive the segments
+            cache.put(k2, tree);
+            assertEquals(maxSize - 1024, cache.getMaximumSizeBytes(repo2));
+        } finally {
+            store.close();
+            cache.dispose();
+        }
+    }
+
+    public @Test void testIsFull() {
+        SegmentedCaffeineSharedCache cache = new SegmentedCaffeineSharedCache(1024 * 1024);
+        try {
+            CacheIdentifier repo1 = new CacheIdentifier(1);
+            CacheIdentifier repo2 = new CacheIdentifier(2);
+            cache.setQuota(repo1, 4096, 1);
+            assertFalse(cache.isFull(repo1));
+
+            RevFeature feature = RevObjectTestSupport.feature(0, "value");
+            cache.put(repo2.create(feature.getId()), feature);
+            for (int i = 0; i < 1000 && !cache.isFull(repo1); i++) {
+                feature = RevObjectTestSupport.feature(i, "value " + i);
+                cache.put(repo1.create(feature.getId()), feature);
+            }
+            assertTrue(cache.isFull(repo1));
+            // only the segment with the quota is full
+            assertFalse(cache.isFull(repo2));
+            assertFalse(cache.isFull(new CacheIdentifier(3)));
+            assertTrue(cache.sizeBytes() < 1024 * 1024 / 2);
+        } finally {
+            cache.dispose();
+        }
+    }
+}
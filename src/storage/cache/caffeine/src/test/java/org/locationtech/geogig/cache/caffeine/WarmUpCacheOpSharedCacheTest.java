@@ -0,0 +1,166 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.caffeine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.plumbing.ResolveTreeish;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp.Result;
+import org.locationtech.geogig.porcelain.BranchListOp;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.ObjectDatabase;
+import org.locationtech.geogig.storage.cache.CacheManager;
+import org.locationtech.geogig.storage.cache.CachingObjectStore;
+import org.locationtech.geogig.storage.cache.ObjectCache;
+import org.locationtech.geogig.storage.decorator.ForwardingObjectDatabase;
+import org.locationtech.geogig.test.TestData;
+import org.locationtech.geogig.test.TestRepository;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Checks {@link WarmUpCacheOp} against the {@link SegmentedCaffeineSharedCache segmented} shared
+ * cache, through an object database that caches the objects it returns like the ones backed by
+ * the shared cache do
+ */
+public class WarmUpCacheOpSharedCacheTest {
+
+    public @Rule TestRepository testRepo = new TestRepository();
+
+    public @Rule TestName testName = new TestName();
+
+    private final CacheManager cacheManager = CacheManager.INSTANCE;
+
+    private long defaultMaxSize;
+
+    private Repository repo;
+
+    private String cacheIdentifier;
+
+    private ObjectCache cache;
+
+    private Context context;
+
+    public @Before void before() {
+        // initialize the shared cache to get its default size
+        cacheManager.getSizeBytes();
+        defaultMaxSize = cacheManager.getMaximumSize();
+        System.setProperty(CacheManager.ENV_VAR, SegmentedCaffeineCacheBuilder.class.getName());
+        cacheManager.setMaximumSize(64 * 1024 * 1024);
+
+        repo = testRepo.repository();
+        new TestData(repo).init().loadDefaultData();
+        cacheIdentifier = getClass().getName() + "." + testName.getMethodName();
+    }
+
+    public @After void after() {
+        if (cache != null) {
+            cacheManager.release(cache);
+        }
+        System.clearProperty(CacheManager.ENV_VAR);
+        cacheManager.setMaximumSize(defaultMaxSize);
+    }
+
+    private void setUpCachingDatabase() {
+        cache = cacheManager.acquire(cacheIdentifier);
+        ObjectDatabase db = new CachingObjectDatabase(repo.objectDatabase(), cache);
+        context = spy(repo.context());
+        doReturn(db).when(context).objectDatabase();
+    }
+
+    public @Test void testTreesEndUpInTheSharedCache() {
+        setUpCachingDatabase();
+        Result result = context.command(WarmUpCacheOp.class).call();
+
+        Set<ObjectId> trees = new HashSet<>();
+        Set<ObjectId> featureTypes = new HashSet<>();
+        for (Ref branch : repo.command(BranchListOp.class).call()) {
+            ObjectId rootId = repo.command(ResolveTreeish.class).setTreeish(branch.getName())
+                    .call().get();
+            collect(rootId, trees, featureTypes);
+        }
+        assertEquals(trees.size(), result.getTrees());
+        assertEquals(featureTypes.size(), result.getFeatureTypes());
+        for (ObjectId id : trees) {
+            assertTrue(cache.contains(id));
+        }
+        for (ObjectId id : featureTypes) {
+            assertTrue(cache.contains(id));
+        }
+        assertFalse(cache.isFull());
+    }
+
+    public @Test void testStopsWhenTheRepositoryShareIsFull() {
+        // too small a quota for a single tree, the cache is full as soon as it's used
+        cacheManager.setQuota(cacheIdentifier, 1, 1);
+        setUpCachingDatabase();
+        Result result = context.command(WarmUpCacheOp.class).setParallelism(1).setBatchSize(1)
+                .setFeatureTypes(false).call();
+        // the first root tree is loaded before any other batch is sent
+        assertEquals(1, result.getTrees());
+        // while the rest of the shared cache is still empty
+        assertTrue(cacheManager.getSizeBytes() < cacheManager.getMaximumSize());
+    }
+
+    private void collect(ObjectId treeId, Set<ObjectId> trees, Set<ObjectId> featureTypes) {
+        if (!trees.add(treeId)) {
+            return;
+        }
+        RevTree tree = repo.objectDatabase().getTree(treeId);
+        tree.forEachTree(node -> {
+            node.getMetadataId().filter(id -> !id.isNull()).ifPresent(featureTypes::add);
+            collect(node.getObjectId(), trees, featureTypes);
+        });
+        tree.forEachBucket(bucket -> collect(bucket.getObjectId(), trees, featureTypes));
+    }
+
+    private static class CachingObjectDatabase extends ForwardingObjectDatabase
+            implements CachingObjectStore {
+
+        private final ObjectCache cache;
+
+        CachingObjectDatabase(ObjectDatabase actual, ObjectCache cache) {
+            super(actual);
+            this.cache = cache;
+        }
+
+        public @Override ObjectCache getCache() {
+            return cache;
+        }
+
+        public @Override <T extends RevObject> Iterator<T> getAll(Iterable<ObjectId> ids,
+                BulkOpListener listener, Class<T> type) {
+            List<T> objects = Lists.newArrayList(super.getAll(ids, listener, type));
+            objects.forEach(cache::put);
+            return objects.iterator();
+        }
+    }
+}
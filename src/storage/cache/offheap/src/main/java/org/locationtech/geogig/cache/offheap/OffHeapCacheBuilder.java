@@ -0,0 +1,39 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.offheap;
+
+import org.locationtech.geogig.storage.cache.SharedCache;
+import org.locationtech.geogig.storage.cache.SharedCacheBuilder;
+
+/**
+ * Builds an {@link OffHeapSharedCache}. Not included in the default distribution, to use it add
+ * this module to the classpath and set the {@code SHARED_CACHE_BUILDER} System property or
+ * environment variable to this class name.
+ */
+public class OffHeapCacheBuilder implements SharedCacheBuilder {
+
+    private long maxSizeBytes;
+
+    public @Override int getPriority() {
+        return 0;
+    }
+
+    public @Override boolean isOffHeap() {
+        return true;
+    }
+
+    public @Override void setMaxSizeBytes(long maxSizeBytes) {
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public @Override SharedCache build() {
+        return new OffHeapSharedCache(maxSizeBytes);
+    }
+}
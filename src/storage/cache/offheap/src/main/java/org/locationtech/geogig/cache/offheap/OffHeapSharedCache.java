@@ -0,0 +1,288 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.offheap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.cache.offheap.SlabAllocator.Chunk;
+import org.locationtech.geogig.flatbuffers.FlatBuffersRevObjectSerializer;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.storage.RevObjectSerializer;
+import org.locationtech.geogig.storage.cache.CacheIdentifier;
+import org.locationtech.geogig.storage.cache.CacheKey;
+import org.locationtech.geogig.storage.cache.CacheStats;
+import org.locationtech.geogig.storage.cache.SharedCache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * A {@link SharedCache} that keeps the serialized form of the cached objects outside the JVM heap,
+ * so that large caches don't increase garbage collection pauses.
+ * <p>
+ * Only a small fixed size handle per entry lives in the heap, in a {@link Caffeine} cache that
+ * provides the W-TinyLFU admission and eviction policy, weighted by the size of the off-heap chunk
+ * each entry takes up. The serialized objects are stored in direct memory pages managed by a
+ * {@link SlabAllocator}, and decoded on each cache hit.
+ * <p>
+ * Since the allocator's chunks of a size class can't hold values of another one, it may run out
+ * of memory for a size class before the cache reaches its maximum weight. When that happens the
+ * coldest entry of the same size class is evicted to make room for the new one, or, if there's
+ * none among the coldest entries, a memory page is reassigned to the size class, evicting its
+ * entries.
+ * <p>
+ * Note the total amount of direct memory the JVM can allocate is limited by the
+ * {@code -XX:MaxDirectMemorySize} JVM argument, which defaults to the maximum heap size, and hence
+ * needs to be set accordingly to the maximum cache size. Objects whose serialized form is larger
+ * than a memory page (1MB) are not cached.
+ *
+ * @since 2.0
+ */
+public class OffHeapSharedCache implements SharedCache {
+
+    private static final RevObjectSerializer ENCODER = new FlatBuffersRevObjectSerializer();
+
+    /**
+     * Number of coldest entries to look at for one of the size class a new entry needs room for
+     */
+    private static final int EVICTION_SCAN_SIZE = 64;
+
+    /**
+     * Maximum number of times to make room for a new entry before giving up on caching it
+     */
+    private static final int MAX_ALLOCATION_ATTEMPTS = 4;
+
+    private RevObjectSerializer encoder = ENCODER;
+
+    private final Cache<CacheKey, Chunk> index;
+
+    private final SlabAllocator allocator;
+
+    private final long maxCacheSizeBytes;
+
+    /**
+     * Number of objects not cached because they're too large or there's no memory left for their
+     * size class
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Number of entries evicted to make room for new entries, besides the ones evicted by the index
+     */
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    public OffHeapSharedCache(final long maxCacheSizeBytes) {
+        checkArgument(maxCacheSizeBytes >= 0, "Cache size can't be < 0, 0 meaning no cache at all");
+        this.maxCacheSizeBytes = maxCacheSizeBytes;
+        this.allocator = maxCacheSizeBytes < SlabAllocator.MIN_CHUNK_SIZE ? null
+                : new SlabAllocator(maxCacheSizeBytes);
+
+        Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder();
+        cacheBuilder.maximumWeight(maxCacheSizeBytes);
+        cacheBuilder.weigher((CacheKey key, Chunk chunk) -> chunk.size);
+        // free chunks on the calling thread so they're immediately available for reuse
+        cacheBuilder.executor(Runnable::run);
+        cacheBuilder.recordStats();
+        cacheBuilder.removalListener(this::onRemoval);
+        this.index = cacheBuilder.build();
+    }
+
+    @VisibleForTesting
+    public @Override void setEncoder(RevObjectSerializer encoder) {
+        this.encoder = encoder;
+    }
+
+    private void onRemoval(CacheKey key, Chunk chunk, RemovalCause cause) {
+        if (chunk != null) {
+            allocator.free(chunk);
+        }
+    }
+
+    public @Override boolean contains(CacheKey id) {
+        return index.asMap().containsKey(id);
+    }
+
+    public @Override void invalidateAll() {
+        index.invalidateAll();
+        index.cleanUp();
+    }
+
+    public @Override void invalidateAll(CacheIdentifier prefix) {
+        ConcurrentMap<CacheKey, Chunk> map = index.asMap();
+        final int expectedPrefix = prefix.prefix();
+        map.keySet().parallelStream().filter(k -> k.prefix() == expectedPrefix)
+                .forEach(map::remove);
+    }
+
+    /**
+     * Invalidates all entries and releases the off-heap memory, this cache can't be used after
+     * calling this method
+     */
+    public @Override void dispose() {
+        invalidateAll();
+        if (allocator != null) {
+            allocator.dispose();
+        }
+    }
+
+    public @Override void invalidate(CacheKey id) {
+        index.invalidate(id);
+    }
+
+    public @Override @Nullable RevObject getIfPresent(CacheKey key) {
+        // call cache.getIfPresent instead of map.get() or the cache stats don't record the
+        // hits/misses
+        final Chunk chunk = index.getIfPresent(key);
+        if (chunk == null) {
+            return null;
+        }
+        final byte[] value = allocator.read(chunk);
+        if (value == null) {
+            // chunk was reused while we were reading it
+            index.asMap().remove(key, chunk);
+            return null;
+        }
+        return decode(key, value);
+    }
+
+    public @Override @Nullable Future<?> put(CacheKey key, RevObject obj) {
+        if (allocator == null || index.asMap().containsKey(key)) {
+            return null;
+        }
+        final byte[] value = encode(obj);
+        final int chunkSize = allocator.chunkSize(value.length);
+        Chunk chunk = chunkSize == -1 ? null : allocator.allocate(key, value);
+        for (int attempt = 0; chunk == null && chunkSize != -1
+                && attempt < MAX_ALLOCATION_ATTEMPTS; attempt++) {
+            if (!makeRoom(chunkSize, value.length)) {
+                break;
+            }
+            chunk = allocator.allocate(key, value);
+        }
+        if (chunk == null) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        if (null == index.asMap().putIfAbsent(key, chunk)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        allocator.free(chunk);
+        return null;
+    }
+
+    /**
+     * Frees up memory for a chunk of {@code chunkSize} bytes, evicting the coldest entry of the
+     * same size among the {@link #EVICTION_SCAN_SIZE} coldest ones, or else reassigning a memory
+     * page to the chunk's size class.
+     *
+     * @return whether any memory was freed up
+     */
+    private boolean makeRoom(final int chunkSize, final int valueSize) {
+        final ConcurrentMap<CacheKey, Chunk> map = index.asMap();
+        Optional<Eviction<CacheKey, Chunk>> eviction = index.policy().eviction();
+        if (eviction.isPresent()) {
+            Map<CacheKey, Chunk> coldest = eviction.get().coldest(EVICTION_SCAN_SIZE);
+            for (Map.Entry<CacheKey, Chunk> e : coldest.entrySet()) {
+                // the removal listener runs on this thread, freeing the chunk right away
+                if (e.getValue().size == chunkSize && map.remove(e.getKey(), e.getValue())) {
+                    evictedCount.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+        List<Chunk> invalidated = allocator.reassign(valueSize);
+        if (invalidated == null) {
+            return false;
+        }
+        for (Chunk chunk : invalidated) {
+            if (map.remove((CacheKey) chunk.owner, chunk)) {
+                evictedCount.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private byte[] encode(RevObject obj) {
+        if (encoder instanceof FlatBuffersRevObjectSerializer) {
+            return ((FlatBuffersRevObjectSerializer) encoder).encode(obj);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        try {
+            encoder.write(obj, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private RevObject decode(CacheKey key, byte[] val) {
+        try {
+            return encoder.read(key.id(), val, 0, val.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public @Override String toString() {
+        long size = index.estimatedSize();
+        long bytes = sizeBytes();
+        long avg = size == 0 ? 0 : bytes / size;
+        return String.format(
+                "Size: %,d, off-heap bytes: %,d (max %,d), avg: %,d bytes/entry, rejected: %,d, %s",
+                size, bytes, maxCacheSizeBytes, avg, rejectedCount.get(), index.stats());
+    }
+
+    public @Override long sizeBytes() {
+        return allocator == null ? 0L : allocator.allocatedBytes();
+    }
+
+    public @Override long objectCount() {
+        return index.estimatedSize();
+    }
+
+    public @Override CacheStats getStats() {
+        final com.github.benmanes.caffeine.cache.stats.CacheStats stats = index.stats();
+        return new CacheStats() {
+            public @Override long hitCount() {
+                return stats.hitCount();
+            }
+
+            public @Override double hitRate() {
+                return stats.hitRate();
+            }
+
+            public @Override long missCount() {
+                return stats.missCount();
+            }
+
+            public @Override double missRate() {
+                return stats.missRate();
+            }
+
+            public @Override long evictionCount() {
+                return stats.evictionCount() + evictedCount.get();
+            }
+        };
+    }
+}
@@ -0,0 +1,487 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.offheap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Allocates variable size chunks of memory out of fixed size pages of direct (off-heap) memory.
+ * <p>
+ * Following memcached's slab allocation scheme, chunk sizes are grouped in size classes growing by
+ * a factor of {@code 1.25} from {@link #MIN_CHUNK_SIZE} up to the page size, and each page, once
+ * allocated, serves chunks of a single size class. Freed chunks are kept in a per size class free
+ * list and reused by later allocations of the same size class. Pages are allocated lazily until
+ * the maximum capacity is reached, after which an allocation for a size class with no free chunks
+ * fails, and the caller can either {@link #free(Chunk) free} chunks of the same size class or
+ * {@link #reassign(int) reassign} a page to the size class, so that a shift in the size of the
+ * stored values doesn't starve the size classes that got no pages while there was memory left.
+ * <p>
+ * Each chunk starts with an 8 bytes generation stamp that's changed every time the chunk is
+ * (re)allocated, so that a {@link Chunk} handle read concurrently with the chunk being freed and
+ * reused is detected by {@link #read(Chunk)} and results in a miss instead of returning someone
+ * else's data. Reads are lock free using {@link StampedLock#tryOptimisticRead() optimistic} page
+ * locks, falling back to a read lock only if the page was written to during the read.
+ */
+class SlabAllocator {
+
+    static final int MIN_CHUNK_SIZE = 64;
+
+    static final int MAX_PAGE_SIZE = 1024 * 1024;
+
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private static final int HEADER_SIZE = Long.BYTES;
+
+    /**
+     * Handle to an allocated chunk
+     */
+    static final class Chunk {
+
+        /**
+         * The object the chunk was allocated for, so that the chunks invalidated by
+         * {@link SlabAllocator#reassign(int)} can be traced back to it
+         */
+        final Object owner;
+
+        final int page;
+
+        /**
+         * The {@link Page#epoch} of the page at allocation time
+         */
+        final int epoch;
+
+        final int offset;
+
+        /**
+         * Length of the stored value
+         */
+        final int length;
+
+        /**
+         * Size of the chunk, including its header, i.e. the amount of memory it takes up
+         */
+        final int size;
+
+        final long generation;
+
+        Chunk(Object owner, int page, int epoch, int offset, int length, int size,
+                long generation) {
+            this.owner = owner;
+            this.page = page;
+            this.epoch = epoch;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * A page of memory, its size class, epoch, and live chunks are guarded by its lock
+     */
+    private static final class Page {
+
+        final ByteBuffer buffer;
+
+        final StampedLock lock = new StampedLock();
+
+        SizeClass sizeClass;
+
+        /**
+         * Incremented each time the page is reassigned to another size class, invalidating all
+         * its chunks
+         */
+        int epoch;
+
+        /**
+         * Live chunks indexed by {@code offset / sizeClass.chunkSize}
+         */
+        Chunk[] chunks;
+
+        Page(ByteBuffer buffer, SizeClass sizeClass) {
+            this.buffer = buffer;
+            setSizeClass(sizeClass);
+        }
+
+        void setSizeClass(SizeClass sizeClass) {
+            this.sizeClass = sizeClass;
+            this.chunks = new Chunk[buffer.capacity() / sizeClass.chunkSize];
+        }
+
+        int slot(int offset) {
+            return offset / sizeClass.chunkSize;
+        }
+    }
+
+    private final class SizeClass {
+
+        final int chunkSize;
+
+        private long[] free = new long[16];
+
+        private int freeCount;
+
+        private int bumpPage = -1;
+
+        private int bumpOffset;
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * @return the page index in the upper 32 bits and the chunk offset in the lower 32 bits,
+         *         or {@code -1} if no more chunks can be allocated
+         */
+        synchronized long allocate() {
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+            if (bumpPage == -1 || bumpOffset + chunkSize > pageSize) {
+                bumpPage = newPage(this);
+                bumpOffset = 0;
+                if (bumpPage == -1) {
+                    return -1L;
+                }
+            }
+            long address = address(bumpPage, bumpOffset);
+            bumpOffset += chunkSize;
+            return address;
+        }
+
+        synchronized void free(int page, int offset) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, 2 * free.length);
+            }
+            free[freeCount++] = address(page, offset);
+        }
+
+        /**
+         * Forgets about all the chunks of {@code page}, that's being reassigned to another size
+         * class
+         */
+        synchronized void removePage(int page) {
+            int count = 0;
+            for (int i = 0; i < freeCount; i++) {
+                if ((int) (free[i] >>> 32) != page) {
+                    free[count++] = free[i];
+                }
+            }
+            freeCount = count;
+            if (bumpPage == page) {
+                bumpPage = -1;
+                bumpOffset = 0;
+            }
+        }
+
+        /**
+         * Adds all the chunks of {@code page}, that's been reassigned to this size class, to the
+         * free list
+         */
+        synchronized void addPage(int page) {
+            for (int slot = pageSize / chunkSize - 1; slot >= 0; slot--) {
+                free(page, slot * chunkSize);
+            }
+        }
+
+        synchronized void clear() {
+            free = new long[16];
+            freeCount = 0;
+            bumpPage = -1;
+            bumpOffset = 0;
+        }
+    }
+
+    private final int pageSize;
+
+    private final int maxPages;
+
+    private final SizeClass[] sizeClasses;
+
+    private final AtomicReferenceArray<Page> pages;
+
+    private int pageCount;
+
+    private volatile boolean disposed;
+
+    private final ReentrantLock reassignLock = new ReentrantLock();
+
+    /**
+     * Index of the next page to consider for reassignment, guarded by {@link #reassignLock}
+     */
+    private int nextVictim;
+
+    private final AtomicLong generations = new AtomicLong();
+
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of bytes to allocate
+     */
+    SlabAllocator(final long capacity) {
+        checkArgument(capacity >= MIN_CHUNK_SIZE, "capacity must be at least %s bytes: %s",
+                MIN_CHUNK_SIZE, capacity);
+        // use smaller pages for small capacities so that all size classes get at least one page
+        this.pageSize = (int) Math.max(4 * MIN_CHUNK_SIZE, Math.min(MAX_PAGE_SIZE, capacity / 64));
+        this.maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, capacity / pageSize));
+        this.pages = new AtomicReferenceArray<>(maxPages);
+
+        List<SizeClass> classes = new ArrayList<>();
+        for (int size = MIN_CHUNK_SIZE; size < pageSize; size = (int) Math.ceil(size
+                * GROWTH_FACTOR)) {
+            classes.add(new SizeClass(size));
+        }
+        classes.add(new SizeClass(pageSize));
+        this.sizeClasses = classes.toArray(new SizeClass[classes.size()]);
+    }
+
+    /**
+     * @return the largest value that can be stored
+     */
+    public int maxValueSize() {
+        return pageSize - HEADER_SIZE;
+    }
+
+    /**
+     * @return the size of the chunk a value of {@code valueSize} bytes would be stored in, header
+     *         included, or {@code -1} if it's too large to be stored
+     */
+    public int chunkSize(int valueSize) {
+        SizeClass sizeClass = sizeClass(valueSize + HEADER_SIZE);
+        return sizeClass == null ? -1 : sizeClass.chunkSize;
+    }
+
+    /**
+     * @return the accumulated size of all currently allocated chunks
+     */
+    public long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Allocates a chunk and writes {@code value} to it
+     *
+     * @param owner the object the chunk is allocated for, returned by {@link Chunk#owner}
+     * @return the chunk handle, or {@code null} if {@code value} is too big or there's no memory
+     *         left for its size class
+     */
+    public @Nullable Chunk allocate(final Object owner, final byte[] value) {
+        final SizeClass sizeClass = sizeClass(value.length + HEADER_SIZE);
+        if (sizeClass == null) {
+            return null;
+        }
+        while (true) {
+            final long address = sizeClass.allocate();
+            if (address == -1L) {
+                return null;
+            }
+            final int pageIndex = (int) (address >>> 32);
+            final int offset = (int) address;
+            final Page page = pages.get(pageIndex);
+            if (page == null) {
+                return null;// disposed
+            }
+            final long stamp = page.lock.writeLock();
+            try {
+                if (page.sizeClass != sizeClass || page.chunks[page.slot(offset)] != null) {
+                    // the page was reassigned after the address was taken, try another one
+                    continue;
+                }
+                final long generation = generations.incrementAndGet();
+                ByteBuffer buffer = page.buffer.duplicate();
+                buffer.putLong(offset, generation);
+                buffer.position(offset + HEADER_SIZE);
+                buffer.put(value);
+                Chunk chunk = new Chunk(owner, pageIndex, page.epoch, offset, value.length,
+                        sizeClass.chunkSize, generation);
+                page.chunks[page.slot(offset)] = chunk;
+                allocatedBytes.addAndGet(sizeClass.chunkSize);
+                return chunk;
+            } finally {
+                page.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * @return the contents of the chunk, or {@code null} if it was freed and reallocated since the
+     *         handle was obtained
+     */
+    public @Nullable byte[] read(final Chunk chunk) {
+        final Page page = pages.get(chunk.page);
+        if (page == null) {
+            return null;
+        }
+        final StampedLock lock = page.lock;
+        long stamp = lock.tryOptimisticRead();
+        byte[] value = tryRead(page, chunk);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = tryRead(page, chunk);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    private @Nullable byte[] tryRead(Page page, Chunk chunk) {
+        if (page.epoch != chunk.epoch) {
+            return null;
+        }
+        ByteBuffer buffer = page.buffer.duplicate();
+        if (buffer.getLong(chunk.offset) != chunk.generation) {
+            return null;
+        }
+        byte[] value = new byte[chunk.length];
+        buffer.position(chunk.offset + HEADER_SIZE);
+        buffer.get(value);
+        return value;
+    }
+
+    /**
+     * Returns the chunk to its size class free list, does nothing if the chunk was already freed
+     * or invalidated by {@link #reassign(int)}
+     */
+    public void free(final Chunk chunk) {
+        final Page page = pages.get(chunk.page);
+        if (page == null) {
+            return;
+        }
+        final long stamp = page.lock.writeLock();
+        try {
+            if (page.epoch != chunk.epoch) {
+                return;
+            }
+            final int slot = page.slot(chunk.offset);
+            if (page.chunks[slot] != chunk) {
+                return;
+            }
+            page.chunks[slot] = null;
+            page.sizeClass.free(chunk.page, chunk.offset);
+            allocatedBytes.addAndGet(-chunk.size);
+        } finally {
+            page.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reassigns an allocated page to the size class of values of {@code valueSize} bytes,
+     * invalidating all its live chunks.
+     * <p>
+     * Pages are picked in a round robin fashion among the ones belonging to other size classes.
+     *
+     * @return the invalidated chunks, whose owners shall be discarded by the caller, or
+     *         {@code null} if no page could be reassigned, either because there are none of other
+     *         size classes or because another thread is reassigning a page
+     */
+    public @Nullable List<Chunk> reassign(final int valueSize) {
+        final SizeClass target = sizeClass(valueSize + HEADER_SIZE);
+        if (target == null || !reassignLock.tryLock()) {
+            return null;
+        }
+        try {
+            final int count;
+            synchronized (this) {
+                count = pageCount;
+            }
+            for (int i = 0; i < count; i++) {
+                final int index = nextVictim++ % count;
+                final Page page = pages.get(index);
+                if (page == null) {
+                    return null;// disposed
+                }
+                final long stamp = page.lock.writeLock();
+                try {
+                    final SizeClass current = page.sizeClass;
+                    if (current == target) {
+                        continue;
+                    }
+                    List<Chunk> invalidated = new ArrayList<>();
+                    for (Chunk chunk : page.chunks) {
+                        if (chunk != null) {
+                            invalidated.add(chunk);
+                        }
+                    }
+                    current.removePage(index);
+                    page.epoch++;
+                    page.setSizeClass(target);
+                    target.addPage(index);
+                    allocatedBytes.addAndGet(-(long) invalidated.size() * current.chunkSize);
+                    return invalidated;
+                } finally {
+                    page.lock.unlockWrite(stamp);
+                }
+            }
+            return null;
+        } finally {
+            reassignLock.unlock();
+        }
+    }
+
+    /**
+     * Releases all the pages, outstanding {@link Chunk} handles become invalid
+     */
+    public void dispose() {
+        disposed = true;
+        for (SizeClass c : sizeClasses) {
+            c.clear();
+        }
+        synchronized (this) {
+            for (int i = 0; i < pageCount; i++) {
+                pages.set(i, null);
+            }
+            pageCount = 0;
+        }
+        allocatedBytes.set(0);
+    }
+
+    private synchronized int newPage(SizeClass sizeClass) {
+        if (disposed || pageCount == maxPages) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(pageSize);
+        int index = pageCount++;
+        pages.set(index, new Page(buffer, sizeClass));
+        return index;
+    }
+
+    private @Nullable SizeClass sizeClass(final int size) {
+        if (size > pageSize) {
+            return null;
+        }
+        int low = 0, high = sizeClasses.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sizeClasses[mid].chunkSize < size) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return sizeClasses[low];
+    }
+
+    private static long address(int page, int offset) {
+        return ((long) page << 32) | (offset & 0xFFFFFFFFL);
+    }
+}
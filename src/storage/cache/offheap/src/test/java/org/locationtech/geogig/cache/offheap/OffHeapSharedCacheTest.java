@@ -0,0 +1,74 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.offheap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.cache.CacheIdentifier;
+import org.locationtech.geogig.storage.cache.CacheKey;
+import org.locationtech.geogig.storage.cache.SharedCache;
+import org.locationtech.geogig.storage.cache.SharedCacheTest;
+
+public class OffHeapSharedCacheTest extends SharedCacheTest {
+
+    protected @Override SharedCache createCache(int l1Capacity, long maxCacheSizeBytes) {
+        return new OffHeapSharedCache(maxCacheSizeBytes);
+    }
+
+    public @Test void testEvictsWhenFull() {
+        final long maxSize = 1024 * 1024;
+        final OffHeapSharedCache cache = new OffHeapSharedCache(maxSize);
+        try {
+            final CacheIdentifier repo = new CacheIdentifier(1);
+            // fill the cache several times over with small objects, then with objects of another
+            // size class, none of which gets memory pages while the cache is not full
+            List<CacheKey> small = fill(cache, repo, "small-", 4_000, 500);
+            List<CacheKey> large = fill(cache, repo, "large-", 1_000, 5_000);
+
+            assertTrue(cache.sizeBytes() <= maxSize);
+            assertTrue(cache.getStats().evictionCount() > 0);
+            long smallCached = small.stream().filter(cache::contains).count();
+            long largeCached = large.stream().filter(cache::contains).count();
+            assertTrue(smallCached < small.size());
+            assertTrue(largeCached > 0);
+        } finally {
+            cache.dispose();
+        }
+    }
+
+    /**
+     * Puts {@code count} features of about {@code size} bytes each, asserting each one is cached
+     */
+    private List<CacheKey> fill(OffHeapSharedCache cache, CacheIdentifier repo, String prefix,
+            int count, int size) {
+        char[] chars = new char[size];
+        Arrays.fill(chars, 'x');
+        final String value = new String(chars);
+        List<CacheKey> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RevFeature feature = RevObjectTestSupport.featureForceId(
+                    RevObjectTestSupport.hashString(prefix + i), value);
+            CacheKey key = repo.create(feature.getId());
+            assertNotNull("object not cached: " + prefix + i, cache.put(key, feature));
+            assertEquals(feature, cache.getIfPresent(key));
+            keys.add(key);
+        }
+        return keys;
+    }
+}
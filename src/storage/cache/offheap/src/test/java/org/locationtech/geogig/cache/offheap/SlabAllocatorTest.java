@@ -0,0 +1,141 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.cache.offheap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.locationtech.geogig.cache.offheap.SlabAllocator.Chunk;
+
+public class SlabAllocatorTest {
+
+    private static final Object OWNER = new Object();
+
+    private final Random random = new Random(1);
+
+    private byte[] value(int size) {
+        byte[] value = new byte[size];
+        random.nextBytes(value);
+        return value;
+    }
+
+    @Test
+    public void testAllocateAndRead() {
+        SlabAllocator allocator = new SlabAllocator(1024 * 1024);
+        List<byte[]> values = new ArrayList<>();
+        List<Chunk> chunks = new ArrayList<>();
+        for (int size = 0; size < 4096; size += 17) {
+            byte[] value = value(size);
+            Chunk chunk = allocator.allocate(OWNER, value);
+            assertNotNull(chunk);
+            values.add(value);
+            chunks.add(chunk);
+        }
+        for (int i = 0; i < chunks.size(); i++) {
+            assertArrayEquals(values.get(i), allocator.read(chunks.get(i)));
+        }
+    }
+
+    @Test
+    public void testTooLarge() {
+        SlabAllocator allocator = new SlabAllocator(1024 * 1024);
+        assertNotNull(allocator.allocate(OWNER, value(allocator.maxValueSize())));
+        assertNull(allocator.allocate(OWNER, value(allocator.maxValueSize() + 1)));
+    }
+
+    @Test
+    public void testFreeAndReuse() {
+        SlabAllocator allocator = new SlabAllocator(1024 * 1024);
+        Chunk chunk = allocator.allocate(OWNER, value(100));
+        final long allocated = allocator.allocatedBytes();
+        assertEquals(allocator.chunkSize(100), chunk.size);
+        assertEquals(chunk.size, allocated);
+        allocator.free(chunk);
+        assertEquals(0L, allocator.allocatedBytes());
+
+        byte[] value = value(100);
+        Chunk reused = allocator.allocate(OWNER, value);
+        assertEquals(chunk.page, reused.page);
+        assertEquals(chunk.offset, reused.offset);
+        assertEquals(allocated, allocator.allocatedBytes());
+        // stale handle is detected
+        assertNull(allocator.read(chunk));
+        assertArrayEquals(value, allocator.read(reused));
+    }
+
+    @Test
+    public void testCapacityExhausted() {
+        SlabAllocator allocator = new SlabAllocator(1024 * 1024);
+        int count = 0;
+        while (allocator.allocate(OWNER, value(1000)) != null) {
+            count++;
+        }
+        assertTrue(count > 0);
+        assertTrue(allocator.allocatedBytes() <= 1024 * 1024);
+    }
+
+    @Test
+    public void testReassign() {
+        final SlabAllocator allocator = new SlabAllocator(1024 * 1024);
+        final Object small = "small", large = "large";
+        List<Chunk> smallChunks = new ArrayList<>();
+        Chunk chunk;
+        while ((chunk = allocator.allocate(small, value(100))) != null) {
+            smallChunks.add(chunk);
+        }
+        // all the pages belong to the size class of the small values
+        assertNull(allocator.allocate(large, value(1000)));
+
+        final List<Chunk> invalidated = allocator.reassign(1000);
+        assertNotNull(invalidated);
+        assertFalse(invalidated.isEmpty());
+        for (Chunk c : invalidated) {
+            assertEquals(small, c.owner);
+            assertNull(allocator.read(c));
+        }
+        final long allocated = allocator.allocatedBytes();
+        assertEquals((smallChunks.size() - invalidated.size()) * (long) allocator.chunkSize(100),
+                allocated);
+
+        // freeing an invalidated chunk is a no-op
+        allocator.free(invalidated.get(0));
+        assertEquals(allocated, allocator.allocatedBytes());
+
+        byte[] value = value(1000);
+        Chunk largeChunk = allocator.allocate(large, value);
+        assertNotNull(largeChunk);
+        assertArrayEquals(value, allocator.read(largeChunk));
+        assertTrue(allocator.allocatedBytes() <= 1024 * 1024);
+
+        smallChunks.removeAll(invalidated);
+        for (Chunk c : smallChunks) {
+            assertNotNull(allocator.read(c));
+        }
+    }
+
+    @Test
+    public void testDispose() {
+        SlabAllocator allocator = new SlabAllocator(1024 * 1024);
+        Chunk chunk = allocator.allocate(OWNER, value(100));
+        allocator.dispose();
+        assertNull(allocator.read(chunk));
+        assertNull(allocator.allocate(OWNER, value(100)));
+        assertEquals(0L, allocator.allocatedBytes());
+    }
+}
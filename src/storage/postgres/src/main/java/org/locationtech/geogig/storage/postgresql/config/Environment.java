@@ -56,6 +56,16 @@ public class Environment implements Cloneable {
 
     public static final String KEY_PUTALL_BATCH_SIZE = "postgres.putAllBatchSize";
 
+    public static final String KEY_BULK_LOAD_THRESHOLD = "postgres.bulkLoadThreshold";
+
+    public static final String KEY_CACHE_QUOTA = "postgres.cacheQuota";
+
+    public static final String KEY_CACHE_WEIGHT = "postgres.cacheWeight";
+
+    public static final String KEY_DISK_CACHE_DIRECTORY = "postgres.diskCache.directory";
+
+    public static final String KEY_DISK_CACHE_MAX_SIZE = "postgres.diskCache.maxSize";
+
     public static final String KEY_ODB_BYTE_CACHE_MAX_SIZE = "postgres.bytecache.maxSize";
 
     public static final String KEY_ODB_BYTE_CACHE_CONCURRENCY_LEVEL = "postgres.bytecache.concurrencyLevel";
@@ -0,0 +1,538 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.postgresql.v9;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.HashObjectFunnels;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObject.TYPE;
+import org.locationtech.geogig.model.RevTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import lombok.NonNull;
+
+/**
+ * A size bounded, on-disk, second level cache of the serialized form of the objects of a
+ * {@link PGObjectStore}, checked on misses of the {@link PGObjectStore#sharedCache shared cache}
+ * before querying the database.
+ * <p>
+ * Objects are stored in a directory per cache identifier, one file per object named after its
+ * {@link ObjectId} and spread over sub directories by its first byte, much like git's loose
+ * objects. Since an object id identifies its contents, files are never updated: they're written to
+ * a temporary file and atomically renamed, so several processes can share the same directory
+ * without further coordination, and a file that's gone (e.g. evicted by another process) is just
+ * a cache miss.
+ * <p>
+ * The least recently used objects are deleted when the total size of the cached objects exceeds
+ * the maximum size. The usage order is kept in memory and initialized from the file modification
+ * times when the cache is opened, so the size bound is approximate when several processes share
+ * the directory.
+ * <p>
+ * Objects are written to disk by {@link #putAsync} in a background thread, so that reading them
+ * from the database isn't slowed down by file system writes; writes are dropped if the background
+ * thread falls too far behind.
+ * <p>
+ * The ids of the most recently used trees are saved to a journal file when the cache is closed,
+ * and returned by {@link #recentTrees()} the next time it's opened, so the shared cache can be
+ * warmed up with them.
+ * <p>
+ * Instances are shared by all the object stores using the same directory in the same JVM, acquire
+ * them through {@link #acquire(Path, long)} and return them through {@link #release}.
+ */
+class DiskObjectCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskObjectCache.class);
+
+    /**
+     * Maximum number of tree ids saved to the {@link #JOURNAL_FILE journal file}
+     */
+    @VisibleForTesting
+    static final int MAX_RECENT_TREES = 10_000;
+
+    private static final String JOURNAL_FILE = "recent-trees";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    /**
+     * Age after which a temporary file is considered left over by a process that died while
+     * writing it, rather than being written by another process sharing the directory
+     */
+    private static final long STALE_TMP_FILE_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * Maximum number of objects waiting to be written by {@link #putAsync}
+     */
+    @VisibleForTesting
+    static final int MAX_PENDING_WRITES = 10_000;
+
+    private static final Map<Path, DiskObjectCache> INSTANCES = new HashMap<>();
+
+    private static final class Entry {
+
+        final int size;
+
+        boolean tree;
+
+        Entry(int size, boolean tree) {
+            this.size = size;
+            this.tree = tree;
+        }
+    }
+
+    private final Path directory;
+
+    private final long maxSizeBytes;
+
+    /**
+     * Cached objects in least recently used order, guarded by {@code this}
+     */
+    private final LinkedHashMap<ObjectId, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long sizeBytes;
+
+    private List<ObjectId> recentTrees = Collections.emptyList();
+
+    private int refCount;
+
+    private volatile ExecutorService writer;
+
+    @VisibleForTesting
+    DiskObjectCache(@NonNull Path directory, long maxSizeBytes) {
+        checkArgument(maxSizeBytes > 0, "maxSizeBytes must be > 0");
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Returns the cache for the given directory, opening it if it's not already in use, in which
+     * case its maximum size is kept.
+     */
+    public static DiskObjectCache acquire(@NonNull Path directory, long maxSizeBytes) {
+        final Path key = directory.toAbsolutePath().normalize();
+        synchronized (INSTANCES) {
+            DiskObjectCache cache = INSTANCES.get(key);
+            if (cache == null) {
+                cache = new DiskObjectCache(key, maxSizeBytes);
+                cache.open();
+                INSTANCES.put(key, cache);
+            }
+            cache.refCount++;
+            return cache;
+        }
+    }
+
+    /**
+     * Returns a cache acquired through {@link #acquire}, closing it if no longer in use
+     */
+    public static void release(@NonNull DiskObjectCache cache) {
+        synchronized (INSTANCES) {
+            if (--cache.refCount == 0) {
+                INSTANCES.remove(cache.directory);
+                cache.close();
+            }
+        }
+    }
+
+    /**
+     * @return the name of the directory, within the configured cache directory, for the given
+     *         cache identifier
+     */
+    public static String directoryName(@NonNull String cacheIdentifier) {
+        return Hashing.sha1().hashString(cacheIdentifier, Charsets.UTF_8).toString();
+    }
+
+    @VisibleForTesting
+    void open() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> files = new ArrayList<>();
+            Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+            final long staleTime = System.currentTimeMillis() - STALE_TMP_FILE_MILLIS;
+            try (DirectoryStream<Path> dirs = Files.newDirectoryStream(directory)) {
+                for (Path dir : dirs) {
+                    if (!Files.isDirectory(dir)) {
+                        deleteIfStale(dir, staleTime);
+                        continue;
+                    }
+                    try (DirectoryStream<Path> objects = Files.newDirectoryStream(dir)) {
+                        for (Path file : objects) {
+                            if (deleteIfStale(file, staleTime)) {
+                                continue;
+                            }
+                            attributes.put(file,
+                                    Files.readAttributes(file, BasicFileAttributes.class));
+                            files.add(file);
+                        }
+                    }
+                }
+            }
+            files.sort((f1, f2) -> attributes.get(f1).lastModifiedTime()
+                    .compareTo(attributes.get(f2).lastModifiedTime()));
+
+            this.recentTrees = readJournal();
+            synchronized (this) {
+                for (Path file : files) {
+                    ObjectId id = toId(file);
+                    if (id != null) {
+                        int size = (int) attributes.get(file).size();
+                        index.put(id, new Entry(size, false));
+                        sizeBytes += size;
+                    }
+                }
+                for (ObjectId treeId : recentTrees) {
+                    Entry entry = index.get(treeId);
+                    if (entry != null) {
+                        entry.tree = true;
+                    }
+                }
+            }
+            evict();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open disk cache at " + directory, e);
+        }
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("GeoGig disk cache writer " + directory.getFileName() + "-%d")
+                .setDaemon(true).build();
+        this.writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_WRITES), threadFactory,
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    /**
+     * Deletes the given file if it's a temporary file not modified since {@code staleTime}
+     *
+     * @return {@code true} if {@code file} is a temporary file, whether it was deleted or not
+     */
+    private boolean deleteIfStale(Path file, long staleTime) {
+        if (!file.getFileName().toString().endsWith(TMP_SUFFIX)) {
+            return false;
+        }
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() < staleTime) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            LOG.debug("Error deleting temporary file {} from disk cache", file, e);
+        }
+        return true;
+    }
+
+    @VisibleForTesting
+    void close() {
+        ExecutorService writer = this.writer;
+        this.writer = null;
+        if (writer != null) {
+            // let the pending writes finish so the cache and journal are up to date
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                    writer.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                writer.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<ObjectId> trees = new ArrayList<>();
+        synchronized (this) {
+            // index iterates from least to most recently used
+            for (Map.Entry<ObjectId, Entry> e : index.entrySet()) {
+                if (e.getValue().tree) {
+                    trees.add(e.getKey());
+                }
+            }
+            index.clear();
+            sizeBytes = 0;
+        }
+        Collections.reverse(trees);
+        try {
+            writeJournal(trees.subList(0, Math.min(MAX_RECENT_TREES, trees.size())));
+        } catch (IOException e) {
+            LOG.warn("Unable to save the recently used trees of disk cache at {}", directory, e);
+        }
+    }
+
+    /**
+     * @return the ids of the trees that were most recently used the last time this cache was
+     *         closed, most recent first
+     */
+    public List<ObjectId> recentTrees() {
+        return recentTrees;
+    }
+
+    public synchronized boolean contains(ObjectId id) {
+        return index.containsKey(id);
+    }
+
+    public synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int objectCount() {
+        return index.size();
+    }
+
+    /**
+     * @return the cached object with the given id, or {@code null} if it's not cached or its file
+     *         is corrupted, in which case it's {@link #invalidate invalidated}
+     */
+    public @Nullable RevObject getIfPresent(ObjectId id) {
+        synchronized (this) {
+            if (!index.containsKey(id)) {
+                return null;
+            }
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file(id));
+        } catch (NoSuchFileException e) {
+            remove(id);
+            return null;
+        } catch (IOException e) {
+            LOG.warn("Error reading {} from disk cache at {}", id, directory, e);
+            return null;
+        }
+        RevObject obj = decode(id, bytes);
+        if (obj == null) {
+            invalidate(id);
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = index.get(id);
+            if (entry != null && obj instanceof RevTree) {
+                entry.tree = true;
+            }
+        }
+        return obj;
+    }
+
+    /**
+     * @return the object decoded from {@code bytes}, or {@code null} if they can't be decoded or
+     *         don't hash to {@code id}, as when the file was truncated or otherwise damaged
+     */
+    private @Nullable RevObject decode(ObjectId id, byte[] bytes) {
+        try {
+            RevObject obj = PGObjectStore.encoder.read(id, bytes, 0, bytes.length);
+            if (obj != null && id.equals(HashObjectFunnels.hashObject(obj))) {
+                return obj;
+            }
+            LOG.warn("Discarding corrupted object {} from disk cache at {}", id, directory);
+        } catch (RuntimeException e) {
+            LOG.warn("Discarding corrupted object {} from disk cache at {}", id, directory, e);
+        }
+        return null;
+    }
+
+    /**
+     * Adds the object to the cache, if not already present
+     *
+     * @param obj the object to cache
+     * @param encoded the object serialized as by {@link PGObjectStore#encoder}
+     */
+    public void put(RevObject obj, byte[] encoded) {
+        final ObjectId id = obj.getId();
+        synchronized (this) {
+            if (index.containsKey(id)) {
+                return;
+            }
+        }
+        final Path file = file(id);
+        try {
+            if (!Files.exists(file)) {
+                Path dir = file.getParent();
+                Files.createDirectories(dir);
+                Path tmp = Files.createTempFile(dir, file.getFileName().toString(), TMP_SUFFIX);
+                try {
+                    Files.write(tmp, encoded);
+                    move(tmp, file);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Error writing {} to disk cache at {}", id, directory, e);
+            return;
+        }
+        synchronized (this) {
+            if (index.put(id, new Entry(encoded.length, TYPE.TREE == obj.getType())) == null) {
+                sizeBytes += encoded.length;
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Adds the object to the cache in a background thread, if not already present, dropping it if
+     * there are already {@link #MAX_PENDING_WRITES} objects waiting to be written
+     *
+     * @see #put(RevObject, byte[])
+     */
+    public void putAsync(RevObject obj, byte[] encoded) {
+        final ExecutorService writer = this.writer;
+        if (writer == null || contains(obj.getId())) {
+            return;
+        }
+        try {
+            writer.execute(() -> put(obj, encoded));
+        } catch (RejectedExecutionException e) {
+            // closed concurrently
+        }
+    }
+
+    private void move(Path tmp, Path file) throws IOException {
+        try {
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // another process or thread got there first, contents are the same
+        } catch (AtomicMoveNotSupportedException e) {
+            try {
+                Files.move(tmp, file);
+            } catch (FileAlreadyExistsException alreadyExists) {
+                // same as above
+            }
+        }
+    }
+
+    public void invalidate(ObjectId id) {
+        remove(id);
+        try {
+            Files.deleteIfExists(file(id));
+        } catch (IOException e) {
+            LOG.warn("Error deleting {} from disk cache at {}", id, directory, e);
+        }
+    }
+
+    private synchronized void remove(ObjectId id) {
+        Entry entry = index.remove(id);
+        if (entry != null) {
+            sizeBytes -= entry.size;
+        }
+    }
+
+    /**
+     * Deletes the least recently used objects while the cache size exceeds its maximum size
+     */
+    private void evict() {
+        List<ObjectId> evicted = null;
+        synchronized (this) {
+            Iterator<Map.Entry<ObjectId, Entry>> it = index.entrySet().iterator();
+            while (sizeBytes > maxSizeBytes && it.hasNext()) {
+                Map.Entry<ObjectId, Entry> e = it.next();
+                it.remove();
+                sizeBytes -= e.getValue().size;
+                if (evicted == null) {
+                    evicted = new ArrayList<>();
+                }
+                evicted.add(e.getKey());
+            }
+        }
+        if (evicted != null) {
+            for (ObjectId id : evicted) {
+                try {
+                    Files.deleteIfExists(file(id));
+                } catch (IOException e) {
+                    LOG.debug("Error evicting {} from disk cache at {}", id, directory, e);
+                }
+            }
+        }
+    }
+
+    private Path file(ObjectId id) {
+        String name = id.toString();
+        return directory.resolve(name.substring(0, 2)).resolve(name.substring(2));
+    }
+
+    private static @Nullable ObjectId toId(Path file) {
+        String name = file.getParent().getFileName().toString() + file.getFileName().toString();
+        try {
+            return ObjectId.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private List<ObjectId> readJournal() throws IOException {
+        final Path journal = directory.resolve(JOURNAL_FILE);
+        if (!Files.exists(journal)) {
+            return Collections.emptyList();
+        }
+        List<ObjectId> trees = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(journal)) {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+            while (trees.size() < MAX_RECENT_TREES) {
+                trees.add(ObjectId.readFrom(data));
+            }
+        } catch (EOFException e) {
+            // done
+        }
+        return trees;
+    }
+
+    private void writeJournal(List<ObjectId> trees) throws IOException {
+        final Path journal = directory.resolve(JOURNAL_FILE);
+        Path tmp = Files.createTempFile(directory, JOURNAL_FILE, TMP_SUFFIX);
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                for (ObjectId id : trees) {
+                    id.writeTo(data);
+                }
+                data.flush();
+            }
+            Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public @Override String toString() {
+        return String.format("%s[%s, objects: %,d, bytes: %,d]", getClass().getSimpleName(),
+                directory, objectCount(), sizeBytes());
+    }
+}
@@ -21,7 +21,9 @@ import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.storage.BulkOpListener;
-import org.locationtech.geogig.storage.cache.ObjectCache;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Decoded;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Encoded;
 import org.locationtech.geogig.storage.postgresql.config.PGId;
 import org.locationtech.geogig.storage.postgresql.config.PGStorage;
 
@@ -36,8 +38,6 @@ class GetAllOp<T extends RevObject> implements Callable<List<T>> {
 
     private final PGObjectStore db;
 
-    private final ObjectCache sharedCache;
-
     private final Class<T> type;
 
     private final boolean notify;
@@ -49,7 +49,6 @@ class GetAllOp<T extends RevObject> implements Callable<List<T>> {
         this.notify = !BulkOpListener.NOOP_LISTENER.equals(listener);
         this.db = db;
         this.type = type;
-        this.sharedCache = db.sharedCache;
     }
 
     public @Override List<T> call() throws Exception {
@@ -79,6 +78,9 @@ class GetAllOp<T extends RevObject> implements Callable<List<T>> {
                             ? Stopwatch.createStarted()
                             : null;
 
+                    final long start = PGObjectStore.METRICS.start();
+                    long matchedBytes = 0;
+                    List<Encoded<Void>> matches = new ArrayList<>(queryCount);
                     try (ResultSet rs = ps.executeQuery()) {
                         if (PGObjectStore.LOG.isTraceEnabled()) {
                             PGObjectStore.LOG
@@ -92,17 +94,26 @@ class GetAllOp<T extends RevObject> implements Callable<List<T>> {
                             // more due to hash1 clashes
                             if (queryIds.contains(id)) {
                                 bytes = rs.getBytes(4);
-
-                                RevObject obj = PGObjectStore.encoder.decode(id, bytes);
-                                if (objType == null || objType.equals(obj.getType())) {
-                                    if (notify) {
-                                        queryIds.remove(id);
-                                        callback.found(id, Integer.valueOf(bytes.length));
-                                    }
-                                    found.add(type.cast(obj));
-                                    sharedCache.put(obj);
-                                }
+                                matches.add(Encoded.of(id, bytes));
+                                matchedBytes += bytes.length;
+                            }
+                        }
+                    }
+                    PGObjectStore.METRICS.getAll(start, matches.size(), matchedBytes);
+                    // decode on several threads
+                    List<Decoded<Void>> decoded = BulkObjectDecoder.shared().decode(matches,
+                            PGObjectStore.encoder);
+                    for (int i = 0; i < decoded.size(); i++) {
+                        Decoded<Void> d = decoded.get(i);
+                        id = d.id();
+                        RevObject obj = d.object();
+                        if (objType == null || objType.equals(obj.getType())) {
+                            if (notify) {
+                                queryIds.remove(id);
+                                callback.found(id, Integer.valueOf(d.size()));
                             }
+                            found.add(type.cast(obj));
+                            db.cache(obj, matches.get(i).bytes());
                         }
                     }
                     if (PGObjectStore.LOG.isTraceEnabled()) {
@@ -24,7 +24,9 @@ import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.RevObject.TYPE;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectInfo;
-import org.locationtech.geogig.storage.cache.ObjectCache;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Decoded;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Encoded;
 import org.locationtech.geogig.storage.postgresql.config.PGId;
 import org.locationtech.geogig.storage.postgresql.config.PGStorage;
 
@@ -38,8 +40,6 @@ class GetObjectOp<T extends RevObject> implements Callable<List<ObjectInfo<T>>>
 
     private final PGObjectStore db;
 
-    private final ObjectCache sharedCache;
-
     private final Class<T> type;
 
     public GetObjectOp(Collection<NodeRef> ids, BulkOpListener listener, PGObjectStore db,
@@ -48,7 +48,6 @@ class GetObjectOp<T extends RevObject> implements Callable<List<ObjectInfo<T>>>
         this.callback = listener;
         this.db = db;
         this.type = type;
-        this.sharedCache = db.sharedCache;
     }
 
     public @Override List<ObjectInfo<T>> call() throws Exception {
@@ -65,6 +64,8 @@ class GetObjectOp<T extends RevObject> implements Callable<List<ObjectInfo<T>>>
 
         Map<ObjectId, byte[]> queryMatches = new HashMap<>();
 
+        final long start = PGObjectStore.METRICS.start();
+        long matchedBytes = 0;
         try (Connection cx = PGStorage.newConnection(db.dataSource)) {
 
             final Array array = toJDBCArray(cx, queryNodes);
@@ -79,26 +80,36 @@ class GetObjectOp<T extends RevObject> implements Callable<List<ObjectInfo<T>>>
                         ObjectId id = PGId.valueOf(rs, 1).toObjectId();
                         byte[] bytes = rs.getBytes(4);
                         queryMatches.put(id, bytes);
+                        matchedBytes += bytes.length;
                     }
                 }
             }
         }
+        PGObjectStore.METRICS.getAll(start, queryMatches.size(), matchedBytes);
 
-        List<ObjectInfo<T>> getObjectOpResult = new ArrayList<>(queryCount);
+        List<Encoded<NodeRef>> encoded = new ArrayList<>(queryCount);
         for (NodeRef n : queryNodes) {
             ObjectId id = n.getObjectId();
-            byte[] bytes = queryMatches.get(id);
-            if (bytes == null) {
-                callback.notFound(n.getObjectId());
+            encoded.add(Encoded.of(id, n, queryMatches.get(id)));
+        }
+        // decode on several threads
+        List<Decoded<NodeRef>> decoded = BulkObjectDecoder.shared().decode(encoded,
+                PGObjectStore.encoder);
+
+        List<ObjectInfo<T>> getObjectOpResult = new ArrayList<>(queryCount);
+        for (Decoded<NodeRef> d : decoded) {
+            final ObjectId id = d.id();
+            final RevObject obj = d.object();
+            if (obj == null) {
+                callback.notFound(id);
             } else {
-                RevObject obj = PGObjectStore.encoder.decode(id, bytes);
                 if (objType == null || objType.equals(obj.getType())) {
                     callback.found(id, null/* this arg should be deprecated */);
-                    ObjectInfo<T> info = ObjectInfo.of(n, type.cast(obj));
+                    ObjectInfo<T> info = ObjectInfo.of(d.attachment(), type.cast(obj));
                     getObjectOpResult.add(info);
-                    sharedCache.put(obj);
+                    db.cache(obj, queryMatches.get(id));
                 } else {
-                    callback.notFound(n.getObjectId());
+                    callback.notFound(id);
                 }
             }
         }
@@ -16,16 +16,27 @@ import static java.lang.String.format;
 import static java.util.Spliterator.DISTINCT;
 import static java.util.Spliterator.IMMUTABLE;
 import static java.util.Spliterator.NONNULL;
+import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_BULK_LOAD_THRESHOLD;
+import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_CACHE_QUOTA;
+import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_CACHE_WEIGHT;
+import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_DISK_CACHE_DIRECTORY;
+import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_DISK_CACHE_MAX_SIZE;
 import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_GETALL_BATCH_SIZE;
 import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_PUTALL_BATCH_SIZE;
 import static org.locationtech.geogig.storage.postgresql.config.Environment.KEY_THREADPOOL_SIZE;
 import static org.locationtech.geogig.storage.postgresql.config.PGStorage.log;
 import static org.locationtech.geogig.storage.postgresql.config.PGStorage.rollbackAndRethrow;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,6 +47,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.concurrent.Callable;
@@ -67,13 +79,17 @@ import org.locationtech.geogig.storage.ConfigDatabase;
 import org.locationtech.geogig.storage.ObjectInfo;
 import org.locationtech.geogig.storage.ObjectStore;
 import org.locationtech.geogig.storage.cache.CacheManager;
+import org.locationtech.geogig.storage.cache.CachingObjectStore;
 import org.locationtech.geogig.storage.cache.ObjectCache;
 import org.locationtech.geogig.storage.impl.ConnectionManager;
+import org.locationtech.geogig.storage.impl.ObjectStoreMetrics;
 import org.locationtech.geogig.storage.postgresql.config.ConnectionConfig;
 import org.locationtech.geogig.storage.postgresql.config.Environment;
 import org.locationtech.geogig.storage.postgresql.config.PGId;
 import org.locationtech.geogig.storage.postgresql.config.PGStorage;
 import org.locationtech.geogig.storage.postgresql.config.TableNames;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,14 +108,18 @@ import lombok.NonNull;
  * <p>
  * TODO: document/force use of {@code SET constraint_exclusion=ON}
  */
-public class PGObjectStore extends AbstractStore implements ObjectStore {
+public class PGObjectStore extends AbstractStore implements ObjectStore, CachingObjectStore {
 
     static final Logger LOG = LoggerFactory.getLogger(PGObjectStore.class);
 
+    static final ObjectStoreMetrics METRICS = ObjectStoreMetrics.forBackend("postgres");
+
     private static final int DEFAULT_PUT_ALL_PARTITION_SIZE = 100;
 
     private static final int DEFAULT_GET_ALL_PARTITION_SIZE = 10_000;
 
+    private static final int DEFAULT_BULK_LOAD_THRESHOLD = 10_000;
+
     private static final ObjectStoreSharedResources SHARED_RESOURCES = new ObjectStoreSharedResources();
 
     protected final Environment config;
@@ -112,10 +132,19 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
 
     ObjectCache sharedCache = null;
 
+    /**
+     * Optional second level cache, checked on misses of {@link #sharedCache} before querying the
+     * database, {@code null} unless {@code postgres.diskCache.directory} is configured
+     */
+    @Nullable
+    DiskObjectCache diskCache;
+
     int getAllBatchSize = DEFAULT_GET_ALL_PARTITION_SIZE;
 
     private int putAllBatchSize = DEFAULT_PUT_ALL_PARTITION_SIZE;
 
+    private int bulkLoadThreshold = DEFAULT_BULK_LOAD_THRESHOLD;
+
     private SharedResourceReference resources;
 
     public PGObjectStore(final @NonNull ConfigDatabase configdb, final @NonNull Environment config,
@@ -137,6 +166,8 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
 
         Optional<Integer> getAllFetchSize = configdb.get(KEY_GETALL_BATCH_SIZE, Integer.class);
         Optional<Integer> putAllBatchSize = configdb.get(KEY_PUTALL_BATCH_SIZE, Integer.class);
+        Optional<Integer> bulkLoadThreshold = configdb.get(KEY_BULK_LOAD_THRESHOLD,
+                Integer.class);
         Optional<Integer> tpoolSize = configdb.getGlobal(KEY_THREADPOOL_SIZE, Integer.class);
         if (getAllFetchSize.isPresent()) {
             Integer fetchSize = getAllFetchSize.get();
@@ -152,6 +183,13 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
                     batchSize);
             this.putAllBatchSize = batchSize;
         }
+        if (bulkLoadThreshold.isPresent()) {
+            Integer threshold = bulkLoadThreshold.get();
+            Preconditions.checkState(threshold.intValue() >= 0,
+                    "postgres.bulkLoadThreshold must be zero or a positive integer: %s. Check your config.",
+                    threshold);
+            this.bulkLoadThreshold = threshold;
+        }
         int threadPoolSize;
         if (tpoolSize.isPresent()) {
             Integer poolSize = tpoolSize.get();
@@ -167,8 +205,133 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         this.resources = SHARED_RESOURCES.acquire(connectionConfig);
         resources.trySetThreadPoolSize(threadPoolSize);
 
-        this.sharedCache = CacheManager.INSTANCE.acquire(getCacheIdentifier(connectionConfig));
+        final String cacheIdentifier = getCacheIdentifier(connectionConfig);
+        setCacheQuota(cacheIdentifier);
+        this.sharedCache = CacheManager.INSTANCE.acquire(cacheIdentifier);
+        this.diskCache = openDiskCache(cacheIdentifier);
         super.open();
+        if (diskCache != null) {
+            warmUp(diskCache.recentTrees());
+        }
+    }
+
+    /**
+     * Opens the repository's on-disk cache, if {@code postgres.diskCache.directory} is configured
+     */
+    private @Nullable DiskObjectCache openDiskCache(String cacheIdentifier) {
+        Optional<String> directory = configdb.get(KEY_DISK_CACHE_DIRECTORY);
+        if (!directory.isPresent()) {
+            return null;
+        }
+        Optional<String> maxSize = configdb.get(KEY_DISK_CACHE_MAX_SIZE);
+        Preconditions.checkState(maxSize.isPresent(),
+                "postgres.diskCache.maxSize is required if postgres.diskCache.directory is set. Check your config.");
+        long maxSizeBytes;
+        try {
+            maxSizeBytes = CacheManager.INSTANCE.parseCacheSizeArgument(maxSize.get());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(String.format(
+                    "postgres.diskCache.maxSize is invalid: %s. Check your config.", maxSize.get()),
+                    e);
+        }
+        Preconditions.checkState(maxSizeBytes > 0,
+                "postgres.diskCache.maxSize must be greater than zero: %s. Check your config.",
+                maxSize.get());
+        Path dir = Paths.get(directory.get())
+                .resolve(DiskObjectCache.directoryName(cacheIdentifier));
+        return DiskObjectCache.acquire(dir, maxSizeBytes);
+    }
+
+    /**
+     * Loads the given trees from the disk cache into the shared cache in the background, so the
+     * trees that were in use when the repository was last closed don't need to be fetched from the
+     * database again
+     */
+    private void warmUp(List<ObjectId> treeIds) {
+        if (treeIds.isEmpty()) {
+            return;
+        }
+        final DiskObjectCache diskCache = this.diskCache;
+        final ObjectCache sharedCache = this.sharedCache;
+        resources.executor().submit(() -> {
+            for (ObjectId id : treeIds) {
+                if (!isOpen()) {
+                    break;
+                }
+                if (!sharedCache.contains(id)) {
+                    RevObject tree = diskCache.getIfPresent(id);
+                    if (tree != null) {
+                        sharedCache.put(tree);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the object from the shared cache or the disk cache, or {@code null} if cached in
+     *         neither
+     */
+    @Nullable
+    RevObject getCached(ObjectId id) {
+        RevObject cached = sharedCache.getIfPresent(id);
+        if (cached == null && diskCache != null) {
+            cached = diskCache.getIfPresent(id);
+            if (cached != null) {
+                sharedCache.put(cached);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Adds an object fetched from the database to the shared cache, and to the disk cache in the
+     * background if it's a tree or a feature type. Features are left out of the disk cache since
+     * there are too many of them to be worth a file each.
+     *
+     * @param encoded the object as stored in the database
+     */
+    void cache(RevObject obj, byte[] encoded) {
+        sharedCache.put(obj);
+        if (diskCache != null) {
+            TYPE type = obj.getType();
+            if (TYPE.TREE == type || TYPE.FEATURETYPE == type) {
+                diskCache.putAsync(obj, encoded);
+            }
+        }
+    }
+
+    private void invalidate(ObjectId id) {
+        sharedCache.invalidate(id);
+        if (diskCache != null) {
+            diskCache.invalidate(id);
+        }
+    }
+
+    /**
+     * Applies the repository's cache quota and weight, if configured, for shared cache
+     * implementations that keep the objects of each repository apart
+     */
+    private void setCacheQuota(String cacheIdentifier) {
+        Optional<String> quota = configdb.get(KEY_CACHE_QUOTA);
+        Optional<Integer> weight = configdb.get(KEY_CACHE_WEIGHT, Integer.class);
+        if (quota.isPresent() || weight.isPresent()) {
+            final CacheManager cacheManager = CacheManager.INSTANCE;
+            long maxSizeBytes = 0L;
+            if (quota.isPresent()) {
+                try {
+                    maxSizeBytes = cacheManager.parseCacheSizeArgument(quota.get());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException(String.format(
+                            "postgres.cacheQuota is invalid: %s. Check your config.", quota.get()),
+                            e);
+                }
+            }
+            Preconditions.checkState(!weight.isPresent() || weight.get().intValue() > 0,
+                    "postgres.cacheWeight must be a positive integer: %s. Check your config.",
+                    weight.orElse(null));
+            cacheManager.setQuota(cacheIdentifier, maxSizeBytes, weight.orElse(1));
+        }
     }
 
     /**
@@ -188,9 +351,11 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
             DataSource ds = this.dataSource;
             SharedResourceReference res = this.resources;
             ObjectCache sharedCache = this.sharedCache;
+            DiskObjectCache diskCache = this.diskCache;
             this.dataSource = null;
             this.resources = null;
             this.sharedCache = null;
+            this.diskCache = null;
             try {
                 PGStorage.closeDataSource(ds);
             } finally {
@@ -198,12 +363,14 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
                     SHARED_RESOURCES.release(res);
                 }
                 CacheManager.INSTANCE.release(sharedCache);
+                if (diskCache != null) {
+                    DiskObjectCache.release(diskCache);
+                }
             }
         }
     }
 
-    @VisibleForTesting
-    public ObjectCache getCache() {
+    public @Override ObjectCache getCache() {
         return sharedCache;
     }
 
@@ -212,6 +379,15 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         this.putAllBatchSize = size;
     }
 
+    /**
+     * @param threshold minimum number of objects for {@link #putAll} to use the {@code COPY} based
+     *        bulk load path, {@code 0} disables bulk loading
+     */
+    @VisibleForTesting
+    void setBulkLoadThreshold(int threshold) {
+        this.bulkLoadThreshold = threshold;
+    }
+
     protected String objectsTable() {
         return config.getTables().objects();
     }
@@ -220,7 +396,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         checkNotNull(id, "argument id is null");
         checkState(isOpen(), "Database is closed");
         config.checkRepositoryExists();
-        if (sharedCache.contains(id)) {
+        if (sharedCache.contains(id) || (diskCache != null && diskCache.contains(id))) {
             return true;
         }
         final String sql = format(
@@ -479,7 +655,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
     @Nullable
     private RevObject getIfPresent(final ObjectId id, final @Nullable RevObject.TYPE type,
             DataSource ds) {
-        RevObject cached = sharedCache.getIfPresent(id);
+        RevObject cached = getCached(id);
         if (cached != null) {
             return cached;
         }
@@ -499,6 +675,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
 
         byte[] bytes = null;
 
+        final long start = METRICS.start();
         try (Connection cx = PGStorage.newConnection(dataSource)) {
             try (PreparedStatement ps = cx.prepareStatement(log(sql, LOG, id))) {
                 ps.setInt(1, pgid.hash1());
@@ -509,6 +686,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
                     }
                 }
             }
+            METRICS.get(start, bytes == null ? 0 : bytes.length);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -518,7 +696,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         }
 
         RevObject obj = encoder.read(id, bytes, 0, bytes.length);
-        sharedCache.put(obj);
+        cache(obj, bytes);
         return obj;
     }
 
@@ -577,7 +755,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
             try (PreparedStatement stmt = cx.prepareStatement(log(sql, LOG, id))) {
                 PGId.valueOf(id).setArgs(stmt, 1);
                 stmt.executeUpdate();
-                sharedCache.invalidate(id);
+                invalidate(id);
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -628,7 +806,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
 
         private final BulkOpListener listener;
 
-        private final PGObjectStore objectStore;
+        protected final PGObjectStore objectStore;
 
         private List<EncodedObject> batch;
 
@@ -641,7 +819,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
             this.objectStore = objectStore;
         }
 
-        private boolean isAborted() {
+        protected boolean isAborted() {
             return null != abortFlag.get();
         }
 
@@ -653,12 +831,14 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
                 Map<EncodedObject, Boolean> insertResults = Collections.emptyMap();
                 cx.setAutoCommit(false);
                 try {
+                    final long start = METRICS.start();
                     insertResults = doInsert(cx, batch);
                     if (isAborted()) {
                         cx.rollback();
                     } else {
                         objectStore.postInsert(cx, insertResults);
                         cx.commit();
+                        recordInserted(start, insertResults);
                         if (!isAborted()) {
                             notifyInserted(insertResults, listener);
                         }
@@ -676,8 +856,20 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
             return null;
         }
 
-        private Map<EncodedObject, Boolean> doInsert(Connection cx, List<EncodedObject> partition)
-                throws Exception {
+        private void recordInserted(long start, Map<EncodedObject, Boolean> insertResults) {
+            int count = 0;
+            long bytes = 0;
+            for (Map.Entry<EncodedObject, Boolean> e : insertResults.entrySet()) {
+                if (e.getValue().booleanValue()) {
+                    count++;
+                    bytes += e.getKey().serialized().length;
+                }
+            }
+            METRICS.put(start, count, bytes);
+        }
+
+        protected Map<EncodedObject, Boolean> doInsert(Connection cx,
+                List<EncodedObject> partition) throws Exception {
 
             final Map<String, PreparedStatement> perTableStatements = new HashMap<>();
             ArrayListMultimap<String, EncodedObject> perTableObjects = ArrayListMultimap.create();
@@ -739,6 +931,120 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
 
     }
 
+    /**
+     * Inserts a batch of objects streaming them to a temporary staging table through
+     * {@code COPY ... FROM STDIN (FORMAT binary)}, and then merging the staged objects that don't
+     * already exist into each target table with a single {@code INSERT ... SELECT} statement.
+     * <p>
+     * The object tables don't have a unique constraint (duplicates are ignored by a rule instead,
+     * see {@code PGStorageTableManager#createIgnoreDuplicatesRule}), so {@code ON CONFLICT} can't
+     * be used for the merge. Instead, objects already present in the target table are removed from
+     * the staging table first, which also tells which objects were found instead of inserted.
+     */
+    private static class CopyDbOp extends InsertDbOp {
+
+        private static final String STAGING_TABLE = "geogig_bulk_load";
+
+        /**
+         * Binary COPY format signature, followed by 32-bit flags and header extension length
+         */
+        private static final byte[] COPY_SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n',
+                (byte) 0xFF, '\r', '\n', 0 };
+
+        CopyDbOp(AtomicReference<Throwable> abortFlag, List<EncodedObject> batch,
+                BulkOpListener listener, PGObjectStore objectStore) {
+            super(abortFlag, batch, listener, objectStore);
+        }
+
+        protected @Override Map<EncodedObject, Boolean> doInsert(Connection cx,
+                List<EncodedObject> partition) throws Exception {
+
+            ArrayListMultimap<String, EncodedObject> perTableObjects = ArrayListMultimap.create();
+            for (EncodedObject obj : partition) {
+                PGId pgid = PGId.valueOf(obj.id());
+                perTableObjects.put(objectStore.tableNameForType(obj.type(), pgid), obj);
+            }
+
+            try (Statement st = cx.createStatement()) {
+                // temp tables are per session, and the connection is returned to the pool with an
+                // empty staging table at commit or rollback time
+                st.execute(log(format("CREATE TEMP TABLE IF NOT EXISTS %s"
+                        + " (h1 INTEGER, h2 BIGINT, h3 BIGINT, object BYTEA) ON COMMIT DELETE ROWS",
+                        STAGING_TABLE), LOG));
+            }
+
+            Map<EncodedObject, Boolean> insertResults = new HashMap<>();
+            for (String tableName : perTableObjects.keySet()) {
+                if (isAborted()) {
+                    return null;
+                }
+                List<EncodedObject> tableObjs = perTableObjects.get(tableName);
+                copy(cx, tableObjs);
+                Set<ObjectId> existing = deleteExisting(cx, tableName);
+                merge(cx, tableName);
+                for (EncodedObject obj : tableObjs) {
+                    insertResults.put(obj, Boolean.valueOf(!existing.contains(obj.id())));
+                }
+            }
+            return insertResults;
+        }
+
+        private void copy(Connection cx, List<EncodedObject> objects)
+                throws SQLException, IOException {
+
+            final String sql = format("COPY %s (h1, h2, h3, object) FROM STDIN (FORMAT binary)",
+                    STAGING_TABLE);
+            PGConnection pgcx = cx.unwrap(PGConnection.class);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new PGCopyOutputStream(pgcx, log(sql, LOG)), 64 * 1024))) {
+                out.write(COPY_SIGNATURE);
+                out.writeInt(0);// flags
+                out.writeInt(0);// header extension length
+                for (EncodedObject obj : objects) {
+                    PGId pgid = PGId.valueOf(obj.id());
+                    byte[] bytes = obj.serialized();
+                    out.writeShort(4);// number of fields
+                    out.writeInt(Integer.BYTES);
+                    out.writeInt(pgid.hash1());
+                    out.writeInt(Long.BYTES);
+                    out.writeLong(pgid.hash2());
+                    out.writeInt(Long.BYTES);
+                    out.writeLong(pgid.hash3());
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeShort(-1);// trailer
+            }
+        }
+
+        private Set<ObjectId> deleteExisting(Connection cx, String tableName)
+                throws SQLException {
+            final String sql = format("DELETE FROM %s s USING %s t"
+                    + " WHERE ((t.id).h1) = s.h1 AND t.id = CAST(ROW(s.h1,s.h2,s.h3) AS OBJECTID)"
+                    + " RETURNING s.h1, s.h2, s.h3", STAGING_TABLE, tableName);
+
+            Set<ObjectId> existing = new HashSet<>();
+            try (Statement st = cx.createStatement();
+                    ResultSet rs = st.executeQuery(log(sql, LOG))) {
+                while (rs.next()) {
+                    existing.add(PGId.valueOf(rs, 1).toObjectId());
+                }
+            }
+            return existing;
+        }
+
+        private void merge(Connection cx, String tableName) throws SQLException {
+            final String insert = format("INSERT INTO %s (id, object)"
+                    + " SELECT DISTINCT ON (h1, h2, h3) CAST(ROW(h1,h2,h3) AS OBJECTID), object"
+                    + " FROM %s", tableName, STAGING_TABLE);
+            final String truncate = format("TRUNCATE %s", STAGING_TABLE);
+            try (Statement st = cx.createStatement()) {
+                st.executeUpdate(log(insert, LOG));
+                st.executeUpdate(log(truncate, LOG));
+            }
+        }
+    }
+
     private EncodedObject encode(RevObject o) {
         byte[] serialized = encoder.encode(o);
         return new EncodedObject(o, serialized);
@@ -783,6 +1089,20 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         final int maxTasks = Math.min(Runtime.getRuntime().availableProcessors(),
                 resources.threadPoolSize());
 
+        // Large inserts (e.g. clone or import) are streamed through COPY in batches of
+        // bulkLoadThreshold objects, while small ones go through the regular INSERT path, which
+        // has lower latency and less overhead per call
+        final boolean bulkLoad;
+        {
+            final int threshold = this.bulkLoadThreshold;
+            List<EncodedObject> head = new ArrayList<>();
+            while (threshold > 0 && head.size() < threshold && encoded.hasNext()) {
+                head.add(encoded.next());
+            }
+            bulkLoad = threshold > 0 && encoded.hasNext();
+            encoded = Iterators.concat(head.iterator(), encoded);
+        }
+
         // Insert in batches of putAllBatchSize.
         // Using several connections for the insert really boosts performance, yet we need to share
         // the connection pool with other calling threads and make sure a really large insert
@@ -790,14 +1110,15 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         // saturating the I/O thread pool), so each batch is inserted by a single
         // InsertDbOp
         final Iterator<List<EncodedObject>> partitions;
-        partitions = Iterators.partition(encoded, putAllBatchSize);
+        partitions = Iterators.partition(encoded, bulkLoad ? bulkLoadThreshold : putAllBatchSize);
 
         final AtomicReference<Throwable> abortFlag = new AtomicReference<>();
         while (partitions.hasNext() && null == abortFlag.get()) {
             List<InsertDbOp> tasks = new ArrayList<>(maxTasks);
             for (int i = 0; i < maxTasks && partitions.hasNext() && null == abortFlag.get(); i++) {
                 List<EncodedObject> batch = partitions.next();
-                InsertDbOp task = new InsertDbOp(abortFlag, batch, listener, this);
+                InsertDbOp task = bulkLoad ? new CopyDbOp(abortFlag, batch, listener, this)
+                        : new InsertDbOp(abortFlag, batch, listener, this);
                 tasks.add(task);
             }
             try {
@@ -895,7 +1216,7 @@ public class PGObjectStore extends AbstractStore implements ObjectStore {
         long count = 0;
         for (int i = 0; i < deleted.length; i++) {
             ObjectId id = ids.get(i);
-            sharedCache.invalidate(id);
+            invalidate(id);
             if (deleted[i] > 0) {
                 count++;
                 listener.deleted(id);
@@ -22,7 +22,6 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.storage.BulkOpListener;
-import org.locationtech.geogig.storage.cache.ObjectCache;
 
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
@@ -42,15 +41,12 @@ class PGObjectStoreGetAllIterator<T extends RevObject> extends AbstractIterator<
 
     private Iterator<T> nextBatch;
 
-    final ObjectCache cache;
-
     public PGObjectStoreGetAllIterator(Iterator<ObjectId> ids, Class<T> type,
             BulkOpListener listener, PGObjectStore store) {
         this.ids = Iterators.peekingIterator(ids);
         this.type = type;
         this.listener = listener;
         this.store = store;
-        cache = store.sharedCache;
     }
 
     protected @Override T computeNext() {
@@ -74,7 +70,7 @@ class PGObjectStoreGetAllIterator<T extends RevObject> extends AbstractIterator<
         List<ObjectId> cacheMisses = new ArrayList<>(superPartitionBatchSize);
         for (int i = 0; i < superPartitionBatchSize && ids.hasNext(); i++) {
             ObjectId id = ids.next();
-            RevObject cached = cache.getIfPresent(id);
+            RevObject cached = store.getCached(id);
             if (cached == null) {
                 cacheMisses.add(id);
             } else {
@@ -111,7 +107,7 @@ class PGObjectStoreGetAllIterator<T extends RevObject> extends AbstractIterator<
     private T tryNextCached() {
         while (ids.hasNext()) {
             ObjectId id = ids.peek();
-            RevObject cached = cache.getIfPresent(id);
+            RevObject cached = store.getCached(id);
             if (cached == null) {
                 return null;
             } else {
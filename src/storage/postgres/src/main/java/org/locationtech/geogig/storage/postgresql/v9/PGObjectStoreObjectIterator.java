@@ -26,7 +26,6 @@ import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.storage.AutoCloseableIterator;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.ObjectInfo;
-import org.locationtech.geogig.storage.cache.ObjectCache;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
@@ -46,8 +45,6 @@ class PGObjectStoreObjectIterator<T extends RevObject>
 
     private Iterator<ObjectInfo<T>> nextBatch;
 
-    final ObjectCache cache;
-
     private boolean closed;
 
     private ObjectInfo<T> next;
@@ -58,7 +55,6 @@ class PGObjectStoreObjectIterator<T extends RevObject>
         this.type = type;
         this.listener = listener;
         this.store = store;
-        cache = store.sharedCache;
     }
 
     public @Override void close() {
@@ -116,7 +112,7 @@ class PGObjectStoreObjectIterator<T extends RevObject>
         for (int i = 0; i < superPartitionBatchSize && nodes.hasNext(); i++) {
             NodeRef node = nodes.next();
             ObjectId id = node.getObjectId();
-            RevObject cached = cache.getIfPresent(id);
+            RevObject cached = store.getCached(id);
             if (cached == null) {
                 cacheMisses.add(node);
             } else {
@@ -155,7 +151,7 @@ class PGObjectStoreObjectIterator<T extends RevObject>
         while (nodes.hasNext()) {
             NodeRef node = nodes.peek();
             ObjectId id = node.getObjectId();
-            RevObject cached = cache.getIfPresent(id);
+            RevObject cached = store.getCached(id);
             if (cached == null) {
                 return null;
             } else {
@@ -0,0 +1,213 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.postgresql.v9;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+
+import com.google.common.collect.Lists;
+
+public class DiskObjectCacheTest {
+
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path directory;
+
+    private DiskObjectCache cache;
+
+    @Before
+    public void before() {
+        directory = tmp.getRoot().toPath().resolve("cache");
+        cache = new DiskObjectCache(directory, 1024 * 1024);
+        cache.open();
+    }
+
+    @After
+    public void after() {
+        cache.close();
+    }
+
+    private byte[] encode(RevObject o) {
+        return PGObjectStore.encoder.encode(o);
+    }
+
+    private List<RevFeature> features(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> RevObjectTestSupport.feature(i, "value " + i))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testPutGetInvalidate() {
+        RevFeature feature = RevObjectTestSupport.feature(0, "value");
+        assertFalse(cache.contains(feature.getId()));
+        assertNull(cache.getIfPresent(feature.getId()));
+
+        byte[] encoded = encode(feature);
+        cache.put(feature, encoded);
+        assertTrue(cache.contains(feature.getId()));
+        assertEquals(feature, cache.getIfPresent(feature.getId()));
+        assertEquals(encoded.length, cache.sizeBytes());
+
+        cache.invalidate(feature.getId());
+        assertFalse(cache.contains(feature.getId()));
+        assertNull(cache.getIfPresent(feature.getId()));
+        assertEquals(0L, cache.sizeBytes());
+    }
+
+    @Test
+    public void testReopen() {
+        List<RevFeature> features = features(10);
+        features.forEach(f -> cache.put(f, encode(f)));
+        long size = cache.sizeBytes();
+        cache.close();
+
+        cache = new DiskObjectCache(directory, 1024 * 1024);
+        cache.open();
+        assertEquals(10, cache.objectCount());
+        assertEquals(size, cache.sizeBytes());
+        features.forEach(f -> assertEquals(f, cache.getIfPresent(f.getId())));
+    }
+
+    @Test
+    public void testEviction() {
+        List<RevFeature> features = features(10);
+        final long size = features.stream().mapToLong(f -> encode(f).length).sum();
+        cache.close();
+        cache = new DiskObjectCache(directory, size - 1);
+        cache.open();
+
+        features.forEach(f -> cache.put(f, encode(f)));
+        assertTrue(cache.sizeBytes() < size);
+        // the least recently used one is evicted first
+        assertFalse(cache.contains(features.get(0).getId()));
+        assertNull(cache.getIfPresent(features.get(0).getId()));
+        assertTrue(cache.contains(features.get(9).getId()));
+    }
+
+    @Test
+    public void testRecentTrees() {
+        HeapObjectStore store = new HeapObjectStore();
+        store.open();
+        RevTree tree1 = RevObjectTestSupport.INSTANCE.createFeaturesTree(store, "f", 10);
+        store.close();
+        RevTree tree2 = RevTree.EMPTY;
+        RevFeature feature = RevObjectTestSupport.feature(0, "value");
+        cache.put(tree1, encode(tree1));
+        cache.put(feature, encode(feature));
+        cache.put(tree2, encode(tree2));
+        // tree1 is the most recently used now
+        cache.getIfPresent(tree1.getId());
+        assertEquals(Collections.emptyList(), cache.recentTrees());
+        cache.close();
+
+        cache = new DiskObjectCache(directory, 1024 * 1024);
+        cache.open();
+        assertEquals(Lists.newArrayList(tree1.getId(), tree2.getId()), cache.recentTrees());
+    }
+
+    @Test
+    public void testAcquireRelease() {
+        Path dir = tmp.getRoot().toPath().resolve("shared");
+        DiskObjectCache c1 = DiskObjectCache.acquire(dir, 1024);
+        DiskObjectCache c2 = DiskObjectCache.acquire(dir, 2048);
+        try {
+            assertSame(c1, c2);
+        } finally {
+            DiskObjectCache.release(c1);
+            DiskObjectCache.release(c2);
+        }
+        DiskObjectCache c3 = DiskObjectCache.acquire(dir, 1024);
+        DiskObjectCache.release(c3);
+        assertTrue(c1 != c3);
+    }
+
+    @Test
+    public void testCorruptedFile() throws IOException {
+        RevFeature feature = RevObjectTestSupport.feature(0, "value");
+        RevFeature other = RevObjectTestSupport.feature(1, "other value");
+        cache.put(feature, encode(feature));
+        cache.put(other, encode(other));
+
+        // garbage can't be decoded
+        Files.write(file(feature), new byte[] { 1, 2, 3 });
+        assertNull(cache.getIfPresent(feature.getId()));
+        assertFalse(cache.contains(feature.getId()));
+        assertFalse(Files.exists(file(feature)));
+
+        // and a valid object under the wrong name doesn't match the id
+        Files.write(file(other), encode(feature));
+        assertNull(cache.getIfPresent(other.getId()));
+        assertFalse(cache.contains(other.getId()));
+        assertFalse(Files.exists(file(other)));
+        assertEquals(0L, cache.sizeBytes());
+    }
+
+    @Test
+    public void testStaleTemporaryFilesAreDeleted() throws IOException {
+        RevFeature feature = RevObjectTestSupport.feature(0, "value");
+        cache.put(feature, encode(feature));
+        cache.close();
+
+        Path dir = file(feature).getParent();
+        Path stale = Files.createTempFile(dir, "stale", ".tmp");
+        Files.setLastModifiedTime(stale,
+                FileTime.fromMillis(System.currentTimeMillis() - 60 * 60 * 1000));
+        Path inProgress = Files.createTempFile(dir, "inprogress", ".tmp");
+
+        cache = new DiskObjectCache(directory, 1024 * 1024);
+        cache.open();
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(inProgress));
+        assertEquals(1, cache.objectCount());
+        assertEquals(feature, cache.getIfPresent(feature.getId()));
+    }
+
+    @Test
+    public void testPutAsync() {
+        List<RevFeature> features = features(10);
+        features.forEach(f -> cache.putAsync(f, encode(f)));
+        // closing waits for the pending writes
+        cache.close();
+
+        cache = new DiskObjectCache(directory, 1024 * 1024);
+        cache.open();
+        assertEquals(10, cache.objectCount());
+        features.forEach(f -> assertEquals(f, cache.getIfPresent(f.getId())));
+    }
+
+    private Path file(RevObject o) {
+        String name = o.getId().toString();
+        return directory.resolve(name.substring(0, 2)).resolve(name.substring(2));
+    }
+}
@@ -0,0 +1,54 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.postgresql.v9;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+
+/**
+ * Runs the {@link PGObjectStoreConformanceTest} with a low bulk load threshold so that all
+ * {@link PGObjectStore#putAll} calls with more than one object go through the {@code COPY} path.
+ */
+public class PGObjectStoreBulkLoadConformanceTest extends PGObjectStoreConformanceTest {
+
+    protected @Override PGObjectStore createOpen() throws IOException {
+        PGObjectStore db = super.createOpen();
+        db.setBulkLoadThreshold(2);
+        return db;
+    }
+
+    @Test
+    public void testBulkLoadReportsInsertedAndFound() {
+        List<RevObject> objects = IntStream.range(0, 100)
+                .mapToObj(i -> RevObjectTestSupport.feature(i, "value " + i))
+                .collect(Collectors.toList());
+
+        db.putAll(objects.subList(0, 50).iterator());
+
+        CountingListener listener = BulkOpListener.newCountingListener();
+        db.putAll(objects.iterator(), listener);
+        assertEquals(50, listener.found());
+        assertEquals(50, listener.inserted());
+
+        for (RevObject o : objects) {
+            assertEquals(o, db.get(o.getId()));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.storage.postgresql.v9;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.memory.HeapObjectStore;
+import org.locationtech.geogig.storage.postgresql.config.Environment;
+import org.locationtech.geogig.storage.postgresql.config.PGStorage;
+
+/**
+ * Runs the {@link PGObjectStoreConformanceTest} with the on-disk cache enabled
+ */
+public class PGObjectStoreDiskCacheConformanceTest extends PGObjectStoreConformanceTest {
+
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
+    protected @Override PGObjectStore createOpen() throws IOException {
+        Environment config = testConfig.getEnvironment();
+        PGStorage.createNewRepo(config);
+
+        closeConfigDb();
+
+        configdb = new PGConfigDatabase(config);
+        configdb.put(Environment.KEY_DISK_CACHE_DIRECTORY,
+                tmp.newFolder("diskcache").getAbsolutePath());
+        configdb.put(Environment.KEY_DISK_CACHE_MAX_SIZE, "10M");
+        PGObjectStore db = new PGObjectStore(configdb, config, false);
+        db.open();
+        return db;
+    }
+
+    @Test
+    public void testServedFromDiskCache() throws InterruptedException {
+        PGObjectStore store = (PGObjectStore) db;
+        assertNotNull(store.diskCache);
+
+        RevTree tree = tree(10);
+        store.put(tree);
+        store.getCache().invalidateAll();
+        assertEquals(tree, store.get(tree.getId()));
+        awaitDiskCache(store, tree.getId());
+
+        store.getCache().invalidateAll();
+        assertEquals(tree, store.getCached(tree.getId()));
+
+        store.delete(tree.getId());
+        assertFalse(store.diskCache.contains(tree.getId()));
+        assertFalse(store.exists(tree.getId()));
+    }
+
+    @Test
+    public void testFeaturesAreNotDiskCached() throws InterruptedException {
+        PGObjectStore store = (PGObjectStore) db;
+        RevObject feature = RevObjectTestSupport.feature(0, null, "some value");
+        RevTree tree = tree(5);
+        store.put(feature);
+        store.put(tree);
+        store.getCache().invalidateAll();
+        assertEquals(feature, store.get(feature.getId()));
+        assertEquals(tree, store.get(tree.getId()));
+
+        // writes are queued in order, once the tree is there the feature would be too
+        awaitDiskCache(store, tree.getId());
+        assertFalse(store.diskCache.contains(feature.getId()));
+    }
+
+    private RevTree tree(int size) {
+        HeapObjectStore heap = new HeapObjectStore();
+        heap.open();
+        try {
+            return RevObjectTestSupport.INSTANCE.createFeaturesTree(heap, "f", size);
+        } finally {
+            heap.close();
+        }
+    }
+
+    private void awaitDiskCache(PGObjectStore store, ObjectId id) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5_000;
+        while (!store.diskCache.contains(id) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(store.diskCache.contains(id));
+    }
+}
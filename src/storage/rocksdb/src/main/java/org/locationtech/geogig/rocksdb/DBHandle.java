@@ -17,6 +17,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
@@ -43,6 +44,11 @@ class DBHandle {
 
     private Map<String, ColumnFamilyHandle> extraColumns;
 
+    /**
+     * Coalesces the concurrent writes to the database, see {@link #write(WriteBatch, boolean)}
+     */
+    private final GroupCommitWriter writer = new GroupCommitWriter();
+
     /**
      * A reference to the RocksDB instance. This needs to be closed after it's used to free up the
      * reference.
@@ -64,6 +70,16 @@ class DBHandle {
             return db;
         }
 
+        /**
+         * Writes the batch through the handle's {@link GroupCommitWriter}, so that concurrent
+         * synced writes share a single WAL sync
+         * 
+         * @param sync whether the batch must be synced to disk when this method returns
+         */
+        public void write(WriteBatch batch, boolean sync) throws RocksDBException {
+            writer.write(db, batch, sync);
+        }
+
     }
 
     public DBHandle(final DBConfig config, final org.rocksdb.DBOptions options, final RocksDB db,
@@ -90,6 +106,7 @@ class DBHandle {
         close(metadata);
         extraColumns.values().forEach((c) -> close(c));
         close(options);
+        close(writer);
         close(db);
     }
 
@@ -0,0 +1,172 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.rocksdb;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+
+import lombok.NonNull;
+
+/**
+ * Writes {@link WriteBatch}es to a {@link RocksDB} database coalescing the synced ones issued
+ * concurrently by several threads in groups that pay for a single WAL sync.
+ * <p>
+ * Synced calls queue up in arrival order; the call at the head of the queue becomes the group
+ * leader, takes up to {@link #MAX_GROUP_SIZE} of the queued calls, writes their batches in order
+ * and syncs the WAL once with the last write of the group, which also makes the previous ones
+ * durable. The other calls of the group wait for the leader, and every call returns (or fails)
+ * only once its batch has been written and synced, so the durability guarantees of a call are the
+ * same as writing its batch on its own.
+ * <p>
+ * Calls that don't ask for a synced write have nothing to share, so they're written right away
+ * instead of waiting for the queued ones.
+ * <p>
+ * Each batch is written atomically as usual, a group is not: if a write fails, with an exception
+ * or an error, all the calls of the group fail.
+ */
+class GroupCommitWriter implements AutoCloseable {
+
+    @VisibleForTesting
+    static final int MAX_GROUP_SIZE = 32;
+
+    private static final class Writer {
+
+        final WriteBatch batch;
+
+        boolean done;
+
+        Throwable error;
+
+        Writer(WriteBatch batch) {
+            this.batch = batch;
+        }
+    }
+
+    /**
+     * Pending calls, the head is the current leader. Guarded by {@code this}
+     */
+    private final ArrayDeque<Writer> writers = new ArrayDeque<>();
+
+    private final WriteOptions syncOptions = new WriteOptions().setSync(true);
+
+    private final WriteOptions noSyncOptions = new WriteOptions().setSync(false);
+
+    /**
+     * Number of groups written, for testing purposes
+     */
+    private long groupCount;
+
+    /**
+     * Writes {@code batch} to {@code db}, returning once it's been written and, if {@code sync ==
+     * true}, synced to disk.
+     */
+    public void write(@NonNull RocksDB db, @NonNull WriteBatch batch, boolean sync)
+            throws RocksDBException {
+        if (!sync) {
+            write(db, noSyncOptions, batch);
+            return;
+        }
+        final Writer w = new Writer(batch);
+        final List<Writer> group;
+        synchronized (this) {
+            writers.addLast(w);
+            boolean interrupted = false;
+            while (!w.done && writers.peekFirst() != w) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // can't leave without knowing the fate of the batch
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (w.done) {
+                rethrow(w.error);
+                return;
+            }
+            group = new ArrayList<>(Math.min(writers.size(), MAX_GROUP_SIZE));
+            Iterator<Writer> it = writers.iterator();
+            while (it.hasNext() && group.size() < MAX_GROUP_SIZE) {
+                group.add(it.next());
+            }
+            groupCount++;
+        }
+
+        Throwable error = null;
+        try {
+            final int last = group.size() - 1;
+            for (int i = 0; i <= last; i++) {
+                // syncing the WAL on the last write makes the previous ones durable
+                WriteOptions options = i == last ? syncOptions : noSyncOptions;
+                write(db, options, group.get(i).batch);
+            }
+        } catch (Throwable e) {
+            // including Errors, no member of the group can report success
+            error = e;
+        } finally {
+            synchronized (this) {
+                for (Writer member : group) {
+                    writers.removeFirst();
+                    member.error = error;
+                    member.done = true;
+                }
+                notifyAll();
+            }
+        }
+        rethrow(error);
+    }
+
+    @VisibleForTesting
+    void write(RocksDB db, WriteOptions options, WriteBatch batch) throws RocksDBException {
+        db.write(options, batch);
+    }
+
+    private static void rethrow(@Nullable Throwable error) throws RocksDBException {
+        if (error instanceof RocksDBException) {
+            throw (RocksDBException) error;
+        }
+        if (error != null) {
+            Throwables.throwIfUnchecked(error);
+            throw new RuntimeException(error);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized long groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return the number of synced calls waiting for their group to be written, including the
+     *         ones of the group being written
+     */
+    @VisibleForTesting
+    synchronized int pendingCount() {
+        return writers.size();
+    }
+
+    public @Override void close() {
+        syncOptions.close();
+        noSyncOptions.close();
+    }
+}
@@ -26,9 +26,10 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -46,12 +47,15 @@ import org.locationtech.geogig.storage.RevObjectSerializer;
 import org.locationtech.geogig.storage.datastream.DataStreamRevObjectSerializerV2;
 import org.locationtech.geogig.storage.format.lzf.RevObjectSerializerLZF;
 import org.locationtech.geogig.storage.impl.AbstractObjectStore;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Decoded;
+import org.locationtech.geogig.storage.impl.BulkObjectDecoder.Encoded;
+import org.locationtech.geogig.storage.impl.ObjectStoreMetrics;
 import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
 import org.rocksdb.WriteBatch;
-import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +64,7 @@ import com.google.common.base.Stopwatch;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import com.google.common.primitives.UnsignedBytes;
 
 import lombok.NonNull;
 
@@ -67,12 +72,22 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
 
     private static final Logger LOG = LoggerFactory.getLogger(RocksdbObjectStore.class);
 
+    private static final ObjectStoreMetrics METRICS = ObjectStoreMetrics.forBackend("rocksdb");
+
     protected final @NonNull File dbDirectory;
 
     protected DBHandle dbhandle;
 
     private ReadOptions bulkReadOptions;
 
+    private static final int DEFAULT_GET_ALL_BATCH_SIZE = 1_000;
+
+    private int getAllBatchSize = Integer.getInteger("geogig.rocksdb.getAllBatchSize",
+            DEFAULT_GET_ALL_BATCH_SIZE);
+
+    private boolean parallelDecode = Boolean
+            .parseBoolean(System.getProperty("geogig.rocksdb.parallelDecode", "true"));
+
     public RocksdbObjectStore(@NonNull File dbdir, boolean readOnly) {
         super(RocksdbSerializationProxy.INSTANCE, readOnly);
         this.dbDirectory = dbdir;
@@ -129,7 +144,10 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
             byte[] key = id.getRawValue();
             exists = exists(dbRef, bulkReadOptions, key);
             if (!exists) {
+                final long start = METRICS.start();
+                // unsynced, nothing to share with a group commit
                 dbRef.db().put(key, rawData);
+                METRICS.put(start, 1, rawData.length);
             }
         } catch (RocksDBException e) {
             throw new RuntimeException(e);
@@ -155,7 +173,10 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
     private byte[] getRawInternal(byte[] key) throws IllegalArgumentException {
         checkOpen();
         try (RocksDBReference dbRef = dbhandle.getReference()) {
-            return dbRef.db().get(key);
+            final long start = METRICS.start();
+            byte[] raw = dbRef.db().get(key);
+            METRICS.get(start, raw == null ? 0 : raw.length);
+            return raw;
         } catch (RocksDBException e) {
             throw new RuntimeException(e);
         }
@@ -207,45 +228,132 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         checkNotNull(type, "type is null");
         checkOpen();
 
-        return new AbstractIterator<T>() {
+        Iterator<List<ObjectId>> batches = Iterators.partition(ids.iterator(), getAllBatchSize);
+        return new MultiGetIterator<ObjectId, T, T>(batches, listener, type, Function.identity(),
+                (id, object) -> object);
+    }
 
-            private Iterator<ObjectId> oids = ids.iterator();
+    /**
+     * Sets the number of objects {@link #getAll} and {@link #getObjects} fetch from the database
+     * on each round trip, defaults to the value of the {@code geogig.rocksdb.getAllBatchSize}
+     * System property, or {@code 1000} if not set.
+     */
+    public void setGetAllBatchSize(int batchSize) {
+        Preconditions.checkArgument(batchSize > 0, "batch size must be > 0: %s", batchSize);
+        this.getAllBatchSize = batchSize;
+    }
 
-            private byte[] keybuff = new byte[ObjectId.NUM_BYTES];
+    public int getGetAllBatchSize() {
+        return getAllBatchSize;
+    }
 
-            private byte[] valueBuff = new byte[64 * 1024];
+    /**
+     * Whether {@link #getAll} and {@link #getObjects} decode the fetched objects on the
+     * {@link BulkObjectDecoder#shared() shared decoder} thread pool, defaults to the value of the
+     * {@code geogig.rocksdb.parallelDecode} System property, or {@code true} if not set.
+     */
+    public void setParallelDecode(boolean parallelDecode) {
+        this.parallelDecode = parallelDecode;
+    }
 
-            private ReadOptions readOps = bulkReadOptions;
+    public boolean isParallelDecode() {
+        return parallelDecode;
+    }
 
-            protected @Override T computeNext() {
-                checkOpen();
-                try (RocksDBReference dbRef = dbhandle.getReference()) {
-                    while (oids.hasNext()) {
-                        ObjectId id = oids.next();
-                        id.getRawValue(keybuff);
-                        final int size = dbRef.db().get(readOps, keybuff, valueBuff);
-                        if (RocksDB.NOT_FOUND == size) {
-                            listener.notFound(id);
-                            continue;
-                        }
-                        if (size > valueBuff.length) {
-                            valueBuff = dbRef.db().get(readOps, keybuff);
-                        }
-                        RevObject object;
-                        object = serializer().read(id, valueBuff, 0, size);
-                        if (type.isInstance(object)) {
-                            listener.found(id, Integer.valueOf(size));
-                            return type.cast(object);
-                        } else {
-                            listener.notFound(id);
-                        }
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+    /**
+     * Fetches the serialized form of all the objects in {@code batch} with a single
+     * {@link RocksDB#multiGet(ReadOptions, List) multiGet} call, issuing the keys sorted in
+     * storage order so that RocksDB reads contiguous blocks.
+     * 
+     * @return the raw objects in the same order as {@code batch}, with {@code null} bytes for the
+     *         objects not found
+     */
+    private <I> List<Encoded<I>> multiGet(final List<I> batch,
+            final Function<I, ObjectId> idFunction) {
+        checkOpen();
+        final int size = batch.size();
+        final List<byte[]> keys = new ArrayList<>(size);
+        for (I item : batch) {
+            keys.add(idFunction.apply(item).getRawValue());
+        }
+        final List<byte[]> sortedKeys = new ArrayList<>(keys);
+        sortedKeys.sort(UnsignedBytes.lexicographicalComparator());
+
+        final Map<byte[], byte[]> found;
+        try (RocksDBReference dbRef = dbhandle.getReference()) {
+            final long start = METRICS.start();
+            found = dbRef.db().multiGet(bulkReadOptions, sortedKeys);
+            long bytes = 0;
+            for (byte[] raw : found.values()) {
+                bytes += raw == null ? 0 : raw.length;
+            }
+            METRICS.getAll(start, found.size(), bytes);
+        } catch (RocksDBException e) {
+            throw new RuntimeException(e);
+        }
+        // the returned map is keyed by the same key instances given to multiGet
+        List<Encoded<I>> encoded = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            I item = batch.get(i);
+            encoded.add(Encoded.of(idFunction.apply(item), item, found.get(keys.get(i))));
+        }
+        return encoded;
+    }
+
+    /**
+     * Iterator for bulk queries that fetches batches of objects through
+     * {@link #multiGet(List, Function)}, decodes them through the {@link BulkObjectDecoder}
+     * pipeline, and notifies the {@link BulkOpListener} as the results are consumed.
+     *
+     * @param <I> the query element type (e.g. {@link ObjectId} or {@link NodeRef})
+     * @param <T> the requested object type
+     * @param <O> the result type
+     */
+    private class MultiGetIterator<I, T extends RevObject, O> extends AbstractIterator<O> {
+
+        private final AutoCloseableIterator<Decoded<I>> decoded;
+
+        private final BulkOpListener listener;
+
+        private final Class<T> type;
+
+        private final BiFunction<I, T, O> resultFunction;
+
+        MultiGetIterator(Iterator<List<I>> batches, BulkOpListener listener, Class<T> type,
+                Function<I, ObjectId> idFunction, BiFunction<I, T, O> resultFunction) {
+            this.listener = listener;
+            this.type = type;
+            this.resultFunction = resultFunction;
+
+            final RevObjectSerializer serializer = serializer();
+            Iterator<List<Encoded<I>>> encoded = Iterators.transform(batches,
+                    batch -> multiGet(batch, idFunction));
+            if (parallelDecode) {
+                this.decoded = BulkObjectDecoder.shared().decode(encoded, serializer, true);
+            } else {
+                this.decoded = AutoCloseableIterator.fromIterator(
+                        Iterators.transform(Iterators.concat(Iterators.transform(encoded,
+                                List::iterator)), e -> BulkObjectDecoder.decode(e, serializer)));
+            }
+        }
+
+        public void close() {
+            decoded.close();
+        }
+
+        protected @Override O computeNext() {
+            while (decoded.hasNext()) {
+                Decoded<I> next = decoded.next();
+                final ObjectId id = next.id();
+                final RevObject object = next.object();
+                if (type.isInstance(object)) {
+                    listener.found(id, Integer.valueOf(next.size()));
+                    return resultFunction.apply(next.attachment(), type.cast(object));
                 }
-                return endOfData();
+                listener.notFound(id);
             }
-        };
+            return endOfData();
+        }
     }
 
     public @Override void deleteAll(Iterator<ObjectId> ids, BulkOpListener listener) {
@@ -260,9 +368,7 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         try (RocksDBReference dbRef = dbhandle.getReference(); ReadOptions ro = new ReadOptions()) {
             ro.setFillCache(false);
             ro.setVerifyChecksums(false);
-            try (WriteOptions writeOps = new WriteOptions(); //
-                    WriteBatch batch = new WriteBatch()) {
-                writeOps.setSync(true);
+            try (WriteBatch batch = new WriteBatch()) {
                 while (ids.hasNext()) {
                     ObjectId id = ids.next();
                     id.getRawValue(keybuff);
@@ -273,7 +379,7 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
                         listener.notFound(id);
                     }
                 }
-                dbRef.db().write(writeOps, batch);
+                dbRef.write(batch, true);
             } catch (RocksDBException e) {
                 throw new RuntimeException(e);
             }
@@ -384,11 +490,10 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         final byte[] keybuff = new byte[ObjectId.NUM_BYTES];
 
         Set<ObjectId> insertedIds = new HashSet<>();
+        long bytes = 0;
 
-        try (RocksDBReference dbRef = dbhandle.getReference();
-                WriteOptions wo = new WriteOptions(); //
+        try (RocksDBReference dbRef = dbhandle.getReference(); //
                 WriteBatch batch = new WriteBatch()) {
-            wo.setSync(true);
             while (objects.hasNext()) {
                 EncodedObject object = objects.next();
                 final ObjectId id = object.id;
@@ -396,9 +501,12 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
                 final byte[] value = object.serialform;
                 batch.put(keybuff, value);
                 insertedIds.add(id);
+                bytes += value.length;
             }
 
-            dbRef.db().write(wo, batch);
+            final long start = METRICS.start();
+            dbRef.write(batch, true);
+            METRICS.put(start, insertedIds.size(), bytes);
             // need to notify listener once the objects are actually on the db
             insertedIds.forEach((id) -> listener.inserted(id, null));
         } catch (RocksDBException e) {
@@ -415,82 +523,9 @@ public class RocksdbObjectStore extends AbstractObjectStore implements ObjectSto
         checkNotNull(type, "type is null");
         checkOpen();
 
-        return new AutoCloseableIterator<ObjectInfo<T>>() {
-
-            private Iterator<NodeRef> noderefs = refs;
-
-            private byte[] keybuff = new byte[ObjectId.NUM_BYTES];
-
-            private byte[] valueBuff = new byte[64 * 1024];
-
-            private ReadOptions readOps = bulkReadOptions;
-
-            private boolean closed;
-
-            private ObjectInfo<T> next;
-
-            public @Override void close() {
-                closed = true;
-                noderefs = null;
-                valueBuff = null;
-            }
-
-            public @Override boolean hasNext() {
-                if (closed) {
-                    return false;
-                }
-                if (next == null) {
-                    next = computeNext();
-                }
-                return next != null;
-            }
-
-            public @Override ObjectInfo<T> next() {
-                if (closed) {
-                    throw new NoSuchElementException("Iterator is closed");
-                }
-                final ObjectInfo<T> curr;
-                if (next == null) {
-                    curr = computeNext();
-                } else {
-                    curr = next;
-                    next = null;
-                }
-                if (curr == null) {
-                    throw new NoSuchElementException();
-                }
-                return curr;
-            }
-
-            private @Nullable ObjectInfo<T> computeNext() {
-                checkOpen();
-                try (RocksDBReference dbRef = dbhandle.getReference()) {
-                    while (noderefs.hasNext()) {
-                        final NodeRef ref = noderefs.next();
-                        final ObjectId id = ref.getObjectId();
-                        id.getRawValue(keybuff);
-                        final int size = dbRef.db().get(readOps, keybuff, valueBuff);
-                        if (RocksDB.NOT_FOUND == size) {
-                            listener.notFound(id);
-                            continue;
-                        }
-                        if (size > valueBuff.length) {
-                            valueBuff = dbRef.db().get(readOps, keybuff);
-                        }
-                        RevObject object = serializer().read(id,
-                                new ByteArrayInputStream(valueBuff));
-                        if (type.isInstance(object)) {
-                            listener.found(id, Integer.valueOf(size));
-                            return ObjectInfo.of(ref, type.cast(object));
-                        } else {
-                            listener.notFound(id);
-                        }
-                    }
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-                return null;
-            }
-        };
+        Iterator<List<NodeRef>> batches = Iterators.partition(refs, getAllBatchSize);
+        MultiGetIterator<NodeRef, T, ObjectInfo<T>> iterator = new MultiGetIterator<>(batches,
+                listener, type, NodeRef::getObjectId, ObjectInfo::of);
+        return AutoCloseableIterator.fromIterator(iterator, MultiGetIterator::close);
     }
 }
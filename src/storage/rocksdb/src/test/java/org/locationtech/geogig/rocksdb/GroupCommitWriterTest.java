@@ -0,0 +1,344 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.rocksdb;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import com.google.common.primitives.Ints;
+
+public class GroupCommitWriterTest {
+
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
+    private Options options;
+
+    private RocksDB db;
+
+    private GroupCommitWriter writer;
+
+    /**
+     * Whether each write of {@link #writer}, in order, synced the WAL
+     */
+    private final List<Boolean> synced = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Counted down when the first batch is about to be written
+     */
+    private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+
+    /**
+     * Holds the first write until counted down
+     */
+    private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+
+    /**
+     * Write number (zero based) to fail, if any
+     */
+    private volatile int failingWrite = -1;
+
+    /**
+     * Whether {@link #failingWrite} fails with an {@link Error} instead of an exception
+     */
+    private volatile boolean failWithError;
+
+    @Before
+    public void before() throws Exception {
+        RocksDB.loadLibrary();
+        options = new Options().setCreateIfMissing(true);
+        db = RocksDB.open(options, tmp.getRoot().getAbsolutePath());
+        writer = new GroupCommitWriter() {
+            @Override
+            void write(RocksDB db, WriteOptions options, WriteBatch batch)
+                    throws RocksDBException {
+                final int writeNumber;
+                synchronized (synced) {
+                    writeNumber = synced.size();
+                    synced.add(options.sync());
+                }
+                if (writeNumber == 0) {
+                    firstWriteStarted.countDown();
+                    await(releaseFirstWrite);
+                }
+                if (writeNumber == failingWrite) {
+                    if (failWithError) {
+                        throw new AssertionError("failing write " + writeNumber);
+                    }
+                    throw new RocksDBException("failing write " + writeNumber);
+                }
+                super.write(db, options, batch);
+            }
+        };
+    }
+
+    @After
+    public void after() {
+        writer.close();
+        db.close();
+        options.close();
+    }
+
+    private void write(int key, boolean sync) throws Exception {
+        try (WriteBatch batch = new WriteBatch()) {
+            batch.put(Ints.toByteArray(key), Ints.toByteArray(-key));
+            writer.write(db, batch, sync);
+        }
+    }
+
+    @Test
+    public void testSingleThread() throws Exception {
+        releaseFirstWrite.countDown();
+        write(1, true);
+        write(2, false);
+        assertArrayEquals(Ints.toByteArray(-1), db.get(Ints.toByteArray(1)));
+        assertArrayEquals(Ints.toByteArray(-2), db.get(Ints.toByteArray(2)));
+        // the non synced write doesn't go through a group
+        assertEquals(1, writer.groupCount());
+        assertEquals(Arrays.asList(true, false), synced);
+    }
+
+    @Test
+    public void testConcurrentSyncedWritesShareGroups() throws Exception {
+        final int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers + 1);
+        try {
+            // the first call leads a group of its own, and holds the queue while writing
+            Future<?> leader = executor.submit(() -> {
+                write(-1, true);
+                return null;
+            });
+            await(firstWriteStarted);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                final int key = i;
+                futures.add(executor.submit(() -> {
+                    write(key, true);
+                    return null;
+                }));
+            }
+            awaitPending(callers + 1);
+            releaseFirstWrite.countDown();
+
+            leader.get(10, TimeUnit.SECONDS);
+            for (Future<?> f : futures) {
+                f.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // the calls queued meanwhile are written as a single group, with a single WAL sync
+        assertEquals(2, writer.groupCount());
+        assertEquals(callers + 1, synced.size());
+        List<Boolean> expected = new ArrayList<>(Collections.nCopies(callers + 1, false));
+        expected.set(0, true);
+        expected.set(callers, true);
+        assertEquals(expected, synced);
+        for (int key = -1; key < callers; key++) {
+            assertArrayEquals(Ints.toByteArray(-key), db.get(Ints.toByteArray(key)));
+        }
+    }
+
+    @Test
+    public void testFailedWriteFailsTheWholeGroup() throws Exception {
+        final int callers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(callers + 1);
+        try {
+            Future<?> leader = executor.submit(() -> {
+                write(-1, true);
+                return null;
+            });
+            await(firstWriteStarted);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                final int key = i;
+                futures.add(executor.submit(() -> {
+                    write(key, true);
+                    return null;
+                }));
+            }
+            awaitPending(callers + 1);
+            // fail the second write of the second group
+            failingWrite = 2;
+            releaseFirstWrite.countDown();
+
+            leader.get(10, TimeUnit.SECONDS);
+            for (Future<?> f : futures) {
+                try {
+                    f.get(10, TimeUnit.SECONDS);
+                    fail("Expected ExecutionException");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof RocksDBException);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, writer.groupCount());
+        // the rest of the group is not written after the failure
+        assertEquals(3, synced.size());
+        assertArrayEquals(Ints.toByteArray(1), db.get(Ints.toByteArray(-1)));
+        int writtenKeys = 0;
+        for (int key = 0; key < callers; key++) {
+            writtenKeys += db.get(Ints.toByteArray(key)) == null ? 0 : 1;
+        }
+        assertEquals(1, writtenKeys);
+    }
+
+    @Test
+    public void testErrorFailsTheWholeGroup() throws Exception {
+        final int callers = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(callers + 1);
+        try {
+            Future<?> leader = executor.submit(() -> {
+                write(-1, true);
+                return null;
+            });
+            await(firstWriteStarted);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                final int key = i;
+                futures.add(executor.submit(() -> {
+                    write(key, true);
+                    return null;
+                }));
+            }
+            awaitPending(callers + 1);
+            // fail the first write of the second group with an Error
+            failWithError = true;
+            failingWrite = 1;
+            releaseFirstWrite.countDown();
+
+            leader.get(10, TimeUnit.SECONDS);
+            for (Future<?> f : futures) {
+                try {
+                    f.get(10, TimeUnit.SECONDS);
+                    fail("Expected ExecutionException");
+                } catch (ExecutionException e) {
+                    // no member of the group reports success
+                    assertTrue(e.getCause() instanceof AssertionError);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, writer.groupCount());
+        for (int key = 0; key < callers; key++) {
+            assertNull(db.get(Ints.toByteArray(key)));
+        }
+    }
+
+    @Test
+    public void testNonSyncedWritesDoNotWait() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> leader = executor.submit(() -> {
+                write(1, true);
+                return null;
+            });
+            await(firstWriteStarted);
+            Future<?> queued = executor.submit(() -> {
+                write(2, true);
+                return null;
+            });
+            awaitPending(2);
+
+            // written while the synced calls are still waiting
+            executor.submit(() -> {
+                write(3, false);
+                return null;
+            }).get(10, TimeUnit.SECONDS);
+            assertArrayEquals(Ints.toByteArray(-3), db.get(Ints.toByteArray(3)));
+            assertFalse(queued.isDone());
+
+            releaseFirstWrite.countDown();
+            leader.get(10, TimeUnit.SECONDS);
+            queued.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, writer.groupCount());
+    }
+
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        releaseFirstWrite.countDown();
+        final int threads = 16;
+        final int writesPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < writesPerThread; i++) {
+                        int key = thread * writesPerThread + i;
+                        write(key, i % 2 == 0);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        final int total = threads * writesPerThread;
+        for (int key = 0; key < total; key++) {
+            assertArrayEquals(Ints.toByteArray(-key), db.get(Ints.toByteArray(key)));
+        }
+    }
+
+    private void awaitPending(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while (writer.pendingCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, writer.pendingCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
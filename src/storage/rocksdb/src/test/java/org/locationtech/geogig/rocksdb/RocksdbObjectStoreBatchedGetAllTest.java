@@ -0,0 +1,75 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.rocksdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.locationtech.geogig.model.impl.RevObjectTestSupport.feature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.BulkOpListener.CountingListener;
+import org.locationtech.geogig.storage.impl.ObjectStoreConformanceTest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Runs the {@link ObjectStoreConformanceTest} with a small {@code getAll} batch size so that
+ * bulk queries span several {@code multiGet} calls
+ */
+public class RocksdbObjectStoreBatchedGetAllTest extends ObjectStoreConformanceTest {
+
+    public @Rule TemporaryFolder folder = new TemporaryFolder();
+
+    protected @Override RocksdbObjectStore createOpen() throws IOException {
+        File dbdir = folder.newFolder(".geogig");
+        RocksdbObjectStore store = new RocksdbObjectStore(dbdir, false);
+        store.setGetAllBatchSize(3);
+        store.open();
+        return store;
+    }
+
+    @Test
+    public void testGetAllPreservesQueryOrder() {
+        testGetAllPreservesQueryOrder(true);
+        testGetAllPreservesQueryOrder(false);
+    }
+
+    private void testGetAllPreservesQueryOrder(boolean parallelDecode) {
+        RocksdbObjectStore store = (RocksdbObjectStore) db;
+        store.setParallelDecode(parallelDecode);
+
+        List<RevFeature> features = IntStream.range(0, 100)
+                .mapToObj(i -> feature(i, "value " + i)).collect(Collectors.toList());
+        store.putAll(features.iterator());
+
+        List<ObjectId> query = Lists.newArrayList(Lists.transform(features, RevObject::getId));
+        query.add(50, RevObjectTestSupport.hashString("notfound"));
+        CountingListener listener = BulkOpListener.newCountingListener();
+
+        List<RevFeature> result = ImmutableList
+                .copyOf(store.getAll(query, listener, RevFeature.class));
+        assertEquals(features, result);
+        assertEquals(100, listener.found());
+        assertEquals(1, listener.notFound());
+    }
+}
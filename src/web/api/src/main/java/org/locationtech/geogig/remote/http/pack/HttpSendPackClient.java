@@ -1,6 +1,7 @@
 package org.locationtech.geogig.remote.http.pack;
 
 import java.io.DataInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
@@ -32,6 +33,23 @@ public class HttpSendPackClient extends SendPackOp {
     }
 
     protected @Override Pack preparePack(PackRequest request) {
+        ProgressListener progress = getProgressListener();
+        try {
+            DataInputStream dataInput = connect(request);
+            return new StreamingPackBuilder(dataInput, progress)//
+                    .setResume(request, this::connect)//
+                    .build();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Sends the request to the {@code sendpack} endpoint
+     *
+     * @return the response stream
+     */
+    private DataInputStream connect(PackRequest request) throws IOException {
         HttpURLConnection connection = null;
         ProgressListener progress = getProgressListener();
         try {
@@ -49,13 +67,12 @@ public class HttpSendPackClient extends SendPackOp {
                 progress.setDescription("200 OK");
                 InputStream input = connection.getInputStream();
                 progress.setDescription("processing response...");
-                DataInputStream dataInput = new DataInputStream(input);
-                return new StreamingPackBuilder(dataInput, progress).build();
+                return new DataInputStream(input);
             }
-            throw new IllegalStateException("Server returned " + respCode);
-        } catch (Exception e) {
+            throw new IOException("Server returned " + respCode);
+        } catch (IOException | RuntimeException e) {
             remote.closeSafely(connection);
-            throw new RuntimeException(e);
+            throw e;
         }
     }
 }
@@ -4,7 +4,9 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 
+import org.locationtech.geogig.remotes.RefDiff;
 import org.locationtech.geogig.remotes.pack.PackBuilder;
 import org.locationtech.geogig.remotes.pack.PackRequest;
 import org.locationtech.geogig.remotes.pack.ReceivePackOp;
@@ -21,6 +23,26 @@ public class HttpSendPackServer extends SendPackOp implements CommandFactory {
 
     private StreamingPackWriter target;
 
+    private int formatVersion = StreamingPackIO.FORMAT_V1;
+
+    /**
+     * Ends the pack once written, or releases the writer without ending it if it failed, so the
+     * client can tell it apart from a complete one
+     */
+    protected @Override List<RefDiff> _call() {
+        final List<RefDiff> result;
+        try {
+            result = super._call();
+        } catch (RuntimeException e) {
+            if (target != null) {
+                target.abort();
+            }
+            throw e;
+        }
+        target.finish();
+        return result;
+    }
+
     protected @Override PackBuilder getPackBuilder() {
         return target;
     }
@@ -28,7 +50,12 @@ public class HttpSendPackServer extends SendPackOp implements CommandFactory {
     public HttpSendPackServer setInput(InputStream reqStream) {
         PackRequest packRequest;
         try {
-            packRequest = new PackRequestIO().read(reqStream);
+            PackRequestIO requestIO = new PackRequestIO();
+            packRequest = requestIO.read(reqStream);
+            // answer with the highest format both ends understand
+            int clientVersion = requestIO.readFormatVersion(reqStream);
+            formatVersion = Math.max(StreamingPackIO.FORMAT_V1,
+                    Math.min(StreamingPackIO.CURRENT_FORMAT, clientVersion));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -39,7 +66,7 @@ public class HttpSendPackServer extends SendPackOp implements CommandFactory {
     public HttpSendPackServer setOutput(OutputStream target) {
         Repository localRepo = repository();
         DataOutputStream out = new DataOutputStream(target);
-        this.target = new StreamingPackWriter(localRepo, out);
+        this.target = new StreamingPackWriter(localRepo, out, formatVersion);
         super.setTarget(this);
         return this;
     }
@@ -2,6 +2,7 @@ package org.locationtech.geogig.remote.http.pack;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -19,6 +20,18 @@ public class PackRequestIO {
     private RefRequestIO refIO = new RefRequestIO();
 
     public void write(PackRequest request, OutputStream out) throws IOException {
+        write(request, out, StreamingPackIO.CURRENT_FORMAT);
+    }
+
+    /**
+     * Writes the request followed by the highest {@link StreamingPackIO} format version the
+     * client can read. Servers that don't know about format versions ignore it and send a
+     * {@link StreamingPackIO#FORMAT_V1 format 1} pack.
+     *
+     * @since 2.0
+     */
+    public void write(PackRequest request, OutputStream out, int formatVersion)
+            throws IOException {
         DataOutputStream dout = new DataOutputStream(out);
         dout.write(delimiter);
         dout.writeInt(request.getMaxDepth().orElse(0));
@@ -27,6 +40,7 @@ public class PackRequestIO {
         // final int maxDepth = request.getMaxDepth().or(0);
         // final RepositoryFilter sparseFilter = request.getSparseFilter().orElse(null);
         dout.write(delimiter);
+        dout.writeInt(formatVersion);
         dout.flush();
     }
 
@@ -44,6 +58,22 @@ public class PackRequestIO {
         return req;
     }
 
+    /**
+     * Reads the pack format version following a request read by {@link #read(InputStream)}
+     *
+     * @return the highest {@link StreamingPackIO} format version the client can read,
+     *         {@link StreamingPackIO#FORMAT_V1} if the client didn't send it
+     * @since 2.0
+     */
+    public int readFormatVersion(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        try {
+            return din.readInt();
+        } catch (EOFException e) {
+            return StreamingPackIO.FORMAT_V1;
+        }
+    }
+
     private void require(DataInputStream in, byte[] bytes) throws IOException {
         byte[] buff = new byte[bytes.length];
         in.readFully(buff);
@@ -0,0 +1,317 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.remote.http.pack;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.locationtech.geogig.model.Bucket;
+import org.locationtech.geogig.model.CanonicalNodeOrder;
+import org.locationtech.geogig.model.HashObjectFunnels;
+import org.locationtech.geogig.model.Node;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevObjectFactory;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event;
+import org.locationtech.geogig.storage.RevObjectSerializer;
+
+/**
+ * Encodes {@link RevTree}s and {@link RevFeature}s as differences against a base version of them.
+ * <p>
+ * A leaf tree delta holds the names of the nodes removed from the base tree, and the nodes added or
+ * changed, in a partial tree. A bucket tree delta holds the indexes of the buckets removed from the
+ * base tree and the added or changed buckets. Since nodes are sent whole and rebuilt in
+ * {@link CanonicalNodeOrder canonical order}, only trees whose nodes are in canonical order are
+ * delta encoded. A feature delta holds the number of attributes and the indexes and values of the
+ * ones that differ from the base feature.
+ * <p>
+ * Objects are only delta encoded if it saves sending some of their nodes, buckets, or values.
+ * Decoded objects are hashed and checked against their expected id.
+ *
+ * @since 2.0
+ */
+final class RevObjectDeltas {
+
+    private final RevObjectSerializer serializer;
+
+    RevObjectDeltas(RevObjectSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Writes {@code object} as a {@link Event#DELTA} event against {@code base}, only if both are
+     * trees or features and doing so saves sending some of its contents
+     *
+     * @return whether the delta was written, if not, nothing was written to {@code out}
+     */
+    public boolean write(RevObject object, RevObject base, DataOutputStream out)
+            throws IOException {
+        if (object instanceof RevTree && base instanceof RevTree) {
+            return writeTree((RevTree) object, (RevTree) base, out);
+        }
+        if (object instanceof RevFeature && base instanceof RevFeature) {
+            return writeFeature((RevFeature) object, (RevFeature) base, out);
+        }
+        return false;
+    }
+
+    /**
+     * Reads the contents of a delta against {@code base} written by
+     * {@link #write(RevObject, RevObject, DataOutputStream)}, following the event and object ids
+     *
+     * @throws IllegalStateException if the resulting object doesn't hash to {@code id}
+     */
+    public RevObject read(ObjectId id, RevObject base, DataInputStream in) throws IOException {
+        if (base instanceof RevTree) {
+            return readTree(id, (RevTree) base, in);
+        }
+        if (base instanceof RevFeature) {
+            return readFeature(id, (RevFeature) base, in);
+        }
+        throw new IllegalStateException("Unexpected delta base type: " + base.getType());
+    }
+
+    private boolean writeTree(RevTree tree, RevTree base, DataOutputStream out)
+            throws IOException {
+        final boolean leaf = tree.bucketsSize() == 0;
+        if (leaf != (base.bucketsSize() == 0) || base.isEmpty()) {
+            return false;
+        }
+        if (leaf) {
+            if (!CanonicalNodeOrder.INSTANCE.isStrictlyOrdered(tree.trees())
+                    || !CanonicalNodeOrder.INSTANCE.isStrictlyOrdered(tree.features())) {
+                return false;
+            }
+            List<Node> trees = changed(tree.trees(), base.trees());
+            List<Node> features = changed(tree.features(), base.features());
+            List<String> removedTrees = removed(tree.trees(), base.trees());
+            List<String> removedFeatures = removed(tree.features(), base.features());
+            int entries = trees.size() + features.size() + removedTrees.size()
+                    + removedFeatures.size();
+            if (entries >= tree.treesSize() + tree.featuresSize()) {
+                return false;
+            }
+            writeHeader(tree, base, out);
+            out.writeLong(tree.size());
+            out.writeInt(tree.numTrees());
+            writeNames(removedTrees, out);
+            writeNames(removedFeatures, out);
+            serializer.write(factory().createTree(ObjectId.NULL, 0L, trees, features), out);
+            return true;
+        }
+        SortedSet<Bucket> buckets = new TreeSet<>();
+        tree.forEachBucket(b -> {
+            Optional<Bucket> baseBucket = base.getBucket(b.getIndex());
+            if (!(baseBucket.isPresent() && sameBucket(b, baseBucket.get()))) {
+                buckets.add(b);
+            }
+        });
+        List<Integer> removed = new ArrayList<>();
+        base.forEachBucket(b -> {
+            if (!tree.getBucket(b.getIndex()).isPresent()) {
+                removed.add(b.getIndex());
+            }
+        });
+        if (buckets.size() + removed.size() >= tree.bucketsSize()) {
+            return false;
+        }
+        writeHeader(tree, base, out);
+        out.writeLong(tree.size());
+        out.writeInt(tree.numTrees());
+        out.writeInt(removed.size());
+        for (int index : removed) {
+            out.writeInt(index);
+        }
+        serializer.write(factory().createTree(ObjectId.NULL, 0L, 0, buckets), out);
+        return true;
+    }
+
+    private RevTree readTree(ObjectId id, RevTree base, DataInputStream in) throws IOException {
+        final long size = in.readLong();
+        final int numTrees = in.readInt();
+        final RevTree tree;
+        if (base.bucketsSize() == 0) {
+            List<String> removedTrees = readNames(in);
+            List<String> removedFeatures = readNames(in);
+            RevTree changes = (RevTree) serializer.read(ObjectId.NULL, in);
+            List<Node> trees = apply(base.trees(), removedTrees, changes.trees());
+            List<Node> features = apply(base.features(), removedFeatures, changes.features());
+            checkHash(id, HashObjectFunnels.hashTree(trees, features, null));
+            tree = factory().createTree(id, size, trees, features);
+        } else {
+            Map<Integer, Bucket> buckets = new TreeMap<>();
+            base.forEachBucket(b -> buckets.put(b.getIndex(), b));
+            final int removed = in.readInt();
+            for (int i = 0; i < removed; i++) {
+                buckets.remove(in.readInt());
+            }
+            RevTree changes = (RevTree) serializer.read(ObjectId.NULL, in);
+            changes.forEachBucket(b -> buckets.put(b.getIndex(), b));
+            SortedSet<Bucket> bucketSet = new TreeSet<>(buckets.values());
+            checkHash(id, HashObjectFunnels.hashTree(null, null, bucketSet));
+            tree = factory().createTree(id, size, numTrees, bucketSet);
+        }
+        return tree;
+    }
+
+    private boolean writeFeature(RevFeature feature, RevFeature base, DataOutputStream out)
+            throws IOException {
+        final int size = feature.size();
+        List<Integer> indexes = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Object value = feature.get(i).orElse(null);
+            if (i >= base.size() || !Objects.deepEquals(value, base.get(i).orElse(null))) {
+                indexes.add(i);
+                values.add(value);
+            }
+        }
+        if (indexes.size() >= size) {
+            return false;
+        }
+        writeHeader(feature, base, out);
+        out.writeInt(size);
+        out.writeInt(indexes.size());
+        for (int index : indexes) {
+            out.writeInt(index);
+        }
+        serializer.write(factory().createFeature(ObjectId.NULL, values), out);
+        return true;
+    }
+
+    private RevFeature readFeature(ObjectId id, RevFeature base, DataInputStream in)
+            throws IOException {
+        final int size = in.readInt();
+        final int changed = in.readInt();
+        final int[] indexes = new int[changed];
+        for (int i = 0; i < changed; i++) {
+            indexes[i] = in.readInt();
+        }
+        RevFeature changes = (RevFeature) serializer.read(ObjectId.NULL, in);
+
+        List<Object> values = new ArrayList<>(Collections.nCopies(size, null));
+        for (int i = 0; i < size && i < base.size(); i++) {
+            values.set(i, base.get(i).orElse(null));
+        }
+        for (int i = 0; i < changed; i++) {
+            values.set(indexes[i], changes.get(i).orElse(null));
+        }
+        checkHash(id, HashObjectFunnels.hashFeature(values));
+        return factory().createFeature(id, values);
+    }
+
+    /**
+     * @return the nodes in {@code nodes} that are not in {@code base}, or differ in any property
+     */
+    private static List<Node> changed(List<Node> nodes, List<Node> base) {
+        Map<String, Node> baseNodes = byName(base);
+        List<Node> changed = new ArrayList<>();
+        for (Node node : nodes) {
+            Node baseNode = baseNodes.get(node.getName());
+            if (baseNode == null || !sameNode(node, baseNode)) {
+                changed.add(node);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the names of the nodes in {@code base} that are not in {@code nodes}
+     */
+    private static List<String> removed(List<Node> nodes, List<Node> base) {
+        Map<String, Node> current = byName(nodes);
+        List<String> removed = new ArrayList<>();
+        for (Node node : base) {
+            if (!current.containsKey(node.getName())) {
+                removed.add(node.getName());
+            }
+        }
+        return removed;
+    }
+
+    private static List<Node> apply(List<Node> base, List<String> removed, List<Node> changed) {
+        Map<String, Node> nodes = byName(base);
+        removed.forEach(nodes::remove);
+        changed.forEach(n -> nodes.put(n.getName(), n));
+        List<Node> result = new ArrayList<>(nodes.values());
+        result.sort(CanonicalNodeOrder.INSTANCE);
+        return result;
+    }
+
+    private static Map<String, Node> byName(List<Node> nodes) {
+        Map<String, Node> map = new LinkedHashMap<>();
+        nodes.forEach(n -> map.put(n.getName(), n));
+        return map;
+    }
+
+    /**
+     * {@link Node#equals} only compares name, type, and object id
+     */
+    private static boolean sameNode(Node n1, Node n2) {
+        return n1.equals(n2) && n1.getMetadataId().equals(n2.getMetadataId())
+                && n1.bounds().equals(n2.bounds())
+                && Objects.equals(n1.getExtraData(), n2.getExtraData());
+    }
+
+    /**
+     * {@link Bucket#equals} only compares index and object id
+     */
+    private static boolean sameBucket(Bucket b1, Bucket b2) {
+        return b1.equals(b2) && b1.bounds().equals(b2.bounds());
+    }
+
+    private static void writeHeader(RevObject object, RevObject base, DataOutputStream out)
+            throws IOException {
+        out.writeByte(Event.DELTA.ordinal());
+        object.getId().writeTo(out);
+        base.getId().writeTo(out);
+    }
+
+    private static void writeNames(List<String> names, DataOutputStream out) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        final int size = in.readInt();
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    private static void checkHash(ObjectId expected, @Nullable ObjectId actual) {
+        checkState(expected.equals(actual), "Delta decoded object hashes to %s, expected %s",
+                actual, expected);
+    }
+
+    private static RevObjectFactory factory() {
+        return RevObjectFactory.defaultInstance();
+    }
+}
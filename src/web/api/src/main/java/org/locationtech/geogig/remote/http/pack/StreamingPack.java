@@ -1,41 +1,100 @@
 package org.locationtech.geogig.remote.http.pack;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.Ref;
+import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event;
 import org.locationtech.geogig.remotes.RefDiff;
 import org.locationtech.geogig.remotes.pack.ObjectReporter;
 import org.locationtech.geogig.remotes.pack.Pack;
 import org.locationtech.geogig.remotes.pack.PackProcessor;
+import org.locationtech.geogig.remotes.pack.PackRequest;
 import org.locationtech.geogig.remotes.pack.RefRequest;
 import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterators;
 
+import lombok.NonNull;
+
 public class StreamingPack implements Pack {
 
-    private LinkedHashMap<RefRequest, List<ObjectId>> missingCommits;
+    private static final Logger log = LoggerFactory.getLogger(StreamingPack.class);
 
-    private Iterator<RevObject> contents;
+    /**
+     * Number of consecutive times the transfer of a {@link StreamingPackIO#FORMAT_V3 format 3}
+     * pack is resumed without receiving a new segment before giving up
+     */
+    static final int MAX_RESUME_ATTEMPTS = 5;
+
+    /**
+     * Sends a pack request and returns the response stream
+     *
+     * @since 2.0
+     */
+    @FunctionalInterface
+    public static interface Connector {
+        DataInputStream connect(PackRequest request) throws IOException;
+    }
+
+    private LinkedHashMap<RefRequest, List<ObjectId>> missingCommits;
 
     private DataInputStream in;
 
+    private StreamingPackIO packIO;
+
+    private @Nullable PackRequest request;
+
+    private @Nullable Connector connector;
+
     public StreamingPack(LinkedHashMap<RefRequest, List<ObjectId>> missingCommits,
             DataInputStream in) {
+        this(missingCommits, in, new StreamingPackIO());
+    }
+
+    /**
+     * @param packIO the reader for the objects in {@code in}, which already read the pack header
+     * @since 2.0
+     */
+    public StreamingPack(LinkedHashMap<RefRequest, List<ObjectId>> missingCommits,
+            DataInputStream in, StreamingPackIO packIO) {
         this.missingCommits = missingCommits;
         this.in = in;
-        contents = new RevObjectInputStream(in);
+        this.packIO = packIO;
+    }
+
+    /**
+     * Enables resuming the transfer of a {@link StreamingPackIO#FORMAT_V3 format 3} pack if the
+     * connection breaks, by requesting the commits not yet received again
+     *
+     * @param request the request this pack is the response to
+     * @since 2.0
+     */
+    public void setResume(@NonNull PackRequest request, @NonNull Connector connector) {
+        this.request = request;
+        this.connector = connector;
     }
 
     @Override
@@ -43,10 +102,8 @@ public class StreamingPack implements Pack {
 
         final ObjectReporter report = new ObjectReporter(progress);
 
-        Iterator<? extends RevObject> allContents = Iterators.filter(contents, (o) -> {
-            report.add(o.getType());
-            return true;
-        });
+        // delta bases not sent in this pack are resolved against the objects target already has
+        final @Nullable ObjectStore bases = target.getTargetStore().orElse(null);
 
         progress.setDescription("Applying changes...");
 
@@ -58,7 +115,16 @@ public class StreamingPack implements Pack {
         try {
             progress.started();
             final Stopwatch sw = Stopwatch.createStarted();
-            target.putAll(allContents, report);
+            if (packIO.getFormatVersion() >= StreamingPackIO.FORMAT_V3) {
+                applySegments(target, report, bases, progress);
+            } else {
+                final Iterator<RevObject> contents = new RevObjectInputStream(in, packIO, bases);
+                Iterator<? extends RevObject> allContents = Iterators.filter(contents, (o) -> {
+                    report.add(o.getType());
+                    return true;
+                });
+                target.putAll(allContents, report);
+            }
             sw.stop();
             progress.complete();
             if (report.total.get() > 0) {
@@ -83,21 +149,134 @@ public class StreamingPack implements Pack {
         return refs;
     }
 
+    /**
+     * Stores the objects in each segment once it's been fully received and verified, until the
+     * end of the pack.
+     * <p>
+     * Since the server sends each commit after all of its contents, the commits stored so far are
+     * complete, and if the connection breaks or a segment is corrupt, the transfer is resumed with
+     * a request for the commits still missing, up to {@link #MAX_RESUME_ATTEMPTS} times in a row.
+     */
+    private void applySegments(PackProcessor target, ObjectReporter report,
+            @Nullable ObjectStore store, ProgressListener progress) {
+
+        final Function<ObjectId, RevObject> bases = store == null ? id -> null
+                : store::getIfPresent;
+        final Set<ObjectId> appliedCommits = new HashSet<>();
+        int sequence = 0;
+        int failures = 0;
+        while (true) {
+            try {
+                final Event event = packIO.readNextEvent(in);
+                switch (event) {
+                case OBJECT_STREAM_START:
+                case OBJECT_STREAM_END:
+                    break;
+                case SEGMENT:
+                    byte[] segment = packIO.readSegment(sequence, in);
+                    List<RevObject> objects = packIO.readObjects(segment, bases);
+                    sequence++;
+                    objects.forEach(o -> report.add(o.getType()));
+                    target.putAll(objects.iterator(), report);
+                    objects.stream().filter(o -> o instanceof RevCommit)
+                            .forEach(c -> appliedCommits.add(c.getId()));
+                    failures = 0;
+                    break;
+                case PACK_END:
+                    close();
+                    return;
+                default:
+                    throw new IllegalStateException("Unexpected pack event: " + event);
+                }
+            } catch (IOException e) {
+                close();
+                if (connector == null || ++failures > MAX_RESUME_ATTEMPTS) {
+                    throw new RuntimeException(e);
+                }
+                log.warn("Pack transfer interrupted after {} segments, resuming (attempt {}/{})",
+                        sequence, failures, MAX_RESUME_ATTEMPTS, e);
+                final PackRequest resume = resumeRequest(appliedCommits);
+                if (resume.getRefs().isEmpty()) {
+                    return;
+                }
+                try {
+                    progress.setDescription("Resuming transfer...");
+                    in = connector.connect(resume);
+                    StreamingPackBuilder builder = new StreamingPackBuilder(in, progress);
+                    builder.readHeaderAndRefs();
+                    packIO = builder.getPackIO();
+                    sequence = 0;
+                } catch (IOException retry) {
+                    // tried again on the next iteration, reading from a closed stream
+                    log.warn("Error resuming pack transfer", retry);
+                    in = new DataInputStream(new ByteArrayInputStream(new byte[0]));
+                    continue;
+                }
+                checkState(packIO.getFormatVersion() >= StreamingPackIO.FORMAT_V3,
+                        "Server answered a resume request with a format %s pack",
+                        packIO.getFormatVersion());
+            }
+        }
+    }
+
+    /**
+     * Creates a request for the commits of the original request not yet stored. Branches whose
+     * tip commit was stored are complete and left out, the rest ask for the commits after the
+     * newest one stored. Tags are always requested again, since tag objects are sent at the end of
+     * the pack.
+     */
+    private PackRequest resumeRequest(Set<ObjectId> appliedCommits) {
+        PackRequest resume = new PackRequest();
+        request.getMaxDepth().ifPresent(resume::maxDepth);
+        resume.syncIndexes(request.isSyncIndexes());
+        for (Map.Entry<RefRequest, List<ObjectId>> e : missingCommits.entrySet()) {
+            final RefRequest ref = e.getKey();
+            // newest first
+            final List<ObjectId> commits = e.getValue();
+            if (ref.name.startsWith(Ref.TAGS_PREFIX)) {
+                resume.addRef(ref);
+                continue;
+            }
+            if (commits.isEmpty() || appliedCommits.contains(commits.get(0))) {
+                continue;
+            }
+            Optional<ObjectId> newestApplied = commits.stream().filter(appliedCommits::contains)
+                    .findFirst();
+            ObjectId have = newestApplied.isPresent() ? newestApplied.get()
+                    : ref.have.orElse(null);
+            resume.addRef(RefRequest.create(ref.name, ref.want, have));
+        }
+        return resume;
+    }
+
+    private void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Error closing pack stream", e);
+        }
+    }
+
     private static class RevObjectInputStream extends AbstractIterator<RevObject> {
 
         private DataInputStream in;
 
-        private StreamingPackIO packedObjects = new StreamingPackIO();
+        private StreamingPackIO packedObjects;
+
+        private final Function<ObjectId, RevObject> bases;
 
-        public RevObjectInputStream(DataInputStream in) {
+        public RevObjectInputStream(DataInputStream in, StreamingPackIO packedObjects,
+                @Nullable ObjectStore bases) {
             this.in = in;
+            this.packedObjects = packedObjects;
+            this.bases = bases == null ? id -> null : bases::getIfPresent;
         }
 
         @Override
         protected RevObject computeNext() {
             RevObject next;
             try {
-                next = packedObjects.readObject(in);
+                next = packedObjects.readObject(in, bases);
             } catch (Exception e) {
                 close();
                 Throwables.throwIfUnchecked(e);
@@ -11,10 +11,12 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event;
 import org.locationtech.geogig.remotes.pack.AbstractPackBuilder;
 import org.locationtech.geogig.remotes.pack.Pack;
+import org.locationtech.geogig.remotes.pack.PackRequest;
 import org.locationtech.geogig.remotes.pack.RefRequest;
 import org.locationtech.geogig.repository.ProgressListener;
 import org.slf4j.Logger;
@@ -22,6 +24,8 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Throwables;
 
+import lombok.NonNull;
+
 public class StreamingPackBuilder extends AbstractPackBuilder {
 
     private static final Logger log = LoggerFactory.getLogger(StreamingPackBuilder.class);
@@ -32,6 +36,10 @@ public class StreamingPackBuilder extends AbstractPackBuilder {
 
     private ProgressListener progress;
 
+    private @Nullable PackRequest request;
+
+    private @Nullable StreamingPack.Connector connector;
+
     public StreamingPackBuilder(DataInputStream dataInput, ProgressListener progressListener) {
         checkNotNull(dataInput);
         checkNotNull(progressListener);
@@ -40,6 +48,21 @@ public class StreamingPackBuilder extends AbstractPackBuilder {
         this.progress = progressListener;
     }
 
+    /**
+     * Allows the built pack to resume the transfer of a {@link StreamingPackIO#FORMAT_V3 format 3}
+     * pack if the connection breaks, by sending a request for the commits not yet received
+     *
+     * @param request the request {@code dataInput} is the response to
+     * @param connector sends a new request and returns the response stream
+     * @since 2.0
+     */
+    public StreamingPackBuilder setResume(@NonNull PackRequest request,
+            @NonNull StreamingPack.Connector connector) {
+        this.request = request;
+        this.connector = connector;
+        return this;
+    }
+
     @Override
     public Pack build() {
         final java.util.function.Function<ProgressListener, String> oldIndicator = progress
@@ -53,8 +76,7 @@ public class StreamingPackBuilder extends AbstractPackBuilder {
             // byte[] byteArray = ByteStreams.toByteArray(in);
             // in.close();
             // this.in = new DataInputStream(new ByteArrayInputStream(byteArray));
-            packIO.readHeader(in);
-            missingCommits = readRefsCommits();
+            missingCommits = readHeaderAndRefs();
         } catch (Exception e) {
             log.error("Error building pack", e);
             try {
@@ -68,7 +90,24 @@ public class StreamingPackBuilder extends AbstractPackBuilder {
         progress.complete();
         progress.setProgressIndicator(oldIndicator);
 
-        return new StreamingPack(missingCommits, in);
+        StreamingPack pack = new StreamingPack(missingCommits, in, packIO);
+        if (connector != null) {
+            pack.setResume(request, connector);
+        }
+        return pack;
+    }
+
+    /**
+     * Reads the pack header and the commits missing for each ref, leaving the stream positioned
+     * at the start of the objects
+     */
+    LinkedHashMap<RefRequest, List<ObjectId>> readHeaderAndRefs() throws IOException {
+        packIO.readHeader(in);
+        return readRefsCommits();
+    }
+
+    StreamingPackIO getPackIO() {
+        return packIO;
     }
 
     private LinkedHashMap<RefRequest, List<ObjectId>> readRefsCommits() throws IOException {
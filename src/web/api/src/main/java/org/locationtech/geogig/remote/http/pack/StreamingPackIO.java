@@ -1,65 +1,319 @@
 package org.locationtech.geogig.remote.http.pack;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.CRC32;
 
 import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.flatbuffers.FlatBuffersRevObjectSerializer;
 import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
 import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
 import org.locationtech.geogig.storage.RevObjectSerializer;
 
+/**
+ * Reads and writes the streaming pack format.
+ * <p>
+ * {@link #FORMAT_V1 Format 1} sends every object whole. {@link #FORMAT_V2 Format 2} length
+ * prefixes the serialized objects and can send trees and features as {@link Event#DELTA deltas}
+ * against a base object, that's either already present in the receiving repository or one of the
+ * last {@link #DELTA_WINDOW_SIZE} trees and features sent, which both ends keep track of in the
+ * same order.
+ * <p>
+ * {@link #FORMAT_V3 Format 3} additionally splits the objects in {@link Event#SEGMENT segments} of
+ * about {@link #SEGMENT_SIZE} bytes, each with a sequence number and a CRC32 checksum, that the
+ * receiving end verifies and stores one at a time, and ends the pack with a
+ * {@link Event#PACK_END} event. A broken transfer can hence be told apart from a complete one, and
+ * resumed from the last commit stored, since each commit is sent after all its contents.
+ */
 public class StreamingPackIO {
 
+    /**
+     * Format of the packs sent to clients that don't ask for a specific version
+     */
+    public static final int FORMAT_V1 = 1;
+
+    /**
+     * Delta encoding format
+     *
+     * @since 2.0
+     */
+    public static final int FORMAT_V2 = 2;
+
+    /**
+     * Segmented format
+     *
+     * @since 2.0
+     */
+    public static final int FORMAT_V3 = 3;
+
+    /**
+     * The highest format version this implementation can read and write
+     *
+     * @since 2.0
+     */
+    public static final int CURRENT_FORMAT = FORMAT_V3;
+
+    /**
+     * Number of recently transferred trees and features that can be used as delta bases
+     */
+    static final int DELTA_WINDOW_SIZE = 1_000;
+
+    /**
+     * Size in bytes after which a {@link #FORMAT_V3 format 3} segment is closed
+     */
+    static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+
     final byte[] delimiter = { 'p', 'a', 'c', 'k' };
 
+    final byte[] delimiterV2 = { 'p', 'a', 'k', '2' };
+
+    final byte[] delimiterV3 = { 'p', 'a', 'k', '3' };
+
     public static enum Event {
         REF_START, //
         REF_END, //
         OBJECT_STREAM_START, //
         OBJECT, //
-        OBJECT_STREAM_END //
+        OBJECT_STREAM_END, //
+        /**
+         * An object encoded as a delta against another one, from {@link #FORMAT_V2 format 2} on
+         */
+        DELTA, //
+        /**
+         * A checksummed sequence of objects, only in {@link #FORMAT_V3 format 3}
+         */
+        SEGMENT, //
+        /**
+         * End of a {@link #FORMAT_V3 format 3} pack
+         */
+        PACK_END
+    }
+
+    private int formatVersion;
+
+    private RevObjectSerializer objmarshaller;
+
+    private RevObjectDeltas deltas;
+
+    /**
+     * The last trees and features written or read, in order, only maintained in format 2
+     */
+    private final Map<ObjectId, RevObject> recent = new LinkedHashMap<ObjectId, RevObject>() {
+        private static final long serialVersionUID = 1L;
+
+        protected @Override boolean removeEldestEntry(Map.Entry<ObjectId, RevObject> eldest) {
+            return size() > DELTA_WINDOW_SIZE;
+        }
+    };
+
+    public StreamingPackIO() {
+        this(FORMAT_V1);
     }
 
-    private RevObjectSerializer objmarshaller = new FlatBuffersRevObjectSerializer();
+    /**
+     * @param formatVersion the format to write, and to read unless {@link #readHeader} finds out
+     *        otherwise
+     * @since 2.0
+     */
+    public StreamingPackIO(int formatVersion) {
+        setFormatVersion(formatVersion);
+    }
+
+    private void setFormatVersion(int formatVersion) {
+        checkArgument(formatVersion >= FORMAT_V1 && formatVersion <= CURRENT_FORMAT,
+                "Unsupported pack format: %s", formatVersion);
+        this.formatVersion = formatVersion;
+        this.objmarshaller = new FlatBuffersRevObjectSerializer(formatVersion >= FORMAT_V2);
+        this.deltas = new RevObjectDeltas(objmarshaller);
+    }
+
+    /**
+     * @since 2.0
+     */
+    public int getFormatVersion() {
+        return formatVersion;
+    }
 
     public @Nullable RevObject readObject(DataInputStream in) throws IOException {
+        return readObject(in, id -> null);
+    }
+
+    /**
+     * @param bases resolves the base objects of deltas that are not among the recently read
+     *        objects, returning {@code null} if not found
+     * @since 2.0
+     */
+    public @Nullable RevObject readObject(DataInputStream in,
+            Function<ObjectId, RevObject> bases) throws IOException {
         Event evt = readNextEvent(in);
+        final RevObject object;
         if (evt == Event.OBJECT) {
             ObjectId id = readId(in);
-            RevObject object = objmarshaller.read(id, in);
-            return object;
+            object = objmarshaller.read(id, in);
+        } else if (evt == Event.DELTA) {
+            checkState(formatVersion >= FORMAT_V2, "Got a delta in a format %s pack",
+                    formatVersion);
+            ObjectId id = readId(in);
+            ObjectId baseId = readId(in);
+            RevObject base = recent.get(baseId);
+            if (base == null) {
+                base = bases.apply(baseId);
+            }
+            checkState(base != null, "Delta base %s of %s not found", baseId, id);
+            object = deltas.read(id, base, in);
+        } else {
+            checkState(evt == Event.OBJECT_STREAM_END, "expected OBJECT_STREAM_END got %s", evt);
+            return null;
         }
-        checkState(evt == Event.OBJECT_STREAM_END, "expected OBJECT_STREAM_END got %s", evt);
-        return null;
+        addRecent(object);
+        return object;
     }
 
     public void writeObject(RevObject o, DataOutputStream out) throws IOException {
         out.writeByte(Event.OBJECT.ordinal());
         writeId(o.getId(), out);
         objmarshaller.write(o, out);
+        addRecent(o);
     }
 
-    public void readHeader(DataInputStream in) throws IOException {
-        require(in, delimiter);
+    /**
+     * Writes {@code o} as a {@link Event#DELTA delta} against {@code base} if the format allows it
+     * and it's worth it, or whole otherwise. The receiving end must have {@code base} or it must
+     * be one of the {@link #getRecent recent} objects.
+     *
+     * @since 2.0
+     */
+    public void writeObject(RevObject o, @Nullable RevObject base, DataOutputStream out)
+            throws IOException {
+        if (base != null && formatVersion >= FORMAT_V2 && deltas.write(o, base, out)) {
+            addRecent(o);
+            return;
+        }
+        writeObject(o, out);
     }
 
-    public void writeHeader(DataOutputStream out) throws IOException {
-        out.write(delimiter);
+    /**
+     * @return the object with the given id if it's one of the last trees and features written or
+     *         read and hence can be used as a delta base by both ends, {@code null} otherwise
+     * @since 2.0
+     */
+    public @Nullable RevObject getRecent(ObjectId id) {
+        return recent.get(id);
     }
 
-    private void require(DataInputStream in, byte[] bytes) throws IOException {
-        byte[] buff = new byte[bytes.length];
+    private void addRecent(RevObject o) {
+        if (formatVersion >= FORMAT_V2 && (o instanceof RevTree || o instanceof RevFeature)) {
+            recent.put(o.getId(), o);
+        }
+    }
+
+    /**
+     * Reads the pack header and sets the format version accordingly
+     *
+     * @return the format version
+     */
+    public int readHeader(DataInputStream in) throws IOException {
+        byte[] buff = new byte[delimiter.length];
         in.readFully(buff);
-        boolean equals = Arrays.equals(bytes, buff);
-        if (!equals) {
-            throw new IllegalStateException(String.format("expected %s, got %s",
-                    Arrays.toString(bytes), Arrays.toString(buff)));
+        if (Arrays.equals(delimiter, buff)) {
+            setFormatVersion(FORMAT_V1);
+        } else if (Arrays.equals(delimiterV2, buff)) {
+            setFormatVersion(FORMAT_V2);
+        } else if (Arrays.equals(delimiterV3, buff)) {
+            setFormatVersion(FORMAT_V3);
+        } else {
+            throw new IllegalStateException(String.format("expected %s, %s, or %s, got %s",
+                    Arrays.toString(delimiter), Arrays.toString(delimiterV2),
+                    Arrays.toString(delimiterV3), Arrays.toString(buff)));
+        }
+        return formatVersion;
+    }
+
+    public void writeHeader(DataOutputStream out) throws IOException {
+        final byte[] header;
+        switch (formatVersion) {
+        case FORMAT_V1:
+            header = delimiter;
+            break;
+        case FORMAT_V2:
+            header = delimiterV2;
+            break;
+        default:
+            header = delimiterV3;
         }
+        out.write(header);
+    }
+
+    /**
+     * Writes a {@link Event#SEGMENT} event with the first {@code length} bytes of
+     * {@code contents}, which hold a sequence of objects written by {@link #writeObject}
+     *
+     * @since 2.0
+     */
+    public void writeSegment(int sequence, byte[] contents, int length, DataOutputStream out)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, length);
+        out.writeByte(Event.SEGMENT.ordinal());
+        out.writeInt(sequence);
+        out.writeInt(length);
+        out.writeLong(crc.getValue());
+        out.write(contents, 0, length);
+    }
+
+    /**
+     * Reads the contents of a segment, after its {@link Event#SEGMENT} event has been read
+     *
+     * @throws IOException if the segment is out of sequence or doesn't match its checksum, which
+     *         are transfer errors as much as a broken connection
+     * @since 2.0
+     */
+    public byte[] readSegment(int expectedSequence, DataInputStream in) throws IOException {
+        final int sequence = in.readInt();
+        final int length = in.readInt();
+        final long checksum = in.readLong();
+        if (sequence != expectedSequence || length < 0) {
+            throw new IOException(String.format("Expected segment %d, got %d (%,d bytes)",
+                    expectedSequence, sequence, length));
+        }
+        byte[] contents = new byte[length];
+        in.readFully(contents);
+        CRC32 crc = new CRC32();
+        crc.update(contents, 0, length);
+        if (crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch on segment " + sequence);
+        }
+        return contents;
+    }
+
+    /**
+     * Reads all the objects in the contents of a segment
+     *
+     * @since 2.0
+     */
+    public List<RevObject> readObjects(byte[] segment, Function<ObjectId, RevObject> bases)
+            throws IOException {
+        List<RevObject> objects = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment));
+        while (in.available() > 0) {
+            RevObject object = readObject(in, bases);
+            checkState(object != null, "Unexpected end of object stream in segment");
+            objects.add(object);
+        }
+        return objects;
     }
 
     public Event readNextEvent(DataInputStream in) throws IOException {
@@ -76,5 +330,4 @@ public class StreamingPackIO {
     public void writeId(ObjectId id, DataOutputStream out) throws IOException {
         id.writeTo(out);
     }
-
 }
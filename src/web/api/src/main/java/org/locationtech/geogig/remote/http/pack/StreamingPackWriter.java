@@ -3,19 +3,28 @@ package org.locationtech.geogig.remote.http.pack;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event.OBJECT_STREAM_END;
 import static org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event.OBJECT_STREAM_START;
+import static org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event.PACK_END;
 import static org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event.REF_END;
 import static org.locationtech.geogig.remote.http.pack.StreamingPackIO.Event.REF_START;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.locationtech.geogig.model.ObjectId;
 import org.locationtech.geogig.model.RevCommit;
 import org.locationtech.geogig.model.RevObject;
 import org.locationtech.geogig.model.RevTag;
 import org.locationtech.geogig.remotes.internal.Deduplicator;
+import org.locationtech.geogig.remotes.pack.DeltaBases;
 import org.locationtech.geogig.remotes.pack.LocalPackBuilder;
 import org.locationtech.geogig.remotes.pack.ObjectReporter;
 import org.locationtech.geogig.remotes.pack.Pack;
@@ -26,17 +35,71 @@ import org.locationtech.geogig.remotes.pack.RefRequest;
 import org.locationtech.geogig.repository.Repository;
 import org.locationtech.geogig.storage.BulkOpListener;
 import org.locationtech.geogig.storage.IndexDatabase;
+import org.locationtech.geogig.storage.ObjectStore;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class StreamingPackWriter extends LocalPackBuilder implements PackBuilder, PackProcessor {
 
     private DataOutputStream out;
 
-    private StreamingPackIO packIO = new StreamingPackIO();
+    private final StreamingPackIO packIO;
+
+    private final ObjectStore objects;
+
+    private final @Nullable DeltaBases deltaBases;
+
+    /**
+     * Buffer for the segment being encoded, only used from {@link StreamingPackIO#FORMAT_V3 format
+     * 3} on, swapped with {@link #spare} when handed over to the {@link #segmentWriter}
+     */
+    private @Nullable SegmentBuffer segment, spare;
+
+    private @Nullable DataOutputStream segmentOut;
+
+    /**
+     * Writes the encoded segments to {@link #out} while the next one is being encoded
+     */
+    private final @Nullable ExecutorService segmentWriter;
+
+    private @Nullable Future<?> pendingSegment;
+
+    private int segmentSequence;
 
     public StreamingPackWriter(Repository localRepo, DataOutputStream out) {
+        this(localRepo, out, StreamingPackIO.FORMAT_V1);
+    }
+
+    /**
+     * @param formatVersion the {@link StreamingPackIO} format to write, trees and features are
+     *        delta encoded against the objects they replace from
+     *        {@link StreamingPackIO#FORMAT_V2 format 2} on, and objects are sent in segments from
+     *        {@link StreamingPackIO#FORMAT_V3 format 3} on, in which case {@link #finish()} must be
+     *        called once the pack is written
+     * @since 2.0
+     */
+    public StreamingPackWriter(Repository localRepo, DataOutputStream out, int formatVersion) {
         super(localRepo);
         checkNotNull(out);
         this.out = out;
+        this.packIO = new StreamingPackIO(formatVersion);
+        this.objects = localRepo.objectDatabase();
+        this.deltaBases = formatVersion >= StreamingPackIO.FORMAT_V2 ? new DeltaBases() : null;
+        if (formatVersion >= StreamingPackIO.FORMAT_V3) {
+            this.segment = new SegmentBuffer();
+            this.spare = new SegmentBuffer();
+            this.segmentOut = new DataOutputStream(segment);
+            this.segmentWriter = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true).setNameFormat("pack-segment-writer-%d").build());
+        } else {
+            this.segment = null;
+            this.segmentWriter = null;
+        }
+    }
+
+    public @Override Optional<DeltaBases> getDeltaBases() {
+        return Optional.ofNullable(deltaBases);
     }
 
     public @Override void start(Set<RevTag> tags) {
@@ -84,9 +147,21 @@ public class StreamingPackWriter extends LocalPackBuilder implements PackBuilder
     public @Override void putAll(Iterator<? extends RevObject> iterator, BulkOpListener listener) {
         try {
             out.writeByte(OBJECT_STREAM_START.ordinal());
-            while (iterator.hasNext()) {
-                RevObject next = iterator.next();
-                packIO.writeObject(next, out);
+            if (segment == null) {
+                while (iterator.hasNext()) {
+                    RevObject next = iterator.next();
+                    packIO.writeObject(next, deltaBase(next), out);
+                }
+            } else {
+                while (iterator.hasNext()) {
+                    RevObject next = iterator.next();
+                    packIO.writeObject(next, deltaBase(next), segmentOut);
+                    if (segment.size() >= StreamingPackIO.SEGMENT_SIZE) {
+                        sendSegment();
+                    }
+                }
+                sendSegment();
+                awaitSegment();
             }
             out.writeByte(OBJECT_STREAM_END.ordinal());
         } catch (IOException e) {
@@ -94,6 +169,106 @@ public class StreamingPackWriter extends LocalPackBuilder implements PackBuilder
         }
     }
 
+    /**
+     * Hands the encoded segment over to the {@link #segmentWriter} once the previous one has been
+     * written, so that at most one segment is being written while the next one is encoded
+     */
+    private void sendSegment() throws IOException {
+        if (segment.size() == 0) {
+            return;
+        }
+        awaitSegment();
+        final SegmentBuffer full = segment;
+        final byte[] contents = full.buffer();
+        final int length = full.size();
+        final int sequence = segmentSequence++;
+        segment = spare;
+        segment.reset();
+        segmentOut = new DataOutputStream(segment);
+        spare = full;
+        pendingSegment = segmentWriter.submit(() -> {
+            packIO.writeSegment(sequence, contents, length, out);
+            out.flush();
+            return null;
+        });
+    }
+
+    private void awaitSegment() throws IOException {
+        if (pendingSegment == null) {
+            return;
+        }
+        try {
+            pendingSegment.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pendingSegment = null;
+        }
+    }
+
+    /**
+     * Ends the pack once all its objects were written, from {@link StreamingPackIO#FORMAT_V3
+     * format 3} on the receiving end can only tell a pack is complete if this method is called.
+     *
+     * @since 2.0
+     */
+    public void finish() {
+        try {
+            if (segment != null) {
+                awaitSegment();
+                out.writeByte(PACK_END.ordinal());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (segmentWriter != null) {
+                segmentWriter.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Releases resources after the pack failed to be written, without ending it
+     *
+     * @since 2.0
+     */
+    public void abort() {
+        if (segmentWriter != null) {
+            segmentWriter.shutdownNow();
+        }
+    }
+
+    /**
+     * Gives access to the internal buffer to avoid copying each segment
+     */
+    private static class SegmentBuffer extends ByteArrayOutputStream {
+        SegmentBuffer() {
+            super(StreamingPackIO.SEGMENT_SIZE + 64 * 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    private @Nullable RevObject deltaBase(RevObject object) {
+        if (deltaBases == null) {
+            return null;
+        }
+        Optional<ObjectId> baseId = deltaBases.remove(object.getId(),
+                id -> packIO.getRecent(id) != null);
+        if (!baseId.isPresent()) {
+            return null;
+        }
+        RevObject base = packIO.getRecent(baseId.get());
+        return base == null ? objects.getIfPresent(baseId.get()) : base;
+    }
+
     public @Override void putIndex(IndexDef index, IndexDatabase sourceStore,
             ObjectReporter objectReport, Deduplicator deduplicator) {
         throw new UnsupportedOperationException("implement!");
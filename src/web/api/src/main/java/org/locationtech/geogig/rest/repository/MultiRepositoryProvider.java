@@ -19,11 +19,14 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.locationtech.geogig.plumbing.ResolveGeogigURI;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp;
 import org.locationtech.geogig.repository.Context;
 import org.locationtech.geogig.repository.Hints;
 import org.locationtech.geogig.repository.Repository;
@@ -44,6 +47,7 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * {@link RepositoryProvider} that looks up the coresponding {@link GeoGIG} instance to a given
@@ -53,6 +57,15 @@ public class MultiRepositoryProvider implements RepositoryProvider {
 
     private static final Logger LOG = LoggerFactory.getLogger(MultiRepositoryProvider.class);
 
+    /**
+     * Repository config key that, if {@code true}, makes the repository's trees be preloaded into
+     * the shared cache through {@link WarmUpCacheOp} in the background every time it's opened
+     */
+    public static final String WARM_UP_CACHE_CONFIG_KEY = "cache.warmUp";
+
+    private static final ExecutorService WARM_UP_EXECUTOR = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("geogig-cache-warmup").build());
+
     private LoadingCache<String, Repository> repositories;
 
     private final URI rootRepoURI;
@@ -199,6 +212,7 @@ public class MultiRepositoryProvider implements RepositoryProvider {
                     } catch (RepositoryConnectionException e) {
                         throw new RuntimeException(e);
                     }
+                    warmUpCache(repoName, repository);
                     break;
                 }
             }
@@ -207,6 +221,30 @@ public class MultiRepositoryProvider implements RepositoryProvider {
         return repository;
     }
 
+    /**
+     * Runs {@link WarmUpCacheOp} on the repository in the background, one repository at a time,
+     * if enabled through the {@link #WARM_UP_CACHE_CONFIG_KEY} config key
+     */
+    private void warmUpCache(final String repoName, final Repository repository) {
+        Optional<Boolean> warmUp = repository.configDatabase().get(WARM_UP_CACHE_CONFIG_KEY,
+                Boolean.class);
+        if (!warmUp.orElse(Boolean.FALSE).booleanValue()) {
+            return;
+        }
+        WARM_UP_EXECUTOR.execute(() -> {
+            if (!repository.isOpen()) {
+                return;
+            }
+            try {
+                WarmUpCacheOp.Result result = repository.command(WarmUpCacheOp.class).call();
+                LOG.info("Warmed up the cache of repository {} with {} trees and {} feature types",
+                        repoName, result.getTrees(), result.getFeatureTypes());
+            } catch (RuntimeException e) {
+                LOG.warn("Error warming up the cache of repository " + repoName, e);
+            }
+        });
+    }
+
     @Override
     public void delete(String repoName) {
         Optional<Repository> geogig = getGeogig(repoName);
@@ -0,0 +1,77 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.spring.controller;
+
+import static org.locationtech.geogig.rest.repository.RepositoryProvider.GEOGIG_ROUTE_PREFIX;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_XML_VALUE;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.locationtech.geogig.metrics.Metrics;
+import org.locationtech.geogig.spring.dto.LegacyResponse;
+import org.locationtech.geogig.web.api.StreamingWriter;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller for the {@link Metrics} endpoint, reporting the current value of all the metrics
+ * recorded by this instance.
+ * 
+ * <pre>
+ * GET /metrics
+ * DELETE /metrics
+ * </pre>
+ * 
+ * {@code GET} only reports the metrics. {@code DELETE} reports them and then resets them all to
+ * zero, so that the next report only covers what happened in between.
+ */
+@RestController
+@RequestMapping(path = GEOGIG_ROUTE_PREFIX + "/metrics", produces = { APPLICATION_XML_VALUE,
+        APPLICATION_JSON_VALUE })
+public class MetricsController extends AbstractController {
+
+    @GetMapping
+    public void getMetrics(HttpServletRequest request, HttpServletResponse response) {
+        encodeMetrics(Metrics.snapshot(), request, response);
+    }
+
+    @DeleteMapping
+    public void resetMetrics(HttpServletRequest request, HttpServletResponse response) {
+        final SortedMap<String, Double> metrics = Metrics.snapshot();
+        Metrics.reset();
+        encodeMetrics(metrics, request, response);
+    }
+
+    private void encodeMetrics(SortedMap<String, Double> metrics, HttpServletRequest request,
+            HttpServletResponse response) {
+        encode(new LegacyResponse() {
+            @Override
+            public void encodeInternal(StreamingWriter writer, MediaType format, String baseUrl) {
+                writer.writeElement("enabled", Metrics.isEnabled());
+                writer.writeStartArray("metric");
+                for (Map.Entry<String, Double> e : metrics.entrySet()) {
+                    writer.writeStartArrayElement("metric");
+                    writer.writeElement("name", e.getKey());
+                    writer.writeElement("value", e.getValue());
+                    writer.writeEndArrayElement();
+                }
+                writer.writeEndArray();
+            }
+        }, request, response);
+    }
+}
@@ -48,6 +48,7 @@ import org.locationtech.geogig.web.api.commands.Status;
 import org.locationtech.geogig.web.api.commands.Tag;
 import org.locationtech.geogig.web.api.commands.UpdateRef;
 import org.locationtech.geogig.web.api.commands.Version;
+import org.locationtech.geogig.web.api.commands.WarmUpCache;
 import org.springframework.http.HttpStatus;
 
 /**
@@ -86,6 +87,7 @@ public class CommandBuilder {
         MAPPINGS.put("resolveconflict", ResolveConflict::new);
         MAPPINGS.put("revertfeature", RevertFeature::new);
         MAPPINGS.put("rebuildgraph", RebuildGraph::new);
+        MAPPINGS.put("warmupcache", WarmUpCache::new);
         MAPPINGS.put("blame", Blame::new);
         MAPPINGS.put("version", Version::new);
         MAPPINGS.put("cat", Cat::new);
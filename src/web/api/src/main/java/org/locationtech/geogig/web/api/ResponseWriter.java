@@ -44,6 +44,7 @@ import org.locationtech.geogig.plumbing.DiffIndex;
 import org.locationtech.geogig.plumbing.DiffWorkTree;
 import org.locationtech.geogig.plumbing.FindTreeChild;
 import org.locationtech.geogig.plumbing.RevObjectParse;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp;
 import org.locationtech.geogig.plumbing.diff.AttributeDiff;
 import org.locationtech.geogig.plumbing.diff.AttributeDiff.TYPE;
 import org.locationtech.geogig.plumbing.merge.MergeScenarioReport;
@@ -771,6 +772,14 @@ public class ResponseWriter {
         out.writeEndElement();
     }
 
+    public void writeWarmUpCacheResponse(WarmUpCacheOp.Result result)
+            throws StreamWriterException {
+        out.writeStartElement("WarmUpCache");
+        writeElement("trees", Long.toString(result.getTrees()));
+        writeElement("featureTypes", Long.toString(result.getFeatureTypes()));
+        out.writeEndElement();
+    }
+
     public void writeFetchResponse(TransferSummary result) throws StreamWriterException {
         out.writeStartElement("Fetch");
         for (Entry<String, Collection<RefDiff>> entry : result.getRefDiffs().entrySet()) {
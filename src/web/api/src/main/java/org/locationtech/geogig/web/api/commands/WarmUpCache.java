@@ -0,0 +1,100 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.web.api.commands;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.locationtech.geogig.plumbing.WarmUpCacheOp;
+import org.locationtech.geogig.plumbing.WarmUpCacheOp.Result;
+import org.locationtech.geogig.repository.Context;
+import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.CommandContext;
+import org.locationtech.geogig.web.api.CommandResponse;
+import org.locationtech.geogig.web.api.ParameterSet;
+import org.locationtech.geogig.web.api.ResponseWriter;
+
+/**
+ * Preloads the trees of the given refs into the shared cache. Nothing is loaded unless the
+ * repository's object database keeps its objects in the shared cache.
+ * 
+ * Web interface for {@link WarmUpCacheOp}
+ * 
+ * @since 2.0
+ */
+public class WarmUpCache extends AbstractWebAPICommand {
+
+    List<String> refs;
+
+    List<String> paths;
+
+    boolean featureTypes = true;
+
+    @Override
+    protected void setParametersInternal(ParameterSet options) {
+        setRefs(Arrays.asList(options.getValuesArray("ref")));
+        setPaths(Arrays.asList(options.getValuesArray("path")));
+        setFeatureTypes(Boolean.valueOf(options.getFirstValue("featureTypes", "true")));
+    }
+
+    @Override
+    public boolean requiresTransaction() {
+        return false;
+    }
+
+    /**
+     * Mutator for the refs variable
+     * 
+     * @param refs - the refs whose trees to load, all the branches if empty
+     */
+    public void setRefs(List<String> refs) {
+        this.refs = refs;
+    }
+
+    /**
+     * Mutator for the paths variable
+     * 
+     * @param paths - the paths of the trees to load from each ref, the whole trees if empty
+     */
+    public void setPaths(List<String> paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * Mutator for the featureTypes variable
+     * 
+     * @param featureTypes - whether to load the feature types of the loaded trees
+     */
+    public void setFeatureTypes(boolean featureTypes) {
+        this.featureTypes = featureTypes;
+    }
+
+    /**
+     * Runs the command and builds the appropriate response.
+     * 
+     * @param context - the context to use for this command
+     */
+    @Override
+    protected void runInternal(CommandContext context) {
+        final Context geogig = this.getRepositoryContext(context);
+
+        final Result result = geogig.command(WarmUpCacheOp.class).setRefs(refs).setPaths(paths)
+                .setFeatureTypes(featureTypes).call();
+
+        context.setResponseContent(new CommandResponse() {
+            @Override
+            public void write(ResponseWriter out) throws Exception {
+                out.start();
+                out.writeWarmUpCacheResponse(result);
+                out.finish();
+            }
+        });
+    }
+}
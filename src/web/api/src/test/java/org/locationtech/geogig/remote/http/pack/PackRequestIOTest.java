@@ -43,6 +43,18 @@ public class PackRequestIOTest {
         testEncodeDecode(request);
     }
 
+    public @Test void testFormatVersion() throws IOException {
+        requestIO.write(request, out, StreamingPackIO.FORMAT_V2);
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals(request, requestIO.read(in));
+        assertEquals(StreamingPackIO.FORMAT_V2, requestIO.readFormatVersion(in));
+    }
+
+    public @Test void testFormatVersionNotSent() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[0]);
+        assertEquals(StreamingPackIO.FORMAT_V1, requestIO.readFormatVersion(in));
+    }
+
     private void testEncodeDecode(PackRequest request) throws IOException {
         requestIO.write(request, out);
         PackRequest read = requestIO.read(new ByteArrayInputStream(out.toByteArray()));
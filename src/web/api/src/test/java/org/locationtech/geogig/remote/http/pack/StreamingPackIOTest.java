@@ -0,0 +1,271 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.remote.http.pack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevFeature;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.RevTree;
+import org.locationtech.geogig.model.RevTreeBuilder;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.storage.ObjectStore;
+import org.locationtech.geogig.storage.memory.HeapObjectDatabase;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import com.google.common.collect.ImmutableMap;
+
+public class StreamingPackIOTest {
+
+    private ObjectStore store;
+
+    public @Before void before() {
+        store = new HeapObjectDatabase();
+        store.open();
+    }
+
+    public @After void after() {
+        store.close();
+    }
+
+    public @Test void testLeafTreeDelta() throws IOException {
+        RevTree base = tree(0, 100);
+        RevTreeBuilder builder = RevTreeBuilder.builder(store, base);
+        builder.remove(RevObjectTestSupport.featureNode("f", 10));
+        builder.put(RevObjectTestSupport.featureNode("f", 20, true));
+        builder.put(RevObjectTestSupport.featureNode("f", 1000));
+        RevTree tree = builder.build();
+        assertEquals(0, tree.bucketsSize());
+        testDeltaAgainstRecent(base, tree);
+        testDeltaAgainstPresent(base, tree);
+    }
+
+    public @Test void testBucketTreeDelta() throws IOException {
+        RevTree base = tree(0, 10_000);
+        assertTrue(base.bucketsSize() > 0);
+        RevTreeBuilder builder = RevTreeBuilder.builder(store, base);
+        builder.put(RevObjectTestSupport.featureNode("f", 20, true));
+        RevTree tree = builder.build();
+        testDeltaAgainstRecent(base, tree);
+        testDeltaAgainstPresent(base, tree);
+    }
+
+    public @Test void testFeatureDelta() throws IOException {
+        GeometryFactory gf = new GeometryFactory();
+        RevFeature base = RevObjectTestSupport.feature("name", 1L, 2.5d,
+                gf.createPoint(new Coordinate(1, 1)));
+        RevFeature feature = RevObjectTestSupport.feature("name", 2L, 2.5d,
+                gf.createPoint(new Coordinate(1, 1)), "new attribute");
+        testDeltaAgainstRecent(base, feature);
+        testDeltaAgainstPresent(base, feature);
+    }
+
+    public @Test void testNoDeltaIfNothingSaved() throws IOException {
+        RevFeature base = RevObjectTestSupport.feature("name", 1L);
+        RevFeature feature = RevObjectTestSupport.feature("other name", 2L);
+        byte[] pack = write(StreamingPackIO.FORMAT_V2, base, feature);
+        assertEquals(5 + whole(base) + whole(feature), pack.length);
+    }
+
+    public @Test void testFormatV1IgnoresDeltaBases() throws IOException {
+        RevTree base = tree(0, 100);
+        RevTreeBuilder builder = RevTreeBuilder.builder(store, base);
+        builder.put(RevObjectTestSupport.featureNode("f", 1000));
+        RevTree tree = builder.build();
+
+        byte[] pack = write(StreamingPackIO.FORMAT_V1, base, tree);
+        StreamingPackIO reader = new StreamingPackIO();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pack));
+        assertEquals(StreamingPackIO.FORMAT_V1, reader.readHeader(in));
+        assertEquals(base.getId(), reader.readObject(in).getId());
+        assertEquals(tree.getId(), reader.readObject(in).getId());
+        assertNull(reader.readObject(in));
+    }
+
+    public @Test void testSegment() throws IOException {
+        RevTree base = tree(0, 100);
+        RevTreeBuilder builder = RevTreeBuilder.builder(store, base);
+        builder.put(RevObjectTestSupport.featureNode("f", 1000));
+        RevTree tree = builder.build();
+
+        byte[] pack = segmentedPack(base, tree);
+        StreamingPackIO reader = new StreamingPackIO();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pack));
+        assertEquals(StreamingPackIO.FORMAT_V3, reader.readHeader(in));
+        assertEquals(StreamingPackIO.Event.SEGMENT, reader.readNextEvent(in));
+        byte[] segment = reader.readSegment(0, in);
+        List<RevObject> objects = reader.readObjects(segment, id -> null);
+        assertEquals(2, objects.size());
+        assertEquals(base, objects.get(0));
+        assertEquals(tree, objects.get(1));
+        assertContents(tree, objects.get(1));
+        assertEquals(StreamingPackIO.Event.PACK_END, reader.readNextEvent(in));
+    }
+
+    public @Test void testSegmentChecksumMismatch() throws IOException {
+        byte[] pack = segmentedPack(tree(0, 10));
+        pack[pack.length - 2] ^= 1;
+        StreamingPackIO reader = new StreamingPackIO();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pack));
+        reader.readHeader(in);
+        assertEquals(StreamingPackIO.Event.SEGMENT, reader.readNextEvent(in));
+        try {
+            reader.readSegment(0, in);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Checksum mismatch"));
+        }
+    }
+
+    public @Test void testSegmentOutOfSequence() throws IOException {
+        byte[] pack = segmentedPack(tree(0, 10));
+        StreamingPackIO reader = new StreamingPackIO();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pack));
+        reader.readHeader(in);
+        reader.readNextEvent(in);
+        try {
+            reader.readSegment(1, in);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Expected segment 1, got 0"));
+        }
+    }
+
+    /**
+     * Writes a format 3 pack with a single segment holding {@code objects}, each delta encoded
+     * against the previous one if possible
+     */
+    private byte[] segmentedPack(RevObject... objects) throws IOException {
+        StreamingPackIO writer = new StreamingPackIO(StreamingPackIO.FORMAT_V3);
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        DataOutputStream segmentOut = new DataOutputStream(segment);
+        RevObject base = null;
+        for (RevObject o : objects) {
+            writer.writeObject(o, base, segmentOut);
+            base = o;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.writeHeader(out);
+        writer.writeSegment(0, segment.toByteArray(), segment.size(), out);
+        out.writeByte(StreamingPackIO.Event.PACK_END.ordinal());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private RevTree tree(int from, int to) {
+        RevTreeBuilder builder = RevTreeBuilder.builder(store);
+        RevObjectTestSupport.featureNodes(from, to, false).forEach(builder::put);
+        return builder.build();
+    }
+
+    /**
+     * Sends {@code base} and then {@code object} as a delta against it
+     */
+    private void testDeltaAgainstRecent(RevObject base, RevObject object) throws IOException {
+        byte[] pack = write(StreamingPackIO.FORMAT_V2, base, object);
+        assertTrue(pack.length - 5 - whole(base) < whole(object));
+
+        RevObject read = read(pack, Collections.emptyMap(), base);
+        assertEquals(object.getId(), read.getId());
+        assertEquals(object, read);
+        assertContents(object, read);
+    }
+
+    /**
+     * Sends {@code object} as a delta against {@code base}, which the receiving end already has
+     */
+    private void testDeltaAgainstPresent(RevObject base, RevObject object) throws IOException {
+        byte[] pack = write(StreamingPackIO.FORMAT_V2, null, object, base);
+        assertTrue(pack.length - 5 < whole(object));
+
+        RevObject read = read(pack, ImmutableMap.of(base.getId(), base));
+        assertContents(object, read);
+    }
+
+    private void assertContents(RevObject expected, RevObject actual) {
+        if (expected instanceof RevTree) {
+            RevTree t1 = (RevTree) expected;
+            RevTree t2 = (RevTree) actual;
+            assertEquals(t1.size(), t2.size());
+            assertEquals(t1.numTrees(), t2.numTrees());
+            assertEquals(t1.features(), t2.features());
+            assertEquals(t1.trees(), t2.trees());
+            assertEquals(t1.getBuckets(), t2.getBuckets());
+        } else {
+            assertEquals(((RevFeature) expected).getValues(), ((RevFeature) actual).getValues());
+        }
+    }
+
+    private byte[] write(int format, RevObject first, RevObject second) throws IOException {
+        return write(format, first, second, first);
+    }
+
+    /**
+     * Writes a pack with {@code first}, if not null, and {@code second} as a delta against
+     * {@code base}
+     */
+    private byte[] write(int format, RevObject first, RevObject second, RevObject base)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        StreamingPackIO writer = new StreamingPackIO(format);
+        writer.writeHeader(out);
+        if (first != null) {
+            writer.writeObject(first, out);
+        }
+        writer.writeObject(second, base, out);
+        out.writeByte(StreamingPackIO.Event.OBJECT_STREAM_END.ordinal());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the size of a pack with only {@code object}, minus header and end event
+     */
+    private int whole(RevObject object) throws IOException {
+        return write(StreamingPackIO.FORMAT_V2, null, object, null).length - 5;
+    }
+
+    /**
+     * @return the last object in the pack, checking the ones before it are {@code expected}
+     */
+    private RevObject read(byte[] pack, Map<ObjectId, RevObject> present, RevObject... expected)
+            throws IOException {
+        StreamingPackIO reader = new StreamingPackIO();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(pack));
+        assertEquals(StreamingPackIO.FORMAT_V2, reader.readHeader(in));
+        Function<ObjectId, RevObject> bases = present::get;
+        for (RevObject o : expected) {
+            assertEquals(o.getId(), reader.readObject(in, bases).getId());
+        }
+        RevObject last = reader.readObject(in, bases);
+        assertNull(reader.readObject(in, bases));
+        return last;
+    }
+}
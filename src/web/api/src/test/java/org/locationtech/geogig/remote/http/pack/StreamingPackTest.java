@@ -0,0 +1,259 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.remote.http.pack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.geogig.model.ObjectId;
+import org.locationtech.geogig.model.RevCommit;
+import org.locationtech.geogig.model.RevObject;
+import org.locationtech.geogig.model.impl.RevObjectTestSupport;
+import org.locationtech.geogig.remotes.internal.Deduplicator;
+import org.locationtech.geogig.remotes.pack.ObjectReporter;
+import org.locationtech.geogig.remotes.pack.Pack;
+import org.locationtech.geogig.remotes.pack.Pack.IndexDef;
+import org.locationtech.geogig.remotes.pack.PackProcessor;
+import org.locationtech.geogig.remotes.pack.PackRequest;
+import org.locationtech.geogig.remotes.pack.RefRequest;
+import org.locationtech.geogig.repository.DefaultProgressListener;
+import org.locationtech.geogig.repository.ProgressListener;
+import org.locationtech.geogig.storage.BulkOpListener;
+import org.locationtech.geogig.storage.IndexDatabase;
+
+/**
+ * Tests resuming the transfer of a {@link StreamingPackIO#FORMAT_V3 format 3} pack when the
+ * connection breaks
+ */
+public class StreamingPackTest {
+
+    private List<RevCommit> commits;
+
+    private RefRequest master, branch;
+
+    private PackRequest request;
+
+    private List<PackRequest> resumeRequests;
+
+    private List<RevObject> applied;
+
+    private ProgressListener progress;
+
+    private PackProcessor target = new PackProcessor() {
+        public @Override void putAll(Iterator<? extends RevObject> iterator,
+                BulkOpListener listener) {
+            iterator.forEachRemaining(applied::add);
+        }
+
+        public @Override void putIndex(IndexDef index, IndexDatabase sourceStore,
+                ObjectReporter objectReport, Deduplicator deduplicator) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    public @Before void before() {
+        // c0 <- c1 <- c2 <- c3, master at c1, branch at c3
+        commits = new ArrayList<>(RevObjectTestSupport.createCommits(4));
+        Collections.reverse(commits);
+        master = RefRequest.create("refs/heads/master", commits.get(1).getId(), null);
+        branch = RefRequest.create("refs/heads/branch", commits.get(3).getId(), null);
+        request = new PackRequest().addRef(master).addRef(branch);
+        resumeRequests = new ArrayList<>();
+        applied = new ArrayList<>();
+        progress = new DefaultProgressListener();
+    }
+
+    public @Test void testNoResumeNeeded() throws IOException {
+        byte[] response = response(refs(master, 1, 0, branch, 3, 2), true, segment(0),
+                segment(1), segment(2, 3));
+        Pack pack = build(response, req -> {
+            throw new IOException("unexpected resume request");
+        });
+        pack.applyTo(target, progress);
+        assertEquals(commits, applied);
+    }
+
+    public @Test void testResumeRequestsOnlyMissingCommits() throws IOException {
+        // connection drops after the first three commits, master is complete and branch is
+        // missing its tip commit
+        byte[] response = response(refs(master, 1, 0, branch, 3, 2), false, segment(0),
+                segment(1), segment(2));
+        RefRequest resumedBranch = RefRequest.create(branch.name, branch.want,
+                commits.get(2).getId());
+        byte[] resumed = response(refs(resumedBranch, 3), true, segment(3));
+
+        Pack pack = build(response, req -> {
+            resumeRequests.add(req);
+            return stream(resumed);
+        });
+        pack.applyTo(target, progress);
+
+        assertEquals(1, resumeRequests.size());
+        assertEquals(Collections.singletonList(resumedBranch), resumeRequests.get(0).getRefs());
+        assertEquals(commits, applied);
+    }
+
+    public @Test void testResumeWithNoCommitsApplied() throws IOException {
+        byte[] response = response(refs(master, 1, 0, branch, 3, 2), false);
+        byte[] resumed = response(refs(master, 1, 0, branch, 3, 2), true, segment(0),
+                segment(1), segment(2, 3));
+
+        Pack pack = build(response, req -> {
+            resumeRequests.add(req);
+            return stream(resumed);
+        });
+        pack.applyTo(target, progress);
+
+        assertEquals(1, resumeRequests.size());
+        assertEquals(Arrays.asList(master, branch), resumeRequests.get(0).getRefs());
+        assertEquals(commits, applied);
+    }
+
+    public @Test void testGivesUpAfterMaxResumeAttempts() throws IOException {
+        byte[] response = response(refs(master, 1, 0, branch, 3, 2), false, segment(0));
+        // every resumed transfer breaks before sending any segment
+        RefRequest resumedMaster = RefRequest.create(master.name, master.want,
+                commits.get(0).getId());
+        byte[] resumed = response(refs(resumedMaster, 1, branch, 3, 2), false);
+
+        Pack pack = build(response, req -> {
+            resumeRequests.add(req);
+            return stream(resumed);
+        });
+        try {
+            pack.applyTo(target, progress);
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(StreamingPack.MAX_RESUME_ATTEMPTS, resumeRequests.size());
+        for (PackRequest req : resumeRequests) {
+            assertEquals(Arrays.asList(resumedMaster, branch), req.getRefs());
+        }
+        assertEquals(commits.subList(0, 1), applied);
+    }
+
+    public @Test void testFailedResumeAttemptsAreResetByProgress() throws IOException {
+        byte[] response = response(refs(branch, 3, 2, 1, 0), false);
+        List<byte[]> responses = new ArrayList<>();
+        // each resumed transfer sends a single commit before breaking
+        for (int i = 0; i < 4; i++) {
+            ObjectId have = i == 0 ? null : commits.get(i - 1).getId();
+            RefRequest resumed = RefRequest.create(branch.name, branch.want, have);
+            int[] missing = new int[4 - i];
+            for (int c = 3; c >= i; c--) {
+                missing[3 - c] = c;
+            }
+            responses.add(response(refs(resumed, missing), i == 3, segment(i)));
+        }
+
+        Pack pack = build(response, req -> {
+            resumeRequests.add(req);
+            return stream(responses.get(resumeRequests.size() - 1));
+        });
+        pack.applyTo(target, progress);
+        assertEquals(4, resumeRequests.size());
+        assertEquals(commits, applied);
+    }
+
+    private Pack build(byte[] response, StreamingPack.Connector connector) {
+        return new StreamingPackBuilder(stream(response), progress).setResume(request, connector)
+                .build();
+    }
+
+    private DataInputStream stream(byte[] response) {
+        return new DataInputStream(new ByteArrayInputStream(response));
+    }
+
+    /**
+     * @param refsAndCommits pairs of {@link RefRequest} and the indexes in {@link #commits} of its
+     *        missing commits, newest first
+     */
+    private Map<RefRequest, List<RevCommit>> refs(Object... refsAndCommits) {
+        Map<RefRequest, List<RevCommit>> refs = new LinkedHashMap<>();
+        List<RevCommit> current = null;
+        for (Object o : refsAndCommits) {
+            if (o instanceof RefRequest) {
+                current = new ArrayList<>();
+                refs.put((RefRequest) o, current);
+            } else if (o instanceof int[]) {
+                for (int i : (int[]) o) {
+                    current.add(commits.get(i));
+                }
+            } else {
+                current.add(commits.get((Integer) o));
+            }
+        }
+        return refs;
+    }
+
+    private List<RevCommit> segment(int... commitIndexes) {
+        return Arrays.stream(commitIndexes).mapToObj(commits::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Writes a format 3 pack response, ending it properly if {@code complete}, or else with a
+     * truncated segment as if the connection broke
+     */
+    @SafeVarargs
+    private final byte[] response(Map<RefRequest, List<RevCommit>> refs, boolean complete,
+            List<RevCommit>... segments) throws IOException {
+        StreamingPackIO writer = new StreamingPackIO(StreamingPackIO.FORMAT_V3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.writeHeader(out);
+        for (Map.Entry<RefRequest, List<RevCommit>> e : refs.entrySet()) {
+            out.writeByte(StreamingPackIO.Event.REF_START.ordinal());
+            new RefRequestIO().write(out, e.getKey());
+            for (RevCommit c : e.getValue()) {
+                writer.writeId(c.getId(), out);
+            }
+            writer.writeId(ObjectId.NULL, out);
+            out.writeByte(StreamingPackIO.Event.REF_END.ordinal());
+        }
+        int sequence = 0;
+        for (List<RevCommit> segment : segments) {
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            DataOutputStream segmentOut = new DataOutputStream(contents);
+            for (RevCommit c : segment) {
+                writer.writeObject(c, segmentOut);
+            }
+            writer.writeSegment(sequence++, contents.toByteArray(), contents.size(), out);
+        }
+        if (complete) {
+            out.writeByte(StreamingPackIO.Event.PACK_END.ordinal());
+        } else {
+            out.writeByte(StreamingPackIO.Event.SEGMENT.ordinal());
+            out.writeInt(sequence);
+            out.writeInt(1024);
+            out.writeLong(0L);
+            out.write(new byte[10]);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
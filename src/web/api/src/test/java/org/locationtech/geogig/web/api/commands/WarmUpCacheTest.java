@@ -0,0 +1,73 @@
+/* Copyright (c) 2019 Boundless and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Distribution License v1.0
+ * which accompanies this distribution, and is available at
+ * https://www.eclipse.org/org/documents/edl-v10.html
+ *
+ * Contributors:
+ * Gabriel Roldan - initial implementation
+ */
+package org.locationtech.geogig.web.api.commands;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import javax.json.JsonObject;
+
+import org.junit.Test;
+import org.locationtech.geogig.repository.Repository;
+import org.locationtech.geogig.rest.repository.TestParams;
+import org.locationtech.geogig.test.TestData;
+import org.locationtech.geogig.web.api.AbstractWebAPICommand;
+import org.locationtech.geogig.web.api.AbstractWebOpTest;
+import org.locationtech.geogig.web.api.ParameterSet;
+
+public class WarmUpCacheTest extends AbstractWebOpTest {
+
+    @Override
+    protected String getRoute() {
+        return "warmupcache";
+    }
+
+    @Override
+    protected Class<? extends AbstractWebAPICommand> getCommandClass() {
+        return WarmUpCache.class;
+    }
+
+    @Override
+    protected boolean requiresTransaction() {
+        return false;
+    }
+
+    @Test
+    public void testBuildParameters() {
+        ParameterSet options = TestParams.of("ref", "master", "path", "Points", "featureTypes",
+                "false");
+
+        WarmUpCache op = (WarmUpCache) buildCommand(options);
+        assertEquals(Arrays.asList("master"), op.refs);
+        assertEquals(Arrays.asList("Points"), op.paths);
+        assertFalse(op.featureTypes);
+    }
+
+    @Test
+    public void testWarmUpCache() throws Exception {
+        Repository geogig = testContext.get().getRepository();
+        TestData testData = new TestData(geogig);
+        testData.init();
+        testData.loadDefaultData();
+
+        ParameterSet options = TestParams.of("ref", "master", "path", "Points");
+        buildCommand(options).run(testContext.get());
+
+        JsonObject response = getJSONResponse().getJsonObject("response");
+        assertTrue(response.getBoolean("success"));
+        JsonObject warmUp = response.getJsonObject("WarmUpCache");
+        // the test repository's object database doesn't use the shared cache
+        assertEquals(0, warmUp.getInt("trees"));
+        assertEquals(0, warmUp.getInt("featureTypes"));
+    }
+}